@@ -19,9 +19,17 @@ ihmc {
 app.entrypoint("SlaveInfo", "us.ihmc.etherCAT.master.SlaveInfo")
 
 mainDependencies {
-   api("us.ihmc:soem:1.4.0-ihmc1")
-   api("us.ihmc:soem-platform-linux:1.4.0-ihmc1")
+   api("us.ihmc:soem:1.4.0-ihmc2")
+   api("us.ihmc:soem-platform-linux:1.4.0-ihmc2")
    api("us.ihmc:ihmc-native-library-loader:2.0.2")
    api("us.ihmc:ihmc-realtime:1.6.0")
 }
 
+
+benchmarksDependencies {
+   api("org.openjdk.jmh:jmh-core:1.37")
+}
+
+ihmc.sourceSetProject("benchmarks").dependencies {
+   add("annotationProcessor", "org.openjdk.jmh:jmh-generator-annprocess:1.37")
+}
@@ -6,6 +6,7 @@ cd build
 
 cmake -DCMAKE_BUILD_TYPE=Release ..
 make
+ctest --output-on-failure
 
 pwd
 ls ..
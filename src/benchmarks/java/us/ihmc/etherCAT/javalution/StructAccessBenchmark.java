@@ -0,0 +1,409 @@
+package us.ihmc.etherCAT.javalution;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import us.ihmc.etherCAT.master.RxPDO;
+import us.ihmc.etherCAT.master.TxPDO;
+
+/**
+ * Benchmarks of PDO member access through Struct, compared to raw ByteBuffer and VarHandle access to the same layout.
+ *
+ * The PDOs have the same layout as ElmoTwitter.RPDO_1605, ElmoTwitter.TPDO_1a03, EL3356.RMBStatus and
+ * IHMCEtherCATIMU.IMUData, and are linked at consecutive offsets in a direct little endian buffer, like the IO map of the
+ * master.
+ *
+ * The Accessor benchmarks use the flat accessors generated by PDOAccessorGenerator for these PDOs.
+ *
+ * Run main() to get the average time per operation and the allocation rate (gc.alloc.rate.norm) of every benchmark.
+ *
+ * @author Jesper Smith
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StructAccessBenchmark
+{
+   private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+   private static final VarHandle SHORT = MethodHandles.byteBufferViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+   private static final VarHandle FLOAT = MethodHandles.byteBufferViewVarHandle(float[].class, ByteOrder.LITTLE_ENDIAN);
+
+   private static final int RPDO_1605_OFFSET = 0;
+   private static final int TPDO_1A03_OFFSET = 16;
+   private static final int RMB_STATUS_OFFSET = 30;
+   private static final int IMU_DATA_OFFSET = 32;
+   private static final int IO_MAP_SIZE = 82;
+
+   /** Same layout as ElmoTwitter.RPDO_1605 */
+   public static class RPDO_1605 extends RxPDO
+   {
+      public RPDO_1605()
+      {
+         super(0x1605);
+      }
+
+      final Signed32 targetPosition = new Signed32();
+      final Signed32 targetVelocity = new Signed32();
+      final Signed16 targetTorque = new Signed16();
+      final Unsigned16 maxTorque = new Unsigned16();
+      final Unsigned16 controlWord = new Unsigned16();
+      final Signed8 modeOfOperation = new Signed8();
+      final Unsigned8 dummyByte = new Unsigned8();
+   }
+
+   /** Same layout as ElmoTwitter.TPDO_1a03 */
+   public static class TPDO_1a03 extends TxPDO
+   {
+      public TPDO_1a03()
+      {
+         super(0x1a03);
+      }
+
+      final Signed32 positionActualValue = new Signed32();
+      final Unsigned32 digitalInputs = new Unsigned32();
+      final Signed32 velocityActualValue = new Signed32();
+      final Unsigned16 statusWord = new Unsigned16();
+   }
+
+   /** Same layout as EL3356.RMBStatus */
+   public static class RMBStatus extends TxPDO
+   {
+      public RMBStatus()
+      {
+         super(0x1a00);
+      }
+
+      final Bool gap0 = new Bool();
+      final Bool overRange = new Bool();
+      final Bool gap2 = new Bool();
+      final Bool dataInvalid = new Bool();
+      final Bit2 gap3 = new Bit2();
+      final Bool error = new Bool();
+      final Bool calibrationInProgress = new Bool();
+      final Bool steadystate = new Bool();
+      final Bit4 gap4 = new Bit4();
+      final Bool syncError = new Bool();
+      final Bool gap5 = new Bool();
+      final Bool txPDOToggle = new Bool();
+   }
+
+   /** Same layout as IHMCEtherCATIMU.IMUData */
+   public static class IMUData extends TxPDO
+   {
+      public IMUData()
+      {
+         super(0x1a00);
+      }
+
+      final Unsigned16 packetCounter = new Unsigned16();
+      final Unsigned32 sampleTime = new Unsigned32();
+      final Unsigned32 status = new Unsigned32();
+      final Float32 qx = new Float32();
+      final Float32 qy = new Float32();
+      final Float32 qz = new Float32();
+      final Float32 qs = new Float32();
+      final Float32 xdd = new Float32();
+      final Float32 ydd = new Float32();
+      final Float32 zdd = new Float32();
+      final Float32 wx = new Float32();
+      final Float32 wy = new Float32();
+      final Float32 wz = new Float32();
+   }
+
+   private final ByteBuffer ioMap = ByteBuffer.allocateDirect(IO_MAP_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+   private final RPDO_1605 rpdo = new RPDO_1605();
+   private final TPDO_1a03 tpdo = new TPDO_1a03();
+   private final RMBStatus rmbStatus = new RMBStatus();
+   private final IMUData imuData = new IMUData();
+
+   private StructAccessBenchmarkRPDO_1605Accessor rpdoAccessor;
+   private StructAccessBenchmarkTPDO_1a03Accessor tpdoAccessor;
+   private StructAccessBenchmarkRMBStatusAccessor rmbStatusAccessor;
+   private StructAccessBenchmarkIMUDataAccessor imuDataAccessor;
+
+   private int counter = 0;
+
+   @Setup
+   public void setup()
+   {
+      rpdo.setByteBuffer(ioMap, RPDO_1605_OFFSET);
+      tpdo.setByteBuffer(ioMap, TPDO_1A03_OFFSET);
+      rmbStatus.setByteBuffer(ioMap, RMB_STATUS_OFFSET);
+      imuData.setByteBuffer(ioMap, IMU_DATA_OFFSET);
+
+      rpdoAccessor = new StructAccessBenchmarkRPDO_1605Accessor(rpdo);
+      tpdoAccessor = new StructAccessBenchmarkTPDO_1a03Accessor(tpdo);
+      rmbStatusAccessor = new StructAccessBenchmarkRMBStatusAccessor(rmbStatus);
+      imuDataAccessor = new StructAccessBenchmarkIMUDataAccessor(imuData);
+
+      for (int i = 0; i < IO_MAP_SIZE; i++)
+      {
+         ioMap.put(i, (byte) (31 * i + 7));
+      }
+   }
+
+   // ElmoTwitter.TPDO_1a03, aligned 16 and 32 bit fields
+
+   @Benchmark
+   public void tpdo1a03ReadStruct(Blackhole blackhole)
+   {
+      blackhole.consume(tpdo.positionActualValue.get());
+      blackhole.consume(tpdo.digitalInputs.get());
+      blackhole.consume(tpdo.velocityActualValue.get());
+      blackhole.consume(tpdo.statusWord.get());
+   }
+
+   @Benchmark
+   public void tpdo1a03ReadAccessor(Blackhole blackhole)
+   {
+      blackhole.consume(tpdoAccessor.getPositionActualValue());
+      blackhole.consume(tpdoAccessor.getDigitalInputs());
+      blackhole.consume(tpdoAccessor.getVelocityActualValue());
+      blackhole.consume(tpdoAccessor.getStatusWord());
+   }
+
+   @Benchmark
+   public void tpdo1a03ReadByteBuffer(Blackhole blackhole)
+   {
+      blackhole.consume(ioMap.getInt(TPDO_1A03_OFFSET));
+      blackhole.consume(ioMap.getInt(TPDO_1A03_OFFSET + 4) & 0xFFFFFFFFL);
+      blackhole.consume(ioMap.getInt(TPDO_1A03_OFFSET + 8));
+      blackhole.consume(ioMap.getShort(TPDO_1A03_OFFSET + 12) & 0xFFFF);
+   }
+
+   @Benchmark
+   public void tpdo1a03ReadVarHandle(Blackhole blackhole)
+   {
+      blackhole.consume((int) INT.get(ioMap, TPDO_1A03_OFFSET));
+      blackhole.consume((int) INT.get(ioMap, TPDO_1A03_OFFSET + 4) & 0xFFFFFFFFL);
+      blackhole.consume((int) INT.get(ioMap, TPDO_1A03_OFFSET + 8));
+      blackhole.consume((short) SHORT.get(ioMap, TPDO_1A03_OFFSET + 12) & 0xFFFF);
+   }
+
+   // ElmoTwitter.RPDO_1605, 8, 16 and 32 bit writes
+
+   @Benchmark
+   public void rpdo1605WriteStruct()
+   {
+      int value = counter++;
+      rpdo.targetPosition.set(value);
+      rpdo.targetVelocity.set(-value);
+      rpdo.targetTorque.set((short) value);
+      rpdo.maxTorque.set(value & 0xFFFF);
+      rpdo.controlWord.set(0x0F);
+      rpdo.modeOfOperation.set((byte) 10);
+   }
+
+   @Benchmark
+   public void rpdo1605WriteAccessor()
+   {
+      int value = counter++;
+      rpdoAccessor.setTargetPosition(value);
+      rpdoAccessor.setTargetVelocity(-value);
+      rpdoAccessor.setTargetTorque((short) value);
+      rpdoAccessor.setMaxTorque(value & 0xFFFF);
+      rpdoAccessor.setControlWord(0x0F);
+      rpdoAccessor.setModeOfOperation((byte) 10);
+   }
+
+   @Benchmark
+   public void rpdo1605WriteByteBuffer()
+   {
+      int value = counter++;
+      ioMap.putInt(RPDO_1605_OFFSET, value);
+      ioMap.putInt(RPDO_1605_OFFSET + 4, -value);
+      ioMap.putShort(RPDO_1605_OFFSET + 8, (short) value);
+      ioMap.putShort(RPDO_1605_OFFSET + 10, (short) value);
+      ioMap.putShort(RPDO_1605_OFFSET + 12, (short) 0x0F);
+      ioMap.put(RPDO_1605_OFFSET + 14, (byte) 10);
+   }
+
+   @Benchmark
+   public void rpdo1605WriteVarHandle()
+   {
+      int value = counter++;
+      INT.set(ioMap, RPDO_1605_OFFSET, value);
+      INT.set(ioMap, RPDO_1605_OFFSET + 4, -value);
+      SHORT.set(ioMap, RPDO_1605_OFFSET + 8, (short) value);
+      SHORT.set(ioMap, RPDO_1605_OFFSET + 10, (short) value);
+      SHORT.set(ioMap, RPDO_1605_OFFSET + 12, (short) 0x0F);
+      ioMap.put(RPDO_1605_OFFSET + 14, (byte) 10);
+   }
+
+   // EL3356.RMBStatus, single bit fields through readBits()/writeBits()
+
+   @Benchmark
+   public void rmbStatusReadStruct(Blackhole blackhole)
+   {
+      blackhole.consume(rmbStatus.overRange.get());
+      blackhole.consume(rmbStatus.dataInvalid.get());
+      blackhole.consume(rmbStatus.error.get());
+      blackhole.consume(rmbStatus.calibrationInProgress.get());
+      blackhole.consume(rmbStatus.steadystate.get());
+      blackhole.consume(rmbStatus.syncError.get());
+      blackhole.consume(rmbStatus.txPDOToggle.get());
+   }
+
+   @Benchmark
+   public void rmbStatusReadAccessor(Blackhole blackhole)
+   {
+      blackhole.consume(rmbStatusAccessor.getOverRange());
+      blackhole.consume(rmbStatusAccessor.getDataInvalid());
+      blackhole.consume(rmbStatusAccessor.getError());
+      blackhole.consume(rmbStatusAccessor.getCalibrationInProgress());
+      blackhole.consume(rmbStatusAccessor.getSteadystate());
+      blackhole.consume(rmbStatusAccessor.getSyncError());
+      blackhole.consume(rmbStatusAccessor.getTxPDOToggle());
+   }
+
+   @Benchmark
+   public void rmbStatusReadByteBuffer(Blackhole blackhole)
+   {
+      int word = ioMap.getShort(RMB_STATUS_OFFSET);
+      blackhole.consume((word & 0x0002) != 0);
+      blackhole.consume((word & 0x0008) != 0);
+      blackhole.consume((word & 0x0040) != 0);
+      blackhole.consume((word & 0x0080) != 0);
+      blackhole.consume((word & 0x0100) != 0);
+      blackhole.consume((word & 0x2000) != 0);
+      blackhole.consume((word & 0x8000) != 0);
+   }
+
+   @Benchmark
+   public void rmbStatusReadVarHandle(Blackhole blackhole)
+   {
+      int word = (short) SHORT.get(ioMap, RMB_STATUS_OFFSET);
+      blackhole.consume((word & 0x0002) != 0);
+      blackhole.consume((word & 0x0008) != 0);
+      blackhole.consume((word & 0x0040) != 0);
+      blackhole.consume((word & 0x0080) != 0);
+      blackhole.consume((word & 0x0100) != 0);
+      blackhole.consume((word & 0x2000) != 0);
+      blackhole.consume((word & 0x8000) != 0);
+   }
+
+   @Benchmark
+   public void rmbStatusWriteStruct()
+   {
+      boolean toggle = (counter++ & 1) == 1;
+      rmbStatus.overRange.set(false);
+      rmbStatus.error.set(toggle);
+      rmbStatus.steadystate.set(true);
+      rmbStatus.txPDOToggle.set(toggle);
+   }
+
+   @Benchmark
+   public void rmbStatusWriteAccessor()
+   {
+      boolean toggle = (counter++ & 1) == 1;
+      rmbStatusAccessor.setOverRange(false);
+      rmbStatusAccessor.setError(toggle);
+      rmbStatusAccessor.setSteadystate(true);
+      rmbStatusAccessor.setTxPDOToggle(toggle);
+   }
+
+   @Benchmark
+   public void rmbStatusWriteByteBuffer()
+   {
+      boolean toggle = (counter++ & 1) == 1;
+      int word = ioMap.getShort(RMB_STATUS_OFFSET);
+      word &= ~0x0002;
+      word = toggle ? word | 0x0040 : word & ~0x0040;
+      word |= 0x0100;
+      word = toggle ? word | 0x8000 : word & ~0x8000;
+      ioMap.putShort(RMB_STATUS_OFFSET, (short) word);
+   }
+
+   // IHMCEtherCATIMU.IMUData, unaligned 32 bit integers and floats
+
+   @Benchmark
+   public void imuDataReadStruct(Blackhole blackhole)
+   {
+      blackhole.consume(imuData.packetCounter.get());
+      blackhole.consume(imuData.sampleTime.get());
+      blackhole.consume(imuData.status.get());
+      blackhole.consume(imuData.qx.get());
+      blackhole.consume(imuData.qy.get());
+      blackhole.consume(imuData.qz.get());
+      blackhole.consume(imuData.qs.get());
+      blackhole.consume(imuData.xdd.get());
+      blackhole.consume(imuData.ydd.get());
+      blackhole.consume(imuData.zdd.get());
+      blackhole.consume(imuData.wx.get());
+      blackhole.consume(imuData.wy.get());
+      blackhole.consume(imuData.wz.get());
+   }
+
+   @Benchmark
+   public void imuDataReadAccessor(Blackhole blackhole)
+   {
+      blackhole.consume(imuDataAccessor.getPacketCounter());
+      blackhole.consume(imuDataAccessor.getSampleTime());
+      blackhole.consume(imuDataAccessor.getStatus());
+      blackhole.consume(imuDataAccessor.getQx());
+      blackhole.consume(imuDataAccessor.getQy());
+      blackhole.consume(imuDataAccessor.getQz());
+      blackhole.consume(imuDataAccessor.getQs());
+      blackhole.consume(imuDataAccessor.getXdd());
+      blackhole.consume(imuDataAccessor.getYdd());
+      blackhole.consume(imuDataAccessor.getZdd());
+      blackhole.consume(imuDataAccessor.getWx());
+      blackhole.consume(imuDataAccessor.getWy());
+      blackhole.consume(imuDataAccessor.getWz());
+   }
+
+   @Benchmark
+   public void imuDataReadByteBuffer(Blackhole blackhole)
+   {
+      blackhole.consume(ioMap.getShort(IMU_DATA_OFFSET) & 0xFFFF);
+      blackhole.consume(ioMap.getInt(IMU_DATA_OFFSET + 2) & 0xFFFFFFFFL);
+      blackhole.consume(ioMap.getInt(IMU_DATA_OFFSET + 6) & 0xFFFFFFFFL);
+      for (int i = 0; i < 10; i++)
+      {
+         blackhole.consume(ioMap.getFloat(IMU_DATA_OFFSET + 10 + 4 * i));
+      }
+   }
+
+   @Benchmark
+   public void imuDataReadVarHandle(Blackhole blackhole)
+   {
+      blackhole.consume((short) SHORT.get(ioMap, IMU_DATA_OFFSET) & 0xFFFF);
+      blackhole.consume((int) INT.get(ioMap, IMU_DATA_OFFSET + 2) & 0xFFFFFFFFL);
+      blackhole.consume((int) INT.get(ioMap, IMU_DATA_OFFSET + 6) & 0xFFFFFFFFL);
+      for (int i = 0; i < 10; i++)
+      {
+         blackhole.consume((float) FLOAT.get(ioMap, IMU_DATA_OFFSET + 10 + 4 * i));
+      }
+   }
+
+   public static void main(String[] args) throws RunnerException
+   {
+      Options options = new OptionsBuilder().include(StructAccessBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build();
+      new Runner(options).run();
+   }
+}
@@ -0,0 +1,191 @@
+package us.ihmc.etherCAT.javalution;
+
+import us.ihmc.etherCAT.master.PDOAccessor;
+
+/**
+ * Flat accessor for {@link StructAccessBenchmark.IMUData}
+ * 
+ * Generated by PDOAccessorGenerator. Do not edit, regenerate when the PDO changes.
+ */
+public final class StructAccessBenchmarkIMUDataAccessor extends PDOAccessor
+{
+   private final int packetCounter;
+   private final int sampleTime;
+   private final int status;
+   private final int qx;
+   private final int qy;
+   private final int qz;
+   private final int qs;
+   private final int xdd;
+   private final int ydd;
+   private final int zdd;
+   private final int wx;
+   private final int wy;
+   private final int wz;
+
+   /**
+    * Create an accessor for a PDO that is linked to the process image
+    * 
+    * @param pdo linked PDO
+    */
+   public StructAccessBenchmarkIMUDataAccessor(StructAccessBenchmark.IMUData pdo)
+   {
+      super(pdo);
+      checkBitLength("packetCounter", pdo.packetCounter.bitLength(), 16);
+      packetCounter = pdo.packetCounter.absoluteOffset();
+      checkBitLength("sampleTime", pdo.sampleTime.bitLength(), 32);
+      sampleTime = pdo.sampleTime.absoluteOffset();
+      checkBitLength("status", pdo.status.bitLength(), 32);
+      status = pdo.status.absoluteOffset();
+      checkBitLength("qx", pdo.qx.bitLength(), 32);
+      qx = pdo.qx.absoluteOffset();
+      checkBitLength("qy", pdo.qy.bitLength(), 32);
+      qy = pdo.qy.absoluteOffset();
+      checkBitLength("qz", pdo.qz.bitLength(), 32);
+      qz = pdo.qz.absoluteOffset();
+      checkBitLength("qs", pdo.qs.bitLength(), 32);
+      qs = pdo.qs.absoluteOffset();
+      checkBitLength("xdd", pdo.xdd.bitLength(), 32);
+      xdd = pdo.xdd.absoluteOffset();
+      checkBitLength("ydd", pdo.ydd.bitLength(), 32);
+      ydd = pdo.ydd.absoluteOffset();
+      checkBitLength("zdd", pdo.zdd.bitLength(), 32);
+      zdd = pdo.zdd.absoluteOffset();
+      checkBitLength("wx", pdo.wx.bitLength(), 32);
+      wx = pdo.wx.absoluteOffset();
+      checkBitLength("wy", pdo.wy.bitLength(), 32);
+      wy = pdo.wy.absoluteOffset();
+      checkBitLength("wz", pdo.wz.bitLength(), 32);
+      wz = pdo.wz.absoluteOffset();
+   }
+
+   public int getPacketCounter()
+   {
+      return buffer.getShort(packetCounter) & 0xFFFF;
+   }
+
+   public void setPacketCounter(int value)
+   {
+      buffer.putShort(packetCounter, (short) value);
+   }
+
+   public long getSampleTime()
+   {
+      return buffer.getInt(sampleTime) & 0xFFFFFFFFL;
+   }
+
+   public void setSampleTime(long value)
+   {
+      buffer.putInt(sampleTime, (int) value);
+   }
+
+   public long getStatus()
+   {
+      return buffer.getInt(status) & 0xFFFFFFFFL;
+   }
+
+   public void setStatus(long value)
+   {
+      buffer.putInt(status, (int) value);
+   }
+
+   public float getQx()
+   {
+      return buffer.getFloat(qx);
+   }
+
+   public void setQx(float value)
+   {
+      buffer.putFloat(qx, value);
+   }
+
+   public float getQy()
+   {
+      return buffer.getFloat(qy);
+   }
+
+   public void setQy(float value)
+   {
+      buffer.putFloat(qy, value);
+   }
+
+   public float getQz()
+   {
+      return buffer.getFloat(qz);
+   }
+
+   public void setQz(float value)
+   {
+      buffer.putFloat(qz, value);
+   }
+
+   public float getQs()
+   {
+      return buffer.getFloat(qs);
+   }
+
+   public void setQs(float value)
+   {
+      buffer.putFloat(qs, value);
+   }
+
+   public float getXdd()
+   {
+      return buffer.getFloat(xdd);
+   }
+
+   public void setXdd(float value)
+   {
+      buffer.putFloat(xdd, value);
+   }
+
+   public float getYdd()
+   {
+      return buffer.getFloat(ydd);
+   }
+
+   public void setYdd(float value)
+   {
+      buffer.putFloat(ydd, value);
+   }
+
+   public float getZdd()
+   {
+      return buffer.getFloat(zdd);
+   }
+
+   public void setZdd(float value)
+   {
+      buffer.putFloat(zdd, value);
+   }
+
+   public float getWx()
+   {
+      return buffer.getFloat(wx);
+   }
+
+   public void setWx(float value)
+   {
+      buffer.putFloat(wx, value);
+   }
+
+   public float getWy()
+   {
+      return buffer.getFloat(wy);
+   }
+
+   public void setWy(float value)
+   {
+      buffer.putFloat(wy, value);
+   }
+
+   public float getWz()
+   {
+      return buffer.getFloat(wz);
+   }
+
+   public void setWz(float value)
+   {
+      buffer.putFloat(wz, value);
+   }
+}
@@ -0,0 +1,190 @@
+package us.ihmc.etherCAT.javalution;
+
+import us.ihmc.etherCAT.master.PDOAccessor;
+
+/**
+ * Flat accessor for {@link StructAccessBenchmark.RMBStatus}
+ * 
+ * Generated by PDOAccessorGenerator. Do not edit, regenerate when the PDO changes.
+ */
+public final class StructAccessBenchmarkRMBStatusAccessor extends PDOAccessor
+{
+   private final int gap0Index;
+   private final int gap0Shift;
+   private final int overRangeIndex;
+   private final int overRangeShift;
+   private final int gap2Index;
+   private final int gap2Shift;
+   private final int dataInvalidIndex;
+   private final int dataInvalidShift;
+   private final int gap3Index;
+   private final int gap3Shift;
+   private final int errorIndex;
+   private final int errorShift;
+   private final int calibrationInProgressIndex;
+   private final int calibrationInProgressShift;
+   private final int steadystateIndex;
+   private final int steadystateShift;
+   private final int gap4Index;
+   private final int gap4Shift;
+   private final int syncErrorIndex;
+   private final int syncErrorShift;
+   private final int gap5Index;
+   private final int gap5Shift;
+   private final int txPDOToggleIndex;
+   private final int txPDOToggleShift;
+
+   /**
+    * Create an accessor for a PDO that is linked to the process image
+    * 
+    * @param pdo linked PDO
+    */
+   public StructAccessBenchmarkRMBStatusAccessor(StructAccessBenchmark.RMBStatus pdo)
+   {
+      super(pdo);
+      gap0Index = wordIndex("gap0", pdo.gap0.absoluteBitOffset(), pdo.gap0.bitLength(), 1);
+      gap0Shift = wordShift(pdo.gap0.absoluteBitOffset(), gap0Index);
+      overRangeIndex = wordIndex("overRange", pdo.overRange.absoluteBitOffset(), pdo.overRange.bitLength(), 1);
+      overRangeShift = wordShift(pdo.overRange.absoluteBitOffset(), overRangeIndex);
+      gap2Index = wordIndex("gap2", pdo.gap2.absoluteBitOffset(), pdo.gap2.bitLength(), 1);
+      gap2Shift = wordShift(pdo.gap2.absoluteBitOffset(), gap2Index);
+      dataInvalidIndex = wordIndex("dataInvalid", pdo.dataInvalid.absoluteBitOffset(), pdo.dataInvalid.bitLength(), 1);
+      dataInvalidShift = wordShift(pdo.dataInvalid.absoluteBitOffset(), dataInvalidIndex);
+      gap3Index = wordIndex("gap3", pdo.gap3.absoluteBitOffset(), pdo.gap3.bitLength(), 2);
+      gap3Shift = wordShift(pdo.gap3.absoluteBitOffset(), gap3Index);
+      errorIndex = wordIndex("error", pdo.error.absoluteBitOffset(), pdo.error.bitLength(), 1);
+      errorShift = wordShift(pdo.error.absoluteBitOffset(), errorIndex);
+      calibrationInProgressIndex = wordIndex("calibrationInProgress", pdo.calibrationInProgress.absoluteBitOffset(), pdo.calibrationInProgress.bitLength(), 1);
+      calibrationInProgressShift = wordShift(pdo.calibrationInProgress.absoluteBitOffset(), calibrationInProgressIndex);
+      steadystateIndex = wordIndex("steadystate", pdo.steadystate.absoluteBitOffset(), pdo.steadystate.bitLength(), 1);
+      steadystateShift = wordShift(pdo.steadystate.absoluteBitOffset(), steadystateIndex);
+      gap4Index = wordIndex("gap4", pdo.gap4.absoluteBitOffset(), pdo.gap4.bitLength(), 2);
+      gap4Shift = wordShift(pdo.gap4.absoluteBitOffset(), gap4Index);
+      syncErrorIndex = wordIndex("syncError", pdo.syncError.absoluteBitOffset(), pdo.syncError.bitLength(), 1);
+      syncErrorShift = wordShift(pdo.syncError.absoluteBitOffset(), syncErrorIndex);
+      gap5Index = wordIndex("gap5", pdo.gap5.absoluteBitOffset(), pdo.gap5.bitLength(), 1);
+      gap5Shift = wordShift(pdo.gap5.absoluteBitOffset(), gap5Index);
+      txPDOToggleIndex = wordIndex("txPDOToggle", pdo.txPDOToggle.absoluteBitOffset(), pdo.txPDOToggle.bitLength(), 1);
+      txPDOToggleShift = wordShift(pdo.txPDOToggle.absoluteBitOffset(), txPDOToggleIndex);
+   }
+
+   public boolean getGap0()
+   {
+      return ((buffer.get(gap0Index) >> gap0Shift) & 1) != 0;
+   }
+
+   public void setGap0(boolean value)
+   {
+      buffer.put(gap0Index, (byte) (value ? buffer.get(gap0Index) | (1 << gap0Shift) : buffer.get(gap0Index) & ~(1 << gap0Shift)));
+   }
+
+   public boolean getOverRange()
+   {
+      return ((buffer.get(overRangeIndex) >> overRangeShift) & 1) != 0;
+   }
+
+   public void setOverRange(boolean value)
+   {
+      buffer.put(overRangeIndex, (byte) (value ? buffer.get(overRangeIndex) | (1 << overRangeShift) : buffer.get(overRangeIndex) & ~(1 << overRangeShift)));
+   }
+
+   public boolean getGap2()
+   {
+      return ((buffer.get(gap2Index) >> gap2Shift) & 1) != 0;
+   }
+
+   public void setGap2(boolean value)
+   {
+      buffer.put(gap2Index, (byte) (value ? buffer.get(gap2Index) | (1 << gap2Shift) : buffer.get(gap2Index) & ~(1 << gap2Shift)));
+   }
+
+   public boolean getDataInvalid()
+   {
+      return ((buffer.get(dataInvalidIndex) >> dataInvalidShift) & 1) != 0;
+   }
+
+   public void setDataInvalid(boolean value)
+   {
+      buffer.put(dataInvalidIndex, (byte) (value ? buffer.get(dataInvalidIndex) | (1 << dataInvalidShift) : buffer.get(dataInvalidIndex) & ~(1 << dataInvalidShift)));
+   }
+
+   public int getGap3()
+   {
+      return (buffer.getShort(gap3Index) >> gap3Shift) & 0x3;
+   }
+
+   public void setGap3(int value)
+   {
+      buffer.putShort(gap3Index, (short) ((buffer.getShort(gap3Index) & ~(0x3 << gap3Shift)) | ((value & 0x3) << gap3Shift)));
+   }
+
+   public boolean getError()
+   {
+      return ((buffer.get(errorIndex) >> errorShift) & 1) != 0;
+   }
+
+   public void setError(boolean value)
+   {
+      buffer.put(errorIndex, (byte) (value ? buffer.get(errorIndex) | (1 << errorShift) : buffer.get(errorIndex) & ~(1 << errorShift)));
+   }
+
+   public boolean getCalibrationInProgress()
+   {
+      return ((buffer.get(calibrationInProgressIndex) >> calibrationInProgressShift) & 1) != 0;
+   }
+
+   public void setCalibrationInProgress(boolean value)
+   {
+      buffer.put(calibrationInProgressIndex, (byte) (value ? buffer.get(calibrationInProgressIndex) | (1 << calibrationInProgressShift) : buffer.get(calibrationInProgressIndex) & ~(1 << calibrationInProgressShift)));
+   }
+
+   public boolean getSteadystate()
+   {
+      return ((buffer.get(steadystateIndex) >> steadystateShift) & 1) != 0;
+   }
+
+   public void setSteadystate(boolean value)
+   {
+      buffer.put(steadystateIndex, (byte) (value ? buffer.get(steadystateIndex) | (1 << steadystateShift) : buffer.get(steadystateIndex) & ~(1 << steadystateShift)));
+   }
+
+   public int getGap4()
+   {
+      return (buffer.getShort(gap4Index) >> gap4Shift) & 0xf;
+   }
+
+   public void setGap4(int value)
+   {
+      buffer.putShort(gap4Index, (short) ((buffer.getShort(gap4Index) & ~(0xf << gap4Shift)) | ((value & 0xf) << gap4Shift)));
+   }
+
+   public boolean getSyncError()
+   {
+      return ((buffer.get(syncErrorIndex) >> syncErrorShift) & 1) != 0;
+   }
+
+   public void setSyncError(boolean value)
+   {
+      buffer.put(syncErrorIndex, (byte) (value ? buffer.get(syncErrorIndex) | (1 << syncErrorShift) : buffer.get(syncErrorIndex) & ~(1 << syncErrorShift)));
+   }
+
+   public boolean getGap5()
+   {
+      return ((buffer.get(gap5Index) >> gap5Shift) & 1) != 0;
+   }
+
+   public void setGap5(boolean value)
+   {
+      buffer.put(gap5Index, (byte) (value ? buffer.get(gap5Index) | (1 << gap5Shift) : buffer.get(gap5Index) & ~(1 << gap5Shift)));
+   }
+
+   public boolean getTxPDOToggle()
+   {
+      return ((buffer.get(txPDOToggleIndex) >> txPDOToggleShift) & 1) != 0;
+   }
+
+   public void setTxPDOToggle(boolean value)
+   {
+      buffer.put(txPDOToggleIndex, (byte) (value ? buffer.get(txPDOToggleIndex) | (1 << txPDOToggleShift) : buffer.get(txPDOToggleIndex) & ~(1 << txPDOToggleShift)));
+   }
+}
@@ -0,0 +1,113 @@
+package us.ihmc.etherCAT.javalution;
+
+import us.ihmc.etherCAT.master.PDOAccessor;
+
+/**
+ * Flat accessor for {@link StructAccessBenchmark.RPDO_1605}
+ * 
+ * Generated by PDOAccessorGenerator. Do not edit, regenerate when the PDO changes.
+ */
+public final class StructAccessBenchmarkRPDO_1605Accessor extends PDOAccessor
+{
+   private final int targetPosition;
+   private final int targetVelocity;
+   private final int targetTorque;
+   private final int maxTorque;
+   private final int controlWord;
+   private final int modeOfOperation;
+   private final int dummyByte;
+
+   /**
+    * Create an accessor for a PDO that is linked to the process image
+    * 
+    * @param pdo linked PDO
+    */
+   public StructAccessBenchmarkRPDO_1605Accessor(StructAccessBenchmark.RPDO_1605 pdo)
+   {
+      super(pdo);
+      checkBitLength("targetPosition", pdo.targetPosition.bitLength(), 32);
+      targetPosition = pdo.targetPosition.absoluteOffset();
+      checkBitLength("targetVelocity", pdo.targetVelocity.bitLength(), 32);
+      targetVelocity = pdo.targetVelocity.absoluteOffset();
+      checkBitLength("targetTorque", pdo.targetTorque.bitLength(), 16);
+      targetTorque = pdo.targetTorque.absoluteOffset();
+      checkBitLength("maxTorque", pdo.maxTorque.bitLength(), 16);
+      maxTorque = pdo.maxTorque.absoluteOffset();
+      checkBitLength("controlWord", pdo.controlWord.bitLength(), 16);
+      controlWord = pdo.controlWord.absoluteOffset();
+      checkBitLength("modeOfOperation", pdo.modeOfOperation.bitLength(), 8);
+      modeOfOperation = pdo.modeOfOperation.absoluteOffset();
+      checkBitLength("dummyByte", pdo.dummyByte.bitLength(), 8);
+      dummyByte = pdo.dummyByte.absoluteOffset();
+   }
+
+   public int getTargetPosition()
+   {
+      return buffer.getInt(targetPosition);
+   }
+
+   public void setTargetPosition(int value)
+   {
+      buffer.putInt(targetPosition, value);
+   }
+
+   public int getTargetVelocity()
+   {
+      return buffer.getInt(targetVelocity);
+   }
+
+   public void setTargetVelocity(int value)
+   {
+      buffer.putInt(targetVelocity, value);
+   }
+
+   public short getTargetTorque()
+   {
+      return buffer.getShort(targetTorque);
+   }
+
+   public void setTargetTorque(short value)
+   {
+      buffer.putShort(targetTorque, value);
+   }
+
+   public int getMaxTorque()
+   {
+      return buffer.getShort(maxTorque) & 0xFFFF;
+   }
+
+   public void setMaxTorque(int value)
+   {
+      buffer.putShort(maxTorque, (short) value);
+   }
+
+   public int getControlWord()
+   {
+      return buffer.getShort(controlWord) & 0xFFFF;
+   }
+
+   public void setControlWord(int value)
+   {
+      buffer.putShort(controlWord, (short) value);
+   }
+
+   public byte getModeOfOperation()
+   {
+      return buffer.get(modeOfOperation);
+   }
+
+   public void setModeOfOperation(byte value)
+   {
+      buffer.put(modeOfOperation, value);
+   }
+
+   public short getDummyByte()
+   {
+      return (short) (buffer.get(dummyByte) & 0xFF);
+   }
+
+   public void setDummyByte(short value)
+   {
+      buffer.put(dummyByte, (byte) value);
+   }
+}
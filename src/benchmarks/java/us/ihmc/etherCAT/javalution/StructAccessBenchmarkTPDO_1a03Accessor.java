@@ -0,0 +1,74 @@
+package us.ihmc.etherCAT.javalution;
+
+import us.ihmc.etherCAT.master.PDOAccessor;
+
+/**
+ * Flat accessor for {@link StructAccessBenchmark.TPDO_1a03}
+ * 
+ * Generated by PDOAccessorGenerator. Do not edit, regenerate when the PDO changes.
+ */
+public final class StructAccessBenchmarkTPDO_1a03Accessor extends PDOAccessor
+{
+   private final int positionActualValue;
+   private final int digitalInputs;
+   private final int velocityActualValue;
+   private final int statusWord;
+
+   /**
+    * Create an accessor for a PDO that is linked to the process image
+    * 
+    * @param pdo linked PDO
+    */
+   public StructAccessBenchmarkTPDO_1a03Accessor(StructAccessBenchmark.TPDO_1a03 pdo)
+   {
+      super(pdo);
+      checkBitLength("positionActualValue", pdo.positionActualValue.bitLength(), 32);
+      positionActualValue = pdo.positionActualValue.absoluteOffset();
+      checkBitLength("digitalInputs", pdo.digitalInputs.bitLength(), 32);
+      digitalInputs = pdo.digitalInputs.absoluteOffset();
+      checkBitLength("velocityActualValue", pdo.velocityActualValue.bitLength(), 32);
+      velocityActualValue = pdo.velocityActualValue.absoluteOffset();
+      checkBitLength("statusWord", pdo.statusWord.bitLength(), 16);
+      statusWord = pdo.statusWord.absoluteOffset();
+   }
+
+   public int getPositionActualValue()
+   {
+      return buffer.getInt(positionActualValue);
+   }
+
+   public void setPositionActualValue(int value)
+   {
+      buffer.putInt(positionActualValue, value);
+   }
+
+   public long getDigitalInputs()
+   {
+      return buffer.getInt(digitalInputs) & 0xFFFFFFFFL;
+   }
+
+   public void setDigitalInputs(long value)
+   {
+      buffer.putInt(digitalInputs, (int) value);
+   }
+
+   public int getVelocityActualValue()
+   {
+      return buffer.getInt(velocityActualValue);
+   }
+
+   public void setVelocityActualValue(int value)
+   {
+      buffer.putInt(velocityActualValue, value);
+   }
+
+   public int getStatusWord()
+   {
+      return buffer.getShort(statusWord) & 0xFFFF;
+   }
+
+   public void setStatusWord(int value)
+   {
+      buffer.putShort(statusWord, (short) value);
+   }
+}
@@ -993,6 +993,28 @@ public class Struct {
             return _bitLength;
         }
 
+        /**
+         * Returns the absolute byte position of this member in the
+         * {@link Struct#getByteBuffer byte buffer}. Only valid as long
+         * as the struct is not moved to another position.
+         *
+         * @return the absolute position of this member in the byte buffer.
+         */
+        public final int absoluteOffset() {
+            return getByteBufferPosition() + _offset;
+        }
+
+        /**
+         * Returns the absolute bit position of this member in the
+         * {@link Struct#getByteBuffer byte buffer}, including the
+         * {@link #bitIndex bit index}.
+         *
+         * @return the absolute bit position of this member in the byte buffer.
+         */
+        public final int absoluteBitOffset() {
+            return (absoluteOffset() << 3) + bitIndex();
+        }
+
         // Returns the member int value.
         final int get(int wordSize, int word) {
             final int shift = (byteOrder() == ByteOrder.BIG_ENDIAN) ? (wordSize << 3)
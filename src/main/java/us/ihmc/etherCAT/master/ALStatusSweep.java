@@ -0,0 +1,61 @@
+package us.ihmc.etherCAT.master;
+
+import us.ihmc.soem.generated.soem;
+
+/**
+ * Bus wide read of the AL status of all slaves.
+ *
+ * The FPRD datagrams for the AL status of every slave are packed in a RegisterTransactionBatch, which is submitted to the 
+ * master and transferred with the cyclic process data frames. This updates the householder state of all slaves without 
+ * extra frames on the wire and without blocking the householder tick.
+ *
+ * @author Jesper Smith
+ *
+ */
+class ALStatusSweep
+{
+   // AL status, reserved and AL status code registers
+   private static final int ALSTATUS_LENGTH = 6;
+   private static final int ALSTATUSCODE_OFFSET = 4;
+
+   private final Slave[] subdevices;
+   private final RegisterTransactionBatch batch;
+   private final int[] operations;
+   private boolean submitted = false;
+
+   ALStatusSweep(Master master, Slave[] subdevices)
+   {
+      this.subdevices = subdevices;
+      this.batch = new RegisterTransactionBatch(master, subdevices.length, subdevices.length * ALSTATUS_LENGTH);
+      this.operations = new int[subdevices.length];
+
+      for (int i = 0; i < subdevices.length; i++)
+      {
+         operations[i] = batch.addFPRD(subdevices[i], soem.ECT_REG_ALSTAT, ALSTATUS_LENGTH);
+      }
+   }
+
+   /**
+    * Update the householder state of all slaves with the result of the previous sweep, if available, and start a new sweep.
+    *
+    * Non-blocking. The result of a sweep is available after the master has transferred the process data, typically in the next householder tick.
+    */
+   void sweep()
+   {
+      if (batch.isPending())
+      {
+         return;
+      }
+
+      if (submitted)
+      {
+         for (int i = 0; i < subdevices.length; i++)
+         {
+            subdevices[i].updateEtherCATState(batch.getWorkingCounter(operations[i]), batch.getShort(operations[i], 0) & 0xFFFF,
+                                              batch.getShort(operations[i], ALSTATUSCODE_OFFSET) & 0xFFFF);
+         }
+      }
+
+      submitted = batch.submit();
+   }
+}
@@ -0,0 +1,97 @@
+package us.ihmc.etherCAT.master;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import us.ihmc.soem.generated.ecx_context;
+import us.ihmc.soem.generated.soem;
+
+/**
+ * Bounded queue of register transaction batches that are transferred with the cyclic process data.
+ *
+ * Batches are submitted with RegisterTransactionBatch.submit() from the statemachine thread or any other non-realtime thread.
+ * The realtime thread hands the batch at the head of the queue to the native code before sending the process data, which appends
+ * the datagrams of the batch to the process data frames that have room left. When all datagrams of the batch have been received,
+ * the batch is released and the next batch is started in the next cycle.
+ *
+ * Multiple producers, single consumer. The realtime side does not block and does not allocate.
+ *
+ * @author Jesper Smith
+ *
+ */
+class AcyclicDatagramQueue
+{
+   private final RegisterTransactionBatch[] queue;
+   private final int mask;
+
+   private final AtomicLong writeIndex = new AtomicLong();
+   private final AtomicLong readIndex = new AtomicLong();
+
+   // Realtime thread only
+   private RegisterTransactionBatch active = null;
+
+   /**
+    * @param capacity Maximum number of batches in the queue, rounded up to a power of two
+    */
+   AcyclicDatagramQueue(int capacity)
+   {
+      if (capacity < 1)
+      {
+         throw new IllegalArgumentException("The acyclic datagram queue needs a capacity of at least one batch");
+      }
+
+      int slots = Integer.bitCount(capacity) == 1 ? capacity : Integer.highestOneBit(capacity) << 1;
+      this.queue = new RegisterTransactionBatch[slots];
+      this.mask = slots - 1;
+   }
+
+   /**
+    * Add a batch to the queue
+    *
+    * @return false if the queue is full
+    */
+   synchronized boolean offer(RegisterTransactionBatch batch)
+   {
+      long index = writeIndex.get();
+      if (index - readIndex.get() >= queue.length)
+      {
+         return false;
+      }
+
+      queue[(int) (index & mask)] = batch;
+      writeIndex.lazySet(index + 1);
+      return true;
+   }
+
+   /**
+    * Internal function. Hand the next batch to the native code if no batch is active. Call from the realtime thread before sending the process data.
+    */
+   void beforeSend(ecx_context context)
+   {
+      if (active == null)
+      {
+         long index = readIndex.get();
+         if (index < writeIndex.get())
+         {
+            int slot = (int) (index & mask);
+            active = queue[slot];
+            queue[slot] = null;
+            readIndex.lazySet(index + 1);
+
+            soem.ecx_acyclic_submit(context, active.getOperationBuffer(), active.size(), active.getDataBuffer());
+         }
+      }
+   }
+
+   /**
+    * Internal function. Release the active batch when all its datagrams have been received. Call from the realtime thread after receiving the process data.
+    */
+   void afterReceive(ecx_context context)
+   {
+      if (active != null && soem.ecx_acyclic_pending(context) == 0)
+      {
+         RegisterTransactionBatch received = active;
+         active = null;
+         received.setReceived();
+      }
+   }
+}
@@ -0,0 +1,124 @@
+package us.ihmc.etherCAT.master;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool and queue of SDO transfers submitted from non-realtime threads.
+ *
+ * Any thread can acquire a request from the pool and submit it. The householder transfers the requests in order of submission and
+ * returns them to the pool after the callback. The queue has room for all requests in the pool.
+ *
+ * Multiple producers, single consumer. The requests are preallocated.
+ *
+ * @author Jesper Smith
+ *
+ */
+class AsyncSDOQueue
+{
+   private final AsyncSDORequest[] pool;
+   private int available;
+
+   private final AsyncSDORequest[] queue;
+   private final int mask;
+
+   private final AtomicLong writeIndex = new AtomicLong();
+   private final AtomicLong readIndex = new AtomicLong();
+
+   /**
+    * @param capacity Number of requests in the pool, rounded up to a power of two
+    */
+   AsyncSDOQueue(int capacity)
+   {
+      if (capacity < 1)
+      {
+         throw new IllegalArgumentException("The asynchronous SDO queue needs a capacity of at least one request");
+      }
+
+      int slots = Integer.bitCount(capacity) == 1 ? capacity : Integer.highestOneBit(capacity) << 1;
+      this.queue = new AsyncSDORequest[slots];
+      this.mask = slots - 1;
+
+      this.pool = new AsyncSDORequest[slots];
+      for (int i = 0; i < slots; i++)
+      {
+         pool[i] = new AsyncSDORequest();
+      }
+      this.available = slots;
+   }
+
+   /**
+    * Take a request from the pool
+    *
+    * @return request, or null if all requests are in use
+    */
+   synchronized AsyncSDORequest acquire()
+   {
+      if (available == 0)
+      {
+         return null;
+      }
+
+      AsyncSDORequest request = pool[--available];
+      pool[available] = null;
+      return request;
+   }
+
+   /**
+    * Add a request taken from the pool to the queue
+    */
+   synchronized void submit(AsyncSDORequest request)
+   {
+      long index = writeIndex.get();
+      queue[(int) (index & mask)] = request;
+      writeIndex.lazySet(index + 1);
+   }
+
+   /**
+    * Householder.
+    *
+    * @return the oldest submitted request, or null if the queue is empty
+    */
+   AsyncSDORequest peek()
+   {
+      long index = readIndex.get();
+      if (index < writeIndex.get())
+      {
+         return queue[(int) (index & mask)];
+      }
+      return null;
+   }
+
+   /**
+    * Householder. Remove the oldest submitted request from the queue, notify its callback and return it to the pool
+    */
+   void complete()
+   {
+      long index = readIndex.get();
+      int slot = (int) (index & mask);
+      AsyncSDORequest request = queue[slot];
+      queue[slot] = null;
+      readIndex.lazySet(index + 1);
+
+      try
+      {
+         request.complete();
+      }
+      finally
+      {
+         release(request);
+      }
+   }
+
+   private synchronized void release(AsyncSDORequest request)
+   {
+      pool[available++] = request;
+   }
+
+   /**
+    * @return number of submitted requests that have not been completed
+    */
+   int size()
+   {
+      return (int) (writeIndex.get() - readIndex.get());
+   }
+}
@@ -0,0 +1,155 @@
+package us.ihmc.etherCAT.master;
+
+import java.nio.ByteBuffer;
+
+/**
+ * SDO transfer submitted from a non-realtime thread with Slave.readSDOAsync() or Slave.writeSDOAsync().
+ *
+ * Requests are taken from a preallocated pool and handed to the SDOCallback when the transfer is done. Only access the request
+ * from the callback.
+ *
+ * @author Jesper Smith
+ *
+ */
+public class AsyncSDORequest
+{
+   private Slave slave;
+   private int index;
+   private int subindex;
+   private int size;
+   private boolean read;
+   private ByteBuffer data;
+   private SDOCallback callback;
+   private long queueTime;
+
+   private int workingCounter;
+   private int abortCode;
+
+   AsyncSDORequest()
+   {
+   }
+
+   void set(Slave slave, int index, int subindex, int size, boolean read, ByteBuffer data, SDOCallback callback)
+   {
+      this.slave = slave;
+      this.index = index;
+      this.subindex = subindex;
+      this.size = size;
+      this.read = read;
+      this.data = data;
+      this.callback = callback;
+      this.queueTime = System.nanoTime();
+      this.workingCounter = 0;
+      this.abortCode = 0;
+   }
+
+   /**
+    * Internal function. Execute the transfer from the householder thread.
+    */
+   void transfer()
+   {
+      if (read)
+      {
+         workingCounter = slave.readSDOToBuffer(index, subindex, size, data);
+      }
+      else
+      {
+         workingCounter = slave.writeSDO(index, subindex, data);
+      }
+
+      if (workingCounter <= 0)
+      {
+         abortCode = slave.getSDOAbortCode(index, subindex);
+      }
+   }
+
+   /**
+    * Internal function. Fail the request without a transfer.
+    */
+   void fail()
+   {
+      workingCounter = 0;
+      abortCode = 0;
+   }
+
+   /**
+    * Internal function. Notify the callback and clear the references to user objects.
+    */
+   void complete()
+   {
+      try
+      {
+         callback.sdoCompleted(this);
+      }
+      finally
+      {
+         this.slave = null;
+         this.data = null;
+         this.callback = null;
+      }
+   }
+
+   long getQueueTime()
+   {
+      return queueTime;
+   }
+
+   public Slave getSlave()
+   {
+      return slave;
+   }
+
+   public int getIndex()
+   {
+      return index;
+   }
+
+   public int getSubindex()
+   {
+      return subindex;
+   }
+
+   /**
+    * @return true if this request reads the SDO, false if it writes the SDO
+    */
+   public boolean isRead()
+   {
+      return read;
+   }
+
+   /**
+    * @return the buffer passed when submitting the request. For reads, contains the data read from the slave if isSuccessful() is true.
+    */
+   public ByteBuffer getData()
+   {
+      return data;
+   }
+
+   /**
+    * @return working counter of the transfer, 0 or negative if the transfer failed
+    */
+   public int getWorkingCounter()
+   {
+      return workingCounter;
+   }
+
+   /**
+    * @return SDO abort code sent by the slave, or 0 if the slave did not abort the transfer
+    */
+   public int getAbortCode()
+   {
+      return abortCode;
+   }
+
+   public boolean isSuccessful()
+   {
+      return workingCounter > 0;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "AsyncSDORequest[" + (read ? "Read " : "Write ") + EtherCATStatusCallback.hex(index) + ":" + EtherCATStatusCallback.hex(subindex)
+            + ", wkc: " + workingCounter + ", abort code: " + EtherCATStatusCallback.hex(abortCode & 0xFFFFFFFFL) + "]";
+   }
+}
@@ -0,0 +1,416 @@
+package us.ihmc.etherCAT.master;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Properties;
+
+import us.ihmc.soem.generated.ec_slavet;
+import us.ihmc.soem.generated.ec_smt;
+import us.ihmc.soem.generated.soem;
+import us.ihmc.soem.generated.soemConstants;
+
+/**
+ * Fingerprint of the bus, stored in a file to speed up a restart of the master.
+ *
+ * For every position on the bus the cache holds the identity and the sync manager and mailbox layout found by the
+ * master, the result of the Complete Access probe, the PDO assignment applied by the master and the location of the
+ * process data in the IO map.
+ *
+ * After a successful init(), the master writes a random token to the user RAM of every slave and stores it in the cache.
+ * The content of the user RAM is undefined after power-up, it is not guaranteed to be zero. Because the token is a random,
+ * non-zero 64 bit value, the chance that a replaced or power cycled slave holds the same value is negligible. Do not
+ * replace it with a counter or a constant. On the next init(), the master compares the fingerprint of the bus with the
+ * cache and reads back the token with a single batch of register reads. If everything matches, no slave has been
+ * replaced or power cycled, and the PDO assignments applied in the previous run are still active.
+ *
+ * Enable with Master.setBusConfigurationCache() before init().
+ *
+ * @author Jesper Smith
+ *
+ */
+class BusConfigurationCache
+{
+   static final int VERSION = 1;
+
+   /**
+    * Start of the user RAM of the ESC, holds the token
+    */
+   static final int ECT_REG_USER_RAM = 0x0F80;
+   static final int TOKEN_LENGTH = 8;
+
+   // Layout of the fingerprint of a slave
+   static final int FINGERPRINT_ALIAS = 0;
+   static final int FINGERPRINT_CONFIGURED_ADDRESS = 1;
+   static final int FINGERPRINT_VENDOR = 2;
+   static final int FINGERPRINT_PRODUCT_CODE = 3;
+   static final int FINGERPRINT_REVISION = 4;
+   static final int FINGERPRINT_MAILBOX = 5;
+   static final int FINGERPRINT_SYNC_MANAGERS = 9;
+   static final int FINGERPRINT_SIZE = FINGERPRINT_SYNC_MANAGERS + 3 * soemConstants.EC_MAXSM;
+
+   private static final int SYNC_MANAGERS = 4;
+
+   private static class SlaveConfiguration
+   {
+      private long[] fingerprint = new long[FINGERPRINT_SIZE];
+      private Boolean completeAccess = null;
+      private final int[][] pdoAssignment = new int[SYNC_MANAGERS][];
+
+      private int inputOffset = -1;
+      private int inputBits = 0;
+      private int outputOffset = -1;
+      private int outputBits = 0;
+   }
+
+   private final SlaveConfiguration[] slaves;
+   private long token = 0;
+
+   /**
+    * @param numberOfSlaves Number of slaves on the bus
+    */
+   BusConfigurationCache(int numberOfSlaves)
+   {
+      slaves = new SlaveConfiguration[numberOfSlaves];
+      for (int i = 0; i < numberOfSlaves; i++)
+      {
+         slaves[i] = new SlaveConfiguration();
+      }
+   }
+
+   /**
+    * Create the fingerprint of a slave from the information read by SOEM when initializing the bus
+    *
+    * @param ec_slave
+    * @return fingerprint
+    */
+   static long[] fingerprint(ec_slavet ec_slave)
+   {
+      long[] fingerprint = new long[FINGERPRINT_SIZE];
+      fingerprint[FINGERPRINT_ALIAS] = ec_slave.getAliasadr();
+      fingerprint[FINGERPRINT_CONFIGURED_ADDRESS] = ec_slave.getConfigadr();
+      fingerprint[FINGERPRINT_VENDOR] = ec_slave.getEep_man();
+      fingerprint[FINGERPRINT_PRODUCT_CODE] = ec_slave.getEep_id();
+      fingerprint[FINGERPRINT_REVISION] = ec_slave.getEep_rev();
+      fingerprint[FINGERPRINT_MAILBOX] = ec_slave.getMbx_wo();
+      fingerprint[FINGERPRINT_MAILBOX + 1] = ec_slave.getMbx_l();
+      fingerprint[FINGERPRINT_MAILBOX + 2] = ec_slave.getMbx_ro();
+      fingerprint[FINGERPRINT_MAILBOX + 3] = ec_slave.getMbx_rl();
+      for (int i = 0; i < soemConstants.EC_MAXSM; i++)
+      {
+         ec_smt sm = soem.ecx_sm(ec_slave, i);
+         fingerprint[FINGERPRINT_SYNC_MANAGERS + 3 * i] = sm.getStartAddr();
+         fingerprint[FINGERPRINT_SYNC_MANAGERS + 3 * i + 1] = sm.getSMlength();
+         fingerprint[FINGERPRINT_SYNC_MANAGERS + 3 * i + 2] = sm.getSMflags();
+      }
+      return fingerprint;
+   }
+
+   /**
+    * @return number of slaves on the bus
+    */
+   int getNumberOfSlaves()
+   {
+      return slaves.length;
+   }
+
+   /**
+    * @param slaveIndex Index of the slave on the bus, starting at 1
+    * @param fingerprint Fingerprint of the slave, see fingerprint()
+    */
+   void setFingerprint(int slaveIndex, long[] fingerprint)
+   {
+      if (fingerprint.length != FINGERPRINT_SIZE)
+      {
+         throw new IllegalArgumentException("Invalid fingerprint size " + fingerprint.length + ", expected " + FINGERPRINT_SIZE);
+      }
+      slaves[slaveIndex - 1].fingerprint = fingerprint.clone();
+   }
+
+   /**
+    * @param slaveIndex Index of the slave on the bus, starting at 1
+    * @param completeAccess Result of the Complete Access probe, or null if the slave was not probed
+    */
+   void setCompleteAccess(int slaveIndex, Boolean completeAccess)
+   {
+      slaves[slaveIndex - 1].completeAccess = completeAccess;
+   }
+
+   /**
+    * @param slaveIndex Index of the slave on the bus, starting at 1
+    * @return Result of the Complete Access probe, or null if the slave was not probed
+    */
+   Boolean getCompleteAccess(int slaveIndex)
+   {
+      return slaves[slaveIndex - 1].completeAccess;
+   }
+
+   /**
+    * @param slaveIndex Index of the slave on the bus, starting at 1
+    * @param syncManager Index of the sync manager, 0 - 3
+    * @param pdos Addresses of the PDOs assigned to the sync manager
+    */
+   void setPDOAssignment(int slaveIndex, int syncManager, int[] pdos)
+   {
+      slaves[slaveIndex - 1].pdoAssignment[syncManager] = pdos.clone();
+   }
+
+   /**
+    * @param slaveIndex Index of the slave on the bus, starting at 1
+    * @param syncManager Index of the sync manager, 0 - 3
+    * @param pdos Addresses of the PDOs
+    * @return true if the PDO assignment of the sync manager is known and equal to pdos
+    */
+   boolean hasPDOAssignment(int slaveIndex, int syncManager, int[] pdos)
+   {
+      return Arrays.equals(slaves[slaveIndex - 1].pdoAssignment[syncManager], pdos);
+   }
+
+   /**
+    * @param slaveIndex Index of the slave on the bus, starting at 1
+    * @param inputOffset Offset of the inputs in the IO map, or -1 if the slave has no inputs
+    * @param inputBits Size of the inputs in bits
+    * @param outputOffset Offset of the outputs in the IO map, or -1 if the slave has no outputs
+    * @param outputBits Size of the outputs in bits
+    */
+   void setProcessDataLayout(int slaveIndex, int inputOffset, int inputBits, int outputOffset, int outputBits)
+   {
+      SlaveConfiguration slave = slaves[slaveIndex - 1];
+      slave.inputOffset = inputOffset;
+      slave.inputBits = inputBits;
+      slave.outputOffset = outputOffset;
+      slave.outputBits = outputBits;
+   }
+
+   /**
+    * @return Token written to the user RAM of all slaves, 0 if no token is written
+    */
+   long getToken()
+   {
+      return token;
+   }
+
+   void setToken(long token)
+   {
+      this.token = token;
+   }
+
+   /**
+    * Compare the fingerprints of all slaves
+    *
+    * @param other
+    * @return null if the fingerprints match, otherwise a description of the first difference
+    */
+   String compareFingerprint(BusConfigurationCache other)
+   {
+      if (slaves.length != other.slaves.length)
+      {
+         return "Number of slaves changed from " + slaves.length + " to " + other.slaves.length;
+      }
+      for (int i = 0; i < slaves.length; i++)
+      {
+         long[] a = slaves[i].fingerprint;
+         long[] b = other.slaves[i].fingerprint;
+         if (a[FINGERPRINT_VENDOR] != b[FINGERPRINT_VENDOR] || a[FINGERPRINT_PRODUCT_CODE] != b[FINGERPRINT_PRODUCT_CODE]
+               || a[FINGERPRINT_REVISION] != b[FINGERPRINT_REVISION])
+         {
+            return "Slave " + (i + 1) + " changed from " + describeIdentity(a) + " to " + describeIdentity(b);
+         }
+         if (!Arrays.equals(a, b))
+         {
+            return "Address, mailbox or sync manager layout of slave " + (i + 1) + " changed";
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Compare the location of the process data of all slaves in the IO map
+    *
+    * @param other
+    * @return null if the layout matches, otherwise a description of the first difference
+    */
+   String compareProcessDataLayout(BusConfigurationCache other)
+   {
+      if (slaves.length != other.slaves.length)
+      {
+         return "Number of slaves changed from " + slaves.length + " to " + other.slaves.length;
+      }
+      for (int i = 0; i < slaves.length; i++)
+      {
+         SlaveConfiguration a = slaves[i];
+         SlaveConfiguration b = other.slaves[i];
+         if (a.inputOffset != b.inputOffset || a.inputBits != b.inputBits || a.outputOffset != b.outputOffset || a.outputBits != b.outputBits)
+         {
+            return "Process data of slave " + (i + 1) + " moved from inputs " + a.inputOffset + "[" + a.inputBits + " bits], outputs "
+                  + a.outputOffset + "[" + a.outputBits + " bits] to inputs " + b.inputOffset + "[" + b.inputBits + " bits], outputs "
+                  + b.outputOffset + "[" + b.outputBits + " bits]";
+         }
+      }
+      return null;
+   }
+
+   private static String describeIdentity(long[] fingerprint)
+   {
+      return "vendor " + EtherCATStatusCallback.hex(fingerprint[FINGERPRINT_VENDOR]) + ", product code "
+            + EtherCATStatusCallback.hex(fingerprint[FINGERPRINT_PRODUCT_CODE]) + ", revision "
+            + EtherCATStatusCallback.hex(fingerprint[FINGERPRINT_REVISION]);
+   }
+
+   /**
+    * Write the cache to a file. The file is replaced atomically, a crash while writing leaves the previous version.
+    *
+    * @param file
+    * @throws IOException
+    */
+   void write(File file) throws IOException
+   {
+      Properties properties = new Properties();
+      properties.setProperty("version", String.valueOf(VERSION));
+      properties.setProperty("token", Long.toHexString(token));
+      properties.setProperty("slaves", String.valueOf(slaves.length));
+
+      for (int i = 0; i < slaves.length; i++)
+      {
+         SlaveConfiguration slave = slaves[i];
+         String prefix = "slave." + (i + 1) + ".";
+
+         properties.setProperty(prefix + "fingerprint", join(slave.fingerprint));
+         if (slave.completeAccess != null)
+         {
+            properties.setProperty(prefix + "completeAccess", slave.completeAccess.toString());
+         }
+         properties.setProperty(prefix + "processData", join(new long[] {slave.inputOffset, slave.inputBits, slave.outputOffset, slave.outputBits}));
+         for (int sm = 0; sm < SYNC_MANAGERS; sm++)
+         {
+            int[] pdos = slave.pdoAssignment[sm];
+            if (pdos != null)
+            {
+               long[] addresses = new long[pdos.length];
+               for (int p = 0; p < pdos.length; p++)
+               {
+                  addresses[p] = pdos[p];
+               }
+               properties.setProperty(prefix + "sm." + sm, join(addresses));
+            }
+         }
+      }
+
+      File temporary = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+      try (OutputStream stream = Files.newOutputStream(temporary.toPath()))
+      {
+         properties.store(stream, "EtherCAT bus configuration cache");
+      }
+      Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+   }
+
+   /**
+    * Read a cache from a file
+    *
+    * @param file
+    * @return the cache
+    * @throws IOException if the file cannot be read, has a different version or is corrupt
+    */
+   static BusConfigurationCache read(File file) throws IOException
+   {
+      Properties properties = new Properties();
+      try (InputStream stream = Files.newInputStream(file.toPath()))
+      {
+         properties.load(stream);
+      }
+
+      try
+      {
+         if (Integer.parseInt(getProperty(properties, "version")) != VERSION)
+         {
+            throw new IOException("Unsupported bus configuration cache version " + properties.getProperty("version"));
+         }
+
+         BusConfigurationCache cache = new BusConfigurationCache(Integer.parseInt(getProperty(properties, "slaves")));
+         cache.token = Long.parseUnsignedLong(getProperty(properties, "token"), 16);
+
+         for (int i = 0; i < cache.slaves.length; i++)
+         {
+            SlaveConfiguration slave = cache.slaves[i];
+            String prefix = "slave." + (i + 1) + ".";
+
+            cache.setFingerprint(i + 1, split(getProperty(properties, prefix + "fingerprint")));
+
+            String completeAccess = properties.getProperty(prefix + "completeAccess");
+            if (completeAccess != null)
+            {
+               slave.completeAccess = Boolean.valueOf(completeAccess);
+            }
+
+            long[] processData = split(getProperty(properties, prefix + "processData"));
+            if (processData.length != 4)
+            {
+               throw new IOException("Invalid process data layout of slave " + (i + 1));
+            }
+            cache.setProcessDataLayout(i + 1, (int) processData[0], (int) processData[1], (int) processData[2], (int) processData[3]);
+
+            for (int sm = 0; sm < SYNC_MANAGERS; sm++)
+            {
+               String pdos = properties.getProperty(prefix + "sm." + sm);
+               if (pdos != null)
+               {
+                  long[] addresses = split(pdos);
+                  slave.pdoAssignment[sm] = new int[addresses.length];
+                  for (int p = 0; p < addresses.length; p++)
+                  {
+                     slave.pdoAssignment[sm][p] = (int) addresses[p];
+                  }
+               }
+            }
+         }
+         return cache;
+      }
+      catch (IllegalArgumentException e)
+      {
+         throw new IOException("Corrupt bus configuration cache " + file + ": " + e.getMessage());
+      }
+   }
+
+   private static String getProperty(Properties properties, String key) throws IOException
+   {
+      String value = properties.getProperty(key);
+      if (value == null)
+      {
+         throw new IOException("Missing " + key + " in bus configuration cache");
+      }
+      return value;
+   }
+
+   private static String join(long[] values)
+   {
+      StringBuilder builder = new StringBuilder();
+      for (int i = 0; i < values.length; i++)
+      {
+         if (i > 0)
+         {
+            builder.append(',');
+         }
+         builder.append(values[i]);
+      }
+      return builder.toString();
+   }
+
+   private static long[] split(String value)
+   {
+      if (value.isEmpty())
+      {
+         return new long[0];
+      }
+      String[] fields = value.split(",");
+      long[] values = new long[fields.length];
+      for (int i = 0; i < fields.length; i++)
+      {
+         values[i] = Long.parseLong(fields[i].trim());
+      }
+      return values;
+   }
+}
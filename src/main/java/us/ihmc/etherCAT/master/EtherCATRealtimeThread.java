@@ -1,10 +1,14 @@
 package us.ihmc.etherCAT.master;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 
 import us.ihmc.affinity.Processor;
 import us.ihmc.etherCAT.master.Slave.State;
+import us.ihmc.etherCAT.master.pipeline.LightWeightPipelineTaskCost;
+import us.ihmc.etherCAT.master.statistics.LogLinearHistogram;
 import us.ihmc.realtime.MonotonicTime;
 import us.ihmc.realtime.PeriodicParameters;
 import us.ihmc.realtime.PriorityParameters;
@@ -44,6 +48,11 @@ public abstract class EtherCATRealtimeThread implements MasterInterface
 
    private long currentCycleTimestamp = 0;
    private long etherCATTransactionTime = 0;
+
+   private final LogLinearHistogram etherCATTransactionTimeHistogram = new LogLinearHistogram("EtherCATTransactionTime");
+   private final LogLinearHistogram idleTimeHistogram = new LogLinearHistogram("IdleTime");
+   private final LogLinearHistogram cycleDurationHistogram = new LogLinearHistogram("CycleDuration");
+   private final LogLinearHistogram dcOffsetErrorHistogram = new LogLinearHistogram("DCOffsetError");
    private long lastCycleDuration = 0;
    private long idleTime = 0;
    private long startTimeFreeRun = 0;
@@ -250,7 +259,17 @@ public abstract class EtherCATRealtimeThread implements MasterInterface
                }
             }
 
-            statemachineThread.releaseCyclicAndStartStateControl();
+            master.publishProcessImage();
+
+            long timeToNextCycle = cycleStartTime + cycleTimeInNs - getCurrentMonotonicClockTime();
+            if (statemachineThread.isInline())
+            {
+               statemachineThread.runInline(timeToNextCycle);
+            }
+            else
+            {
+               statemachineThread.releaseCyclicAndStartStateControl(timeToNextCycle);
+            }
          }
 
          doReporting();
@@ -286,31 +305,30 @@ public abstract class EtherCATRealtimeThread implements MasterInterface
       lastCycleDuration = currentTime - cycleStartTime;
       cycleStartTime = currentTime;
 
+      idleTimeHistogram.record(idleTime);
+      cycleDurationHistogram.record(lastCycleDuration);
+
       if (idleTime > 0)
       {
          if (statemachineThread.tryLockCyclic())
          {
 
-            long startTime = getCurrentMonotonicClockTime();
-            master.send();
-            int wkc = master.receive();
+            int wkc = master.sendAndReceive();
+            etherCATTransactionTime = master.getTransactionDuration();
+            etherCATTransactionTimeHistogram.record(etherCATTransactionTime);
 
             if (wkc == soem.EC_NOFRAME)
             {
                datagramLost();
-               etherCATTransactionTime = getCurrentMonotonicClockTime() - startTime;
                return false;
             }
 
-            dcTime = master.getDCTime();
-            if (inOP && wkc != master.getExpectedWorkingCounter())
+            dcTime = master.getTransactionDCTime();
+            if (wkc != master.getExpectedWorkingCounter())
             {
-               workingCounterMismatch(master.getExpectedWorkingCounter(), wkc);
+               reportProcessDataGroupErrors();
             }
 
-            long endTime = getCurrentMonotonicClockTime();
-            etherCATTransactionTime = endTime - startTime;
-
             return true;
          }
          else
@@ -326,6 +344,29 @@ public abstract class EtherCATRealtimeThread implements MasterInterface
       }
    }
 
+   /**
+    * Internal function. Find the process data groups that caused a working counter mismatch and report them.
+    */
+   private void reportProcessDataGroupErrors()
+   {
+      List<ProcessDataGroup> groups = master.getProcessDataGroups();
+      for (int i = 0; i < groups.size(); i++)
+      {
+         ProcessDataGroup group = groups.get(i);
+         if (group.isTransactedInLastCycle())
+         {
+            if (group.isFrameLost())
+            {
+               datagramLost();
+            }
+            else if (inOP && !group.isWorkingCounterValid())
+            {
+               processDataGroupWorkingCounterMismatch(group, group.getExpectedWorkingCounter(), group.getActualWorkingCounter());
+            }
+         }
+      }
+   }
+
    /**
     * Do an EtherCAT send/receive cycle.
     * 
@@ -333,15 +374,22 @@ public abstract class EtherCATRealtimeThread implements MasterInterface
     * 
     * @param extraTimeHeadroomInNs Extra time available on top of the last etherCAT transaction time and sync offset
     *
+    * Not supported with pipelined process data, always returns false in that case.
+    * 
     * @return true if there is enough time to do an EtherCAT transaction and the transaction was successful
     * 
     */
    public boolean doSecondaryTransfer(long extraTimeHeadroomInNs)
    {
+      if (master.isPipelinedProcessData())
+      {
+         return false;
+      }
+
       long currentTime = getCurrentMonotonicClockTime();
       if (((currentTime - cycleStartTime) + syncOffset + etherCATTransactionTime + extraTimeHeadroomInNs) < cycleTimeInNs)
       {
-         master.send();
+         master.sendSimple();
          int wkc = master.receiveSimple();
          if (wkc == soem.EC_NOFRAME)
          {
@@ -383,6 +431,7 @@ public abstract class EtherCATRealtimeThread implements MasterInterface
       {
          dcOffsetError = dcOffsetError - cycleTimeInNs;
       }
+      dcOffsetErrorHistogram.record(Math.abs(dcOffsetError));
       if (dcOffsetError > 0)
       {
          dcControlIntegral++;
@@ -472,6 +521,77 @@ public abstract class EtherCATRealtimeThread implements MasterInterface
       master.registerSlave(slave);
    }
 
+   /**
+    * @see us.ihmc.etherCAT.master.Master#registerSlave(us.ihmc.etherCAT.master.ProcessDataGroup, us.ihmc.etherCAT.master.Slave)
+    */
+   public void registerSlave(ProcessDataGroup group, Slave slave)
+   {
+      master.registerSlave(group, slave);
+   }
+
+   /**
+    * @see us.ihmc.etherCAT.master.Master#enablePipelinedProcessData()
+    */
+   public void enablePipelinedProcessData()
+   {
+      master.enablePipelinedProcessData();
+   }
+
+   /**
+    * @see us.ihmc.etherCAT.master.Master#enableProcessImageRing(int)
+    */
+   public void enableProcessImageRing(int slots)
+   {
+      master.enableProcessImageRing(slots);
+   }
+
+   /**
+    * @see us.ihmc.etherCAT.master.Master#getProcessImageRing()
+    */
+   public ProcessImageRing getProcessImageRing()
+   {
+      return master.getProcessImageRing();
+   }
+
+   /**
+    * Enable the flight recorder, keeping the last seconds of process data. Call before init().
+    * 
+    * @see us.ihmc.etherCAT.master.Master#enableFlightRecorder(File, int)
+    * 
+    * @param file File to record to. An existing file is overwritten
+    * @param seconds Number of seconds to keep
+    */
+   public void enableFlightRecorder(File file, double seconds)
+   {
+      master.enableFlightRecorder(file, (int) Math.max(2, Math.ceil(seconds * 1e9 / cycleTimeInNs)));
+   }
+
+   /**
+    * @see us.ihmc.etherCAT.master.Master#getFlightRecorder()
+    */
+   public FlightRecorder getFlightRecorder()
+   {
+      return master.getFlightRecorder();
+   }
+
+   /**
+    * @see us.ihmc.etherCAT.master.Master#getOutputLatency()
+    * 
+    * @return time between sending the inputs used by the controller and sending the resulting outputs in ns
+    */
+   public long getOutputLatency()
+   {
+      return master.getOutputLatency();
+   }
+
+   /**
+    * @see us.ihmc.etherCAT.master.Master#createProcessDataGroup(java.lang.String, int)
+    */
+   public ProcessDataGroup createProcessDataGroup(String name, int cycleDivisor)
+   {
+      return master.createProcessDataGroup(name, cycleDivisor);
+   }
+
    /**
     * @see us.ihmc.etherCAT.master.Master#getJitterEstimate()
     */
@@ -518,6 +638,110 @@ public abstract class EtherCATRealtimeThread implements MasterInterface
       return statemachineThread.getDuration();
    }
 
+   /**
+    * Histogram of getEtherCATTransactionTime(). Snapshots can be taken from any thread.
+    * 
+    * @return histogram of the EtherCAT transaction time in ns
+    */
+   public LogLinearHistogram getEtherCATTransactionTimeHistogram()
+   {
+      return etherCATTransactionTimeHistogram;
+   }
+
+   /**
+    * Histogram of getIdleTime(). Snapshots can be taken from any thread.
+    * 
+    * @return histogram of the idle time in ns
+    */
+   public LogLinearHistogram getIdleTimeHistogram()
+   {
+      return idleTimeHistogram;
+   }
+
+   /**
+    * Histogram of getLastCycleDuration(). Snapshots can be taken from any thread.
+    * 
+    * @return histogram of the cycle duration in ns
+    */
+   public LogLinearHistogram getCycleDurationHistogram()
+   {
+      return cycleDurationHistogram;
+   }
+
+   /**
+    * Histogram of the absolute value of getDCOffsetError(). Only recorded when DC is enabled. Snapshots can be taken from any thread.
+    * 
+    * @return histogram of the absolute DC offset error in ns
+    */
+   public LogLinearHistogram getDCOffsetErrorHistogram()
+   {
+      return dcOffsetErrorHistogram;
+   }
+
+   /**
+    * Histogram of getEtherCATStateMachineTime(). Snapshots can be taken from any thread.
+    * 
+    * @return histogram of the time the EtherCAT state machine took in ns
+    */
+   public LogLinearHistogram getEtherCATStateMachineTimeHistogram()
+   {
+      return statemachineThread.getDurationHistogram();
+   }
+
+   /**
+    * @see us.ihmc.etherCAT.master.Master#getJitterHistogram()
+    */
+   public LogLinearHistogram getJitterHistogram()
+   {
+      return master.getJitterHistogram();
+   }
+
+   /**
+    * Run as many EtherCAT state machine tasks per cycle as fit in the time left before the next cycle, instead of a single task per cycle.
+    * 
+    * The duration of each task type is learned while running, see getEtherCATStateMachineTaskCosts(). Call before start().
+    * 
+    * @param margin Time in ns to keep free before the next cycle
+    */
+   public void enableBudgetedEtherCATStateMachine(long margin)
+   {
+      statemachineThread.enableBudgetedStateControl(margin);
+   }
+
+   /**
+    * Run the non-blocking part of the EtherCAT state machine in this thread after doControl(), instead of in the statemachine thread.
+    * 
+    * The state machine runs as many tasks as fit in the time left before the next period, minus the margin. A task only runs if its 
+    * learned cost fits. When less than the margin is left, the state machine is skipped for this cycle. Only work that does not wait on
+    * the network runs inline: the AL status sweep and the RX error counters, which are transferred with the process data, and the 
+    * handling of realtime events. In steady state, with all slaves in OP and no SDO transfers pending, this is all the state control 
+    * there is, and the hand-off to the statemachine thread is avoided.
+    * 
+    * State changes, recovery of slaves and SDO transfers can block for milliseconds. They are deferred to the statemachine thread, 
+    * which runs them between cycles with the same locking as without inline mode. A blocking task that does not finish before the 
+    * next period results in statemachineDeadlineMissed().
+    * 
+    * Limitation: the statemachine thread is still required, and is still woken with a cross-core hand-off whenever a blocking task 
+    * is pending, such as during start-up, recovery and SDO transfers. Inline mode removes the hand-off in steady state only. It 
+    * does not save a realtime thread; keep a core available for the statemachine thread.
+    * 
+    * Call before start(). Replaces enableBudgetedEtherCATStateMachine().
+    * 
+    * @param margin Time in ns to keep free before the next cycle
+    */
+   public void enableInlineEtherCATStateMachine(long margin)
+   {
+      statemachineThread.enableInline(margin);
+   }
+
+   /**
+    * @see us.ihmc.etherCAT.master.Master#getStateControlTaskCosts()
+    */
+   public Collection<LightWeightPipelineTaskCost> getEtherCATStateMachineTaskCosts()
+   {
+      return master.getStateControlTaskCosts();
+   }
+
    /**
     * Set affinity for the cyclic thread. 
     * 
@@ -562,6 +786,22 @@ public abstract class EtherCATRealtimeThread implements MasterInterface
     */
    protected abstract void workingCounterMismatch(int expected, int actual);
 
+   /**
+    * Callback to notify controller of a working counter mismatch in a single process data group. 
+    * 
+    * Only the slaves in this group are affected, the process data of the other groups is valid.
+    * 
+    * Defaults to call workingCounterMismatch
+    * 
+    * @param group Process data group with the mismatch
+    * @param expected Expected working counter of the group
+    * @param actual Actual working counter of the group
+    */
+   protected void processDataGroupWorkingCounterMismatch(ProcessDataGroup group, int expected, int actual)
+   {
+      workingCounterMismatch(expected, actual);
+   }
+
    /**
     * Callback to notify controller of missed deadline
     */
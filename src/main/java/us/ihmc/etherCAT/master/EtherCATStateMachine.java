@@ -1,6 +1,7 @@
 package us.ihmc.etherCAT.master;
 
 import us.ihmc.etherCAT.master.EtherCATStatusCallback.TRACE_EVENT;
+import us.ihmc.etherCAT.master.Slave.State;
 import us.ihmc.etherCAT.master.pipeline.LightWeightPipelineExecutor;
 import us.ihmc.etherCAT.master.pipeline.LightWeightPipelineTask;
 import us.ihmc.soem.generated.ec_slavet;
@@ -21,40 +22,177 @@ class EtherCATStateMachine
 
    public static boolean DEBUG = false;
 
+   // Events signaled by the realtime thread to wake up the householder
+   static final int EVENT_WORKING_COUNTER = 1;
+   static final int EVENT_FRAME_LOST = 2;
+   static final int EVENT_AL_STATUS = 4;
+   static final int EVENT_SDO = 8;
+
+   // Size of the RX error counter registers read and cleared by the householder
+   private static final int RX_ERROR_LENGTH = 19 * Short.BYTES;
+
    private final Master master;
    private Slave[] subdevices;
+   private SubDeviceStatePipeline[] subdevicePipelines;
+   private ALStatusSweep alStatusSweep;
 
    private final LightWeightPipelineExecutor executor = new LightWeightPipelineExecutor();
    private final WaitForMasterState waitForMasterState = new WaitForMasterState();
+   private final SDOScheduler sdoScheduler;
 
    private long startTime = -1;
 
+   private volatile boolean idle = false;
+
    EtherCATStateMachine(Master master)
    {
       this.master = master;
+      this.sdoScheduler = new SDOScheduler(master);
       executor.addTask(waitForMasterState);
    }
 
    void setSubdevices(Slave[] subdevices)
    {
       this.subdevices = subdevices;
+      this.alStatusSweep = new ALStatusSweep(master, subdevices);
+
+      executor.addTask(new ClearRXErrors());
+      executor.addTask(new ReadRXErrors());
 
+      this.subdevicePipelines = new SubDeviceStatePipeline[subdevices.length];
       for (int i = 0; i < subdevices.length; i++)
       {
-         SubDeviceStatePipeline subPipeline = new SubDeviceStatePipeline(master, subdevices[i]);
-         subPipeline.addToExecutor(executor);
+         subdevicePipelines[i] = new SubDeviceStatePipeline(master, subdevices[i]);
+         subdevicePipelines[i].addToExecutor(executor);
       }
+
+      sdoScheduler.setSubdevices(subdevices);
+      executor.addTask(sdoScheduler);
    }
 
    void runOnce()
+   {
+      long runTime = getRunTime();
+      boolean steady = readSubdeviceStates();
+      handleEvents();
+      executor.execute(runTime);
+      idle = steady && executor.getTasksExecutedInLastCall() == 0;
+   }
+
+   /**
+    * Run as many tasks as fit in the budget. If the next task does not fit, it is run anyway, so expensive tasks are not starved 
+    * when the state control runs in its own thread. The budget must therefore cover the whole slack of the cycle, so this only 
+    * overruns when a single task does not fit the slack.
+    *
+    * @param budget Time available in ns
+    */
+   void runOnce(long budget)
+   {
+      long budgetStartTime = System.nanoTime();
+      long runTime = getRunTime();
+      boolean steady = readSubdeviceStates();
+      handleEvents();
+      executor.execute(runTime, budget - (System.nanoTime() - budgetStartTime));
+      if (executor.getTasksExecutedInLastCall() == 0)
+      {
+         executor.execute(runTime);
+      }
+      idle = steady && executor.getTasksExecutedInLastCall() == 0;
+   }
+
+   /**
+    * Run as many non-blocking tasks as fit in the budget, from the realtime thread. 
+    * 
+    * Nothing is run if the next task does not fit. Blocking tasks, the state control of the slaves and the SDO transfers, are 
+    * deferred to runDeferred().
+    *
+    * @param budget Time available in ns
+    */
+   void runInline(long budget)
+   {
+      long budgetStartTime = System.nanoTime();
+      long runTime = getRunTime();
+      boolean steady = readSubdeviceStates();
+      handleEvents();
+      executor.executeNonBlocking(runTime, budget - (System.nanoTime() - budgetStartTime));
+      idle = steady && executor.getTasksExecutedInLastCall() == 0 && !executor.hasDeferredBlockingTasks();
+   }
+
+   /**
+    * Run the next blocking task deferred by runInline()
+    */
+   void runDeferred()
+   {
+      executor.executeBlocking(getRunTime());
+   }
+
+   /**
+    * @return true if runInline() deferred blocking tasks that have not run yet
+    */
+   boolean hasDeferredTasks()
+   {
+      return executor.hasDeferredBlockingTasks();
+   }
+
+   /**
+    * Clear the events signaled by the realtime thread and continue the executor at the first subdevice that asked for attention.
+    * 
+    * The attention flags of all subdevices are cleared. Subdevices that are not prioritized get their turn in the normal rotation.
+    */
+   private void handleEvents()
+   {
+      if (master.takeStateControlEvents() == 0 || subdevicePipelines == null)
+      {
+         return;
+      }
+
+      boolean prioritized = false;
+      for (int i = 0; i < subdevicePipelines.length; i++)
+      {
+         if (subdevicePipelines[i].getSubDevice().takeStateControlAttention() && !prioritized)
+         {
+            subdevicePipelines[i].prioritize(executor);
+            prioritized = true;
+         }
+      }
+   }
+
+   /**
+    * @return true if all subdevices were in OP with a valid working counter and no task needed to run in the last call to runOnce()
+    */
+   boolean isIdle()
+   {
+      return idle;
+   }
+
+   private long getRunTime()
    {
       if (startTime < 0)
       {
          startTime = System.nanoTime();
       }
 
-      long runTime = System.nanoTime() - startTime;
-      executor.execute(runTime);
+      return System.nanoTime() - startTime;
+   }
+
+   /**
+    * Read the state of all subdevices in a single sweep.
+    * 
+    * The sweep is skipped when all subdevices are in OP and their working counter is valid.
+    * 
+    * @return true if all subdevices are in OP and their working counter is valid
+    */
+   private boolean readSubdeviceStates()
+   {
+      for (int i = 0; i < subdevices.length; i++)
+      {
+         if (subdevices[i].getState() != State.OP || !master.isWorkingCounterValid(subdevices[i]))
+         {
+            alStatusSweep.sweep();
+            return false;
+         }
+      }
+      return true;
    }
 
    LightWeightPipelineExecutor getExecutor()
@@ -62,6 +200,11 @@ class EtherCATStateMachine
       return executor;
    }
 
+   SDOScheduler getSDOScheduler()
+   {
+      return sdoScheduler;
+   }
+
    /**
     * State to wait for the master to attain a stable, minimal jitter rate.
     *
@@ -108,6 +251,103 @@ class EtherCATStateMachine
       }
    }
 
+   /**
+    * Clear the RX error counters of all slaves in a single batch. 
+    * 
+    * The batch is transferred with the process data, the result is processed in the next call. Non-blocking.
+    */
+   private class ClearRXErrors implements LightWeightPipelineTask
+   {
+      private final RegisterTransactionBatch batch = new RegisterTransactionBatch(master, subdevices.length, subdevices.length * RX_ERROR_LENGTH);
+      private final int[] operations = new int[subdevices.length];
+      private final boolean[] cleared = new boolean[subdevices.length];
+      private int remaining = subdevices.length;
+      private boolean submitted = false;
+
+      /**
+       * Skip if the RX errors of all slaves are cleared, or the batch has not returned yet
+       */
+      @Override
+      public boolean skipTask()
+      {
+         return remaining == 0 || batch.isPending();
+      }
+
+      @Override
+      public boolean execute(long runtime)
+      {
+         if (submitted)
+         {
+            for (int i = 0; i < subdevices.length; i++)
+            {
+               if (operations[i] >= 0 && subdevices[i].clearRXErrors(batch, operations[i]))
+               {
+                  cleared[i] = true;
+                  remaining--;
+               }
+            }
+            submitted = false;
+         }
+
+         if (remaining > 0)
+         {
+            batch.clear();
+            for (int i = 0; i < subdevices.length; i++)
+            {
+               operations[i] = cleared[i] ? -1 : subdevices[i].addClearRXErrors(batch);
+            }
+            submitted = batch.submit();
+         }
+
+         return true;
+      }
+   }
+
+   /**
+    * Read the RX error counters of all online slaves in a single batch.
+    * 
+    * The batch is transferred with the process data, the result is processed in the next call. Non-blocking.
+    */
+   private class ReadRXErrors implements LightWeightPipelineTask
+   {
+      private final RegisterTransactionBatch batch = new RegisterTransactionBatch(master, subdevices.length, subdevices.length * RX_ERROR_LENGTH);
+      private final int[] operations = new int[subdevices.length];
+      private boolean submitted = false;
+
+      /**
+       * Skip if reading rx error statistics is disabled, or the batch has not returned yet
+       */
+      @Override
+      public boolean skipTask()
+      {
+         return !master.isReadRXErrorStatistics() || batch.isPending();
+      }
+
+      @Override
+      public boolean execute(long runtime)
+      {
+         if (submitted)
+         {
+            for (int i = 0; i < subdevices.length; i++)
+            {
+               if (operations[i] >= 0)
+               {
+                  subdevices[i].updateRXTXStats(batch, operations[i]);
+               }
+            }
+         }
+
+         batch.clear();
+         for (int i = 0; i < subdevices.length; i++)
+         {
+            // Don't try to read these statistics when the subdevice is offline
+            operations[i] = subdevices[i].getHouseholderState() == State.OFFLINE ? -1 : subdevices[i].addRXTXStatsRead(batch);
+         }
+         submitted = batch.submit();
+         return true;
+      }
+   }
+
    void shutDown()
    {
       master.getEtherCATStatusCallback().trace(TRACE_EVENT.SWITCH_PREOP);
@@ -4,6 +4,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.LockSupport;
 
 import us.ihmc.affinity.Processor;
+import us.ihmc.etherCAT.master.statistics.LogLinearHistogram;
 import us.ihmc.realtime.PriorityParameters;
 import us.ihmc.realtime.RealtimeThread;
 
@@ -13,6 +14,15 @@ import us.ihmc.realtime.RealtimeThread;
  * A lightweight locking mechanism is implemented to simplify execution. Priority inversion is possible, therefore care should be taken that this
  * thread is ran with equal or higher priority than all other threads.
  * 
+ * In inline mode, the realtime thread runs the non-blocking state control tasks itself with runInline(), bounded by the time left 
+ * before the next cycle. Tasks that can block on the network, the state changes and recovery of slaves and SDO transfers, are 
+ * deferred to this thread. It runs them with the same locking as in the normal mode, so a blocking task never runs in the realtime 
+ * thread. If it does not finish before the next cycle, the realtime thread reports a statemachine deadline miss.
+ * 
+ * The state control thread is woken up at the start of the slack of every cycle, so it never starts late in the cycle. It only runs 
+ * tasks when it has work to do or when the realtime thread signals an event, such as a lost frame, a working counter mismatch or a 
+ * change in the AL status. Otherwise, it returns immediately and runs once every PARK_TIME_NANOS to pick up new requests.
+ * 
  * @author Jesper Smith
  *
  */
@@ -38,6 +48,13 @@ class EtherCATStatemachineThread
    private long durationInThread = 0;
    private long durationInCyclic = 0;
 
+   private long stateControlMargin = -1;
+   private long stateControlDeadline = 0;
+   private boolean inline = false;
+   private long lastRunTime = 0;
+
+   private final LogLinearHistogram durationHistogram = new LogLinearHistogram("EtherCATStateMachineTime");
+
    public EtherCATStatemachineThread(PriorityParameters priorityParameters, Master master)
    {
       this.thread = new RealtimeThread(priorityParameters, this::runStatemachineThread, getClass().getSimpleName());
@@ -51,6 +68,69 @@ class EtherCATStatemachineThread
       this.thread.start();
    }
 
+   /**
+    * Run the state control in the realtime thread instead of a separate thread. Call before start()
+    *
+    * @param margin Time in ns to keep free before the next cycle
+    */
+   public void enableInline(long margin)
+   {
+      enableBudgetedStateControl(margin);
+      this.inline = true;
+   }
+
+   /**
+    * @return true if the state control runs in the realtime thread
+    */
+   public boolean isInline()
+   {
+      return inline;
+   }
+
+   /**
+    * Run the non-blocking state control in the calling thread and release the cyclic lock. Only call from the realtime thread in 
+    * inline mode, instead of releaseCyclicAndStartStateControl().
+    *
+    * State control is skipped when less than the margin is left before the next cycle, or when the state control is idle and has
+    * run less than PARK_TIME_NANOS ago. A task is only run if its learned cost fits in the time left. If blocking tasks are pending,
+    * this thread is woken up to run them.
+    *
+    * Blocking tasks are not split across cycles, so they cannot run in the realtime thread. This thread therefore still has to run,
+    * and the CAS and unpark hand-off is still used whenever a blocking task is pending. Only the steady state avoids the hand-off.
+    *
+    * @param timeToNextCycle Time in ns till the next cycle
+    */
+   public void runInline(long timeToNextCycle)
+   {
+      long budget = timeToNextCycle - stateControlMargin;
+      long startTime = System.nanoTime();
+      if (budget > 0 && !(master.isStateControlIdle() && startTime - lastRunTime < PARK_TIME_NANOS))
+      {
+         lastRunTime = startTime;
+
+         master.doInlineEtherCATStateControl(budget);
+         durationInThread = System.nanoTime() - startTime;
+         durationInCyclic = durationInThread;
+         durationHistogram.record(durationInThread);
+      }
+
+      if (master.hasDeferredStateControl())
+      {
+         if (state.compareAndSet(CYCLIC_RUNNING, CYCLIC_DONE))
+         {
+            LockSupport.unpark(javaThread);
+         }
+         else
+         {
+            throw new RuntimeException("Illegal State " + state.get());
+         }
+      }
+      else if (!state.compareAndSet(CYCLIC_RUNNING, IDLE))
+      {
+         throw new RuntimeException("Illegal State " + state.get());
+      }
+   }
+
    public boolean tryLockCyclic()
    {
       int currentState = state.get();
@@ -73,14 +153,37 @@ class EtherCATStatemachineThread
       }
    }
 
-   public void releaseCyclicAndStartStateControl()
+   /**
+    * Run as many state control tasks as fit before the next cycle, instead of a single task per cycle. Call before start()
+    *
+    * @param margin Time in ns to keep free before the next cycle
+    */
+   public void enableBudgetedStateControl(long margin)
+   {
+      if (margin < 0)
+      {
+         throw new IllegalArgumentException("The state control margin cannot be negative");
+      }
+      this.stateControlMargin = margin;
+   }
+
+   /**
+    * Release the cyclic lock and start the state control
+    *
+    * @param timeToNextCycle Time in ns till the realtime thread tries to lock the cyclic again
+    */
+   public void releaseCyclicAndStartStateControl(long timeToNextCycle)
    {
+      // Published to the statemachine thread by the state change below
+      stateControlDeadline = System.nanoTime() + timeToNextCycle - stateControlMargin;
+
       // Set the state to CYCLIC_DONE. If the state is not CYCLIC_RUNNING, crash
       if (state.compareAndSet(CYCLIC_RUNNING, CYCLIC_DONE))
       {
          // Copy the duration variable here, as nothing will access it.
          durationInCyclic = durationInThread;
 
+         // Always wake the statemachine thread, so it starts at the beginning of the slack. It returns immediately when idle.
          LockSupport.unpark(javaThread);
       }
       else
@@ -93,8 +196,26 @@ class EtherCATStatemachineThread
    private void executeStatemachine()
    {
       long startTime = System.nanoTime();
-      master.doEtherCATStateControl();
+      if (inline)
+      {
+         master.doDeferredEtherCATStateControl();
+      }
+      else if (master.isStateControlIdle() && startTime - lastRunTime < PARK_TIME_NANOS)
+      {
+         return;
+      }
+      else if (stateControlMargin < 0)
+      {
+         lastRunTime = startTime;
+         master.doEtherCATStateControl();
+      }
+      else
+      {
+         lastRunTime = startTime;
+         master.doEtherCATStateControl(stateControlDeadline - startTime);
+      }
       durationInThread = System.nanoTime() - startTime;
+      durationHistogram.record(durationInThread);
    }
 
    private void runStatemachineThread()
@@ -153,6 +274,11 @@ class EtherCATStatemachineThread
       return durationInCyclic;
    }
 
+   public LogLinearHistogram getDurationHistogram()
+   {
+      return durationHistogram;
+   }
+
    public void shutdown()
    {
       state.set(SHUTDOWN);
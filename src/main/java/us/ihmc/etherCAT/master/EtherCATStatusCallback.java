@@ -1,5 +1,6 @@
 package us.ihmc.etherCAT.master;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.HashMap;
 
@@ -30,9 +31,15 @@ public class EtherCATStatusCallback
       SWITCH_TO_INIT("Switching slaves to INIT state"),
       CONFIGURE_DC("Configuring DC settings"),
       WAIT_FOR_PREOP("Wait for preop"),
+      CONFIGURE_MAILBOXES("Configuring slaves over the mailbox"),
       CLEAR_PDOS("Clearing PDO configuration"),
       WRITE_PDOS("Writing PDO entries"),
       WRITE_PDO_SIZE("Writing Number of PDO entries"),
+      READ_PDOS("Reading PDO assignment"),
+      PDOS_UNCHANGED("PDO assignment is up to date"),
+      PDOS_CACHED("PDO assignment unchanged since the last run"),
+      VERIFY_CONFIGURATION_CACHE("Verifying bus configuration cache"),
+      SAVE_CONFIGURATION_CACHE("Saving bus configuration cache"),
       RECONFIG_TO_PREOP("Reconfiguring slave to PRE-OP"),
       RECONFIG_TO_SAFEOP("Reconfiguring slave to SAFE-OP"),
       RECOVER_SLAVE("Slave lost. Recovering slave"),
@@ -243,6 +250,51 @@ public class EtherCATStatusCallback
       }
    }
 
+   public void notifyCompleteAccessProbe(Slave slave, boolean supported)
+   {
+      if (TRACE)
+      {
+         System.out.println("[" + System.nanoTime() + "] " + slave + (supported ? " supports" : " does not support") + " Complete Access");
+      }
+   }
+
+   public void notifyBusConfigurationCacheMismatch(String reason)
+   {
+      if (TRACE)
+      {
+         System.out.println("[" + System.nanoTime() + "] Not using the bus configuration cache. " + reason + ".");
+      }
+   }
+
+   public void notifyBusConfigurationCacheError(IOException e)
+   {
+      System.err.println("[" + System.nanoTime() + "] Cannot access the bus configuration cache. " + e.getMessage());
+   }
+
+   /**
+    * @param warmStart true if the bus configuration cache was used
+    * @param busScanTime Time in ns to open the interface, read the SII of the slaves and reach PRE-OP
+    * @param slaveConfigurationTime Time in ns to configure the slaves over the mailbox
+    * @param processDataMappingTime Time in ns to map the process data and reach SAFE-OP
+    * @param totalTime Time in ns of the whole init()
+    */
+   public void notifyInitTime(boolean warmStart, long busScanTime, long slaveConfigurationTime, long processDataMappingTime, long totalTime)
+   {
+      System.out.println("[" + System.nanoTime() + "] " + (warmStart ? "Warm" : "Cold") + " start took " + (totalTime / 1000000) + "ms. Bus scan: "
+            + (busScanTime / 1000000) + "ms, slave configuration: " + (slaveConfigurationTime / 1000000) + "ms, process data mapping: "
+            + (processDataMappingTime / 1000000) + "ms.");
+   }
+
+   public void notifyFlightRecorderError(IOException e)
+   {
+      System.err.println("[" + System.nanoTime() + "] Cannot close the flight recorder. " + e.getMessage());
+   }
+
+   public void notifyProcessDataLayoutChanged(String change)
+   {
+      System.err.println("[" + System.nanoTime() + "] Process data layout changed since the last run. " + change + ".");
+   }
+
    public void notifySlaveBuffer(Slave slave, int inputOffset, int inputSize, int inputBitoffset, int outputOffset, int outputSize, int outputBitOffset)
    {
       if (TRACE)
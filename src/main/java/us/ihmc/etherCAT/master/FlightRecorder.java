@@ -0,0 +1,222 @@
+package us.ihmc.etherCAT.master;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Black box recorder that continuously writes the process image of every cycle to a memory mapped ring file.
+ *
+ * The file is allocated and mapped when the master is initialized. Every cycle, the realtime thread copies the
+ * process image and the cycle metadata into the next slot of the mapping and updates the write index in the header.
+ * No system calls are made on the realtime thread, the operating system writes the dirty pages back to disk.
+ * Because the mapping is shared with the page cache, the recorded cycles survive a crash of the JVM. They do not
+ * survive a power loss or kernel crash unless flush() was called.
+ *
+ * The header contains the location of every PDO entry in the process image, so the file can be decoded offline with
+ * FlightRecorderReader without the Slave classes.
+ *
+ * File layout (little endian)
+ * <pre>
+ *    0  magic "ECATFREC"
+ *    8  int version
+ *   12  int header size, offset of the first slot
+ *   16  int number of slots
+ *   20  int slot size
+ *   24  int process image size
+ *   28  int layout size in bytes
+ *   32  long write index, number of slots written
+ *   40  long wall clock time at creation in ms
+ *   48  long monotonic time at creation in ns
+ *   64  layout, UTF-8 text with one FlightRecorderEntry per line
+ * </pre>
+ * Each slot has the same layout as a slot of the ProcessImageRing: a 32 byte header with the cycle, DC time,
+ * receive timestamp and working counters, followed by the process image.
+ *
+ * Enable with Master.enableFlightRecorder() before init().
+ *
+ * @author Jesper Smith
+ *
+ */
+public class FlightRecorder
+{
+   static final byte[] MAGIC = "ECATFREC".getBytes(StandardCharsets.US_ASCII);
+   static final int VERSION = 1;
+
+   static final int VERSION_OFFSET = 8;
+   static final int HEADER_SIZE_OFFSET = 12;
+   static final int SLOTS_OFFSET = 16;
+   static final int SLOT_SIZE_OFFSET = 20;
+   static final int PROCESS_IMAGE_SIZE_OFFSET = 24;
+   static final int LAYOUT_SIZE_OFFSET = 28;
+   static final int WRITE_INDEX_OFFSET = 32;
+   static final int CREATION_TIME_OFFSET = 40;
+   static final int CREATION_MONOTONIC_TIME_OFFSET = 48;
+   static final int LAYOUT_OFFSET = 64;
+
+   private static final int PAGE_SIZE = 4096;
+   private static final int SLOT_ALIGNMENT = 64;
+
+   private final File file;
+   private final FileChannel channel;
+   private final MappedByteBuffer mapping;
+
+   private final int headerSize;
+   private final int slots;
+   private final int slotSize;
+   private final int processImageSize;
+
+   private final ByteBuffer source;
+   private final ByteBuffer target;
+
+   private volatile long writeIndex = 0;
+   private int slotOffset;
+
+   /**
+    * Internal function. Create the file and map it into memory.
+    *
+    * @param file File to record to. An existing file is overwritten
+    * @param slots Number of cycles to keep
+    * @param ioMap IO map of the master
+    * @param processImageSize Number of bytes of the IO map to record
+    * @param layout Location of the PDO entries in the process image
+    * @throws IOException if the file cannot be created or mapped
+    */
+   FlightRecorder(File file, int slots, ByteBuffer ioMap, int processImageSize, List<FlightRecorderEntry> layout) throws IOException
+   {
+      if (slots < 2)
+      {
+         throw new IllegalArgumentException("The flight recorder needs at least two slots");
+      }
+
+      StringBuilder layoutText = new StringBuilder();
+      for (int i = 0; i < layout.size(); i++)
+      {
+         layoutText.append(layout.get(i).toLayoutString());
+         layoutText.append('\n');
+      }
+      byte[] layoutBytes = layoutText.toString().getBytes(StandardCharsets.UTF_8);
+
+      this.file = file;
+      this.slots = slots;
+      this.processImageSize = processImageSize;
+      this.slotSize = ((ProcessImageRing.HEADER_SIZE + processImageSize + SLOT_ALIGNMENT - 1) / SLOT_ALIGNMENT) * SLOT_ALIGNMENT;
+      this.headerSize = ((LAYOUT_OFFSET + layoutBytes.length + PAGE_SIZE - 1) / PAGE_SIZE) * PAGE_SIZE;
+
+      long fileSize = headerSize + ((long) slots) * slotSize;
+      if (fileSize > Integer.MAX_VALUE)
+      {
+         throw new IllegalArgumentException("Flight recorder file of " + fileSize + " bytes is too large. Reduce the number of slots.");
+      }
+
+      channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      mapping = channel.map(MapMode.READ_WRITE, 0, fileSize);
+      mapping.order(ByteOrder.LITTLE_ENDIAN);
+
+      // Touch every page so the realtime thread does not take page faults on the first pass through the ring
+      for (int i = 0; i < fileSize; i += PAGE_SIZE)
+      {
+         mapping.put(i, (byte) 0);
+      }
+
+      mapping.put(0, MAGIC);
+      mapping.putInt(VERSION_OFFSET, VERSION);
+      mapping.putInt(HEADER_SIZE_OFFSET, headerSize);
+      mapping.putInt(SLOTS_OFFSET, slots);
+      mapping.putInt(SLOT_SIZE_OFFSET, slotSize);
+      mapping.putInt(PROCESS_IMAGE_SIZE_OFFSET, processImageSize);
+      mapping.putInt(LAYOUT_SIZE_OFFSET, layoutBytes.length);
+      mapping.putLong(WRITE_INDEX_OFFSET, 0);
+      mapping.putLong(CREATION_TIME_OFFSET, System.currentTimeMillis());
+      mapping.putLong(CREATION_MONOTONIC_TIME_OFFSET, System.nanoTime());
+      mapping.put(LAYOUT_OFFSET, layoutBytes);
+
+      source = ioMap.duplicate();
+      source.clear();
+      source.limit(processImageSize);
+      target = mapping.duplicate();
+
+      slotOffset = headerSize;
+   }
+
+   /**
+    * Internal function. Record the process image. Only call from the realtime thread.
+    *
+    * The slot is written before the write index is updated, a slot that was being written during a crash is ignored by the reader.
+    */
+   void write(long cycle, long dcTime, long timestamp, int workingCounter, int expectedWorkingCounter)
+   {
+      mapping.putLong(slotOffset + ProcessImageRing.CYCLE_OFFSET, cycle);
+      mapping.putLong(slotOffset + ProcessImageRing.DC_TIME_OFFSET, dcTime);
+      mapping.putLong(slotOffset + ProcessImageRing.TIMESTAMP_OFFSET, timestamp);
+      mapping.putInt(slotOffset + ProcessImageRing.WORKING_COUNTER_OFFSET, workingCounter);
+      mapping.putInt(slotOffset + ProcessImageRing.EXPECTED_WORKING_COUNTER_OFFSET, expectedWorkingCounter);
+
+      source.position(0);
+      target.limit(slotOffset + ProcessImageRing.HEADER_SIZE + processImageSize);
+      target.position(slotOffset + ProcessImageRing.HEADER_SIZE);
+      target.put(source);
+
+      writeIndex++;
+      mapping.putLong(WRITE_INDEX_OFFSET, writeIndex);
+
+      slotOffset += slotSize;
+      if (slotOffset >= headerSize + slots * slotSize)
+      {
+         slotOffset = headerSize;
+      }
+   }
+
+   /**
+    * Write the recorded data to disk. Blocks until the data is written, do not call from the realtime thread.
+    */
+   public void flush()
+   {
+      mapping.force();
+   }
+
+   /**
+    * Flush the recording and close the file. The recorder cannot be used after closing.
+    *
+    * @throws IOException
+    */
+   void close() throws IOException
+   {
+      flush();
+      channel.close();
+   }
+
+   /**
+    *
+    * @return the file this recorder writes to
+    */
+   public File getFile()
+   {
+      return file;
+   }
+
+   /**
+    *
+    * @return number of cycles kept in the file
+    */
+   public int getSlots()
+   {
+      return slots;
+   }
+
+   /**
+    *
+    * @return number of cycles written since the recorder was created
+    */
+   public long getWriteIndex()
+   {
+      return writeIndex;
+   }
+}
@@ -0,0 +1,204 @@
+package us.ihmc.etherCAT.master;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Location of a single PDO entry in the process image, as stored in the header of a flight recorder file.
+ *
+ * The offset is in bits from the start of the process image. EtherCAT process data is packed little endian, so
+ * the value of an entry can be decoded from a recorded frame without the original Slave and PDO classes.
+ *
+ * @author Jesper Smith
+ *
+ */
+public class FlightRecorderEntry
+{
+   private static final String SEPARATOR = "\t";
+
+   private final String slave;
+   private final int aliasAddress;
+   private final int position;
+   private final int syncManager;
+   private final String direction;
+   private final int pdoAddress;
+   private final String name;
+   private final String type;
+   private final int bitOffset;
+   private final int bitLength;
+
+   FlightRecorderEntry(String slave, int aliasAddress, int position, int syncManager, String direction, int pdoAddress, String name, String type, int bitOffset, int bitLength)
+   {
+      this.slave = slave;
+      this.aliasAddress = aliasAddress;
+      this.position = position;
+      this.syncManager = syncManager;
+      this.direction = direction;
+      this.pdoAddress = pdoAddress;
+      this.name = name;
+      this.type = type;
+      this.bitOffset = bitOffset;
+      this.bitLength = bitLength;
+   }
+
+   /**
+    * Internal function. Parse an entry from a line in the layout.
+    *
+    * @param line line created by toLayoutString()
+    * @return entry
+    */
+   static FlightRecorderEntry parse(String line)
+   {
+      String[] fields = line.split(SEPARATOR);
+      if(fields.length != 10)
+      {
+         throw new IllegalArgumentException("Invalid flight recorder layout entry: " + line);
+      }
+
+      return new FlightRecorderEntry(fields[0], Integer.parseInt(fields[1]), Integer.parseInt(fields[2]), Integer.parseInt(fields[3]), fields[4],
+                                     Integer.parseInt(fields[5], 16), fields[6], fields[7], Integer.parseInt(fields[8]), Integer.parseInt(fields[9]));
+   }
+
+   /**
+    * Internal function.
+    *
+    * @return single line representation of this entry for the file header
+    */
+   String toLayoutString()
+   {
+      return slave + SEPARATOR + aliasAddress + SEPARATOR + position + SEPARATOR + syncManager + SEPARATOR + direction + SEPARATOR
+            + Integer.toHexString(pdoAddress) + SEPARATOR + name + SEPARATOR + type + SEPARATOR + bitOffset + SEPARATOR + bitLength;
+   }
+
+   /**
+    *
+    * @return name of the slave class
+    */
+   public String getSlave()
+   {
+      return slave;
+   }
+
+   public int getAliasAddress()
+   {
+      return aliasAddress;
+   }
+
+   public int getPosition()
+   {
+      return position;
+   }
+
+   /**
+    *
+    * @return index of the sync manager, 0 - 3
+    */
+   public int getSyncManager()
+   {
+      return syncManager;
+   }
+
+   /**
+    *
+    * @return RXPDO for outputs, TXPDO for inputs
+    */
+   public String getDirection()
+   {
+      return direction;
+   }
+
+   public int getPDOAddress()
+   {
+      return pdoAddress;
+   }
+
+   /**
+    *
+    * @return name of the field in the PDO class. Elements of arrays are named field[i], members of inner structs field.member
+    */
+   public String getName()
+   {
+      return name;
+   }
+
+   /**
+    *
+    * @return simple name of the member class, e.g. Signed32, Float32 or Bool
+    */
+   public String getType()
+   {
+      return type;
+   }
+
+   /**
+    *
+    * @return offset in bits from the start of the process image
+    */
+   public int getBitOffset()
+   {
+      return bitOffset;
+   }
+
+   public int getBitLength()
+   {
+      return bitLength;
+   }
+
+   /**
+    * Get the raw bits of this entry. Signed types are sign extended.
+    *
+    * @param processImage process image, for example ProcessImageFrame.getProcessImage()
+    * @return value
+    */
+   public long getRawValue(ByteBuffer processImage)
+   {
+      long value = 0;
+      for(int i = 0; i < bitLength; i++)
+      {
+         int bit = bitOffset + i;
+         if(((processImage.get(bit >> 3) >> (bit & 7)) & 1) != 0)
+         {
+            value |= 1L << i;
+         }
+      }
+
+      if(bitLength > 0 && bitLength < 64 && type.startsWith("Signed") && (value & (1L << (bitLength - 1))) != 0)
+      {
+         value |= -1L << bitLength;
+      }
+      return value;
+   }
+
+   /**
+    * Get the value of this entry as double. Floating point types are converted from their bit representation, all other types are converted from the raw value.
+    *
+    * @param processImage process image, for example ProcessImageFrame.getProcessImage()
+    * @return value
+    */
+   public double getValue(ByteBuffer processImage)
+   {
+      long raw = getRawValue(processImage);
+      if("Float32".equals(type))
+      {
+         return Float.intBitsToFloat((int) raw);
+      }
+      else if("Float64".equals(type))
+      {
+         return Double.longBitsToDouble(raw);
+      }
+      else if(bitLength == 64 && type.startsWith("Unsigned"))
+      {
+         return ((double) (raw >>> 1)) * 2.0 + (raw & 1);
+      }
+      else
+      {
+         return raw;
+      }
+   }
+
+   @Override
+   public String toString()
+   {
+      return "FlightRecorderEntry [slave=" + slave + ", aliasAddress=" + aliasAddress + ", position=" + position + ", syncManager=" + syncManager + ", pdo=0x"
+            + Integer.toHexString(pdoAddress) + ", name=" + name + ", type=" + type + ", bitOffset=" + bitOffset + ", bitLength=" + bitLength + "]";
+   }
+}
@@ -0,0 +1,281 @@
+package us.ihmc.etherCAT.master;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Offline reader for files written by the FlightRecorder.
+ *
+ * Frames are numbered by their write index. Only the frames that were completely written are available, from
+ * getFirstIndex() up to, but not including, getEndIndex().
+ *
+ * Run main() to convert a recording to CSV.
+ *
+ * @author Jesper Smith
+ *
+ */
+public class FlightRecorderReader implements AutoCloseable
+{
+   private final FileChannel channel;
+   private final MappedByteBuffer mapping;
+   private final ByteBuffer slot;
+
+   private final int headerSize;
+   private final int slots;
+   private final int slotSize;
+   private final int processImageSize;
+   private final long endIndex;
+   private final long creationTime;
+   private final long creationMonotonicTime;
+   private final List<FlightRecorderEntry> entries;
+
+   /**
+    * Open a recording
+    *
+    * @param file File written by the FlightRecorder
+    * @throws IOException if the file is not a valid recording
+    */
+   public FlightRecorderReader(File file) throws IOException
+   {
+      channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+      try
+      {
+         if (channel.size() < FlightRecorder.LAYOUT_OFFSET)
+         {
+            throw new IOException(file + " is not a flight recorder file");
+         }
+
+         mapping = channel.map(MapMode.READ_ONLY, 0, channel.size());
+         mapping.order(ByteOrder.LITTLE_ENDIAN);
+
+         byte[] magic = new byte[FlightRecorder.MAGIC.length];
+         mapping.get(0, magic);
+         if (!Arrays.equals(magic, FlightRecorder.MAGIC))
+         {
+            throw new IOException(file + " is not a flight recorder file");
+         }
+         if (mapping.getInt(FlightRecorder.VERSION_OFFSET) != FlightRecorder.VERSION)
+         {
+            throw new IOException("Unsupported flight recorder version " + mapping.getInt(FlightRecorder.VERSION_OFFSET));
+         }
+
+         headerSize = mapping.getInt(FlightRecorder.HEADER_SIZE_OFFSET);
+         slots = mapping.getInt(FlightRecorder.SLOTS_OFFSET);
+         slotSize = mapping.getInt(FlightRecorder.SLOT_SIZE_OFFSET);
+         processImageSize = mapping.getInt(FlightRecorder.PROCESS_IMAGE_SIZE_OFFSET);
+         endIndex = mapping.getLong(FlightRecorder.WRITE_INDEX_OFFSET);
+         creationTime = mapping.getLong(FlightRecorder.CREATION_TIME_OFFSET);
+         creationMonotonicTime = mapping.getLong(FlightRecorder.CREATION_MONOTONIC_TIME_OFFSET);
+
+         if (headerSize + ((long) slots) * slotSize > channel.size())
+         {
+            throw new IOException(file + " is truncated");
+         }
+
+         byte[] layout = new byte[mapping.getInt(FlightRecorder.LAYOUT_SIZE_OFFSET)];
+         mapping.get(FlightRecorder.LAYOUT_OFFSET, layout);
+         ArrayList<FlightRecorderEntry> entries = new ArrayList<>();
+         for (String line : new String(layout, StandardCharsets.UTF_8).split("\n"))
+         {
+            if (!line.isEmpty())
+            {
+               entries.add(FlightRecorderEntry.parse(line));
+            }
+         }
+         this.entries = Collections.unmodifiableList(entries);
+
+         slot = mapping.duplicate();
+         slot.order(ByteOrder.LITTLE_ENDIAN);
+      }
+      catch (IOException | RuntimeException e)
+      {
+         channel.close();
+         throw e;
+      }
+   }
+
+   /**
+    *
+    * @return location of all PDO entries in the process image
+    */
+   public List<FlightRecorderEntry> getEntries()
+   {
+      return entries;
+   }
+
+   /**
+    * Find an entry by slave and name
+    *
+    * @param aliasAddress
+    * @param position
+    * @param name Name of the member in the PDO
+    * @return the first matching entry, or null if not found
+    */
+   public FlightRecorderEntry getEntry(int aliasAddress, int position, String name)
+   {
+      for (int i = 0; i < entries.size(); i++)
+      {
+         FlightRecorderEntry entry = entries.get(i);
+         if (entry.getAliasAddress() == aliasAddress && entry.getPosition() == position && entry.getName().equals(name))
+         {
+            return entry;
+         }
+      }
+      return null;
+   }
+
+   /**
+    *
+    * @return index of the oldest complete frame
+    */
+   public long getFirstIndex()
+   {
+      // The slot after the last written slot can be partially overwritten
+      return Math.max(0, endIndex - slots + 1);
+   }
+
+   /**
+    *
+    * @return index after the newest complete frame
+    */
+   public long getEndIndex()
+   {
+      return endIndex;
+   }
+
+   /**
+    *
+    * @return number of frames available
+    */
+   public int getNumberOfFrames()
+   {
+      return (int) (endIndex - getFirstIndex());
+   }
+
+   /**
+    *
+    * @return wall clock time the recording was started in ms
+    */
+   public long getCreationTime()
+   {
+      return creationTime;
+   }
+
+   /**
+    *
+    * @return monotonic time the recording was started in ns. Use with getCreationTime() to convert frame timestamps to wall clock time.
+    */
+   public long getCreationMonotonicTime()
+   {
+      return creationMonotonicTime;
+   }
+
+   /**
+    *
+    * @return number of bytes in the process image
+    */
+   public int getProcessImageSize()
+   {
+      return processImageSize;
+   }
+
+   /**
+    * Create a frame to read into
+    *
+    * @return new frame
+    */
+   public ProcessImageFrame createFrame()
+   {
+      return new ProcessImageFrame(processImageSize);
+   }
+
+   /**
+    * Copy a frame
+    *
+    * @param index index of the frame, between getFirstIndex() and getEndIndex()
+    * @param frame frame to copy into, created with createFrame()
+    * @return false if the frame is not available
+    */
+   public boolean read(long index, ProcessImageFrame frame)
+   {
+      if (index < getFirstIndex() || index >= endIndex)
+      {
+         return false;
+      }
+
+      int offset = headerSize + (int) (index % slots) * slotSize;
+      slot.limit(offset + ProcessImageRing.HEADER_SIZE + processImageSize);
+      slot.position(offset);
+      frame.set(slot);
+      return true;
+   }
+
+   @Override
+   public void close() throws IOException
+   {
+      channel.close();
+   }
+
+   /**
+    * Write all frames of the recording as CSV
+    *
+    * @param out stream to write to
+    */
+   public void writeCSV(PrintStream out)
+   {
+      out.print("cycle,dcTime,timestamp,workingCounter,expectedWorkingCounter");
+      for (int i = 0; i < entries.size(); i++)
+      {
+         FlightRecorderEntry entry = entries.get(i);
+         out.print("," + entry.getAliasAddress() + ":" + entry.getPosition() + "/" + entry.getSlave() + "/" + Integer.toHexString(entry.getPDOAddress()) + "/"
+               + entry.getName());
+      }
+      out.println();
+
+      ProcessImageFrame frame = createFrame();
+      for (long index = getFirstIndex(); index < getEndIndex(); index++)
+      {
+         read(index, frame);
+         out.print(frame.getCycle() + "," + frame.getDCTime() + "," + frame.getTimestamp() + "," + frame.getWorkingCounter() + ","
+               + frame.getExpectedWorkingCounter());
+         for (int i = 0; i < entries.size(); i++)
+         {
+            out.print(",");
+            out.print(entries.get(i).getValue(frame.getProcessImage()));
+         }
+         out.println();
+      }
+   }
+
+   /**
+    * Convert a recording to CSV on standard out
+    *
+    * @param args recording file
+    * @throws IOException
+    */
+   public static void main(String[] args) throws IOException
+   {
+      if (args.length != 1)
+      {
+         System.err.println("Usage: FlightRecorderReader [file]");
+         System.exit(1);
+      }
+
+      try (FlightRecorderReader reader = new FlightRecorderReader(new File(args[0])))
+      {
+         reader.writeCSV(System.out);
+      }
+   }
+}
@@ -0,0 +1,733 @@
+package us.ihmc.etherCAT.master;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+import us.ihmc.soem.generated.ec_slavet;
+import us.ihmc.soem.generated.soemConstants;
+
+/**
+ * Engine that runs the mailbox communication of many slaves concurrently, used to configure the slaves during initialization and
+ * reconfiguration.
+ *
+ * Each slave has a queue of tasks. A task is a small state machine that issues one transfer at a time: an SDO read or write, or a
+ * register read or write. The engine keeps one transfer outstanding on every slave and advances all outstanding transfers with a
+ * single RegisterTransactionBatch per round, so the datagrams of all slaves share frames. The time to run all tasks scales with the
+ * slowest slave instead of the sum over all slaves.
+ *
+ * A request is written to the mailbox of the slave as soon as the slave has emptied it, and the response is read as soon as the slave
+ * has filled its mailbox. The sync managers of the mailbox block writes to a full mailbox and reads from an empty mailbox, the
+ * working counter tells if the slave was ready.
+ *
+ * SDO transfers are limited to expedited and normal transfers that fit in a single mailbox. Segmented transfers fail.
+ *
+ * run() is blocking. Do not use from the realtime thread.
+ *
+ * @author Jesper Smith
+ *
+ */
+class MailboxEngine
+{
+   /**
+    * Size of the largest mailbox, EC_MAXMBX
+    */
+   static final int MAILBOX_SIZE = 1486;
+
+   // Layout of a CoE SDO mailbox. Matches ec_SDOt in SOEM
+   private static final int MBX_LENGTH_OFFSET = 0;
+   private static final int MBX_ADDRESS_OFFSET = 2;
+   private static final int MBX_PRIORITY_OFFSET = 4;
+   private static final int MBX_TYPE_OFFSET = 5;
+   private static final int COE_HEADER_OFFSET = 6;
+   private static final int SDO_COMMAND_OFFSET = 8;
+   private static final int SDO_INDEX_OFFSET = 9;
+   private static final int SDO_SUBINDEX_OFFSET = 11;
+   private static final int SDO_DATA_OFFSET = 12;
+   private static final int SDO_NORMAL_DATA_OFFSET = 16;
+
+   // Length in the mailbox header of a request without data, from the CoE header to the end of the expedited data
+   private static final int SDO_HEADER_LENGTH = 0x0a;
+
+   private static final int ECT_MBXT_ERR = 0x00;
+   private static final int ECT_MBXT_COE = 0x03;
+   private static final int ECT_COES_EMERGENCY = 0x01;
+   private static final int ECT_COES_SDOREQ = 0x02;
+   private static final int ECT_COES_SDORES = 0x03;
+
+   private static final int ECT_SDO_DOWN_INIT = 0x21;
+   private static final int ECT_SDO_DOWN_EXP = 0x23;
+   private static final int ECT_SDO_UP_REQ = 0x40;
+   private static final int ECT_SDO_ABORT = 0x80;
+   private static final int ECT_SDO_SUBIDX_CA = 0x10;
+   private static final int ECT_SDO_EXPEDITED = 0x02;
+
+   // Time between rounds in which no slave was ready
+   private static final long POLL_INTERVAL = 50000;
+
+   /**
+    * Configuration step of a slave
+    */
+   interface Task
+   {
+      /**
+       * Issue the next transfer of this task.
+       *
+       * Called with a transfer of type NONE when the task starts, and with the completed transfer after every transfer.
+       *
+       * @param transfer Result of the previous transfer. Set up the next transfer in the same object.
+       * @return false if the task is done
+       */
+      boolean next(Transfer transfer);
+   }
+
+   enum TransferType
+   {
+      NONE, READ_SDO, WRITE_SDO, READ_REGISTER, WRITE_REGISTER
+   }
+
+   /**
+    * Transfer issued by a task. Holds the request and, after completion, the result.
+    */
+   static class Transfer
+   {
+      private final ByteBuffer data = ByteBuffer.allocateDirect(MAILBOX_SIZE);
+
+      private TransferType type = TransferType.NONE;
+      private int index;
+      private int subindex;
+      private boolean completeAccess;
+      private int register;
+      private int length;
+      private long delay;
+
+      private boolean successful;
+      private boolean timedOut;
+      private int abortCode;
+
+      Transfer()
+      {
+         data.order(ByteOrder.LITTLE_ENDIAN);
+      }
+
+      private void set(TransferType type)
+      {
+         this.type = type;
+         this.delay = 0;
+         this.successful = false;
+         this.timedOut = false;
+         this.abortCode = 0;
+      }
+
+      /**
+       * Read an SDO. The data is available from getData() after completion.
+       */
+      void readSDO(int index, int subindex, boolean completeAccess)
+      {
+         set(TransferType.READ_SDO);
+         this.index = index;
+         this.subindex = subindex;
+         this.completeAccess = completeAccess;
+         this.length = 0;
+      }
+
+      /**
+       * Write an SDO. Put the data in getData() from position 0 to position after calling this function.
+       */
+      void writeSDO(int index, int subindex, boolean completeAccess)
+      {
+         set(TransferType.WRITE_SDO);
+         this.index = index;
+         this.subindex = subindex;
+         this.completeAccess = completeAccess;
+         data.clear();
+      }
+
+      /**
+       * Read length bytes from a register. The data is available from getData() after completion.
+       */
+      void readRegister(int register, int length)
+      {
+         set(TransferType.READ_REGISTER);
+         this.register = register;
+         this.length = length;
+      }
+
+      /**
+       * Write to a register. Put the data in getData() from position 0 to position after calling this function.
+       */
+      void writeRegister(int register)
+      {
+         set(TransferType.WRITE_REGISTER);
+         this.register = register;
+         data.clear();
+      }
+
+      /**
+       * Wait before starting the transfer. Call after setting up the transfer.
+       *
+       * @param delay in nanoseconds
+       */
+      void setDelay(long delay)
+      {
+         this.delay = delay;
+      }
+
+      TransferType getType()
+      {
+         return type;
+      }
+
+      int getIndex()
+      {
+         return index;
+      }
+
+      int getSubindex()
+      {
+         return subindex;
+      }
+
+      /**
+       * @return data of the transfer. After a read, position is 0 and limit is the number of bytes read.
+       */
+      ByteBuffer getData()
+      {
+         return data;
+      }
+
+      boolean isSuccessful()
+      {
+         return successful;
+      }
+
+      /**
+       * @return true if the slave did not respond in time
+       */
+      boolean isTimedOut()
+      {
+         return timedOut;
+      }
+
+      /**
+       * @return SDO abort code sent by the slave, or 0 if the slave did not abort the transfer
+       */
+      int getAbortCode()
+      {
+         return abortCode;
+      }
+   }
+
+   private enum ChannelState
+   {
+      IDLE, SEND, RECEIVE, REGISTER
+   }
+
+   /**
+    * Mailbox of a single slave
+    */
+   static class Channel
+   {
+      private final Slave slave;
+      private final int address;
+      private final int writeOffset;
+      private final int writeLength;
+      private final int readOffset;
+      private final int readLength;
+      private int counter;
+
+      private final ArrayDeque<Task> tasks = new ArrayDeque<>();
+      private final Transfer transfer = new Transfer();
+      private final ByteBuffer mailbox = ByteBuffer.allocateDirect(MAILBOX_SIZE);
+
+      private Task current = null;
+      private ChannelState state = ChannelState.IDLE;
+      private long startTime;
+      private long deadline;
+      private int operation = -1;
+
+      /**
+       * @param slave Slave to communicate with
+       * @param address Configured station address of the slave
+       * @param writeOffset Start address of the mailbox written by the master
+       * @param writeLength Length of the mailbox written by the master, 0 if the slave has no mailbox
+       * @param readOffset Start address of the mailbox read by the master
+       * @param readLength Length of the mailbox read by the master
+       * @param counter Last used mailbox counter
+       */
+      Channel(Slave slave, int address, int writeOffset, int writeLength, int readOffset, int readLength, int counter)
+      {
+         this.slave = slave;
+         this.address = address;
+         this.writeOffset = writeOffset;
+         this.writeLength = Math.min(writeLength, MAILBOX_SIZE);
+         this.readOffset = readOffset;
+         this.readLength = Math.min(readLength, MAILBOX_SIZE);
+         this.counter = counter;
+
+         mailbox.order(ByteOrder.LITTLE_ENDIAN);
+      }
+
+      Slave getSlave()
+      {
+         return slave;
+      }
+
+      int getCounter()
+      {
+         return counter;
+      }
+   }
+
+   private final Master master;
+   private final ArrayList<Channel> channels = new ArrayList<>();
+   private long timeout = soemConstants.EC_TIMEOUTRXM * 1000L;
+
+   private int rounds = 0;
+
+   /**
+    * @param master Master to send the frames on
+    */
+   MailboxEngine(Master master)
+   {
+      this.master = master;
+   }
+
+   /**
+    * Set the time a slave gets to accept a request and to respond to it
+    *
+    * @param timeout in nanoseconds
+    */
+   void setTimeout(long timeout)
+   {
+      this.timeout = timeout;
+   }
+
+   /**
+    * Add a task for a slave. The tasks of a slave are executed in order.
+    */
+   void submit(Slave slave, Task task)
+   {
+      getChannel(slave).tasks.add(task);
+   }
+
+   private Channel getChannel(Slave slave)
+   {
+      for (int i = 0; i < channels.size(); i++)
+      {
+         if (channels.get(i).slave == slave)
+         {
+            return channels.get(i);
+         }
+      }
+
+      Channel channel = createChannel(slave);
+      channels.add(channel);
+      return channel;
+   }
+
+   /**
+    * Create the channel to a slave from the mailbox configuration read by SOEM
+    */
+   Channel createChannel(Slave slave)
+   {
+      ec_slavet ec_slave = slave.getSlaveStructure();
+      return new Channel(slave, ec_slave.getConfigadr(), ec_slave.getMbx_wo(), ec_slave.getMbx_l(), ec_slave.getMbx_ro(), ec_slave.getMbx_rl(),
+                         ec_slave.getMbx_cnt());
+   }
+
+   /**
+    * Hand the last used mailbox counter back to SOEM, so blocking SDO transfers continue the sequence
+    */
+   void storeCounter(Channel channel)
+   {
+      channel.getSlave().getSlaveStructure().setMbx_cnt((short) channel.getCounter());
+   }
+
+   /**
+    * Send the batch and wait for all frames to return
+    */
+   int execute(RegisterTransactionBatch batch)
+   {
+      return batch.execute();
+   }
+
+   /**
+    * @return number of batches sent by the last call to run()
+    */
+   int getRounds()
+   {
+      return rounds;
+   }
+
+   /**
+    * Run all submitted tasks of all slaves. Returns when all tasks are done.
+    */
+   void run()
+   {
+      rounds = 0;
+      if (channels.isEmpty())
+      {
+         return;
+      }
+
+      RegisterTransactionBatch batch = new RegisterTransactionBatch(master, channels.size(), channels.size() * MAILBOX_SIZE);
+      try
+      {
+         while (true)
+         {
+            long now = System.nanoTime();
+            batch.clear();
+            for (int i = 0; i < channels.size(); i++)
+            {
+               prepare(channels.get(i), batch, now);
+            }
+
+            if (batch.size() == 0)
+            {
+               if (isDone())
+               {
+                  break;
+               }
+
+               // Only delayed transfers are waiting
+               LockSupport.parkNanos(POLL_INTERVAL);
+               continue;
+            }
+
+            execute(batch);
+            rounds++;
+
+            now = System.nanoTime();
+            boolean progress = false;
+            for (int i = 0; i < channels.size(); i++)
+            {
+               progress |= process(channels.get(i), batch, now);
+            }
+
+            if (!progress)
+            {
+               LockSupport.parkNanos(POLL_INTERVAL);
+            }
+         }
+      }
+      finally
+      {
+         for (int i = 0; i < channels.size(); i++)
+         {
+            storeCounter(channels.get(i));
+         }
+      }
+   }
+
+   private boolean isDone()
+   {
+      for (int i = 0; i < channels.size(); i++)
+      {
+         Channel channel = channels.get(i);
+         if (channel.current != null || !channel.tasks.isEmpty())
+         {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Start the next transfer if the channel is idle and add the datagram of the outstanding transfer to the batch
+    */
+   private void prepare(Channel channel, RegisterTransactionBatch batch, long now)
+   {
+      channel.operation = -1;
+
+      while (channel.state == ChannelState.IDLE)
+      {
+         if (channel.current == null)
+         {
+            channel.current = channel.tasks.poll();
+            if (channel.current == null)
+            {
+               return;
+            }
+            channel.transfer.set(TransferType.NONE);
+         }
+
+         if (channel.current.next(channel.transfer))
+         {
+            start(channel, now);
+         }
+         else
+         {
+            channel.current = null;
+         }
+      }
+
+      if (now - channel.startTime < 0)
+      {
+         return;
+      }
+
+      Transfer transfer = channel.transfer;
+      switch (channel.state)
+      {
+         case SEND:
+            channel.mailbox.clear();
+            channel.mailbox.limit(channel.writeLength);
+            channel.operation = batch.addFPWR(channel.address, channel.writeOffset, channel.mailbox);
+            break;
+         case RECEIVE:
+            channel.operation = batch.addFPRD(channel.address, channel.readOffset, channel.readLength);
+            break;
+         case REGISTER:
+            if (transfer.type == TransferType.READ_REGISTER)
+            {
+               channel.operation = batch.addFPRD(channel.address, transfer.register, transfer.length);
+            }
+            else
+            {
+               ByteBuffer data = transfer.data;
+               data.flip();
+               channel.operation = batch.addFPWR(channel.address, transfer.register, data);
+               data.position(data.limit());
+               data.limit(data.capacity());
+            }
+            break;
+         default:
+            break;
+      }
+   }
+
+   private void start(Channel channel, long now)
+   {
+      Transfer transfer = channel.transfer;
+      channel.startTime = now + transfer.delay;
+      channel.deadline = channel.startTime + timeout;
+
+      switch (transfer.type)
+      {
+         case READ_SDO:
+         case WRITE_SDO:
+            if (transfer.type == TransferType.WRITE_SDO && transfer.data.position() == 0)
+            {
+               // An expedited download of zero bytes would set the Complete Access bit
+               complete(channel, false);
+               return;
+            }
+            if (channel.writeLength < SDO_NORMAL_DATA_OFFSET || channel.readLength < SDO_NORMAL_DATA_OFFSET || !buildRequest(channel))
+            {
+               // No mailbox, or the data does not fit in a single mailbox
+               complete(channel, false);
+               return;
+            }
+            channel.state = ChannelState.SEND;
+            break;
+         case READ_REGISTER:
+         case WRITE_REGISTER:
+            if (transfer.type == TransferType.WRITE_REGISTER && transfer.data.position() == 0)
+            {
+               complete(channel, false);
+               return;
+            }
+            channel.state = ChannelState.REGISTER;
+            break;
+         default:
+            throw new RuntimeException("Task did not set up a transfer");
+      }
+   }
+
+   private boolean buildRequest(Channel channel)
+   {
+      Transfer transfer = channel.transfer;
+      ByteBuffer mailbox = channel.mailbox;
+      for (int i = 0; i < channel.writeLength; i++)
+      {
+         mailbox.put(i, (byte) 0);
+      }
+
+      int length = SDO_HEADER_LENGTH;
+      int command;
+      int subindex = transfer.subindex;
+      if (transfer.type == TransferType.READ_SDO)
+      {
+         command = ECT_SDO_UP_REQ;
+      }
+      else
+      {
+         int size = transfer.data.position();
+         if (!transfer.completeAccess && size <= 4)
+         {
+            command = ECT_SDO_DOWN_EXP | ((4 - size) << 2);
+            copy(transfer.data, 0, mailbox, SDO_DATA_OFFSET, size);
+         }
+         else
+         {
+            if (SDO_NORMAL_DATA_OFFSET + size > channel.writeLength)
+            {
+               return false;
+            }
+            command = ECT_SDO_DOWN_INIT;
+            length += size;
+            mailbox.putInt(SDO_DATA_OFFSET, size);
+            copy(transfer.data, 0, mailbox, SDO_NORMAL_DATA_OFFSET, size);
+         }
+      }
+
+      if (transfer.completeAccess)
+      {
+         command |= ECT_SDO_SUBIDX_CA;
+         if (subindex > 1)
+         {
+            subindex = 1;
+         }
+      }
+
+      // The mailbox counter is used as session handle, 1 to 7
+      channel.counter = channel.counter >= 7 ? 1 : channel.counter + 1;
+
+      mailbox.putShort(MBX_LENGTH_OFFSET, (short) length);
+      mailbox.putShort(MBX_ADDRESS_OFFSET, (short) 0);
+      mailbox.put(MBX_PRIORITY_OFFSET, (byte) 0);
+      mailbox.put(MBX_TYPE_OFFSET, (byte) (ECT_MBXT_COE + (channel.counter << 4)));
+      mailbox.putShort(COE_HEADER_OFFSET, (short) (ECT_COES_SDOREQ << 12));
+      mailbox.put(SDO_COMMAND_OFFSET, (byte) command);
+      mailbox.putShort(SDO_INDEX_OFFSET, (short) transfer.index);
+      mailbox.put(SDO_SUBINDEX_OFFSET, (byte) subindex);
+      return true;
+   }
+
+   /**
+    * Process the result of the datagram of the channel
+    *
+    * @return true if the transfer advanced
+    */
+   private boolean process(Channel channel, RegisterTransactionBatch batch, long now)
+   {
+      if (channel.operation < 0)
+      {
+         return false;
+      }
+
+      int wkc = batch.getWorkingCounter(channel.operation);
+      switch (channel.state)
+      {
+         case SEND:
+            if (wkc > 0)
+            {
+               channel.state = ChannelState.RECEIVE;
+               return true;
+            }
+            break;
+         case RECEIVE:
+            if (wkc > 0)
+            {
+               channel.mailbox.clear();
+               batch.getData(channel.operation, channel.mailbox);
+               parseResponse(channel);
+               return true;
+            }
+            break;
+         case REGISTER:
+            if (wkc > 0 && channel.transfer.type == TransferType.READ_REGISTER)
+            {
+               Transfer transfer = channel.transfer;
+               transfer.data.clear();
+               batch.getData(channel.operation, transfer.data);
+               transfer.data.limit(transfer.length);
+            }
+            complete(channel, wkc > 0);
+            return true;
+         default:
+            return false;
+      }
+
+      if (now - channel.deadline > 0)
+      {
+         channel.transfer.timedOut = true;
+         complete(channel, false);
+         return true;
+      }
+      return false;
+   }
+
+   private void parseResponse(Channel channel)
+   {
+      Transfer transfer = channel.transfer;
+      ByteBuffer mailbox = channel.mailbox;
+
+      int mailboxType = mailbox.get(MBX_TYPE_OFFSET) & 0x0F;
+      if (mailboxType == ECT_MBXT_ERR)
+      {
+         complete(channel, false);
+         return;
+      }
+
+      int service = (mailbox.getShort(COE_HEADER_OFFSET) >> 12) & 0x0F;
+      if (mailboxType != ECT_MBXT_COE || service == ECT_COES_EMERGENCY)
+      {
+         // Not the response to the request, keep waiting
+         return;
+      }
+
+      int command = mailbox.get(SDO_COMMAND_OFFSET) & 0xFF;
+      int index = mailbox.getShort(SDO_INDEX_OFFSET) & 0xFFFF;
+      if (service != ECT_COES_SDORES || index != transfer.index)
+      {
+         complete(channel, false);
+         return;
+      }
+
+      if (command == ECT_SDO_ABORT)
+      {
+         transfer.abortCode = mailbox.getInt(SDO_DATA_OFFSET);
+         complete(channel, false);
+         return;
+      }
+
+      if (transfer.type == TransferType.WRITE_SDO)
+      {
+         complete(channel, true);
+         return;
+      }
+
+      int size;
+      int offset;
+      if ((command & ECT_SDO_EXPEDITED) != 0)
+      {
+         size = 4 - ((command >> 2) & 0x03);
+         offset = SDO_DATA_OFFSET;
+      }
+      else
+      {
+         size = mailbox.getInt(SDO_DATA_OFFSET);
+         offset = SDO_NORMAL_DATA_OFFSET;
+         int available = (mailbox.getShort(MBX_LENGTH_OFFSET) & 0xFFFF) - SDO_HEADER_LENGTH;
+         if (size < 0 || size > available || offset + size > channel.readLength)
+         {
+            // Segmented transfer
+            complete(channel, false);
+            return;
+         }
+      }
+
+      transfer.data.clear();
+      copy(mailbox, offset, transfer.data, 0, size);
+      transfer.data.limit(size);
+      complete(channel, true);
+   }
+
+   private void complete(Channel channel, boolean successful)
+   {
+      channel.transfer.successful = successful;
+      channel.state = ChannelState.IDLE;
+   }
+
+   private static void copy(ByteBuffer source, int sourceOffset, ByteBuffer target, int targetOffset, int length)
+   {
+      for (int i = 0; i < length; i++)
+      {
+         target.put(targetOffset + i, source.get(sourceOffset + i));
+      }
+   }
+}
@@ -3,6 +3,9 @@ package us.ihmc.etherCAT.master;
 import us.ihmc.etherCAT.master.EtherCATStatusCallback.TRACE_EVENT;
 import us.ihmc.etherCAT.master.exception.SlavesNotConfiguredException;
 import us.ihmc.etherCAT.master.exception.SlavesOfflineException;
+import us.ihmc.etherCAT.master.pipeline.LightWeightPipelineTaskCost;
+import us.ihmc.etherCAT.master.statistics.LogLinearHistogram;
+import us.ihmc.soem.generated.ec_groupt;
 import us.ihmc.soem.generated.ec_slavet;
 import us.ihmc.soem.generated.ec_smt;
 import us.ihmc.soem.generated.ec_state;
@@ -12,12 +15,17 @@ import us.ihmc.soem.generated.soem;
 import us.ihmc.soem.generated.soemConstants;
 import us.ihmc.tools.nativelibraries.NativeLibraryLoader;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 
@@ -33,9 +41,26 @@ import java.util.List;
 public class Master implements MasterInterface
 {
    public static final long MAXIMUM_EXECUTION_JITTER_DEFAULT = 25000;
-   public static final boolean DISABLE_CA = true;
    public static int IOMAP_SIZE = 655360; // 640K ought to be enough for anybody. 
    
+   // Layout of the transaction buffer filled by soem.ecx_send_receive_processdata_groups and soem.ecx_receive_send_processdata_pipelined. Must match ihmc_pipelined_transactiont in ethercathelper.c
+   private static final int TRANSACTION_WKC_OFFSET = 0;
+   private static final int TRANSACTION_DC_TIME_OFFSET = 8;
+   private static final int TRANSACTION_SEND_TIMESTAMP_OFFSET = 16;
+   private static final int TRANSACTION_RECEIVE_TIMESTAMP_OFFSET = 24;
+   private static final int TRANSACTION_START_TIMESTAMP_OFFSET = 32;
+   private static final int TRANSACTION_END_TIMESTAMP_OFFSET = 40;
+   private static final int TRANSACTION_GROUP_WKC_OFFSET = 48;
+   private static final int TRANSACTION_BUFFER_SIZE = TRANSACTION_GROUP_WKC_OFFSET + soemConstants.IHMC_MAXGROUP * Integer.BYTES;
+   
+   // Layout of an entry in the offset buffer filled by soem.ecx_config_map_group_status. Must match ihmc_statusoffsett in ethercathelper.c
+   private static final int CYCLIC_STATUS_ALSTATUS_OFFSET = 0;
+   private static final int CYCLIC_STATUS_DCSYSDIFF_OFFSET = 4;
+   private static final int CYCLIC_STATUS_SIZE = 8;
+   
+   // Maximum number of register transaction batches waiting to be transferred with the process data
+   private static final int ACYCLIC_DATAGRAM_QUEUE_LENGTH = 16;
+   
    static
    {
       NativeLibraryLoader.loadLibrary("us.ihmc.soem.generated", "soemJava");
@@ -49,12 +74,44 @@ public class Master implements MasterInterface
    private final ArrayList<Slave> registeredSlaves = new ArrayList<>();
    private final String iface;
    
+   // Result of the Complete Access probe, by vendor, product code and revision
+   private final HashMap<SlaveIdentity, Boolean> completeAccessSupport = new HashMap<>();
+   
    private ecx_context context = null;
    private ecx_portt port = null;
    private Slave[] slaveMap;
    
    private ByteBuffer ioMap;
    
+   private final ProcessDataGroup defaultProcessDataGroup = new ProcessDataGroup("default", 1);
+   private final ArrayList<ProcessDataGroup> processDataGroups = new ArrayList<>();
+   private ProcessDataGroup[] mappedProcessDataGroups = new ProcessDataGroup[0];
+   private long cycleCounter = 0;
+   private int processImageSize = 0;
+   
+   private int processImageRingSlots = 0;
+   private volatile ProcessImageRing processImageRing = null;
+   
+   private File flightRecorderFile = null;
+   private int flightRecorderSlots = 0;
+   private volatile FlightRecorder flightRecorder = null;
+   
+   private File busConfigurationCacheFile = null;
+   private BusConfigurationCache busConfiguration = null;
+   private BusConfigurationCache verifiedBusConfiguration = null;
+   private boolean warmStart = false;
+   private boolean completeAccessEnabled = true;
+   private long initTime = 0;
+   
+   private boolean pipelinedProcessData = false;
+   private final ByteBuffer transactionBuffer = ByteBuffer.allocateDirect(TRANSACTION_BUFFER_SIZE);
+   private long pipelinedGroupMask = 0;
+   private long pipelinedSendTimestamp = 0;
+   
+   private boolean cyclicSlaveStatus = false;
+   
+   private final AcyclicDatagramQueue acyclicDatagramQueue = new AcyclicDatagramQueue(ACYCLIC_DATAGRAM_QUEUE_LENGTH);
+   
    private boolean enableDC = false;
    private long cycleTimeInNs = -1;
    
@@ -62,12 +119,25 @@ public class Master implements MasterInterface
    
    private int expectedWorkingCounter = 0;
    private volatile int actualWorkingCounter = 0;
+   private boolean workingCounterValidInLastCycle = true;
+   
+   // Events signaled by the realtime thread to the householder, see EtherCATStateMachine.EVENT_*
+   private final AtomicInteger stateControlEvents = new AtomicInteger();
+   
+   private long transactionDCTime = 0;
+   private long transactionSendTimestamp = 0;
+   private long transactionReceiveTimestamp = 0;
+   private long transactionDuration = 0;
+   
+   private long inputFrameSendTimestamp = 0;
+   private long outputLatency = 0;
    
    private long maximumExecutionJitter = MAXIMUM_EXECUTION_JITTER_DEFAULT;
    private long previousArrivalTime = 0;
    
    private volatile long jitterSamples = 0;
    private volatile long jitterEstimate = 0;
+   private final LogLinearHistogram jitterHistogram = new LogLinearHistogram("Jitter");
    
    private int ethercatReceiveTimeout = soemConstants.EC_TIMEOUTRET;
    
@@ -93,6 +163,9 @@ public class Master implements MasterInterface
       
       this.iface = iface;
       initialized = true;
+      
+      processDataGroups.add(defaultProcessDataGroup);
+      transactionBuffer.order(ByteOrder.nativeOrder()); // Filled by native code
    }
    
    private Slave getSlave(int alias, int position) throws IOException
@@ -188,6 +261,209 @@ public class Master implements MasterInterface
    }
    
    
+   /**
+    * Enable pipelined (overlapped) process data. Call before init().
+    * 
+    * In pipelined mode, sendAndReceive() first collects the frame sent in the previous cycle and then immediately sends 
+    * the frame for this cycle, without waiting for it to return. The round trip time of the frame is no longer on the 
+    * critical path of the control cycle, which allows higher cycle rates on long lines.
+    * 
+    * The process data is mapped with SOEM's overlapped IO map, so receiving the inputs does not overwrite the outputs 
+    * that are being written by the controller.
+    * 
+    * The trade-off is an extra cycle of latency. The inputs available to the controller are from the frame sent in the 
+    * previous cycle, and its outputs are sent at the start of the next cycle. See getOutputLatency() and getOutputLatencyCycles().
+    * 
+    * doSecondaryTransfer() is not supported in pipelined mode. 
+    */
+   public void enablePipelinedProcessData()
+   {
+      if(context != null)
+      {
+         throw new RuntimeException("Cannot enable pipelined process data after initializing the master");
+      }
+      pipelinedProcessData = true;
+   }
+   
+   /**
+    * Map the AL status and DC system time difference registers of every slave into the cyclic process data. Call before init().
+    * 
+    * Extra FMMUs are programmed to map the ESC registers behind the inputs of each process data group, so they are read by 
+    * the cyclic LRW without extra frames. Slave.getState() and Slave.getALStatusCode() are then updated every cycle instead 
+    * of when the householder thread gets around to reading the state, and the DC stability check reads the time difference 
+    * from the process data.
+    * 
+    * Slaves without a free FMMU keep reading their state acyclically, see Slave.hasCyclicStatus(). A slave that drops off 
+    * the bus is detected by the householder thread, as the process data cannot tell a missing slave from a stale value.
+    */
+   public void enableCyclicSlaveStatus()
+   {
+      if(context != null)
+      {
+         throw new RuntimeException("Cannot enable cyclic slave status after initializing the master");
+      }
+      cyclicSlaveStatus = true;
+   }
+   
+   /**
+    * 
+    * @return true if pipelined process data is enabled
+    */
+   public boolean isPipelinedProcessData()
+   {
+      return pipelinedProcessData;
+   }
+   
+   /**
+    * Enable the process image ring. Call before init().
+    * 
+    * Every call to publishProcessImage() copies the process image and cycle metadata into the ring, where it can be read 
+    * by a single non-realtime consumer without racing with the realtime thread. EtherCATRealtimeThread publishes 
+    * at the end of every cycle.
+    * 
+    * @param slots Number of snapshots in the ring, rounded up to a power of two
+    */
+   public void enableProcessImageRing(int slots)
+   {
+      if(context != null)
+      {
+         throw new RuntimeException("Cannot enable the process image ring after initializing the master");
+      }
+      if(slots < 1)
+      {
+         throw new IllegalArgumentException("The process image ring needs at least one slot");
+      }
+      processImageRingSlots = slots;
+   }
+   
+   /**
+    * 
+    * @return the process image ring, or null if it is not enabled or the master is not initialized
+    */
+   public ProcessImageRing getProcessImageRing()
+   {
+      return processImageRing;
+   }
+   
+   /**
+    * 
+    * @return number of bytes of the IO map used by the process data of all groups
+    */
+   public int getProcessImageSize()
+   {
+      return processImageSize;
+   }
+   
+   /**
+    * Enable the flight recorder. Call before init().
+    * 
+    * Every call to publishProcessImage() copies the process image and cycle metadata into a memory mapped ring file, 
+    * keeping the last slots cycles. The file survives a crash of the JVM and can be decoded offline with FlightRecorderReader.
+    * 
+    * @param file File to record to. An existing file is overwritten
+    * @param slots Number of cycles to keep, at least 2
+    */
+   public void enableFlightRecorder(File file, int slots)
+   {
+      if(context != null)
+      {
+         throw new RuntimeException("Cannot enable the flight recorder after initializing the master");
+      }
+      if(slots < 2)
+      {
+         throw new IllegalArgumentException("The flight recorder needs at least two slots");
+      }
+      flightRecorderFile = file;
+      flightRecorderSlots = slots;
+   }
+   
+   /**
+    * 
+    * @return the flight recorder, or null if it is not enabled or the master is not initialized
+    */
+   public FlightRecorder getFlightRecorder()
+   {
+      return flightRecorder;
+   }
+   
+   /**
+    * Enable the bus configuration cache. Call before init().
+    * 
+    * After a successful init(), a fingerprint of the bus is stored in the file and a random token is written to the user RAM
+    * (0x0F80 - 0x0F87) of every slave. On the next init(), the fingerprint and the tokens are verified. If no slave has been
+    * replaced, moved or power cycled, the Complete Access probe and the PDO assignment of the sync managers are skipped.
+    * 
+    * Do not use if the PDO assignment of the slaves is changed by other tools between runs of the master.
+    * 
+    * @param file File to store the cache in. Created if it does not exist
+    */
+   public void setBusConfigurationCache(File file)
+   {
+      if(context != null)
+      {
+         throw new RuntimeException("Cannot enable the bus configuration cache after initializing the master");
+      }
+      busConfigurationCacheFile = file;
+   }
+   
+   /**
+    * Enable or disable Complete Access SDO transfers for all slaves. Enabled by default. Slaves that do not support Complete Access
+    * always use normal SDO transfers.
+    * 
+    * Call before init()
+    * 
+    * @param enabled false to use normal SDO transfers for all slaves
+    */
+   public void setCompleteAccessEnabled(boolean enabled)
+   {
+      if(context != null)
+      {
+         throw new RuntimeException("Cannot change Complete Access after initializing the master");
+      }
+      completeAccessEnabled = enabled;
+   }
+   
+   /**
+    * 
+    * @return true if init() verified the bus configuration cache, and the PDO assignments of the previous run were reused
+    */
+   public boolean isWarmStart()
+   {
+      return warmStart;
+   }
+   
+   /**
+    * Use with isWarmStart() to measure the time saved by the bus configuration cache. The time of each phase is reported 
+    * with EtherCATStatusCallback.notifyInitTime().
+    * 
+    * @return the time init() took in ns, or 0 if init() has not completed
+    */
+   public long getInitTime()
+   {
+      return initTime;
+   }
+   
+   /**
+    * Copy the process image and the metadata of the current cycle into the process image ring and the flight recorder. 
+    * 
+    * Call from the realtime thread at the end of the cycle, after the outputs are written. Does nothing if neither is enabled.
+    * 
+    * @return false if the ring is full and the snapshot is dropped
+    */
+   public boolean publishProcessImage()
+   {
+      if(flightRecorder != null)
+      {
+         flightRecorder.write(cycleCounter - 1, transactionDCTime, transactionReceiveTimestamp, actualWorkingCounter, expectedWorkingCounter);
+      }
+      
+      if(processImageRing == null)
+      {
+         return true;
+      }
+      return processImageRing.write(cycleCounter - 1, transactionDCTime, transactionReceiveTimestamp, actualWorkingCounter, expectedWorkingCounter);
+   }
+   
    /**
     * Set if all slaves on the EtherCAT bus are required to be configured and all slaves are to be present. 
     * 
@@ -232,6 +508,178 @@ public class Master implements MasterInterface
       return size;
    }
    
+   /**
+    * Enable Complete Access for a slave in PRE_OP if it claims support in the SII and answers a Complete Access read correctly.
+    * 
+    * The probe is done once for each combination of vendor, product code and revision, or skipped if the result is in the bus 
+    * configuration cache.
+    * 
+    * @param slave
+    * @param ec_slave
+    * @param slaveIndex
+    */
+   private void configureCompleteAccess(Slave slave, ec_slavet ec_slave, int slaveIndex)
+   {
+      short config = ec_slave.getCoEdetails();
+      if((config & soemConstants.ECT_COEDET_SDOCA) == 0)
+      {
+         return;
+      }
+      
+      boolean supported = false;
+      if(completeAccessEnabled && slave.supportsCA())
+      {
+         SlaveIdentity identity = new SlaveIdentity(ec_slave.getEep_man(), ec_slave.getEep_id(), ec_slave.getEep_rev());
+         Boolean probed = completeAccessSupport.get(identity);
+         if(probed == null)
+         {
+            probed = soem.ecx_SDO_probe_ca(context, slaveIndex, soemConstants.EC_TIMEOUTRXM) > 0;
+            completeAccessSupport.put(identity, probed);
+            getEtherCATStatusCallback().notifyCompleteAccessProbe(slave, probed);
+         }
+         supported = probed;
+      }
+      
+      if(!supported)
+      {
+         config &= ~soemConstants.ECT_COEDET_SDOCA;
+         ec_slave.setCoEdetails(config);
+      }
+   }
+   
+   /**
+    * Compare the bus with the bus configuration cache and read the token of every slave. 
+    * 
+    * The tokens are cleared in the same batch, if init() does not complete the next run starts cold.
+    * 
+    * @param current Fingerprint of the bus
+    * @return the cache if it matches the bus and no slave has been power cycled, null otherwise
+    */
+   private BusConfigurationCache verifyBusConfigurationCache(BusConfigurationCache current)
+   {
+      int slavecount = current.getNumberOfSlaves();
+      RegisterTransactionBatch batch = new RegisterTransactionBatch(this, 2 * slavecount, 2 * slavecount * BusConfigurationCache.TOKEN_LENGTH);
+      ByteBuffer clear = ByteBuffer.allocate(BusConfigurationCache.TOKEN_LENGTH);
+      for(int i = 0; i < slavecount; i++)
+      {
+         int configuredAddress = soem.ecx_slave(context, i + 1).getConfigadr();
+         batch.addFPRD(configuredAddress, BusConfigurationCache.ECT_REG_USER_RAM, BusConfigurationCache.TOKEN_LENGTH);
+         batch.addFPWR(configuredAddress, BusConfigurationCache.ECT_REG_USER_RAM, clear);
+      }
+      batch.execute();
+      
+      if(!busConfigurationCacheFile.exists())
+      {
+         getEtherCATStatusCallback().notifyBusConfigurationCacheMismatch("No bus configuration cache found");
+         return null;
+      }
+      
+      BusConfigurationCache cached;
+      try
+      {
+         cached = BusConfigurationCache.read(busConfigurationCacheFile);
+      }
+      catch (IOException e)
+      {
+         getEtherCATStatusCallback().notifyBusConfigurationCacheError(e);
+         return null;
+      }
+      
+      String mismatch = cached.compareFingerprint(current);
+      if(mismatch != null)
+      {
+         getEtherCATStatusCallback().notifyBusConfigurationCacheMismatch(mismatch);
+         return null;
+      }
+      
+      // Complete Access support does not change when a slave is power cycled
+      for(int i = 0; i < slavecount; i++)
+      {
+         Boolean completeAccess = cached.getCompleteAccess(i + 1);
+         if(completeAccess != null)
+         {
+            ec_slavet ec_slave = soem.ecx_slave(context, i + 1);
+            completeAccessSupport.putIfAbsent(new SlaveIdentity(ec_slave.getEep_man(), ec_slave.getEep_id(), ec_slave.getEep_rev()), completeAccess);
+         }
+      }
+      
+      for(int i = 0; i < slavecount; i++)
+      {
+         int operation = 2 * i;
+         long token = (batch.getInt(operation, 0) & 0xFFFFFFFFL) | ((long) batch.getInt(operation, 4) << 32);
+         if(batch.getWorkingCounter(operation) != 1 || cached.getToken() == 0 || token != cached.getToken())
+         {
+            getEtherCATStatusCallback().notifyBusConfigurationCacheMismatch("Slave " + (i + 1) + " has been power cycled");
+            return null;
+         }
+      }
+      
+      return cached;
+   }
+   
+   /**
+    * Record the applied configuration in the bus configuration cache, write a new token to every slave and store the cache.
+    */
+   private void saveBusConfigurationCache()
+   {
+      for(int i = 0; i < slaveMap.length; i++)
+      {
+         ec_slavet ec_slave = slaveMap[i].getSlaveStructure();
+         busConfiguration.setCompleteAccess(i + 1, completeAccessSupport.get(new SlaveIdentity(ec_slave.getEep_man(), ec_slave.getEep_id(), ec_slave.getEep_rev())));
+         slaveMap[i].recordConfiguration(busConfiguration);
+      }
+      
+      if(verifiedBusConfiguration != null)
+      {
+         String change = verifiedBusConfiguration.compareProcessDataLayout(busConfiguration);
+         if(change != null)
+         {
+            getEtherCATStatusCallback().notifyProcessDataLayoutChanged(change);
+         }
+      }
+      
+      // The user RAM is undefined after power-up. A random, non-zero 64 bit token makes an accidental match negligible, do not
+      // replace it with a counter or a constant. Zero is excluded because it is the cleared value and marks a missing token
+      long token = 0;
+      while(token == 0)
+      {
+         token = ThreadLocalRandom.current().nextLong();
+      }
+      
+      ByteBuffer value = ByteBuffer.allocate(BusConfigurationCache.TOKEN_LENGTH);
+      value.order(ByteOrder.LITTLE_ENDIAN);
+      value.putLong(0, token);
+      RegisterTransactionBatch batch = new RegisterTransactionBatch(this, slaveMap.length, slaveMap.length * BusConfigurationCache.TOKEN_LENGTH);
+      for(int i = 0; i < slaveMap.length; i++)
+      {
+         batch.addFPWR(slaveMap[i], BusConfigurationCache.ECT_REG_USER_RAM, value);
+      }
+      batch.execute();
+      
+      busConfiguration.setToken(token);
+      try
+      {
+         busConfiguration.write(busConfigurationCacheFile);
+      }
+      catch (IOException e)
+      {
+         getEtherCATStatusCallback().notifyBusConfigurationCacheError(e);
+      }
+   }
+   
+   /**
+    * Internal function. 
+    * 
+    * @param slave
+    * @param syncManager Index of the sync manager
+    * @param pdos Addresses of the PDOs to assign
+    * @return true if the bus configuration cache is verified and the PDOs are assigned to the sync manager in the previous run
+    */
+   boolean isPDOAssignmentCached(Slave slave, int syncManager, int[] pdos)
+   {
+      return verifiedBusConfiguration != null && verifiedBusConfiguration.hasPDOAssignment(slave.getSlaveIndex(), syncManager, pdos);
+   }
+   
    /**
     * Initialize the master, configure all registeredSlaves registered with registerSlave() 
     *
@@ -252,6 +700,7 @@ public class Master implements MasterInterface
       {
          throw new RuntimeException("Master is already initialized. Only call master.init() once");
       }
+      long initStartTime = System.nanoTime();
 
       getEtherCATStatusCallback().trace(TRACE_EVENT.FAST_IRQ);
       setupFastIRQ(iface);
@@ -310,6 +759,19 @@ public class Master implements MasterInterface
       {
          throw new IOException("Cannot transfer to PREOP state");
       }
+      long busScanEndTime = System.nanoTime();
+
+      if(busConfigurationCacheFile != null)
+      {
+         getEtherCATStatusCallback().trace(TRACE_EVENT.VERIFY_CONFIGURATION_CACHE);
+         busConfiguration = new BusConfigurationCache(slavecount);
+         for(int i = 0; i < slavecount; i++)
+         {
+            busConfiguration.setFingerprint(i + 1, BusConfigurationCache.fingerprint(soem.ecx_slave(context, i + 1)));
+         }
+         verifiedBusConfiguration = verifyBusConfigurationCache(busConfiguration);
+         warmStart = verifiedBusConfiguration != null;
+      }
 
       List<Slave> offlineSlaves = new ArrayList<>();
       List<Slave> unconfiguredSlaves = new ArrayList<>();
@@ -317,6 +779,9 @@ public class Master implements MasterInterface
       slaveMap = new Slave[slavecount];
       int processDataSize = 0;
       
+      // Mailbox configuration of all slaves runs concurrently after the slaves are identified
+      MailboxEngine mailboxEngine = new MailboxEngine(this);
+      
       int previousAlias = 0;
       int previousPosition = -1;
       for(int i = 0; i < slavecount; i++)
@@ -345,31 +810,36 @@ public class Master implements MasterInterface
                throw new IOException("Invalid slave configuration for slave " + slave.getAliasAddress() + ":" + slave.getPosition() + ". Invalid vendor and/or product code");
             }
             
-            slave.configure(this, context, port, ec_slave, i + 1, enableDC, cycleTimeInNs);
+            // Decide on Complete Access before the slave sends its SDO configuration
+            configureCompleteAccess(slave, ec_slave, i + 1);
+            slave.configure(this, context, port, ec_slave, i + 1, enableDC, cycleTimeInNs, mailboxEngine);
             slaveMap[i] = slave;
          }
          else
          {
             slave = new UnconfiguredSlave(ec_slave.getName(), (int)ec_slave.getEep_man(), (int)ec_slave.getEep_id(), alias, position);
-            slave.configure(this, getContext(), port, ec_slave, i + 1, false, cycleTimeInNs);
+            configureCompleteAccess(slave, ec_slave, i + 1);
+            slave.configure(this, getContext(), port, ec_slave, i + 1, false, cycleTimeInNs, mailboxEngine);
             slaveMap[i] = slave;
             etherCATStatusCallback.notifyUnconfiguredSlave(slaveMap[i]);
             unconfiguredSlaves.add(slave);
+            registerSlaveInGroup(defaultProcessDataGroup, slave);
          }
          
-         // Disable Complete Access reading of SDO configuration.
-         if(!slave.supportsCA() || DISABLE_CA)
-         {
-            short config = ec_slave.getCoEdetails();
-            config &= ~soemConstants.ECT_COEDET_SDOCA;
-            ec_slave.setCoEdetails(config);
-         }
          processDataSize += getProcessDataSize(ec_slave);
          
          previousAlias = alias;
          previousPosition = position;
          
       }
+      
+      getEtherCATStatusCallback().trace(TRACE_EVENT.CONFIGURE_MAILBOXES);
+      mailboxEngine.run();
+      for(int i = 0; i < slavecount; i++)
+      {
+         slaveMap[i].finishConfiguration();
+      }
+      long slaveConfigurationEndTime = System.nanoTime();
 
       for(int i = 0; i < registeredSlaves.size(); i++)
       {
@@ -410,35 +880,73 @@ public class Master implements MasterInterface
       ioMap = ByteBuffer.allocateDirect(processDataSize);
       ioMap.order(ByteOrder.LITTLE_ENDIAN);
       
+      mapProcessDataGroups(processDataSize);
       
-      int ioBufferSize = soem.ecx_config_map_group(context, ioMap, (short)0);
-      if(ioBufferSize > processDataSize)
+      if(processImageRingSlots > 0)
       {
-         throw new IOException("Allocated insufficient memory for etherCAT I/O. Allocated " + processDataSize + ", required " + ioBufferSize + ". Set Master.IOMAP_SIZE to a large enough value.");
-      }      
+         processImageRing = new ProcessImageRing(processImageRingSlots, ioMap, processImageSize);
+      }
 
-      
       currentState = soem.ecx_statecheck(context, 0, ec_state.EC_STATE_SAFE_OP.swigValue(), soemConstants.EC_TIMEOUTSTATE);
       if (currentState != ec_state.EC_STATE_SAFE_OP.swigValue())
       {
          throw new IOException("Did not transfer to SAFEOP. Current State: " + ec_state.swigToEnum(currentState));
       }      
+      long processDataMappingEndTime = System.nanoTime();
        
       getEtherCATStatusCallback().trace(TRACE_EVENT.LINK_BUFFERS);
       
       for(int i = 0; i < slavecount; i++)
       {
          Slave slave = slaveMap[i];
-         slave.linkBuffers(ioMap);
+         slave.linkBuffers(slave.getProcessDataGroup().getIOMap());
       }
       
-      getEtherCATStatusCallback().trace(TRACE_EVENT.CONFIGURE_TXRX);
-      soem.ecx_send_processdata(context);
-      soem.ecx_receive_processdata(context, soemConstants.EC_TIMEOUTRET);
+      if(flightRecorderFile != null)
+      {
+         ArrayList<FlightRecorderEntry> layout = new ArrayList<>();
+         for(int i = 0; i < slavecount; i++)
+         {
+            slaveMap[i].describeProcessDataLayout(layout);
+         }
+         flightRecorder = new FlightRecorder(flightRecorderFile, flightRecorderSlots, ioMap, processImageSize, layout);
+      }
       
+      if(busConfigurationCacheFile != null)
+      {
+         getEtherCATStatusCallback().trace(TRACE_EVENT.SAVE_CONFIGURATION_CACHE);
+         saveBusConfigurationCache();
+         
+         // Reconfiguration of slaves after init() always writes the PDO assignment
+         busConfiguration = null;
+         verifiedBusConfiguration = null;
+      }
       
-      expectedWorkingCounter = context.getGrouplist().getOutputsWKC() * 2 + context.getGrouplist().getInputsWKC();
+      getEtherCATStatusCallback().trace(TRACE_EVENT.CONFIGURE_TXRX);
+      expectedWorkingCounter = 0;
+      for(int i = 0; i < mappedProcessDataGroups.length; i++)
+      {
+         ProcessDataGroup group = mappedProcessDataGroups[i];
+         sendProcessDataGroups(1L << group.getIndex());
+         soem.ecx_receive_processdata_acyclic(context, soemConstants.EC_TIMEOUTRET);
+         
+         ec_groupt ec_group = soem.ecx_group(context, group.getIndex());
+         group.setExpectedWorkingCounter(ec_group.getOutputsWKC() * 2 + ec_group.getInputsWKC());
+         expectedWorkingCounter += group.getExpectedWorkingCounter();
+      }
       getEtherCATStatusCallback().notifyExpectedWorkingCounter(expectedWorkingCounter);
+      
+      if(pipelinedProcessData)
+      {
+         // Fill the pipeline, the first call to sendAndReceive() collects these frames
+         pipelinedGroupMask = 0;
+         for(int i = 0; i < mappedProcessDataGroups.length; i++)
+         {
+            pipelinedGroupMask |= 1L << mappedProcessDataGroups[i].getIndex();
+         }
+         soem.ecx_send_processdata_pipelined(context, pipelinedGroupMask);
+         cycleCounter = 1;
+      }
             
       
       if(enableDC)
@@ -447,17 +955,112 @@ public class Master implements MasterInterface
       }
       etherCATStateMachine.setSubdevices(slaveMap);
       
+      initTime = System.nanoTime() - initStartTime;
+      getEtherCATStatusCallback().notifyInitTime(warmStart, busScanEndTime - initStartTime, slaveConfigurationEndTime - busScanEndTime,
+                                                 processDataMappingEndTime - slaveConfigurationEndTime, initTime);
       
       getEtherCATStatusCallback().trace(TRACE_EVENT.CONFIGURE_COMPLETE);
    }
    
    
-   private void showCoalesceWarning(String warning)
+   /**
+    * Internal function. Map every process data group with slaves into its own region of the IO map.
+    * 
+    * If all slaves are in the default group, SOEM group 0 is used. Otherwise, the groups are mapped to SOEM groups 1 and up. 
+    * 
+    * @param processDataSize size of the IO map
+    * @throws IOException if there are too many groups or the IO map is too small
+    */
+   private void mapProcessDataGroups(int processDataSize) throws IOException
    {
-      System.err.println("*******************************************************************************");
-      System.err.println("*");
-      System.err.println("*                             !! WARNING !!");
-      System.err.println("*");
+      ArrayList<ProcessDataGroup> groupsToMap = new ArrayList<>();
+      for(int i = 0; i < processDataGroups.size(); i++)
+      {
+         if(processDataGroups.get(i).hasConfiguredSlaves())
+         {
+            groupsToMap.add(processDataGroups.get(i));
+         }
+      }
+      
+      if(groupsToMap.size() >= soemConstants.IHMC_MAXGROUP)
+      {
+         throw new IOException("Cannot map " + groupsToMap.size() + " process data groups. A maximum of " + (soemConstants.IHMC_MAXGROUP - 1) + " groups is supported.");
+      }
+      
+      // Transfer the fastest groups first. The DC time and jitter estimate are taken from the first group in a cycle
+      groupsToMap.sort((a, b) -> Integer.compare(a.getCycleDivisor(), b.getCycleDivisor()));
+      if(groupsToMap.isEmpty() || groupsToMap.get(0).getCycleDivisor() != 1)
+      {
+         throw new IOException("At least one process data group with slaves needs a cycle divisor of 1");
+      }
+      
+      for(int i = 0; i < groupsToMap.size(); i++)
+      {
+         groupsToMap.get(i).setIndex(groupsToMap.size() == 1 ? 0 : i + 1);
+      }
+      
+      for(int i = 0; i < slaveMap.length; i++)
+      {
+         soem.ecx_slave(context, i + 1).setGroup((short) slaveMap[i].getProcessDataGroup().getIndex());
+      }
+      
+      ByteBuffer cyclicStatusOffsets = null;
+      if(cyclicSlaveStatus)
+      {
+         cyclicStatusOffsets = ByteBuffer.allocateDirect((slaveMap.length + 1) * CYCLIC_STATUS_SIZE);
+         cyclicStatusOffsets.order(ByteOrder.nativeOrder()); // Filled by native code
+      }
+      
+      int ioMapOffset = 0;
+      for(int i = 0; i < groupsToMap.size(); i++)
+      {
+         ProcessDataGroup group = groupsToMap.get(i);
+         int index = group.getIndex();
+         
+         ioMap.clear();
+         ioMap.position(ioMapOffset);
+         ByteBuffer groupIOMap = ioMap.slice();
+         groupIOMap.order(ByteOrder.LITTLE_ENDIAN);
+         
+         int ioBufferSize = soem.ecx_config_map_group_dc(context, groupIOMap, (short) index, pipelinedProcessData ? 1 : 0);
+         if(cyclicSlaveStatus)
+         {
+            ioBufferSize = soem.ecx_config_map_group_status(context, groupIOMap, (short) index, pipelinedProcessData ? 1 : 0, cyclicStatusOffsets);
+         }
+         if(ioMapOffset + ioBufferSize > processDataSize)
+         {
+            throw new IOException("Allocated insufficient memory for etherCAT I/O. Allocated " + processDataSize + ", required at least " + (ioMapOffset + ioBufferSize) + ". Set Master.IOMAP_SIZE to a large enough value.");
+         }
+         
+         if(cyclicSlaveStatus)
+         {
+            for(int s = 0; s < slaveMap.length; s++)
+            {
+               if(slaveMap[s].getProcessDataGroup() == group)
+               {
+                  int entry = (s + 1) * CYCLIC_STATUS_SIZE;
+                  int alStatusOffset = cyclicStatusOffsets.getInt(entry + CYCLIC_STATUS_ALSTATUS_OFFSET);
+                  int dcSysDiffOffset = cyclicStatusOffsets.getInt(entry + CYCLIC_STATUS_DCSYSDIFF_OFFSET);
+                  slaveMap[s].setCyclicStatus(ioMap, alStatusOffset < 0 ? -1 : ioMapOffset + alStatusOffset, dcSysDiffOffset < 0 ? -1 : ioMapOffset + dcSysDiffOffset);
+               }
+            }
+         }
+         
+         group.setIOMap(groupIOMap, ioMapOffset);
+         ioMapOffset += ioBufferSize;
+      }
+      ioMap.clear();
+      processImageSize = ioMapOffset;
+      
+      mappedProcessDataGroups = groupsToMap.toArray(new ProcessDataGroup[groupsToMap.size()]);
+   }
+   
+   private void showCoalesceWarning(String warning)
+   {
+      System.err.println("*******************************************************************************");
+      System.err.println("*");
+      System.err.println("*                             !! WARNING !!");
+      System.err.println("*");
       System.err.println("* " + warning);
       System.err.println("*");
       System.err.println("*");
@@ -547,16 +1150,80 @@ public class Master implements MasterInterface
       
       getEtherCATStatusCallback().trace(TRACE_EVENT.STOP_HOUSEHOLDER);
       etherCATStateMachine.shutDown();
+      
+      if(flightRecorder != null)
+      {
+         try
+         {
+            flightRecorder.close();
+         }
+         catch (IOException e)
+         {
+            getEtherCATStatusCallback().notifyFlightRecorderError(e);
+         }
+      }
    }
    
    /**
     * Send process data. Blocking. 
     * 
-    * Call cyclically before receive().
+    * Call cyclically before receive(). Starts a new cycle and sends the process data groups that are due in this cycle.
+    * 
+    * Datagrams of register transaction batches submitted with RegisterTransactionBatch.submit() are appended to the
+    * process data frames when there is room. Their results are delivered by receive().
+    * 
+    * Note: When multiple process data groups are transferred, receive() only reports the combined working counter. Use
+    * sendAndReceive() to get a working counter for each group. 
     */
    public void send()
    {
-      soem.ecx_send_processdata(context);
+      acyclicDatagramQueue.beforeSend(context);
+      
+      long cycle = cycleCounter++;
+      long groupMask = 0;
+      int expectedWorkingCounter = 0;
+      for(int i = 0; i < mappedProcessDataGroups.length; i++)
+      {
+         ProcessDataGroup group = mappedProcessDataGroups[i];
+         if(group.isDue(cycle))
+         {
+            groupMask |= 1L << group.getIndex();
+            group.setTransactedInLastCycle(true);
+            expectedWorkingCounter += group.getExpectedWorkingCounter();
+         }
+         else
+         {
+            group.setTransactedInLastCycle(false);
+         }
+      }
+      this.expectedWorkingCounter = expectedWorkingCounter;
+      sendProcessDataGroups(groupMask);
+   }
+   
+   /**
+    * Send the process data of the groups that were transferred in the current cycle again. Does not start a new cycle.
+    * 
+    * Use with receiveSimple() to send multiple datagrams per control cycle.
+    */
+   public void sendSimple()
+   {
+      long groupMask = 0;
+      for(int i = 0; i < mappedProcessDataGroups.length; i++)
+      {
+         ProcessDataGroup group = mappedProcessDataGroups[i];
+         if(group.isTransactedInLastCycle())
+         {
+            groupMask |= 1L << group.getIndex();
+         }
+      }
+      sendProcessDataGroups(groupMask);
+   }
+   
+   private void sendProcessDataGroups(long groupMask)
+   {
+      // Appends the datagrams of the active acyclic batch to the process data frames of all groups in the mask. An
+      // operation is only failed when it fits behind none of them.
+      soem.ecx_send_processdata_groups_acyclic(context, groupMask, pipelinedProcessData ? 1 : 0);
    }
    
    /**
@@ -577,44 +1244,312 @@ public class Master implements MasterInterface
     */
    public int receive()
    {
-      int wkc = soem.ecx_receive_processdata(context, ethercatReceiveTimeout);
+      int wkc = receiveSimple();
       
       if(wkc == soem.EC_NOFRAME)
       {
+         signalStateControlEvent(EtherCATStateMachine.EVENT_FRAME_LOST);
          return wkc;
       }
       else
       {         
-         if(enableDC)
+         int transactedGroups = 0;
+         for(int i = 0; i < mappedProcessDataGroups.length; i++)
          {
-            // Calculate jitter using RFC 1889
-            long arrivalTime = getDCTime();
-            if(previousArrivalTime != 0)
+            if(mappedProcessDataGroups[i].isTransactedInLastCycle())
             {
-               long D = (arrivalTime - previousArrivalTime) - (cycleTimeInNs);
-               if(D < 0) D = -D;
-               
-               long jitterEstimate = this.jitterEstimate; // Localize volatile variable         
-               jitterEstimate += (D - jitterEstimate)/16;
-               this.jitterEstimate = jitterEstimate;
-               ++this.jitterSamples;
+               transactedGroups++;
             }
-            
-            previousArrivalTime = arrivalTime;
          }
          
-         this.actualWorkingCounter = wkc;
-         
-
-         for(int i = 0; i < slaveMap.length; i++)
+         for(int i = 0; i < mappedProcessDataGroups.length; i++)
          {
-            slaveMap[i].updateStateVariables();
+            ProcessDataGroup group = mappedProcessDataGroups[i];
+            if(group.isTransactedInLastCycle())
+            {
+               if(transactedGroups == 1)
+               {
+                  group.setReceivedWorkingCounter(wkc);
+               }
+               else
+               {
+                  // The combined working counter cannot be attributed to a single group 
+                  group.setReceivedWorkingCounter(wkc == expectedWorkingCounter ? group.getExpectedWorkingCounter() : -1);
+               }
+            }
          }
          
+         transactionDCTime = getDCTime();
+         updateAfterReceive(wkc);
          return wkc;
       }
    }
    
+   /**
+    * Send and receive the process data in a single native call.
+    * 
+    * Starts a new cycle and transfers all process data groups that are due in this cycle. The frames of all groups are sent 
+    * before the first one is received, so the cycle takes a single round trip on the wire. This is equivalent to calling send(), 
+    * receive() and getDCTime() in sequence, but only crosses the JNI boundary once and reports a working counter for each group. 
+    * 
+    * The DC time and the monotonic clock timestamps taken around the transaction are available from 
+    * getTransactionDCTime(), getTransactionSendTimestamp() and getTransactionReceiveTimestamp(). 
+    * 
+    * Check resulting value with master.getExpectedWorkingCounter(), or for each group with ProcessDataGroup.isWorkingCounterValid()
+    * 
+    * @return combined working counter of all groups transferred in this cycle or soem.EC_NOFRAME (-1) if no datagram has been received
+    */
+   public int sendAndReceive()
+   {
+      if(pipelinedProcessData)
+      {
+         return sendAndReceivePipelined();
+      }
+      
+      long cycle = cycleCounter++;
+      
+      long groupMask = 0;
+      int expectedWorkingCounter = 0;
+      for(int i = 0; i < mappedProcessDataGroups.length; i++)
+      {
+         ProcessDataGroup group = mappedProcessDataGroups[i];
+         if(group.isDue(cycle))
+         {
+            groupMask |= 1L << group.getIndex();
+            group.setTransactedInLastCycle(true);
+            expectedWorkingCounter += group.getExpectedWorkingCounter();
+         }
+         else
+         {
+            group.setTransactedInLastCycle(false);
+         }
+      }
+      this.expectedWorkingCounter = expectedWorkingCounter;
+      
+      acyclicDatagramQueue.beforeSend(context);
+      int wkc = soem.ecx_send_receive_processdata_groups(context, ethercatReceiveTimeout, transactionBuffer, groupMask);
+      acyclicDatagramQueue.afterReceive(context);
+      
+      transactionSendTimestamp = transactionBuffer.getLong(TRANSACTION_SEND_TIMESTAMP_OFFSET);
+      transactionReceiveTimestamp = transactionBuffer.getLong(TRANSACTION_RECEIVE_TIMESTAMP_OFFSET);
+      transactionDuration = transactionReceiveTimestamp - transactionSendTimestamp;
+      
+      for(int i = 0; i < mappedProcessDataGroups.length; i++)
+      {
+         ProcessDataGroup group = mappedProcessDataGroups[i];
+         if(group.isTransactedInLastCycle())
+         {
+            group.setReceivedWorkingCounter(transactionBuffer.getInt(TRANSACTION_GROUP_WKC_OFFSET + group.getIndex() * Integer.BYTES));
+         }
+      }
+      
+      if(wkc == soem.EC_NOFRAME)
+      {
+         signalStateControlEvent(EtherCATStateMachine.EVENT_FRAME_LOST);
+         return wkc;
+      }
+      else
+      {
+         // The controller gets the inputs from the frame that was just sent. The DC time is taken from the first frame that carries it
+         transactionDCTime = transactionBuffer.getLong(TRANSACTION_DC_TIME_OFFSET);
+         updateOutputLatency(transactionSendTimestamp);
+         updateAfterReceive(wkc);
+         return wkc;
+      }
+   }
+   
+   /**
+    * Internal function. Collect the frames sent in the previous cycle and send the frames for this cycle in a single native call.
+    * 
+    * @return combined working counter of all groups received in this cycle or soem.EC_NOFRAME (-1) if no datagram has been received
+    */
+   private int sendAndReceivePipelined()
+   {
+      long cycle = cycleCounter++;
+      
+      long receivedGroupMask = pipelinedGroupMask;
+      pipelinedGroupMask = 0;
+      for(int i = 0; i < mappedProcessDataGroups.length; i++)
+      {
+         ProcessDataGroup group = mappedProcessDataGroups[i];
+         if(group.isDue(cycle))
+         {
+            pipelinedGroupMask |= 1L << group.getIndex();
+         }
+      }
+      
+      acyclicDatagramQueue.beforeSend(context);
+      soem.ecx_receive_send_processdata_pipelined(context, ethercatReceiveTimeout, transactionBuffer, pipelinedGroupMask);
+      acyclicDatagramQueue.afterReceive(context);
+      
+      int wkc = transactionBuffer.getInt(TRANSACTION_WKC_OFFSET);
+      transactionSendTimestamp = transactionBuffer.getLong(TRANSACTION_SEND_TIMESTAMP_OFFSET);
+      transactionReceiveTimestamp = transactionBuffer.getLong(TRANSACTION_RECEIVE_TIMESTAMP_OFFSET);
+      transactionDuration = transactionBuffer.getLong(TRANSACTION_END_TIMESTAMP_OFFSET) - transactionBuffer.getLong(TRANSACTION_START_TIMESTAMP_OFFSET);
+      
+      // Report the groups that were received in this cycle 
+      int expectedWorkingCounter = 0;
+      for(int i = 0; i < mappedProcessDataGroups.length; i++)
+      {
+         ProcessDataGroup group = mappedProcessDataGroups[i];
+         if((receivedGroupMask & (1L << group.getIndex())) != 0)
+         {
+            group.setTransactedInLastCycle(true);
+            group.setReceivedWorkingCounter(transactionBuffer.getInt(TRANSACTION_GROUP_WKC_OFFSET + group.getIndex() * Integer.BYTES));
+            expectedWorkingCounter += group.getExpectedWorkingCounter();
+         }
+         else
+         {
+            group.setTransactedInLastCycle(false);
+         }
+      }
+      this.expectedWorkingCounter = expectedWorkingCounter;
+      
+      long receivedFrameSendTimestamp = pipelinedSendTimestamp;
+      pipelinedSendTimestamp = transactionSendTimestamp;
+      
+      if(wkc == soem.EC_NOFRAME)
+      {
+         signalStateControlEvent(EtherCATStateMachine.EVENT_FRAME_LOST);
+         return wkc;
+      }
+      else
+      {
+         // The controller gets the inputs from the frame sent in the previous cycle
+         updateOutputLatency(receivedFrameSendTimestamp);
+         transactionDCTime = transactionBuffer.getLong(TRANSACTION_DC_TIME_OFFSET);
+         updateAfterReceive(wkc);
+         return wkc;
+      }
+   }
+   
+   /**
+    * Internal function. Update the output latency after receiving new inputs for the controller.
+    * 
+    * The outputs sent in this cycle are calculated by the controller in the previous cycle, based on the inputs it had available then. 
+    * 
+    * @param inputFrameSendTimestamp Monotonic time the frame with the inputs for the controller was sent
+    */
+   private void updateOutputLatency(long inputFrameSendTimestamp)
+   {
+      if(this.inputFrameSendTimestamp != 0)
+      {
+         outputLatency = transactionSendTimestamp - this.inputFrameSendTimestamp;
+      }
+      this.inputFrameSendTimestamp = inputFrameSendTimestamp;
+   }
+   
+   /**
+    * Internal function. Update the jitter estimate, working counter and slave state after a datagram has been received.
+    * 
+    * @param wkc working counter of the received datagram
+    */
+   private void updateAfterReceive(int wkc)
+   {
+      if(enableDC)
+      {
+         // Calculate jitter using RFC 1889
+         long arrivalTime = transactionDCTime;
+         if(previousArrivalTime != 0)
+         {
+            long D = (arrivalTime - previousArrivalTime) - (cycleTimeInNs);
+            if(D < 0) D = -D;
+            jitterHistogram.record(D);
+            
+            long jitterEstimate = this.jitterEstimate; // Localize volatile variable         
+            jitterEstimate += (D - jitterEstimate)/16;
+            this.jitterEstimate = jitterEstimate;
+            ++this.jitterSamples;
+         }
+         
+         previousArrivalTime = arrivalTime;
+      }
+      
+      this.actualWorkingCounter = wkc;
+      
+      // Wake up the householder for the slaves in groups that lost their working counter
+      boolean workingCounterValid = wkc == expectedWorkingCounter;
+      if(workingCounterValidInLastCycle && !workingCounterValid)
+      {
+         signalStateControlEvent(EtherCATStateMachine.EVENT_WORKING_COUNTER);
+      }
+      workingCounterValidInLastCycle = workingCounterValid;
+      
+      for(int i = 0; i < mappedProcessDataGroups.length; i++)
+      {
+         ProcessDataGroup group = mappedProcessDataGroups[i];
+         if(group.isTransactedInLastCycle() && group.updateWorkingCounterValidity())
+         {
+            group.requestStateControlAttention();
+            signalStateControlEvent(EtherCATStateMachine.EVENT_WORKING_COUNTER);
+         }
+      }
+
+      for(int i = 0; i < slaveMap.length; i++)
+      {
+         Slave slave = slaveMap[i];
+         if(slave.hasCyclicStatus())
+         {
+            Slave.State previousState = slave.getState();
+            int previousALStatusCode = slave.getALStatusCode();
+            slave.updateStateVariables();
+            
+            if(slave.getState() != previousState || slave.getALStatusCode() != previousALStatusCode)
+            {
+               slave.requestStateControlAttention();
+               signalStateControlEvent(EtherCATStateMachine.EVENT_AL_STATUS);
+            }
+         }
+         else
+         {
+            slave.updateStateVariables();
+         }
+      }
+   }
+   
+   /**
+    * Internal function. Signal an event to the householder. Does not block and does not allocate.
+    * 
+    * @param event one or more of EtherCATStateMachine.EVENT_*
+    */
+   void signalStateControlEvent(int event)
+   {
+      int events;
+      do
+      {
+         events = stateControlEvents.get();
+         if((events & event) == event)
+         {
+            // Already signaled, avoid writing to the shared cache line
+            return;
+         }
+      }
+      while(!stateControlEvents.compareAndSet(events, events | event));
+   }
+   
+   /**
+    * Internal function. Get and clear the events signaled by the realtime thread since the last call.
+    * 
+    * @return bitmask of EtherCATStateMachine.EVENT_*
+    */
+   int takeStateControlEvents()
+   {
+      return stateControlEvents.get() == 0 ? 0 : stateControlEvents.getAndSet(0);
+   }
+   
+   /**
+    * Check if the state control has nothing to do. 
+    * 
+    * The state control is idle if all slaves were in OP with a valid working counter and no state control task ran in the last call to 
+    * doEtherCATStateControl(), and the realtime thread has not signaled an event since. 
+    * 
+    * @return true if there is no need to call doEtherCATStateControl() until the next event
+    */
+   public boolean isStateControlIdle()
+   {
+      return etherCATStateMachine.isIdle() && stateControlEvents.get() == 0;
+   }
+   
    /**
     * Receive process data. Do not calculate jitter.
     * 
@@ -624,12 +1559,33 @@ public class Master implements MasterInterface
     */
    public int receiveSimple()
    {
-      int wkc = soem.ecx_receive_processdata(context, ethercatReceiveTimeout);
+      // Receives all outstanding frames, independent of the group, and delivers the results of the acyclic datagrams
+      int wkc = soem.ecx_receive_processdata_acyclic(context, ethercatReceiveTimeout);
+      acyclicDatagramQueue.afterReceive(context);
       return wkc;
    }
    
    /**
-    * Get the expected working counter from the master
+    * Check if the working counter of the process data group of a slave is valid
+    * 
+    * @param slave
+    * @return true if the last transfer of the process data group of the slave had the expected working counter
+    */
+   public boolean isWorkingCounterValid(Slave slave)
+   {
+      ProcessDataGroup group = slave.getProcessDataGroup();
+      if(group == null || group.getIndex() < 0)
+      {
+         return getActualWorkingCounter() == getExpectedWorkingCounter();
+      }
+      else
+      {
+         return group.isWorkingCounterValid();
+      }
+   }
+   
+   /**
+    * Get the expected working counter from the master for the process data groups transferred in the last cycle
     */
    public int getExpectedWorkingCounter()
    {
@@ -637,7 +1593,7 @@ public class Master implements MasterInterface
    }
    
    /**
-    * Internal function. Get the actual working counter
+    * Internal function. Get the actual combined working counter of the process data groups transferred in the last cycle
     */
    public int getActualWorkingCounter()
    {
@@ -652,7 +1608,79 @@ public class Master implements MasterInterface
     */
    public void registerSlave(Slave slave)
    {
+      registerSlave(defaultProcessDataGroup, slave);
+   }
+   
+   /**
+    * Register a slave in a process data group.
+    * 
+    * The slave will be setup for cyclical operation when the master initializes. Call before init().
+    * 
+    * @param group Process data group created with createProcessDataGroup()
+    * @param slave
+    */
+   public void registerSlave(ProcessDataGroup group, Slave slave)
+   {
+      if(!processDataGroups.contains(group))
+      {
+         throw new RuntimeException("Process data group " + group.getName() + " is not created by this master");
+      }
+      
       registeredSlaves.add(slave);
+      registerSlaveInGroup(group, slave);
+   }
+   
+   private void registerSlaveInGroup(ProcessDataGroup group, Slave slave)
+   {
+      if(slave.getProcessDataGroup() != null)
+      {
+         throw new RuntimeException("Slave " + slave + " is already registered in process data group " + slave.getProcessDataGroup().getName());
+      }
+      
+      group.addSlave(slave);
+      slave.setProcessDataGroup(group);
+   }
+   
+   /**
+    * Create a new process data group. 
+    * 
+    * Each group gets its own region of the IO map, its own working counter and is transferred in separate frames. 
+    * Slaves that are not registered in a group are placed in the default group, which is transferred every cycle.
+    * 
+    * Call before init().
+    * 
+    * @param name Descriptive name of the group
+    * @param cycleDivisor Transfer the group every cycleDivisor cycles. At least one group with slaves needs a cycle divisor of 1.
+    * @return new process data group
+    */
+   public ProcessDataGroup createProcessDataGroup(String name, int cycleDivisor)
+   {
+      if(context != null)
+      {
+         throw new RuntimeException("Cannot create process data groups after initializing the master");
+      }
+      
+      ProcessDataGroup group = new ProcessDataGroup(name, cycleDivisor);
+      processDataGroups.add(group);
+      return group;
+   }
+   
+   /**
+    * 
+    * @return the process data group for slaves registered without a group
+    */
+   public ProcessDataGroup getDefaultProcessDataGroup()
+   {
+      return defaultProcessDataGroup;
+   }
+   
+   /**
+    * 
+    * @return unmodifiable list of all process data groups, including the default group
+    */
+   public List<ProcessDataGroup> getProcessDataGroups()
+   {
+      return Collections.unmodifiableList(processDataGroups);
    }
    
    
@@ -669,6 +1697,86 @@ public class Master implements MasterInterface
       return soem.ecx_dcTime(context);
    }
    
+   /**
+    * Gets the time of the DC Master clock from the last datagram received by receive() or sendAndReceive().
+    * 
+    * Unlike getDCTime(), this does not call into the native library. 
+    * 
+    * @return distributed clock time in ns
+    */
+   public long getTransactionDCTime()
+   {
+      return transactionDCTime;
+   }
+   
+   /**
+    * Gets the monotonic clock time right before the process data was sent in the last call to sendAndReceive().
+    * 
+    * @return monotonic clock time in ns
+    */
+   public long getTransactionSendTimestamp()
+   {
+      return transactionSendTimestamp;
+   }
+   
+   /**
+    * Gets the monotonic clock time right after the process data was received (or timed out) in the last call to sendAndReceive().
+    * 
+    * @return monotonic clock time in ns
+    */
+   public long getTransactionReceiveTimestamp()
+   {
+      return transactionReceiveTimestamp;
+   }
+   
+   /**
+    * Gets the time spent in the last call to sendAndReceive() on the EtherCAT transaction.
+    * 
+    * In pipelined mode, this is the time to collect the previous frames and send the new frames. Otherwise, it is 
+    * the round trip time of the frames.
+    * 
+    * @return transaction time in ns
+    */
+   public long getTransactionDuration()
+   {
+      return transactionDuration;
+   }
+   
+   /**
+    * Histogram of the difference between the expected and actual arrival time of the process data, as used by the jitter estimate.
+    * 
+    * Only recorded when DC is enabled. Snapshots can be taken from any thread.
+    * 
+    * @return histogram of the jitter in ns
+    */
+   public LogLinearHistogram getJitterHistogram()
+   {
+      return jitterHistogram;
+   }
+   
+   /**
+    * Get the measured output latency of the controller. 
+    * 
+    * This is the time between sending the frame that carried the inputs used by the controller and sending the 
+    * frame that carries the resulting outputs. Measured by sendAndReceive().
+    * 
+    * @return output latency in ns
+    */
+   public long getOutputLatency()
+   {
+      return outputLatency;
+   }
+   
+   /**
+    * Get the output latency of the controller in cycles.
+    * 
+    * @return 2 in pipelined mode, 1 otherwise
+    */
+   public int getOutputLatencyCycles()
+   {
+      return pipelinedProcessData ? 2 : 1;
+   }
+   
    /**
     * Gets the time read from the DC Master clock from when init() was run
     * 
@@ -731,6 +1839,16 @@ public class Master implements MasterInterface
    {
       return context;
    }
+
+   /**
+    * Internal function. Return the queue of register transaction batches that are transferred with the process data
+    *
+    * @return acyclic datagram queue
+    */
+   AcyclicDatagramQueue getAcyclicDatagramQueue()
+   {
+      return acyclicDatagramQueue;
+   }
    
    /**
     * Call this function cyclically, either in a separate thread or after receive().
@@ -742,6 +1860,118 @@ public class Master implements MasterInterface
       etherCATStateMachine.runOnce();
    }
    
+   /**
+    * Do the state control for the slaves, running as many tasks as fit in the budget.
+    * 
+    * The cost of each task type is learned while running. At least one task is run, like doEtherCATStateControl().
+    * 
+    * Make sure not to call this function concurrently with send()/receive()
+    * 
+    * @param budget Time available for state control in ns
+    */
+   public void doEtherCATStateControl(long budget)
+   {
+      etherCATStateMachine.runOnce(budget);
+   }
+   
+   /**
+    * Internal function. Do the state control from the realtime thread, running as many non-blocking tasks as fit in the budget. 
+    * 
+    * Only the RX error counters and waiting for the master to stabilize run here, next to the AL status sweep and the handling of 
+    * realtime events. These do not wait on the network. Slave state changes, recovery and SDO transfers are deferred to 
+    * doDeferredEtherCATStateControl().
+    * 
+    * @param budget Time available for state control in ns
+    */
+   void doInlineEtherCATStateControl(long budget)
+   {
+      etherCATStateMachine.runInline(budget);
+   }
+   
+   /**
+    * Internal function. Run the next blocking state control task deferred by doInlineEtherCATStateControl(). 
+    * 
+    * Make sure not to call this function concurrently with send()/receive()
+    */
+   void doDeferredEtherCATStateControl()
+   {
+      etherCATStateMachine.runDeferred();
+   }
+   
+   /**
+    * Internal function.
+    * 
+    * @return true if doInlineEtherCATStateControl() deferred blocking tasks that have not run yet
+    */
+   boolean hasDeferredStateControl()
+   {
+      return etherCATStateMachine.hasDeferredTasks();
+   }
+   
+   /**
+    * @return the learned cost of each type of state control task
+    */
+   public Collection<LightWeightPipelineTaskCost> getStateControlTaskCosts()
+   {
+      return etherCATStateMachine.getExecutor().getTaskCosts();
+   }
+   
+   /**
+    * Internal function. Return the pool and queue of SDO transfers submitted from non-realtime threads.
+    */
+   AsyncSDOQueue getAsyncSDOQueue()
+   {
+      return etherCATStateMachine.getSDOScheduler().getAsyncQueue();
+   }
+   
+   /**
+    * Histogram of the time between queueing an SDO transfer in the realtime thread and the transfer in the householder, in ns
+    */
+   public LogLinearHistogram getSDOWaitTimeHistogram()
+   {
+      return etherCATStateMachine.getSDOScheduler().getWaitTimeHistogram();
+   }
+   
+   /**
+    * @return number of SDO transfers waiting for the householder at the last check
+    */
+   public int getSDOQueueDepth()
+   {
+      return etherCATStateMachine.getSDOScheduler().getQueueDepth();
+   }
+   
+   /**
+    * @return largest number of SDO transfers that were waiting for the householder at the same time
+    */
+   public int getMaximumSDOQueueDepth()
+   {
+      return etherCATStateMachine.getSDOScheduler().getMaximumQueueDepth();
+   }
+   
+   /**
+    * @return number of SDO transactions made by the householder
+    */
+   public long getSDOTransfers()
+   {
+      return etherCATStateMachine.getSDOScheduler().getTransfers();
+   }
+   
+   /**
+    * @return number of SDO reads that were completed with the result of an identical read, without a transaction of their own
+    */
+   public long getCoalescedSDOTransfers()
+   {
+      return etherCATStateMachine.getSDOScheduler().getCoalescedTransfers();
+   }
+   
+   /**
+    * @return number of SDO transfers that failed because they were not transferred before their timeout
+    */
+   public long getSDODeadlineMisses()
+   {
+      return etherCATStateMachine.getSDOScheduler().getDeadlineMisses();
+   }
+   
    
    /**
     * Gets the lowest EtherCAT state any slave is in
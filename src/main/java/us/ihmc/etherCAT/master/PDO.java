@@ -1,9 +1,13 @@
 package us.ihmc.etherCAT.master;
 
 import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.nio.ByteBuffer;
+import java.util.List;
 
 import us.ihmc.etherCAT.dataStructures.EtherCATStruct;
+import us.ihmc.etherCAT.javalution.Struct;
 
 /**
  * PDO class based on Javalution's struct. 
@@ -55,4 +59,70 @@ abstract class PDO extends EtherCATStruct
       }
    }
 
+   /**
+    * Internal function. Add the location of every member of this PDO to the flight recorder layout. 
+    * 
+    * Call after linkBuffer(). Members are found by reflection on the fields of the PDO class.
+    * 
+    * @param slave Slave this PDO belongs to
+    * @param syncManager Index of the sync manager
+    * @param direction Direction of the sync manager
+    * @param ioMapOffset Offset of the IO map of the slave in the process image
+    * @param entries List to add the entries to
+    */
+   void describeLayout(Slave slave, int syncManager, String direction, int ioMapOffset, List<FlightRecorderEntry> entries)
+   {
+      for(Class<?> clazz = getClass(); clazz != PDO.class; clazz = clazz.getSuperclass())
+      {
+         describeFields(this, clazz, "", slave, syncManager, direction, ioMapOffset, entries);
+      }
+   }
+   
+   private void describeFields(Object container, Class<?> clazz, String prefix, Slave slave, int syncManager, String direction, int ioMapOffset, List<FlightRecorderEntry> entries)
+   {
+      for(Field field : clazz.getDeclaredFields())
+      {
+         if(Modifier.isStatic(field.getModifiers()) || field.isSynthetic())
+         {
+            continue;
+         }
+         
+         try
+         {
+            field.setAccessible(true);
+            describeValue(field.get(container), prefix + field.getName(), slave, syncManager, direction, ioMapOffset, entries);
+         }
+         catch (IllegalAccessException | RuntimeException e)
+         {
+            // Fields that cannot be read are not part of the layout
+         }
+      }
+   }
+   
+   private void describeValue(Object value, String name, Slave slave, int syncManager, String direction, int ioMapOffset, List<FlightRecorderEntry> entries)
+   {
+      if(value instanceof Member)
+      {
+         Member member = (Member) value;
+         int bitOffset = ((ioMapOffset + member.struct().getByteBufferPosition() + member.offset()) << 3) + member.bitIndex();
+         entries.add(new FlightRecorderEntry(slave.getName(), slave.getAliasAddress(), slave.getPosition(), syncManager, direction, getAddress() & 0xFFFF, name, 
+                                             value.getClass().getSimpleName(), bitOffset, member.bitLength()));
+      }
+      else if(value instanceof Object[])
+      {
+         Object[] array = (Object[]) value;
+         for(int i = 0; i < array.length; i++)
+         {
+            describeValue(array[i], name + "[" + i + "]", slave, syncManager, direction, ioMapOffset, entries);
+         }
+      }
+      else if(value instanceof Struct && value != this && ((Struct) value).outer() != null)
+      {
+         for(Class<?> clazz = value.getClass(); clazz != Struct.class && clazz != EtherCATStruct.class; clazz = clazz.getSuperclass())
+         {
+            describeFields(value, clazz, name + ".", slave, syncManager, direction, ioMapOffset, entries);
+         }
+      }
+   }
+
 }
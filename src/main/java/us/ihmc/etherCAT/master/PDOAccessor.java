@@ -0,0 +1,80 @@
+package us.ihmc.etherCAT.master;
+
+import java.nio.ByteBuffer;
+
+import us.ihmc.etherCAT.javalution.Struct;
+
+/**
+ * Base class for flat PDO accessors generated by PDOAccessorGenerator.
+ *
+ * A generated accessor reads and writes the members of a PDO with a single ByteBuffer access at an absolute offset
+ * calculated when the accessor is created, instead of going through the Struct members. Bit fields use a precomputed
+ * word index, shift and mask.
+ *
+ * The offsets are only valid for the buffer the PDO is linked to when the accessor is created. Create accessors after
+ * the master is initialized and the PDOs are linked to the process image.
+ *
+ * @author Jesper Smith
+ *
+ */
+public abstract class PDOAccessor
+{
+   protected final ByteBuffer buffer;
+
+   protected PDOAccessor(Struct pdo)
+   {
+      this.buffer = pdo.getByteBuffer();
+   }
+
+   /**
+    * Calculate the byte index of a word that contains a bit field.
+    *
+    * The word starts at the byte containing the first bit of the field. If that word would extend past the end
+    * of the buffer, the word is moved back so it fits.
+    *
+    * @param name Name of the member, used in error messages
+    * @param bitOffset Absolute bit offset of the member
+    * @param bitLength Length of the member
+    * @param wordSize Size of the word used to access the member, in bytes
+    * @return the byte index of the word
+    */
+   protected final int wordIndex(String name, int bitOffset, int bitLength, int wordSize)
+   {
+      int index = Math.min(bitOffset >> 3, buffer.limit() - wordSize);
+      if (index < 0 || bitOffset - (index << 3) + bitLength > wordSize << 3)
+      {
+         throw new IllegalArgumentException("Cannot access bit field " + name + " of " + bitLength + " bits at bit offset " + bitOffset + " with a " + wordSize
+               + " byte word");
+      }
+      return index;
+   }
+
+   /**
+    * Calculate the shift of a bit field in the word returned by wordIndex()
+    *
+    * @param bitOffset Absolute bit offset of the member
+    * @param wordIndex Word index returned by wordIndex()
+    * @return shift of the member in the word
+    */
+   protected static int wordShift(int bitOffset, int wordIndex)
+   {
+      return bitOffset - (wordIndex << 3);
+   }
+
+   /**
+    * Check that a member has the bit length the accessor was generated for
+    *
+    * @param name Name of the member, used in error messages
+    * @param bitLength Actual length of the member
+    * @param expectedBitLength Length the accessor supports
+    * @return bitLength
+    */
+   protected static int checkBitLength(String name, int bitLength, int expectedBitLength)
+   {
+      if (bitLength != expectedBitLength)
+      {
+         throw new IllegalArgumentException("Member " + name + " is " + bitLength + " bits, the accessor expects " + expectedBitLength + " bits");
+      }
+      return bitLength;
+   }
+}
@@ -0,0 +1,467 @@
+package us.ihmc.etherCAT.master;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import us.ihmc.etherCAT.dataStructures.EtherCATStruct;
+import us.ihmc.etherCAT.javalution.Struct;
+
+/**
+ * Generates flat accessor classes for RxPDO and TxPDO subclasses.
+ *
+ * The generated accessor extends PDOAccessor and has a getter and setter for every member of the PDO. The absolute
+ * offsets of the members are calculated once in the constructor, after which every access is a single ByteBuffer
+ * access. Bit fields are accessed with a precomputed word index, shift and mask.
+ *
+ * The accessor is generated in the package of the PDO and reads the members of the PDO directly, so the PDO class and
+ * its members cannot be private. Supported members are Bool, Bit2-Bit7, BitField, Signed8-64, Unsigned8-32, Float32
+ * and Float64, and one dimensional arrays of those. Other members, like inner structs, are left out of the accessor.
+ *
+ * Run main() with the output source directory and the binary names of the PDO classes to generate the accessors, for
+ * example "src/main/java us.ihmc.etherCAT.slaves.elmo.ElmoTwitter$TPDO_1a03". Regenerate the accessors when the PDO
+ * changes.
+ *
+ * @author Jesper Smith
+ *
+ */
+public class PDOAccessorGenerator
+{
+   private enum MemberType
+   {
+      BOOL("boolean", 1, 1),
+      BITS("int", -1, 2),
+      BITFIELD("long", -1, 8),
+      SIGNED8("byte", 8, 0),
+      UNSIGNED8("short", 8, 0),
+      SIGNED16("short", 16, 0),
+      UNSIGNED16("int", 16, 0),
+      SIGNED32("int", 32, 0),
+      UNSIGNED32("long", 32, 0),
+      SIGNED64("long", 64, 0),
+      FLOAT32("float", 32, 0),
+      FLOAT64("double", 64, 0);
+
+      private final String javaType;
+      private final int bitLength;
+      private final int wordSize;
+
+      private MemberType(String javaType, int bitLength, int wordSize)
+      {
+         this.javaType = javaType;
+         this.bitLength = bitLength;
+         this.wordSize = wordSize;
+      }
+
+      private boolean isBitField()
+      {
+         return wordSize > 0;
+      }
+
+      private static MemberType fromClass(Class<?> clazz)
+      {
+         if (clazz.getDeclaringClass() != Struct.class && clazz.getDeclaringClass() != EtherCATStruct.class)
+         {
+            return null;
+         }
+
+         switch (clazz.getSimpleName())
+         {
+            case "Bool":
+               return BOOL;
+            case "Bit2":
+            case "Bit3":
+            case "Bit4":
+            case "Bit5":
+            case "Bit6":
+            case "Bit7":
+               return BITS;
+            case "BitField":
+               return BITFIELD;
+            case "Signed8":
+               return SIGNED8;
+            case "Unsigned8":
+               return UNSIGNED8;
+            case "Signed16":
+               return SIGNED16;
+            case "Unsigned16":
+               return UNSIGNED16;
+            case "Signed32":
+               return SIGNED32;
+            case "Unsigned32":
+               return UNSIGNED32;
+            case "Signed64":
+               return SIGNED64;
+            case "Float32":
+               return FLOAT32;
+            case "Float64":
+               return FLOAT64;
+            default:
+               return null;
+         }
+      }
+   }
+
+   private static class GeneratedMember
+   {
+      private final String name;
+      private final MemberType type;
+      private final boolean array;
+      private final int bits;
+
+      private GeneratedMember(String name, MemberType type, boolean array, int bits)
+      {
+         this.name = name;
+         this.type = type;
+         this.array = array;
+         this.bits = bits;
+      }
+   }
+
+   private final Class<?> pdoClass;
+   private final ArrayList<GeneratedMember> members = new ArrayList<>();
+   private final ArrayList<String> unsupportedMembers = new ArrayList<>();
+
+   /**
+    * Create a generator for a PDO class
+    *
+    * @param pdoClass Subclass of RxPDO or TxPDO
+    */
+   public PDOAccessorGenerator(Class<?> pdoClass)
+   {
+      if (!RxPDO.class.isAssignableFrom(pdoClass) && !TxPDO.class.isAssignableFrom(pdoClass))
+      {
+         throw new IllegalArgumentException(pdoClass.getName() + " is not a RxPDO or TxPDO");
+      }
+      for (Class<?> clazz = pdoClass; clazz != null; clazz = clazz.getEnclosingClass())
+      {
+         if (Modifier.isPrivate(clazz.getModifiers()))
+         {
+            throw new IllegalArgumentException(clazz.getName() + " is private. The accessor cannot access the PDO.");
+         }
+      }
+
+      this.pdoClass = pdoClass;
+
+      ArrayList<Class<?>> hierarchy = new ArrayList<>();
+      for (Class<?> clazz = pdoClass; clazz != RxPDO.class && clazz != TxPDO.class; clazz = clazz.getSuperclass())
+      {
+         hierarchy.add(0, clazz);
+      }
+      for (Class<?> clazz : hierarchy)
+      {
+         addMembers(clazz);
+      }
+   }
+
+   private void addMembers(Class<?> clazz)
+   {
+      for (Field field : clazz.getDeclaredFields())
+      {
+         if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic())
+         {
+            continue;
+         }
+
+         boolean array = field.getType().isArray();
+         MemberType type = MemberType.fromClass(array ? field.getType().getComponentType() : field.getType());
+         if (type == null || Modifier.isPrivate(field.getModifiers()))
+         {
+            unsupportedMembers.add(field.getName() + " (" + field.getType().getSimpleName() + ")");
+            continue;
+         }
+
+         int bits = type.bitLength;
+         if (type == MemberType.BITS)
+         {
+            String simpleName = (array ? field.getType().getComponentType() : field.getType()).getSimpleName();
+            bits = simpleName.charAt(3) - '0';
+         }
+         members.add(new GeneratedMember(field.getName(), type, array, bits));
+      }
+   }
+
+   /**
+    * @return Simple name of the accessor class. Nested PDO classes are prefixed with the names of the enclosing classes.
+    */
+   public String getAccessorName()
+   {
+      return getRelativeName().replace(".", "") + "Accessor";
+   }
+
+   /**
+    * @return Members of the PDO that are not supported and left out of the accessor
+    */
+   public List<String> getUnsupportedMembers()
+   {
+      return Collections.unmodifiableList(unsupportedMembers);
+   }
+
+   private String getRelativeName()
+   {
+      String packageName = pdoClass.getPackage().getName();
+      String name = pdoClass.getName();
+      if (!packageName.isEmpty())
+      {
+         name = name.substring(packageName.length() + 1);
+      }
+      return name.replace('$', '.');
+   }
+
+   private static String capitalize(String name)
+   {
+      return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+   }
+
+   /**
+    * Generate the source code of the accessor
+    *
+    * @return Java source of the accessor class
+    */
+   public String generate()
+   {
+      String pdoName = getRelativeName();
+      String accessorName = getAccessorName();
+
+      StringBuilder source = new StringBuilder();
+      if (!pdoClass.getPackage().getName().isEmpty())
+      {
+         source.append("package ").append(pdoClass.getPackage().getName()).append(";\n\n");
+      }
+      if (!pdoClass.getPackage().getName().equals(PDOAccessor.class.getPackage().getName()))
+      {
+         source.append("import ").append(PDOAccessor.class.getName()).append(";\n\n");
+      }
+      source.append("/**\n");
+      source.append(" * Flat accessor for {@link ").append(pdoName).append("}\n");
+      source.append(" * \n");
+      source.append(" * Generated by PDOAccessorGenerator. Do not edit, regenerate when the PDO changes.\n");
+      source.append(" */\n");
+      source.append("public final class ").append(accessorName).append(" extends PDOAccessor\n");
+      source.append("{\n");
+
+      for (GeneratedMember member : members)
+      {
+         String array = member.array ? "[]" : "";
+         if (member.type.isBitField())
+         {
+            source.append("   private final int").append(array).append(" ").append(member.name).append("Index;\n");
+            source.append("   private final int").append(array).append(" ").append(member.name).append("Shift;\n");
+            if (member.type == MemberType.BITFIELD)
+            {
+               source.append("   private final long").append(array).append(" ").append(member.name).append("Mask;\n");
+            }
+         }
+         else
+         {
+            source.append("   private final int").append(array).append(" ").append(member.name).append(";\n");
+         }
+      }
+      for (String unsupported : unsupportedMembers)
+      {
+         source.append("   // Not supported: ").append(unsupported).append("\n");
+      }
+      source.append("\n");
+
+      source.append("   /**\n");
+      source.append("    * Create an accessor for a PDO that is linked to the process image\n");
+      source.append("    * \n");
+      source.append("    * @param pdo linked PDO\n");
+      source.append("    */\n");
+      source.append("   public ").append(accessorName).append("(").append(pdoName).append(" pdo)\n");
+      source.append("   {\n");
+      source.append("      super(pdo);\n");
+      for (GeneratedMember member : members)
+      {
+         if (member.array)
+         {
+            generateArrayInitialization(source, member);
+         }
+         else
+         {
+            generateInitialization(source, member, "      ", "pdo." + member.name, "");
+         }
+      }
+      source.append("   }\n");
+
+      for (GeneratedMember member : members)
+      {
+         generateAccessors(source, member);
+      }
+
+      source.append("}\n");
+      return source.toString();
+   }
+
+   private static void generateArrayInitialization(StringBuilder source, GeneratedMember member)
+   {
+      String length = "pdo." + member.name + ".length";
+      if (member.type.isBitField())
+      {
+         source.append("      ").append(member.name).append("Index = new int[").append(length).append("];\n");
+         source.append("      ").append(member.name).append("Shift = new int[").append(length).append("];\n");
+         if (member.type == MemberType.BITFIELD)
+         {
+            source.append("      ").append(member.name).append("Mask = new long[").append(length).append("];\n");
+         }
+      }
+      else
+      {
+         source.append("      ").append(member.name).append(" = new int[").append(length).append("];\n");
+      }
+      source.append("      for (int i = 0; i < ").append(length).append("; i++)\n");
+      source.append("      {\n");
+      generateInitialization(source, member, "         ", "pdo." + member.name + "[i]", "[i]");
+      source.append("      }\n");
+   }
+
+   private static void generateInitialization(StringBuilder source, GeneratedMember member, String indent, String field, String index)
+   {
+      String name = member.name;
+      if (member.type.isBitField())
+      {
+         source.append(indent).append(name).append("Index").append(index).append(" = wordIndex(\"").append(name).append("\", ").append(field)
+               .append(".absoluteBitOffset(), ").append(field).append(".bitLength(), ").append(member.type.wordSize).append(");\n");
+         source.append(indent).append(name).append("Shift").append(index).append(" = wordShift(").append(field).append(".absoluteBitOffset(), ")
+               .append(name).append("Index").append(index).append(");\n");
+         if (member.type == MemberType.BITFIELD)
+         {
+            source.append(indent).append(name).append("Mask").append(index).append(" = -1L >>> (64 - ").append(field).append(".bitLength());\n");
+         }
+      }
+      else
+      {
+         source.append(indent).append("checkBitLength(\"").append(name).append("\", ").append(field).append(".bitLength(), ").append(member.bits)
+               .append(");\n");
+         source.append(indent).append(name).append(index).append(" = ").append(field).append(".absoluteOffset();\n");
+      }
+   }
+
+   private static void generateAccessors(StringBuilder source, GeneratedMember member)
+   {
+      String parameter = member.array ? "int i" : "";
+      String index = member.array ? "[i]" : "";
+      String offset = member.type.isBitField() ? member.name + "Index" + index : member.name + index;
+      String shift = member.name + "Shift" + index;
+      String mask = member.type == MemberType.BITFIELD ? member.name + "Mask" + index : "0x" + Integer.toHexString((1 << member.bits) - 1);
+
+      String getter;
+      String setter;
+      switch (member.type)
+      {
+         case BOOL:
+            getter = "((buffer.get(" + offset + ") >> " + shift + ") & 1) != 0";
+            setter = "buffer.put(" + offset + ", (byte) (value ? buffer.get(" + offset + ") | (1 << " + shift + ") : buffer.get(" + offset + ") & ~(1 << "
+                  + shift + ")));";
+            break;
+         case BITS:
+            getter = "(buffer.getShort(" + offset + ") >> " + shift + ") & " + mask;
+            setter = "buffer.putShort(" + offset + ", (short) ((buffer.getShort(" + offset + ") & ~(" + mask + " << " + shift + ")) | ((value & " + mask
+                  + ") << " + shift + ")));";
+            break;
+         case BITFIELD:
+            getter = "(buffer.getLong(" + offset + ") >>> " + shift + ") & " + mask;
+            setter = "buffer.putLong(" + offset + ", (buffer.getLong(" + offset + ") & ~(" + mask + " << " + shift + ")) | ((value & " + mask + ") << "
+                  + shift + "));";
+            break;
+         case SIGNED8:
+            getter = "buffer.get(" + offset + ")";
+            setter = "buffer.put(" + offset + ", value);";
+            break;
+         case UNSIGNED8:
+            getter = "(short) (buffer.get(" + offset + ") & 0xFF)";
+            setter = "buffer.put(" + offset + ", (byte) value);";
+            break;
+         case SIGNED16:
+            getter = "buffer.getShort(" + offset + ")";
+            setter = "buffer.putShort(" + offset + ", value);";
+            break;
+         case UNSIGNED16:
+            getter = "buffer.getShort(" + offset + ") & 0xFFFF";
+            setter = "buffer.putShort(" + offset + ", (short) value);";
+            break;
+         case SIGNED32:
+            getter = "buffer.getInt(" + offset + ")";
+            setter = "buffer.putInt(" + offset + ", value);";
+            break;
+         case UNSIGNED32:
+            getter = "buffer.getInt(" + offset + ") & 0xFFFFFFFFL";
+            setter = "buffer.putInt(" + offset + ", (int) value);";
+            break;
+         case SIGNED64:
+            getter = "buffer.getLong(" + offset + ")";
+            setter = "buffer.putLong(" + offset + ", value);";
+            break;
+         case FLOAT32:
+            getter = "buffer.getFloat(" + offset + ")";
+            setter = "buffer.putFloat(" + offset + ", value);";
+            break;
+         case FLOAT64:
+            getter = "buffer.getDouble(" + offset + ")";
+            setter = "buffer.putDouble(" + offset + ", value);";
+            break;
+         default:
+            throw new RuntimeException("Unknown member type " + member.type);
+      }
+
+      String name = capitalize(member.name);
+      source.append("\n");
+      source.append("   public ").append(member.type.javaType).append(" get").append(name).append("(").append(parameter).append(")\n");
+      source.append("   {\n");
+      source.append("      return ").append(getter).append(";\n");
+      source.append("   }\n");
+      source.append("\n");
+      source.append("   public void set").append(name).append("(").append(parameter).append(member.array ? ", " : "").append(member.type.javaType)
+            .append(" value)\n");
+      source.append("   {\n");
+      source.append("      ").append(setter).append("\n");
+      source.append("   }\n");
+   }
+
+   /**
+    * Write the accessor to a source directory
+    *
+    * @param sourceDirectory Root of the source tree. The accessor is written in the directory of its package.
+    * @return the generated file
+    * @throws IOException
+    */
+   public File write(File sourceDirectory) throws IOException
+   {
+      File directory = new File(sourceDirectory, pdoClass.getPackage().getName().replace('.', File.separatorChar));
+      if (!directory.isDirectory() && !directory.mkdirs())
+      {
+         throw new IOException("Cannot create directory " + directory);
+      }
+
+      File file = new File(directory, getAccessorName() + ".java");
+      Files.write(file.toPath(), generate().getBytes(StandardCharsets.UTF_8));
+      return file;
+   }
+
+   public static void main(String[] args) throws IOException, ClassNotFoundException
+   {
+      if (args.length < 2)
+      {
+         System.err.println("Usage: PDOAccessorGenerator [source directory] [PDO class]...");
+         System.exit(1);
+      }
+
+      File sourceDirectory = new File(args[0]);
+      for (int i = 1; i < args.length; i++)
+      {
+         PDOAccessorGenerator generator = new PDOAccessorGenerator(Class.forName(args[i]));
+         File file = generator.write(sourceDirectory);
+         System.out.println("Generated " + file);
+         for (String unsupported : generator.getUnsupportedMembers())
+         {
+            System.err.println("Warning: " + args[i] + "." + unsupported + " is not supported and not part of the accessor");
+         }
+      }
+   }
+}
@@ -0,0 +1,247 @@
+package us.ihmc.etherCAT.master;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import us.ihmc.soem.generated.soem;
+
+/**
+ * A group of slaves that share a process data image, working counter and cycle rate.
+ *
+ * Each group is mapped into its own region of the IO map and is transferred in its own frame(s). This allows
+ * slow devices, like I/O terminals, to be updated at a fraction of the cycle rate of fast devices, like drives,
+ * without adding their process data to every frame. A working counter mismatch in one group does not invalidate the
+ * other groups.
+ *
+ * Create groups with Master.createProcessDataGroup() and assign slaves with Master.registerSlave(ProcessDataGroup, Slave).
+ *
+ * @author Jesper Smith
+ *
+ */
+public class ProcessDataGroup
+{
+   private final String name;
+   private final int cycleDivisor;
+
+   private final ArrayList<Slave> slaves = new ArrayList<>();
+
+   private int index = -1;
+   private ByteBuffer ioMap;
+   private int ioMapOffset;
+
+   private int expectedWorkingCounter = 0;
+   private volatile int actualWorkingCounter = 0;
+
+   private boolean transactedInLastCycle = false;
+   private boolean frameLost = false;
+   private boolean workingCounterValidInLastTransfer = true;
+
+   ProcessDataGroup(String name, int cycleDivisor)
+   {
+      if (cycleDivisor < 1)
+      {
+         throw new IllegalArgumentException("Cycle divisor of process data group " + name + " must be at least 1");
+      }
+
+      this.name = name;
+      this.cycleDivisor = cycleDivisor;
+   }
+
+   /**
+    * @return the name of this group
+    */
+   public String getName()
+   {
+      return name;
+   }
+
+   /**
+    *
+    * @return the number of master cycles between transfers of this group
+    */
+   public int getCycleDivisor()
+   {
+      return cycleDivisor;
+   }
+
+   /**
+    *
+    * @return unmodifiable list of the slaves in this group
+    */
+   public List<Slave> getSlaves()
+   {
+      return Collections.unmodifiableList(slaves);
+   }
+
+   /**
+    *
+    * @return the SOEM group index, or -1 if the group is not mapped
+    */
+   public int getIndex()
+   {
+      return index;
+   }
+
+   /**
+    * Get the expected working counter of this group
+    */
+   public int getExpectedWorkingCounter()
+   {
+      return expectedWorkingCounter;
+   }
+
+   /**
+    * Get the working counter of the last transfer of this group
+    */
+   public int getActualWorkingCounter()
+   {
+      return actualWorkingCounter;
+   }
+
+   /**
+    * Check if the last transfer of this group arrived with the expected working counter
+    *
+    * @return true if the working counter of the last transfer is valid
+    */
+   public boolean isWorkingCounterValid()
+   {
+      return !frameLost && actualWorkingCounter == expectedWorkingCounter;
+   }
+
+   /**
+    *
+    * @return true if the frame of the last transfer of this group did not return
+    */
+   public boolean isFrameLost()
+   {
+      return frameLost;
+   }
+
+   /**
+    *
+    * @return true if this group was transferred in the last master cycle
+    */
+   public boolean isTransactedInLastCycle()
+   {
+      return transactedInLastCycle;
+   }
+
+   /**
+    * Internal function.
+    *
+    * @return the region of the IO map that holds the process data of this group
+    */
+   ByteBuffer getIOMap()
+   {
+      return ioMap;
+   }
+
+   /**
+    * Internal function.
+    *
+    * @return offset of this group in the IO map of the master
+    */
+   int getIOMapOffset()
+   {
+      return ioMapOffset;
+   }
+
+   void addSlave(Slave slave)
+   {
+      slaves.add(slave);
+   }
+
+   boolean hasConfiguredSlaves()
+   {
+      for (int i = 0; i < slaves.size(); i++)
+      {
+         if (slaves.get(i).isConfigured())
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   void setIndex(int index)
+   {
+      this.index = index;
+   }
+
+   void setIOMap(ByteBuffer ioMap, int ioMapOffset)
+   {
+      this.ioMap = ioMap;
+      this.ioMapOffset = ioMapOffset;
+   }
+
+   void setExpectedWorkingCounter(int expectedWorkingCounter)
+   {
+      this.expectedWorkingCounter = expectedWorkingCounter;
+   }
+
+   /**
+    * Internal function.
+    *
+    * @param cycle master cycle counter
+    * @return true if this group should be transferred in the given cycle
+    */
+   boolean isDue(long cycle)
+   {
+      return cycle % cycleDivisor == 0;
+   }
+
+   void setTransactedInLastCycle(boolean transactedInLastCycle)
+   {
+      this.transactedInLastCycle = transactedInLastCycle;
+   }
+
+   /**
+    * Internal function. Check if the working counter became invalid in the last transfer. Call once after every transfer of this group.
+    * 
+    * @return true if the working counter is invalid and was valid in the previous transfer
+    */
+   boolean updateWorkingCounterValidity()
+   {
+      boolean valid = isWorkingCounterValid();
+      boolean becameInvalid = workingCounterValidInLastTransfer && !valid;
+      workingCounterValidInLastTransfer = valid;
+      return becameInvalid;
+   }
+
+   /**
+    * Internal function. Ask the householder to run the state control of all slaves in this group first.
+    */
+   void requestStateControlAttention()
+   {
+      for (int i = 0; i < slaves.size(); i++)
+      {
+         slaves.get(i).requestStateControlAttention();
+      }
+   }
+
+   /**
+    * Internal function. Update the working counter after the process data of this group is received.
+    *
+    * @param wkc working counter or soem.EC_NOFRAME if the datagram has been lost
+    */
+   void setReceivedWorkingCounter(int wkc)
+   {
+      if (wkc == soem.EC_NOFRAME)
+      {
+         frameLost = true;
+      }
+      else
+      {
+         frameLost = false;
+         actualWorkingCounter = wkc;
+      }
+   }
+
+   @Override
+   public String toString()
+   {
+      return "ProcessDataGroup [name=" + name + ", cycleDivisor=" + cycleDivisor + ", index=" + index + "]";
+   }
+}
@@ -0,0 +1,104 @@
+package us.ihmc.etherCAT.master;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Copy of a single process image snapshot taken from a ProcessImageRing.
+ *
+ * The process image has the same layout as the IO map of the master. The process data of a group starts at
+ * ProcessDataGroup.getIOMapOffset().
+ *
+ * @author Jesper Smith
+ *
+ */
+public class ProcessImageFrame
+{
+   private final ByteBuffer processImage;
+
+   private long cycle;
+   private long dcTime;
+   private long timestamp;
+   private int workingCounter;
+   private int expectedWorkingCounter;
+
+   ProcessImageFrame(int processImageSize)
+   {
+      processImage = ByteBuffer.allocateDirect(processImageSize);
+      processImage.order(ByteOrder.LITTLE_ENDIAN); // EtherCAT is a LITTLE ENDIAN protocol
+   }
+
+   /**
+    * Internal function. Copy a slot from the ring.
+    *
+    * @param slot ring buffer with the position at the start and the limit at the end of the slot
+    */
+   void set(ByteBuffer slot)
+   {
+      int offset = slot.position();
+      cycle = slot.getLong(offset + ProcessImageRing.CYCLE_OFFSET);
+      dcTime = slot.getLong(offset + ProcessImageRing.DC_TIME_OFFSET);
+      timestamp = slot.getLong(offset + ProcessImageRing.TIMESTAMP_OFFSET);
+      workingCounter = slot.getInt(offset + ProcessImageRing.WORKING_COUNTER_OFFSET);
+      expectedWorkingCounter = slot.getInt(offset + ProcessImageRing.EXPECTED_WORKING_COUNTER_OFFSET);
+
+      slot.position(offset + ProcessImageRing.HEADER_SIZE);
+      processImage.clear();
+      processImage.put(slot);
+      processImage.clear();
+   }
+
+   /**
+    *
+    * @return the process image. Use absolute get methods to read values.
+    */
+   public ByteBuffer getProcessImage()
+   {
+      return processImage;
+   }
+
+   /**
+    *
+    * @return cycle counter of the master
+    */
+   public long getCycle()
+   {
+      return cycle;
+   }
+
+   /**
+    *
+    * @return DC time of the cycle in ns
+    */
+   public long getDCTime()
+   {
+      return dcTime;
+   }
+
+   /**
+    *
+    * @return monotonic time the process data was received in ns
+    */
+   public long getTimestamp()
+   {
+      return timestamp;
+   }
+
+   /**
+    *
+    * @return combined working counter of the groups transferred in this cycle
+    */
+   public int getWorkingCounter()
+   {
+      return workingCounter;
+   }
+
+   /**
+    *
+    * @return combined expected working counter of the groups transferred in this cycle
+    */
+   public int getExpectedWorkingCounter()
+   {
+      return expectedWorkingCounter;
+   }
+}
@@ -0,0 +1,183 @@
+package us.ihmc.etherCAT.master;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single producer, single consumer ring of process image snapshots.
+ *
+ * At the end of each cycle, the realtime thread copies the used part of the IO map, inputs and outputs, together
+ * with the cycle metadata into the next slot. A consumer thread, like a logger or GUI, drains the ring without
+ * blocking the realtime thread and without racing with receive().
+ *
+ * The slots are stored off-heap in a single direct buffer. Writing a slot is a single bulk copy of the process image.
+ * If the consumer falls behind and the ring is full, the new snapshot is dropped and counted.
+ *
+ * Enable with Master.enableProcessImageRing() before init().
+ *
+ * @author Jesper Smith
+ *
+ */
+public class ProcessImageRing
+{
+   // Slot header layout
+   static final int CYCLE_OFFSET = 0;
+   static final int DC_TIME_OFFSET = 8;
+   static final int TIMESTAMP_OFFSET = 16;
+   static final int WORKING_COUNTER_OFFSET = 24;
+   static final int EXPECTED_WORKING_COUNTER_OFFSET = 28;
+   static final int HEADER_SIZE = 32;
+
+   private static final int SLOT_ALIGNMENT = 64;
+
+   private final int slots;
+   private final int mask;
+   private final int slotSize;
+   private final int processImageSize;
+
+   private final ByteBuffer ring;
+
+   // Producer
+   private final ByteBuffer producerSource;
+   private final ByteBuffer producerTarget;
+   private final AtomicLong writeIndex = new AtomicLong();
+   private long cachedReadIndex = 0;
+   private volatile long droppedSnapshots = 0;
+
+   // Consumer
+   private final ByteBuffer consumerSource;
+   private final AtomicLong readIndex = new AtomicLong();
+
+   /**
+    *
+    * @param slots Number of slots, rounded up to a power of two
+    * @param ioMap IO map of the master
+    * @param processImageSize Number of bytes of the IO map to copy
+    */
+   ProcessImageRing(int slots, ByteBuffer ioMap, int processImageSize)
+   {
+      if (slots < 1)
+      {
+         throw new IllegalArgumentException("The process image ring needs at least one slot");
+      }
+
+      this.slots = Integer.bitCount(slots) == 1 ? slots : Integer.highestOneBit(slots) << 1;
+      this.mask = this.slots - 1;
+      this.processImageSize = processImageSize;
+      this.slotSize = ((HEADER_SIZE + processImageSize + SLOT_ALIGNMENT - 1) / SLOT_ALIGNMENT) * SLOT_ALIGNMENT;
+
+      this.ring = ByteBuffer.allocateDirect(this.slots * slotSize);
+      this.ring.order(ByteOrder.LITTLE_ENDIAN);
+
+      this.producerSource = ioMap.duplicate();
+      this.producerSource.clear();
+      this.producerSource.limit(processImageSize);
+      this.producerTarget = ring.duplicate();
+      this.consumerSource = ring.duplicate();
+      this.consumerSource.order(ByteOrder.LITTLE_ENDIAN); // duplicate() does not keep the byte order
+   }
+
+   /**
+    *
+    * @return number of bytes of the process image in each snapshot
+    */
+   public int getProcessImageSize()
+   {
+      return processImageSize;
+   }
+
+   /**
+    *
+    * @return capacity of the ring
+    */
+   public int getSlots()
+   {
+      return slots;
+   }
+
+   /**
+    *
+    * @return number of snapshots dropped because the ring was full
+    */
+   public long getDroppedSnapshots()
+   {
+      return droppedSnapshots;
+   }
+
+   /**
+    * Internal function. Write a snapshot of the process image. Only call from the realtime thread.
+    *
+    * @return false if the ring was full and the snapshot was dropped
+    */
+   boolean write(long cycle, long dcTime, long timestamp, int workingCounter, int expectedWorkingCounter)
+   {
+      long index = writeIndex.get();
+      if (index - cachedReadIndex >= slots)
+      {
+         cachedReadIndex = readIndex.get();
+         if (index - cachedReadIndex >= slots)
+         {
+            droppedSnapshots++;
+            return false;
+         }
+      }
+
+      int offset = (int) (index & mask) * slotSize;
+      ring.putLong(offset + CYCLE_OFFSET, cycle);
+      ring.putLong(offset + DC_TIME_OFFSET, dcTime);
+      ring.putLong(offset + TIMESTAMP_OFFSET, timestamp);
+      ring.putInt(offset + WORKING_COUNTER_OFFSET, workingCounter);
+      ring.putInt(offset + EXPECTED_WORKING_COUNTER_OFFSET, expectedWorkingCounter);
+
+      producerSource.position(0);
+      producerTarget.limit(offset + HEADER_SIZE + processImageSize);
+      producerTarget.position(offset + HEADER_SIZE);
+      producerTarget.put(producerSource);
+
+      writeIndex.lazySet(index + 1);
+      return true;
+   }
+
+   /**
+    * Copy the oldest snapshot into frame and release its slot. Only call from a single consumer thread.
+    *
+    * @param frame Frame to copy into, created with createFrame()
+    * @return true if a snapshot was available
+    */
+   public boolean poll(ProcessImageFrame frame)
+   {
+      long index = readIndex.get();
+      if (index >= writeIndex.get())
+      {
+         return false;
+      }
+
+      int offset = (int) (index & mask) * slotSize;
+      consumerSource.limit(offset + HEADER_SIZE + processImageSize);
+      consumerSource.position(offset);
+      frame.set(consumerSource);
+
+      readIndex.lazySet(index + 1);
+      return true;
+   }
+
+   /**
+    *
+    * @return number of snapshots waiting for the consumer
+    */
+   public int available()
+   {
+      return (int) (writeIndex.get() - readIndex.get());
+   }
+
+   /**
+    * Create a frame to poll snapshots into.
+    *
+    * @return new frame
+    */
+   public ProcessImageFrame createFrame()
+   {
+      return new ProcessImageFrame(processImageSize);
+   }
+}
@@ -42,6 +42,17 @@ public class ReadSDO extends SDO
       return queue();
    }
 
+   /**
+    * Request new data that has to be read within the timeout. If the householder does not get to the request in time, isValid() stays false.
+    * 
+    * @param timeout Time in ns
+    * @return false if another request is still running
+    */
+   public boolean requestNewData(long timeout)
+   {
+      return queue(timeout);
+   }
+
    
    /**
     * Get current data if valid() is true; Else throw runtimeException. 
@@ -146,9 +157,18 @@ public class ReadSDO extends SDO
       return getData().getFloat(0);
    }
 
+   /**
+    * Reads of the same object on the same slave can share a single transfer
+    */
+   @Override
+   boolean canCoalesceWith(SDO other)
+   {
+      return other instanceof ReadSDO && other.slave == slave && other.index == index && other.subindex == subindex && other.size == size;
+   }
+
    @Override
-   protected int send()
+   protected int send(ByteBuffer data)
    {
-      return slave.readSDOToBuffer(index, subindex, size, buffer);
+      return slave.readSDOToBuffer(index, subindex, size, data);
    }
 }
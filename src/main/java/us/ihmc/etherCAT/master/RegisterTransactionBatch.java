@@ -0,0 +1,376 @@
+package us.ihmc.etherCAT.master;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import us.ihmc.soem.generated.ec_cmdtype;
+import us.ihmc.soem.generated.ecx_context;
+import us.ihmc.soem.generated.soem;
+import us.ihmc.soem.generated.soemConstants;
+
+/**
+ * Batch of register reads and writes that is transferred in as few frames as possible.
+ *
+ * Operations are queued with the add functions, which return a handle to the operation. execute() packs the datagrams of all
+ * queued operations into the fewest Ethernet frames that fit, sends them in a single pass and waits for all frames to return.
+ * The working counter and the data read by each operation are available by handle after execute().
+ *
+ * Queueing one register read for 80 slaves results in one or two frames, instead of 80 round trips.
+ *
+ * No memory is allocated after construction. A batch can be executed multiple times, call clear() to queue a new set of operations.
+ *
+ * execute() is blocking, do not call it from the realtime thread. Alternatively, submit() hands the batch to the master, which
+ * appends the datagrams to the cyclic process data frames when there is room. The results are available when isPending()
+ * returns false. This does not cost extra frames and does not compete with the realtime thread for the network interface.
+ *
+ * @author Jesper Smith
+ *
+ */
+public class RegisterTransactionBatch
+{
+   // Layout of an operation in the operation buffer passed to soem.ecx_register_batch. Must match ihmc_registeropt in ethercathelper.c
+   private static final int OPERATION_COMMAND_OFFSET = 0;
+   private static final int OPERATION_ADP_OFFSET = 2;
+   private static final int OPERATION_ADO_OFFSET = 4;
+   private static final int OPERATION_LENGTH_OFFSET = 6;
+   private static final int OPERATION_DATA_OFFSET = 8;
+   private static final int OPERATION_WKC_OFFSET = 12;
+   private static final int OPERATION_SIZE = 16;
+
+   private final Master master;
+   private final ByteBuffer operations;
+   private final ByteBuffer data;
+
+   private int numberOfOperations = 0;
+   private int dataLength = 0;
+   private int timeout = soemConstants.EC_TIMEOUTRET;
+   private volatile boolean pending = false;
+
+   /**
+    * Create a new batch
+    *
+    * @param master Master to send the batch on
+    * @param maximumNumberOfOperations Maximum number of operations that can be queued
+    * @param dataCapacity Maximum combined length of the data of all queued operations, in bytes
+    */
+   public RegisterTransactionBatch(Master master, int maximumNumberOfOperations, int dataCapacity)
+   {
+      this.master = master;
+
+      this.operations = ByteBuffer.allocateDirect(maximumNumberOfOperations * OPERATION_SIZE);
+      this.operations.order(ByteOrder.nativeOrder()); // Read by native code
+
+      this.data = ByteBuffer.allocateDirect(dataCapacity);
+      this.data.order(ByteOrder.LITTLE_ENDIAN); // EtherCAT is a LITTLE ENDIAN protocol
+   }
+
+   /**
+    * Set the time to wait for the frames to return
+    *
+    * @param timeout Timeout in microseconds
+    */
+   public void setTimeout(int timeout)
+   {
+      this.timeout = timeout;
+   }
+
+   /**
+    * Queue a read of a register of a slave by configured address
+    *
+    * @param configuredAddress Configured station address of the slave
+    * @param register Register to read
+    * @param length Number of bytes to read
+    * @return handle to the operation
+    */
+   public int addFPRD(int configuredAddress, int register, int length)
+   {
+      return add(ec_cmdtype.EC_CMD_FPRD, configuredAddress, register, length);
+   }
+
+   /**
+    * Queue a read of a register of a slave
+    *
+    * @param slave Slave to read from
+    * @param register Register to read
+    * @param length Number of bytes to read
+    * @return handle to the operation
+    */
+   public int addFPRD(Slave slave, int register, int length)
+   {
+      return addFPRD(slave.getConfiguredAddress(), register, length);
+   }
+
+   /**
+    * Queue a write to a register of a slave by configured address
+    *
+    * The remaining bytes of value are copied into the batch, later changes to value are not sent.
+    *
+    * @param configuredAddress Configured station address of the slave
+    * @param register Register to write to
+    * @param value Value to write
+    * @return handle to the operation
+    */
+   public int addFPWR(int configuredAddress, int register, ByteBuffer value)
+   {
+      int operation = add(ec_cmdtype.EC_CMD_FPWR, configuredAddress, register, value.remaining());
+      int dataOffset = getDataOffset(operation);
+      for (int i = 0; i < value.remaining(); i++)
+      {
+         data.put(dataOffset + i, value.get(value.position() + i));
+      }
+      return operation;
+   }
+
+   /**
+    * Queue a write to a register of a slave
+    *
+    * The remaining bytes of value are copied into the batch, later changes to value are not sent.
+    *
+    * @param slave Slave to write to
+    * @param register Register to write to
+    * @param value Value to write
+    * @return handle to the operation
+    */
+   public int addFPWR(Slave slave, int register, ByteBuffer value)
+   {
+      return addFPWR(slave.getConfiguredAddress(), register, value);
+   }
+
+   /**
+    * Queue a read of a register of a slave by position on the bus
+    *
+    * @param position Position of the slave on the bus, starting at zero
+    * @param register Register to read
+    * @param length Number of bytes to read
+    * @return handle to the operation
+    */
+   public int addAPRD(int position, int register, int length)
+   {
+      return add(ec_cmdtype.EC_CMD_APRD, -position, register, length);
+   }
+
+   /**
+    * Queue a broadcast read of a register.
+    *
+    * The data is the bitwise OR of the register of all slaves, the working counter is the number of slaves that were read.
+    *
+    * @param register Register to read
+    * @param length Number of bytes to read
+    * @return handle to the operation
+    */
+   public int addBRD(int register, int length)
+   {
+      return add(ec_cmdtype.EC_CMD_BRD, 0, register, length);
+   }
+
+   private int add(ec_cmdtype command, int adp, int register, int length)
+   {
+      checkNotPending();
+      if (length <= 0 || length > soemConstants.EC_MAXLRWDATA)
+      {
+         throw new IllegalArgumentException("Invalid register length " + length + ". The length should be between 1 and " + soemConstants.EC_MAXLRWDATA);
+      }
+      if ((numberOfOperations + 1) * OPERATION_SIZE > operations.capacity())
+      {
+         throw new RuntimeException("Cannot queue more than " + (operations.capacity() / OPERATION_SIZE) + " operations");
+      }
+      if (dataLength + length > data.capacity())
+      {
+         throw new RuntimeException("Insufficient data capacity. Required " + (dataLength + length) + ", available " + data.capacity());
+      }
+
+      int operation = numberOfOperations++;
+      int offset = operation * OPERATION_SIZE;
+      operations.put(offset + OPERATION_COMMAND_OFFSET, (byte) command.swigValue());
+      operations.putShort(offset + OPERATION_ADP_OFFSET, (short) adp);
+      operations.putShort(offset + OPERATION_ADO_OFFSET, (short) register);
+      operations.putShort(offset + OPERATION_LENGTH_OFFSET, (short) length);
+      operations.putInt(offset + OPERATION_DATA_OFFSET, dataLength);
+      operations.putShort(offset + OPERATION_WKC_OFFSET, (short) 0);
+
+      for (int i = 0; i < length; i++)
+      {
+         data.put(dataLength + i, (byte) 0);
+      }
+      dataLength += length;
+
+      return operation;
+   }
+
+   /**
+    * Send all queued operations and wait for the frames to return.
+    *
+    * @return combined working counter of all operations
+    */
+   public int execute()
+   {
+      ecx_context context = master.getContext();
+      if (context == null)
+      {
+         throw new RuntimeException("Cannot execute register transactions before initializing the master");
+      }
+
+      checkNotPending();
+      if (numberOfOperations == 0)
+      {
+         return 0;
+      }
+      return soem.ecx_register_batch(context, operations, numberOfOperations, data, timeout);
+   }
+
+   /**
+    * Hand the queued operations to the master, to be transferred with the cyclic process data. Non-blocking.
+    *
+    * The datagrams are appended to the process data frames sent by Master.send() or Master.sendAndReceive() when there is room,
+    * a large batch is spread over multiple cycles. Operations that do not fit behind the process data of any frame fail with
+    * working counter soem.EC_NOFRAME (-1).
+    *
+    * The batch cannot be changed or executed till isPending() returns false.
+    *
+    * @return false if the acyclic datagram queue of the master is full, the batch is not submitted
+    */
+   public boolean submit()
+   {
+      checkNotPending();
+      pending = true;
+      if (!master.getAcyclicDatagramQueue().offer(this))
+      {
+         pending = false;
+         return false;
+      }
+      return true;
+   }
+
+   /**
+    * @return true if the batch is submitted and the results are not available yet
+    */
+   public boolean isPending()
+   {
+      return pending;
+   }
+
+   /**
+    * Internal function. Called from the realtime thread after the last operation of a submitted batch has been received.
+    */
+   void setReceived()
+   {
+      pending = false;
+   }
+
+   ByteBuffer getOperationBuffer()
+   {
+      return operations;
+   }
+
+   ByteBuffer getDataBuffer()
+   {
+      return data;
+   }
+
+   /**
+    * Remove all queued operations. Previously returned handles are invalid after calling this function.
+    */
+   public void clear()
+   {
+      checkNotPending();
+      numberOfOperations = 0;
+      dataLength = 0;
+   }
+
+   /**
+    * @return number of queued operations
+    */
+   public int size()
+   {
+      return numberOfOperations;
+   }
+
+   /**
+    * @param operation handle returned when the operation was queued
+    * @return working counter of the operation after execute(), or soem.EC_NOFRAME (-1) if the frame was lost
+    */
+   public int getWorkingCounter(int operation)
+   {
+      return operations.getShort(checkOperation(operation) * OPERATION_SIZE + OPERATION_WKC_OFFSET);
+   }
+
+   /**
+    * The data is only updated by reads with a working counter larger than zero.
+    *
+    * @param operation handle returned when the operation was queued
+    * @param offset offset in the register
+    * @return byte at offset in the data of the operation
+    */
+   public byte getByte(int operation, int offset)
+   {
+      return data.get(getDataOffset(operation, offset, Byte.BYTES));
+   }
+
+   /**
+    * @see #getByte(int, int)
+    */
+   public short getShort(int operation, int offset)
+   {
+      return data.getShort(getDataOffset(operation, offset, Short.BYTES));
+   }
+
+   /**
+    * @see #getByte(int, int)
+    */
+   public int getInt(int operation, int offset)
+   {
+      return data.getInt(getDataOffset(operation, offset, Integer.BYTES));
+   }
+
+   /**
+    * Copy the data of an operation to target, starting at index 0 of target
+    *
+    * @param operation handle returned when the operation was queued
+    * @param target Buffer to copy to. At most target.capacity() bytes are copied.
+    */
+   public void getData(int operation, ByteBuffer target)
+   {
+      int dataOffset = getDataOffset(operation);
+      int length = Math.min(getLength(operation), target.capacity());
+      for (int i = 0; i < length; i++)
+      {
+         target.put(i, data.get(dataOffset + i));
+      }
+   }
+
+   private int getLength(int operation)
+   {
+      return operations.getShort(checkOperation(operation) * OPERATION_SIZE + OPERATION_LENGTH_OFFSET) & 0xFFFF;
+   }
+
+   private int getDataOffset(int operation)
+   {
+      return operations.getInt(checkOperation(operation) * OPERATION_SIZE + OPERATION_DATA_OFFSET);
+   }
+
+   private int getDataOffset(int operation, int offset, int size)
+   {
+      if (offset < 0 || offset + size > getLength(operation))
+      {
+         throw new IllegalArgumentException("Offset " + offset + " is outside the data of operation " + operation);
+      }
+      return getDataOffset(operation) + offset;
+   }
+
+   private void checkNotPending()
+   {
+      if (pending)
+      {
+         throw new RuntimeException("Cannot change or execute a batch that is submitted to the master");
+      }
+   }
+
+   private int checkOperation(int operation)
+   {
+      if (operation < 0 || operation >= numberOfOperations)
+      {
+         throw new IllegalArgumentException("Invalid operation " + operation);
+      }
+      return operation;
+   }
+}
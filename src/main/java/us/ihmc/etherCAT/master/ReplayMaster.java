@@ -0,0 +1,451 @@
+package us.ihmc.etherCAT.master;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import us.ihmc.etherCAT.master.Slave.State;
+import us.ihmc.etherCAT.master.SyncManager.MailbusDirection;
+import us.ihmc.etherCAT.master.statistics.LogLinearHistogram;
+
+/**
+ * Deterministic offline replay of a FlightRecorder recording.
+ *
+ * The registered slaves are linked to the same locations in the process image as during the recording. Every step
+ * copies the recorded inputs into the TxPDOs, calls doControl() and compares the RxPDO outputs with the outputs
+ * recorded in the same cycle. There is no bus and no clock, cycles are replayed as fast as doControl() allows. The
+ * recorded DC time is used as the cycle timestamp, so time based controllers see the same virtual time as on the robot.
+ *
+ * Use to regression test controller changes against recorded bus data and to benchmark doControl() with realistic inputs.
+ *
+ * SDOs are not replayed and all slaves report OP.
+ *
+ * @author Jesper Smith
+ *
+ */
+public abstract class ReplayMaster implements MasterInterface
+{
+   private final FlightRecorderReader reader;
+   private final ProcessImageFrame frame;
+   private final ArrayList<Slave> slaves = new ArrayList<>();
+
+   private final LogLinearHistogram doControlHistogram = new LogLinearHistogram("doControl");
+
+   private ByteBuffer ioMap;
+   private int[] inputIndices;
+   private byte[] inputMasks;
+   private int[] outputIndices;
+   private byte[] outputMasks;
+   private final ArrayList<FlightRecorderEntry> outputEntries = new ArrayList<>();
+
+   private File outputRecordingFile = null;
+   private FlightRecorder outputRecording = null;
+
+   private long index;
+   private long replayedCycles = 0;
+   private long mismatchedCycles = 0;
+
+   /**
+    * Open a recording for replay
+    *
+    * @param recording File written by the FlightRecorder
+    * @throws IOException if the recording cannot be read
+    */
+   public ReplayMaster(File recording) throws IOException
+   {
+      this.reader = new FlightRecorderReader(recording);
+      this.frame = reader.createFrame();
+      this.index = reader.getFirstIndex();
+   }
+
+   @Override
+   public void registerSlave(Slave slave)
+   {
+      if (ioMap != null)
+      {
+         throw new RuntimeException("Cannot register slaves after initializing the replay");
+      }
+      slaves.add(slave);
+   }
+
+   /**
+    * SDOs are not replayed, the SDO is ignored.
+    */
+   @Override
+   public void registerSDO(SDO sdo)
+   {
+   }
+
+   @Override
+   public List<Slave> getSlaves()
+   {
+      return slaves;
+   }
+
+   /**
+    * Not used, cycles are replayed as fast as possible
+    */
+   @Override
+   public void setMaximumExecutionJitter(long jitterInNanoseconds)
+   {
+   }
+
+   @Override
+   public long getJitterEstimate()
+   {
+      return 0;
+   }
+
+   /**
+    * Not used, there is no bus
+    */
+   @Override
+   public void setEtherCATReceiveTimeout(int timeout)
+   {
+   }
+
+   /**
+    * Not used, there is no bus
+    */
+   @Override
+   public void disableRecovery()
+   {
+   }
+
+   /**
+    * Record the process image after every call to doControl() to a new file, to compare with the original recording. Call before init().
+    *
+    * @param file File to record to. An existing file is overwritten
+    */
+   public void enableOutputRecording(File file)
+   {
+      if (ioMap != null)
+      {
+         throw new RuntimeException("Cannot enable the output recording after initializing the replay");
+      }
+      outputRecordingFile = file;
+   }
+
+   /**
+    * Link the registered slaves to the process image of the recording.
+    *
+    * @throws IOException if the PDO configuration of a slave does not match the recording
+    */
+   public void init() throws IOException
+   {
+      ioMap = ByteBuffer.allocateDirect(reader.getProcessImageSize());
+      ioMap.order(ByteOrder.LITTLE_ENDIAN);
+
+      HashMap<String, FlightRecorderEntry> recorded = new HashMap<>();
+      for (FlightRecorderEntry entry : reader.getEntries())
+      {
+         recorded.put(getKey(entry), entry);
+      }
+
+      byte[] inputMask = new byte[reader.getProcessImageSize()];
+      byte[] outputMask = new byte[reader.getProcessImageSize()];
+      for (int i = 0; i < slaves.size(); i++)
+      {
+         Slave slave = slaves.get(i);
+         linkBuffers(slave, MailbusDirection.TXPDO, recorded, inputMask);
+         linkBuffers(slave, MailbusDirection.RXPDO, recorded, outputMask);
+         slave.setReplayState(State.OP);
+      }
+
+      inputIndices = getIndices(inputMask);
+      inputMasks = getMasks(inputMask, inputIndices);
+      outputIndices = getIndices(outputMask);
+      outputMasks = getMasks(outputMask, outputIndices);
+
+      if (outputRecordingFile != null)
+      {
+         ArrayList<FlightRecorderEntry> layout = new ArrayList<>();
+         for (int i = 0; i < slaves.size(); i++)
+         {
+            describeLayout(slaves.get(i), layout);
+         }
+         outputRecording = new FlightRecorder(outputRecordingFile, Math.max(2, reader.getNumberOfFrames()), ioMap, reader.getProcessImageSize(), layout);
+      }
+   }
+
+   /**
+    * Link the PDOs of a slave in one direction at the location found in the recording and mark their bits in the mask.
+    */
+   private void linkBuffers(Slave slave, MailbusDirection direction, HashMap<String, FlightRecorderEntry> recorded, byte[] mask) throws IOException
+   {
+      // Before linking, the entries describe the location of each member relative to the start of its PDO
+      ArrayList<FlightRecorderEntry> unlinked = new ArrayList<>();
+      describeLayout(slave, direction, unlinked);
+      if (unlinked.isEmpty())
+      {
+         return;
+      }
+
+      FlightRecorderEntry first = unlinked.get(0);
+      FlightRecorderEntry firstRecorded = recorded.get(getKey(first));
+      if (firstRecorded == null)
+      {
+         throw new IOException(slave + ": " + first.getName() + " in PDO 0x" + Integer.toHexString(first.getPDOAddress()) + " is not in the recording");
+      }
+
+      int start = firstRecorded.getBitOffset() - first.getBitOffset();
+      int availableBits = (reader.getProcessImageSize() << 3) - start;
+      BufferOffsetHolder offset = new BufferOffsetHolder(start >> 3, start & 7, availableBits);
+      slave.linkBuffers(ioMap, direction, offset);
+
+      ArrayList<FlightRecorderEntry> linked = new ArrayList<>();
+      describeLayout(slave, direction, linked);
+      for (int i = 0; i < linked.size(); i++)
+      {
+         FlightRecorderEntry entry = linked.get(i);
+         FlightRecorderEntry recordedEntry = recorded.get(getKey(entry));
+         if (recordedEntry == null || recordedEntry.getBitOffset() != entry.getBitOffset() || recordedEntry.getBitLength() != entry.getBitLength())
+         {
+            throw new IOException(slave + ": " + entry.getName() + " in PDO 0x" + Integer.toHexString(entry.getPDOAddress())
+                  + " does not match the recording. Make sure the PDO configuration is the same as during the recording.");
+         }
+
+         if (direction == MailbusDirection.RXPDO)
+         {
+            outputEntries.add(recordedEntry);
+         }
+      }
+
+      int end = (offset.getByteOffset() << 3) + offset.getBitOffset();
+      for (int bit = start; bit < end; bit++)
+      {
+         mask[bit >> 3] |= 1 << (bit & 7);
+      }
+   }
+
+   private static void describeLayout(Slave slave, MailbusDirection direction, List<FlightRecorderEntry> entries)
+   {
+      for (int sm = 0; sm < 4; sm++)
+      {
+         SyncManager syncManager = slave.syncManager(sm);
+         if (syncManager != null && syncManager.getMailbusDirection() == direction)
+         {
+            syncManager.describeLayout(slave, 0, entries);
+         }
+      }
+   }
+
+   private static void describeLayout(Slave slave, List<FlightRecorderEntry> entries)
+   {
+      describeLayout(slave, MailbusDirection.TXPDO, entries);
+      describeLayout(slave, MailbusDirection.RXPDO, entries);
+   }
+
+   private static String getKey(FlightRecorderEntry entry)
+   {
+      return entry.getAliasAddress() + ":" + entry.getPosition() + "/" + entry.getSyncManager() + "/" + entry.getPDOAddress() + "/" + entry.getName();
+   }
+
+   private static int[] getIndices(byte[] mask)
+   {
+      int count = 0;
+      for (int i = 0; i < mask.length; i++)
+      {
+         if (mask[i] != 0)
+         {
+            count++;
+         }
+      }
+
+      int[] indices = new int[count];
+      count = 0;
+      for (int i = 0; i < mask.length; i++)
+      {
+         if (mask[i] != 0)
+         {
+            indices[count++] = i;
+         }
+      }
+      return indices;
+   }
+
+   private static byte[] getMasks(byte[] mask, int[] indices)
+   {
+      byte[] masks = new byte[indices.length];
+      for (int i = 0; i < indices.length; i++)
+      {
+         masks[i] = mask[indices[i]];
+      }
+      return masks;
+   }
+
+   /**
+    * Replay the next recorded cycle.
+    *
+    * Copies the recorded inputs into the TxPDOs, calls doControl() and compares the outputs with the recording.
+    *
+    * @return false if the end of the recording is reached
+    */
+   public boolean step()
+   {
+      if (ioMap == null)
+      {
+         throw new RuntimeException("Call init() before replaying");
+      }
+      if (!reader.read(index, frame))
+      {
+         return false;
+      }
+      index++;
+
+      ByteBuffer recordedImage = frame.getProcessImage();
+      for (int i = 0; i < inputIndices.length; i++)
+      {
+         int b = inputIndices[i];
+         byte m = inputMasks[i];
+         ioMap.put(b, (byte) ((ioMap.get(b) & ~m) | (recordedImage.get(b) & m)));
+      }
+
+      long startTime = System.nanoTime();
+      doControl();
+      doControlHistogram.record(System.nanoTime() - startTime);
+
+      if (outputRecording != null)
+      {
+         outputRecording.write(frame.getCycle(), frame.getDCTime(), frame.getTimestamp(), frame.getWorkingCounter(), frame.getExpectedWorkingCounter());
+      }
+
+      replayedCycles++;
+      if (compareOutputs())
+      {
+         mismatchedCycles++;
+      }
+
+      return true;
+   }
+
+   /**
+    * Replay all remaining cycles
+    */
+   public void run()
+   {
+      while (step())
+      {
+      }
+      doControlHistogram.publish();
+   }
+
+   /**
+    * Compare the outputs with the recording
+    *
+    * @return true if the outputs are different
+    */
+   private boolean compareOutputs()
+   {
+      ByteBuffer recordedImage = frame.getProcessImage();
+      for (int i = 0; i < outputIndices.length; i++)
+      {
+         int b = outputIndices[i];
+         if (((ioMap.get(b) ^ recordedImage.get(b)) & outputMasks[i]) != 0)
+         {
+            for (int e = 0; e < outputEntries.size(); e++)
+            {
+               FlightRecorderEntry entry = outputEntries.get(e);
+               long recordedValue = entry.getRawValue(recordedImage);
+               long replayedValue = entry.getRawValue(ioMap);
+               if (recordedValue != replayedValue)
+               {
+                  outputMismatch(frame.getCycle(), entry, recordedValue, replayedValue);
+               }
+            }
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Close the recording, and the output recording if enabled
+    *
+    * @throws IOException
+    */
+   public void close() throws IOException
+   {
+      reader.close();
+      if (outputRecording != null)
+      {
+         outputRecording.close();
+      }
+   }
+
+   /**
+    * Virtual time of the current cycle. Equal to the recorded DC time, or the recorded receive timestamp if DC was not enabled.
+    *
+    * @return timestamp of the current cycle in ns
+    */
+   public long getCurrentCycleTimestamp()
+   {
+      return frame.getDCTime() != 0 ? frame.getDCTime() : frame.getTimestamp();
+   }
+
+   /**
+    *
+    * @return cycle counter of the master when the current cycle was recorded
+    */
+   public long getCycle()
+   {
+      return frame.getCycle();
+   }
+
+   /**
+    *
+    * @return number of cycles replayed
+    */
+   public long getReplayedCycles()
+   {
+      return replayedCycles;
+   }
+
+   /**
+    *
+    * @return number of cycles where the outputs differ from the recording
+    */
+   public long getMismatchedCycles()
+   {
+      return mismatchedCycles;
+   }
+
+   /**
+    *
+    * @return number of cycles in the recording
+    */
+   public int getNumberOfRecordedCycles()
+   {
+      return reader.getNumberOfFrames();
+   }
+
+   /**
+    *
+    * @return histogram of the execution time of doControl()
+    */
+   public LogLinearHistogram getDoControlHistogram()
+   {
+      return doControlHistogram;
+   }
+
+   /**
+    * Called when an output differs from the recording. Called from step(), after doControl().
+    *
+    * @param cycle Recorded cycle
+    * @param entry Output entry
+    * @param recorded Recorded raw value
+    * @param replayed Raw value written by doControl()
+    */
+   protected void outputMismatch(long cycle, FlightRecorderEntry entry, long recorded, long replayed)
+   {
+   }
+
+   /**
+    * Called for every replayed cycle, after the inputs are copied from the recording. Write the outputs in this function.
+    */
+   protected abstract void doControl();
+}
@@ -8,11 +8,27 @@ import java.nio.ByteOrder;
  * 
  * The SDO will be delegated to the house holding objects and can be polled for data.
  * 
+ * By default, a single transfer can be in progress and its result becomes available after the master synchronizes it with the 
+ * householder. After setQueueCapacity(), multiple transfers can be in flight. The results are then collected in order with pollResult().
+ * 
  * @author Jesper Smith
  *
  */
 public abstract class SDO
 {
+   /**
+    * Priority class of the transfers of an SDO. The householder transfers pending SDOs of a higher class first.
+    */
+   public enum Priority
+   {
+      /** Transfers that are needed to handle a fault, for example reading an error code */
+      URGENT,
+      /** Default priority */
+      NORMAL,
+      /** Periodic reads of non-critical data */
+      TELEMETRY
+   }
+
    private enum CyclicState
    {
       WAITING_FOR_USER_DATA, QUEUED, WAITING_FOR_TRANSFER
@@ -35,6 +51,21 @@ public abstract class SDO
 
    private boolean valid = false;
 
+   private Priority priority = Priority.NORMAL;
+   private long timeout = -1;
+
+   // Written when the transfer is queued, read by the householder after syncDataWithStatemachineThread()
+   private long queueTime;
+   private long deadline = Long.MAX_VALUE;
+
+   // Queued transfers, enabled with setQueueCapacity()
+   private SDORequestQueue requestQueue = null;
+   private ByteBuffer transferBuffer = null;
+
+   // Result of the last transfer made by the householder, used to complete coalesced transfers
+   private ByteBuffer lastTransferData;
+   private boolean lastTransferSucceeded = false;
+
    protected SDO(Slave slave, int index, int subindex, int size)
    {
       this.slave = slave;
@@ -45,14 +76,67 @@ public abstract class SDO
       buffer = ByteBuffer.allocateDirect(size);
       buffer.order(ByteOrder.LITTLE_ENDIAN);
 
+      lastTransferData = buffer;
+   }
+
+   /**
+    * Allow multiple transfers to be in flight. Call before cyclic operation.
+    * 
+    * Requests are transferred in order. The result of each request has to be collected with pollResult() before its slot is reused.
+    * 
+    * @param capacity Maximum number of requests that are not collected, rounded up to a power of two
+    */
+   public void setQueueCapacity(int capacity)
+   {
+      this.requestQueue = new SDORequestQueue(capacity, size);
+      this.transferBuffer = ByteBuffer.allocateDirect(size);
+      this.transferBuffer.order(ByteOrder.LITTLE_ENDIAN);
+      this.lastTransferData = transferBuffer;
+   }
+
+   /**
+    * @return number of requests that are queued and have not been collected with pollResult(), or 0 if the queue is not enabled
+    */
+   public int getOutstandingRequests()
+   {
+      return requestQueue == null ? 0 : requestQueue.getOutstanding();
+   }
+
+   /**
+    * Collect the result of the oldest transferred request. Only available after setQueueCapacity().
+    * 
+    * After a successful call, isValid() returns if the transfer succeeded and, for reads, the data of the request is available.
+    * 
+    * @return false if no result is available
+    */
+   public boolean pollResult()
+   {
+      if (requestQueue == null)
+      {
+         throw new RuntimeException("Results are collected automatically. Call setQueueCapacity() to use pollResult()");
+      }
+
+      if (requestQueue.hasResult())
+      {
+         valid = requestQueue.collect(buffer);
+         return true;
+      }
+      else
+      {
+         return false;
+      }
    }
 
    /**
-    * Data can be send if there is no transfer in progress
+    * Data can be send if there is no transfer in progress, or room in the queue
     * @return
     */
    protected boolean canSend()
    {
+      if (requestQueue != null)
+      {
+         return requestQueue.getOutstanding() < requestQueue.getCapacity();
+      }
       return cyclicState == CyclicState.WAITING_FOR_USER_DATA;
    }
 
@@ -63,8 +147,31 @@ public abstract class SDO
     */
    protected boolean queue()
    {
-      if (canSend())
+      return queue(timeout);
+   }
+
+   /**
+    * Queue a new transaction that has to be transferred within the timeout
+    * 
+    * @param timeout Time in ns after which the transaction fails if it has not been transferred, or -1 to wait indefinitely
+    * @return false if the previous transaction is still ongoing
+    */
+   protected boolean queue(long timeout)
+   {
+      if (requestQueue != null)
       {
+         long queueTime = System.nanoTime();
+         if (requestQueue.submit(buffer, queueTime, timeout < 0 ? Long.MAX_VALUE : queueTime + timeout))
+         {
+            slave.requestSDOTransfer();
+            return true;
+         }
+         return false;
+      }
+      else if (canSend())
+      {
+         queueTime = System.nanoTime();
+         deadline = timeout < 0 ? Long.MAX_VALUE : queueTime + timeout;
          cyclicState = CyclicState.QUEUED;
          valid = false;
       }
@@ -77,6 +184,36 @@ public abstract class SDO
 
    }
 
+   /**
+    * Set the priority class of the transfers of this SDO. Call before cyclic operation.
+    * 
+    * @param priority
+    */
+   public void setPriority(Priority priority)
+   {
+      if (priority == null)
+      {
+         throw new IllegalArgumentException("Priority cannot be null");
+      }
+      this.priority = priority;
+   }
+
+   public Priority getPriority()
+   {
+      return priority;
+   }
+
+   /**
+    * Set the default time in which a queued transaction has to be transferred. If the householder does not get to the transaction 
+    * in time, the transaction fails and isValid() stays false.
+    * 
+    * @param timeout Time in ns, or -1 to wait indefinitely
+    */
+   public void setTimeout(long timeout)
+   {
+      this.timeout = timeout;
+   }
+
    /**
     * The last queued SDO transaction was succesful and no new transaction has been queued
     * 
@@ -90,15 +227,84 @@ public abstract class SDO
    /**
     * Send SDO request
     * 
+    * @param data Data to write from 0 to data.position(), or buffer to read into
     * @return working counter
     */
-   protected abstract int send();
+   protected abstract int send(ByteBuffer data);
 
    boolean isTransferPending()
    {
+      if (requestQueue != null)
+      {
+         return requestQueue.hasPending();
+      }
       return statemachineState == StatemachineState.DO_TRANSFER;
    }
 
+   /**
+    * Internal function. Time the pending transfer was queued, in System.nanoTime()
+    */
+   long getQueueTime()
+   {
+      return requestQueue != null ? requestQueue.getPendingQueueTime() : queueTime;
+   }
+
+   /**
+    * Internal function. Time the pending transfer has to be done by, in System.nanoTime(), or Long.MAX_VALUE if there is no deadline
+    */
+   long getDeadline()
+   {
+      return requestQueue != null ? requestQueue.getPendingDeadline() : deadline;
+   }
+
+   /**
+    * Internal function. Fail the pending transfer without making an EtherCAT transaction. Execute from Master EtherCAT state machine.
+    */
+   void expire()
+   {
+      if (requestQueue != null)
+      {
+         if (requestQueue.hasPending())
+         {
+            requestQueue.complete(false);
+         }
+      }
+      else if (statemachineState == StatemachineState.DO_TRANSFER)
+      {
+         statemachineState = StatemachineState.TRANSFER_FAILED;
+      }
+   }
+
+   /**
+    * Internal function. Check if the pending transfer of this SDO can be completed with the result of a transfer of the other SDO
+    */
+   boolean canCoalesceWith(SDO other)
+   {
+      return false;
+   }
+
+   /**
+    * Internal function. Complete the pending transfer with the result of the transfer of an SDO for which canCoalesceWith() returned true. 
+    * Execute from Master EtherCAT state machine.
+    */
+   void completeFrom(SDO other)
+   {
+      if (!isTransferPending())
+      {
+         return;
+      }
+
+      ByteBuffer target = requestQueue != null ? requestQueue.getPendingData() : buffer;
+      if (other.lastTransferSucceeded)
+      {
+         for (int i = 0; i < size; i++)
+         {
+            target.put(i, other.lastTransferData.get(i));
+         }
+      }
+      completeTransfer(other.lastTransferSucceeded);
+   }
+
    /**
     * Internal function. Execute from Master EtherCAT state machine.
     * 
@@ -106,21 +312,47 @@ public abstract class SDO
     */
    boolean updateFromStatemachineThread()
    {
-      if (statemachineState == StatemachineState.DO_TRANSFER)
+      if (!isTransferPending())
+      {
+         return false;
+      }
+
+      if (requestQueue != null)
       {
-         if (send() > 0)
+         // Transfer from a private buffer, the slot is handed back to the control thread when the transfer is complete
+         ByteBuffer data = requestQueue.getPendingData();
+         for (int i = 0; i < size; i++)
          {
-            statemachineState = StatemachineState.TRANSFER_DONE;
+            transferBuffer.put(i, data.get(i));
          }
-         else
+         transferBuffer.clear();
+         transferBuffer.position(requestQueue.getPendingLength());
+
+         lastTransferSucceeded = send(transferBuffer) > 0;
+
+         for (int i = 0; i < size; i++)
          {
-            statemachineState = StatemachineState.TRANSFER_FAILED;
+            data.put(i, transferBuffer.get(i));
          }
-         return true;
       }
       else
       {
-         return false;
+         lastTransferSucceeded = send(buffer) > 0;
+      }
+
+      completeTransfer(lastTransferSucceeded);
+      return true;
+   }
+
+   private void completeTransfer(boolean succeeded)
+   {
+      if (requestQueue != null)
+      {
+         requestQueue.complete(succeeded);
+      }
+      else
+      {
+         statemachineState = succeeded ? StatemachineState.TRANSFER_DONE : StatemachineState.TRANSFER_FAILED;
       }
    }
 
@@ -140,6 +372,12 @@ public abstract class SDO
     */
    public void syncDataWithStatemachineThread()
    {
+      if (requestQueue != null)
+      {
+         // Queued transfers are handed over without synchronization
+         return;
+      }
+
       switch (cyclicState)
       {
          case WAITING_FOR_USER_DATA:
@@ -147,6 +385,7 @@ public abstract class SDO
          case QUEUED:
             statemachineState = StatemachineState.DO_TRANSFER;
             cyclicState = CyclicState.WAITING_FOR_TRANSFER;
+            slave.requestSDOTransfer();
             break;
          case WAITING_FOR_TRANSFER:
             checkStatemachineState();
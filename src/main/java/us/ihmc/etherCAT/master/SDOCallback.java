@@ -0,0 +1,20 @@
+package us.ihmc.etherCAT.master;
+
+/**
+ * Callback for SDO transfers submitted with Slave.readSDOAsync() and Slave.writeSDOAsync().
+ *
+ * @author Jesper Smith
+ *
+ */
+public interface SDOCallback
+{
+   /**
+    * Called from the householder thread when the transfer is done.
+    *
+    * Do not block in this function, this delays the state control of all slaves. The request is reused after this function returns,
+    * copy any data that is needed later.
+    *
+    * @param request Completed request
+    */
+   public void sdoCompleted(AsyncSDORequest request);
+}
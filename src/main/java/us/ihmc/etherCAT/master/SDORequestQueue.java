@@ -0,0 +1,188 @@
+package us.ihmc.etherCAT.master;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single producer, single consumer queue of transfers for a single SDO.
+ *
+ * The control thread submits requests and collects the results in order. The householder transfers the requests. Each slot holds the
+ * data of one request: the data to write, or the data that has been read. A slot is reused after its result has been collected.
+ *
+ * The slots are preallocated. Submitting, transferring and collecting does not allocate.
+ *
+ * @author Jesper Smith
+ *
+ */
+class SDORequestQueue
+{
+   private final int size;
+   private final int mask;
+
+   private final ByteBuffer[] data;
+   private final int[] length;
+   private final long[] queueTime;
+   private final long[] deadline;
+   private final boolean[] succeeded;
+
+   // Written by the control thread
+   private final AtomicLong submitIndex = new AtomicLong();
+   private final AtomicLong collectIndex = new AtomicLong();
+
+   // Written by the householder
+   private final AtomicLong transferIndex = new AtomicLong();
+
+   /**
+    * @param capacity Maximum number of requests that are submitted and not collected, rounded up to a power of two
+    * @param size Size of the SDO data
+    */
+   SDORequestQueue(int capacity, int size)
+   {
+      if (capacity < 1)
+      {
+         throw new IllegalArgumentException("The SDO request queue needs a capacity of at least one request");
+      }
+
+      int slots = Integer.bitCount(capacity) == 1 ? capacity : Integer.highestOneBit(capacity) << 1;
+      this.size = size;
+      this.mask = slots - 1;
+
+      this.data = new ByteBuffer[slots];
+      this.length = new int[slots];
+      this.queueTime = new long[slots];
+      this.deadline = new long[slots];
+      this.succeeded = new boolean[slots];
+
+      for (int i = 0; i < slots; i++)
+      {
+         data[i] = ByteBuffer.allocateDirect(size);
+         data[i].order(ByteOrder.LITTLE_ENDIAN);
+      }
+   }
+
+   /**
+    * @return maximum number of requests that can be submitted and not collected
+    */
+   int getCapacity()
+   {
+      return data.length;
+   }
+
+   /**
+    * Control thread.
+    *
+    * @return number of requests that are submitted and not collected
+    */
+   int getOutstanding()
+   {
+      return (int) (submitIndex.get() - collectIndex.get());
+   }
+
+   /**
+    * Control thread. Submit a request.
+    *
+    * @param source Data of the request, from 0 to source.position()
+    * @param queueTime Time the request was made, in System.nanoTime()
+    * @param deadline Time the request has to be transferred by, in System.nanoTime()
+    * @return false if the queue is full
+    */
+   boolean submit(ByteBuffer source, long queueTime, long deadline)
+   {
+      long index = submitIndex.get();
+      if (index - collectIndex.get() >= data.length)
+      {
+         return false;
+      }
+
+      int slot = (int) (index & mask);
+      copy(source, data[slot]);
+      this.length[slot] = source.position();
+      this.queueTime[slot] = queueTime;
+      this.deadline[slot] = deadline;
+      submitIndex.lazySet(index + 1);
+      return true;
+   }
+
+   /**
+    * Control thread. 
+    * 
+    * @return true if the result of a transferred request can be collected
+    */
+   boolean hasResult()
+   {
+      return collectIndex.get() < transferIndex.get();
+   }
+
+   /**
+    * Control thread. Collect the result of the oldest transferred request. Only call if hasResult() is true.
+    *
+    * @param target Buffer to copy the data of the request to
+    * @return true if the transfer succeeded
+    */
+   boolean collect(ByteBuffer target)
+   {
+      long index = collectIndex.get();
+      int slot = (int) (index & mask);
+      boolean result = succeeded[slot];
+      copy(data[slot], target);
+      collectIndex.lazySet(index + 1);
+      return result;
+   }
+
+   /**
+    * Householder.
+    *
+    * @return true if a request is waiting for transfer
+    */
+   boolean hasPending()
+   {
+      return transferIndex.get() < submitIndex.get();
+   }
+
+   /**
+    * Householder. Data of the oldest pending request. Only call if hasPending() is true.
+    */
+   ByteBuffer getPendingData()
+   {
+      return data[(int) (transferIndex.get() & mask)];
+   }
+
+   /**
+    * Householder. Number of bytes of the data of the oldest pending request that were set by the control thread.
+    */
+   int getPendingLength()
+   {
+      return length[(int) (transferIndex.get() & mask)];
+   }
+
+   long getPendingQueueTime()
+   {
+      return queueTime[(int) (transferIndex.get() & mask)];
+   }
+
+   long getPendingDeadline()
+   {
+      return deadline[(int) (transferIndex.get() & mask)];
+   }
+
+   /**
+    * Householder. Complete the oldest pending request and hand it to the control thread. Only call if hasPending() is true.
+    *
+    * @param succeeded true if the transfer succeeded
+    */
+   void complete(boolean succeeded)
+   {
+      long index = transferIndex.get();
+      this.succeeded[(int) (index & mask)] = succeeded;
+      transferIndex.lazySet(index + 1);
+   }
+
+   private void copy(ByteBuffer source, ByteBuffer target)
+   {
+      for (int i = 0; i < size; i++)
+      {
+         target.put(i, source.get(i));
+      }
+   }
+}
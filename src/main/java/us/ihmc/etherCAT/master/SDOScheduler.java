@@ -0,0 +1,305 @@
+package us.ihmc.etherCAT.master;
+
+import java.util.ArrayList;
+
+import us.ihmc.etherCAT.master.Slave.State;
+import us.ihmc.etherCAT.master.pipeline.LightWeightPipelineTask;
+import us.ihmc.etherCAT.master.statistics.LogLinearHistogram;
+
+/**
+ * Master-wide scheduler for the SDO transfers requested from the realtime thread.
+ *
+ * Pending transfers are selected by priority class first, then by earliest deadline. Transfers with the same priority and deadline
+ * are served round-robin over the slaves, and in order of arrival within a slave. Transfers that miss their deadline fail without an
+ * EtherCAT transaction. Pending reads of the same object share a single transfer.
+ *
+ * Only slaves in OP with a valid working counter get transfers. Runs in the householder and does not allocate.
+ *
+ * Transfers submitted from non-realtime threads with Slave.readSDOAsync() and Slave.writeSDOAsync() are scheduled with NORMAL priority,
+ * in order of submission. They are transferred when the mailbox of the slave is available, in PRE_OP or higher, and fail immediately otherwise.
+ *
+ * @author Jesper Smith
+ *
+ */
+class SDOScheduler implements LightWeightPipelineTask
+{
+   static final int ASYNC_SDO_POOL_SIZE = 32;
+
+   private final Master master;
+   private final AsyncSDOQueue asyncQueue = new AsyncSDOQueue(ASYNC_SDO_POOL_SIZE);
+   private Slave[] subdevices = new Slave[0];
+
+   private SDO next = null;
+   private int nextSubdevice = -1;
+   private boolean nextIsAsync = false;
+   private int lastServedSubdevice = -1;
+   private int transfersInVisit = 0;
+
+   private final LogLinearHistogram waitTimeHistogram = new LogLinearHistogram("SDOWaitTime");
+   private volatile int queueDepth = 0;
+   private volatile int maximumQueueDepth = 0;
+   private volatile long transfers = 0;
+   private volatile long coalescedTransfers = 0;
+   private volatile long deadlineMisses = 0;
+
+   SDOScheduler(Master master)
+   {
+      this.master = master;
+   }
+
+   void setSubdevices(Slave[] subdevices)
+   {
+      this.subdevices = subdevices;
+   }
+
+   /**
+    * Skip if no slave that can transfer SDOs has a transfer pending
+    */
+   @Override
+   public boolean skipTask()
+   {
+      return !selectNext();
+   }
+
+   /**
+    * SDO transfers wait for the mailbox of the slave
+    */
+   @Override
+   public boolean isBlocking()
+   {
+      return true;
+   }
+
+   /**
+    * Transfer the next SDO. The executor stays on this task until no transfers are pending, or a transfer has been made for every slave.
+    */
+   @Override
+   public boolean execute(long runtime)
+   {
+      if (nextIsAsync)
+      {
+         AsyncSDORequest request = asyncQueue.peek();
+         waitTimeHistogram.record(System.nanoTime() - request.getQueueTime());
+         request.transfer();
+         ++transfers;
+         asyncQueue.complete();
+         return finishTransfer();
+      }
+      else if (next == null)
+      {
+         return true;
+      }
+
+      SDO transferred = next;
+      Slave subdevice = subdevices[nextSubdevice];
+      lastServedSubdevice = nextSubdevice;
+
+      waitTimeHistogram.record(System.nanoTime() - transferred.getQueueTime());
+      transferred.updateFromStatemachineThread();
+      ++transfers;
+
+      // Complete identical pending reads with the result of this transfer
+      ArrayList<SDO> sdos = subdevice.getSDOs();
+      for (int i = 0; i < sdos.size(); i++)
+      {
+         SDO sdo = sdos.get(i);
+         if (sdo != transferred && sdo.isTransferPending() && sdo.canCoalesceWith(transferred))
+         {
+            waitTimeHistogram.record(System.nanoTime() - sdo.getQueueTime());
+            sdo.completeFrom(transferred);
+            ++coalescedTransfers;
+         }
+      }
+
+      return finishTransfer();
+   }
+
+   private boolean finishTransfer()
+   {
+      ++transfersInVisit;
+      if (transfersInVisit < subdevices.length && selectNext())
+      {
+         return false;
+      }
+      else
+      {
+         transfersInVisit = 0;
+         return true;
+      }
+   }
+
+   /**
+    * Expire pending transfers that missed their deadline and select the next transfer
+    *
+    * @return false if no SDO can be transferred
+    */
+   private boolean selectNext()
+   {
+      long now = System.nanoTime();
+      int depth = 0;
+
+      next = null;
+      nextSubdevice = -1;
+      nextIsAsync = false;
+
+      for (int i = 0; i < subdevices.length; i++)
+      {
+         ArrayList<SDO> sdos = subdevices[i].getSDOs();
+         if (sdos.isEmpty())
+         {
+            continue;
+         }
+
+         boolean available = canTransfer(subdevices[i]);
+         for (int j = 0; j < sdos.size(); j++)
+         {
+            SDO sdo = sdos.get(j);
+            if (!sdo.isTransferPending())
+            {
+               continue;
+            }
+
+            if (sdo.getDeadline() < now)
+            {
+               sdo.expire();
+               ++deadlineMisses;
+               continue;
+            }
+
+            ++depth;
+            if (available && (next == null || isBefore(sdo, i, next, nextSubdevice)))
+            {
+               next = sdo;
+               nextSubdevice = i;
+            }
+         }
+      }
+
+      AsyncSDORequest request;
+      while ((request = asyncQueue.peek()) != null && !canUseMailbox(request.getSlave()))
+      {
+         request.fail();
+         asyncQueue.complete();
+      }
+
+      if (request != null)
+      {
+         depth += asyncQueue.size();
+         nextIsAsync = next == null || isBefore(request, next);
+      }
+
+      queueDepth = depth;
+      if (depth > maximumQueueDepth)
+      {
+         maximumQueueDepth = depth;
+      }
+
+      return next != null || nextIsAsync;
+   }
+
+   /**
+    * Check if the working counter of the process data group of the slave is the expected working counter and the slave is in OP state
+    * 
+    * @return true if SDOs can be transferred to the slave
+    */
+   boolean canTransfer(Slave subdevice)
+   {
+      return subdevice.getState() == State.OP && master.isWorkingCounterValid(subdevice);
+   }
+
+   /**
+    * @return true if the mailbox of the slave can be used for transfers submitted from non-realtime threads
+    */
+   boolean canUseMailbox(Slave subdevice)
+   {
+      return subdevice.getHouseholderState().ordinal() >= State.PRE_OP.ordinal();
+   }
+
+   /**
+    * Transfers submitted from non-realtime threads have NORMAL priority and no deadline
+    */
+   private boolean isBefore(AsyncSDORequest a, SDO b)
+   {
+      if (b.getPriority() != SDO.Priority.NORMAL)
+      {
+         return SDO.Priority.NORMAL.ordinal() < b.getPriority().ordinal();
+      }
+      else if (b.getDeadline() != Long.MAX_VALUE)
+      {
+         return false;
+      }
+      else
+      {
+         return a.getQueueTime() < b.getQueueTime();
+      }
+   }
+
+   private boolean isBefore(SDO a, int aSubdevice, SDO b, int bSubdevice)
+   {
+      if (a.getPriority() != b.getPriority())
+      {
+         return a.getPriority().ordinal() < b.getPriority().ordinal();
+      }
+      else if (a.getDeadline() != b.getDeadline())
+      {
+         return a.getDeadline() < b.getDeadline();
+      }
+      else if (aSubdevice != bSubdevice)
+      {
+         return rotationDistance(aSubdevice) < rotationDistance(bSubdevice);
+      }
+      else
+      {
+         return a.getQueueTime() < b.getQueueTime();
+      }
+   }
+
+   /**
+    * @return number of slaves after the last served slave till the given slave
+    */
+   private int rotationDistance(int subdevice)
+   {
+      return (subdevice - lastServedSubdevice - 1 + subdevices.length) % subdevices.length;
+   }
+
+   AsyncSDOQueue getAsyncQueue()
+   {
+      return asyncQueue;
+   }
+
+   /**
+    * @return histogram of the time between queueing and transferring an SDO
+    */
+   LogLinearHistogram getWaitTimeHistogram()
+   {
+      return waitTimeHistogram;
+   }
+
+   /**
+    * @return number of pending transfers at the last check
+    */
+   int getQueueDepth()
+   {
+      return queueDepth;
+   }
+
+   int getMaximumQueueDepth()
+   {
+      return maximumQueueDepth;
+   }
+
+   long getTransfers()
+   {
+      return transfers;
+   }
+
+   long getCoalescedTransfers()
+   {
+      return coalescedTransfers;
+   }
+
+   long getDeadlineMisses()
+   {
+      return deadlineMisses;
+   }
+}
@@ -0,0 +1,361 @@
+package us.ihmc.etherCAT.master;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Streaming transfer of large SDO objects, such as firmware images, parameter sets and logs.
+ *
+ * The object is transferred with a segmented SDO transfer, one chunk at a time. Each chunk is transferred by a single native call
+ * that handles as many segments as fit in the chunk. Uploaded data is passed to a ChunkSink or channel straight from the direct chunk
+ * buffer, and downloaded data is read from a channel into the chunk buffer or taken directly from a direct source buffer. No
+ * intermediate heap copies are made.
+ *
+ * The transfers are blocking, as the other blocking SDO functions of Slave. Do not use from the realtime thread or during cyclic
+ * operation of time critical slaves.
+ *
+ * @author Jesper Smith
+ *
+ */
+public class SDOStream
+{
+   // Layout of the stream state. Must match ihmc_sdostreamt in ethercathelper.c
+   static final int STREAM_TOTAL = 0;
+   static final int STREAM_TRANSFERRED = 4;
+   static final int STREAM_TOGGLE = 8;
+   static final int STREAM_STATE = 12;
+   static final int STREAM_SIZE = 16;
+
+   static final int STATE_INIT = 0;
+   static final int STATE_SEGMENTS = 1;
+   static final int STATE_DONE = 2;
+   static final int STATE_FAILED = 3;
+
+   /**
+    * Size of the largest mailbox. A chunk holds at least one mailbox.
+    */
+   public static final int MINIMUM_CHUNK_SIZE = 1486;
+
+   /**
+    * Receiver of uploaded data
+    */
+   public interface ChunkSink
+   {
+      /**
+       * Consume the data between position and limit of chunk. The chunk is reused after this function returns.
+       */
+      public void write(ByteBuffer chunk) throws IOException;
+   }
+
+   /**
+    * Progress of a streaming transfer
+    */
+   public interface ProgressListener
+   {
+      /**
+       * Called from the transferring thread after every chunk
+       */
+      public void progress(SDOStream stream);
+   }
+
+   private interface ChunkSource
+   {
+      public int read(ByteBuffer chunk) throws IOException;
+   }
+
+   private final Slave slave;
+   private final ByteBuffer state;
+   private final ByteBuffer chunk;
+
+   private ProgressListener listener;
+
+   private int index;
+   private int subindex;
+   private boolean upload;
+   private long startTime;
+   private long endTime;
+   private int abortCode;
+
+   /**
+    * @param slave Slave to transfer objects from and to
+    * @param chunkSize Size of the chunk buffer in bytes, at least MINIMUM_CHUNK_SIZE. Larger chunks reduce the number of native calls.
+    */
+   public SDOStream(Slave slave, int chunkSize)
+   {
+      if (chunkSize < MINIMUM_CHUNK_SIZE)
+      {
+         throw new IllegalArgumentException("The chunk size has to be at least " + MINIMUM_CHUNK_SIZE + " bytes");
+      }
+
+      this.slave = slave;
+      this.state = ByteBuffer.allocateDirect(STREAM_SIZE);
+      this.state.order(ByteOrder.nativeOrder());
+      this.chunk = ByteBuffer.allocateDirect(chunkSize);
+      this.chunk.order(ByteOrder.LITTLE_ENDIAN);
+   }
+
+   /**
+    * Set a listener that is notified after every chunk. Set to null to remove.
+    */
+   public void setProgressListener(ProgressListener listener)
+   {
+      this.listener = listener;
+   }
+
+   /**
+    * Upload an SDO object from the slave.
+    *
+    * @param index Index of the SDO
+    * @param subindex Subindex of the SDO
+    * @param sink Receiver of the data, called for every chunk
+    * @return number of bytes uploaded
+    * @throws IOException if the transfer fails or the sink throws an exception
+    */
+   public int upload(int index, int subindex, ChunkSink sink) throws IOException
+   {
+      start(index, subindex, true, 0);
+
+      while (!isDone())
+      {
+         int read = slave.uploadSDOStream(index, subindex, state, chunk, 0, chunk.capacity());
+         if (read < 0)
+         {
+            fail();
+         }
+
+         chunk.clear();
+         chunk.limit(read);
+         if (read > 0)
+         {
+            sink.write(chunk);
+         }
+         progress();
+      }
+
+      endTime = System.nanoTime();
+      return getTransferred();
+   }
+
+   /**
+    * Upload an SDO object from the slave to a channel, for example a FileChannel.
+    *
+    * @param index Index of the SDO
+    * @param subindex Subindex of the SDO
+    * @param channel Channel to write the data to
+    * @return number of bytes uploaded
+    * @throws IOException if the transfer fails or the channel cannot be written
+    */
+   public int upload(int index, int subindex, WritableByteChannel channel) throws IOException
+   {
+      return upload(index, subindex, (ChunkSink) (data) ->
+      {
+         while (data.hasRemaining())
+         {
+            channel.write(data);
+         }
+      });
+   }
+
+   /**
+    * Upload an SDO object from the slave to a buffer, starting at the position of the buffer. The position is advanced by the number
+    * of bytes uploaded.
+    *
+    * @param index Index of the SDO
+    * @param subindex Subindex of the SDO
+    * @param target Buffer to store the data, with enough room for the object
+    * @return number of bytes uploaded
+    * @throws IOException if the transfer fails or the object does not fit in the buffer
+    */
+   public int upload(int index, int subindex, ByteBuffer target) throws IOException
+   {
+      return upload(index, subindex, (ChunkSink) (data) ->
+      {
+         if (data.remaining() > target.remaining())
+         {
+            throw new IOException("SDO " + EtherCATStatusCallback.hex(index) + ":" + EtherCATStatusCallback.hex(subindex) + " of size "
+                  + getTotalSize() + " does not fit in the target buffer");
+         }
+         target.put(data);
+      });
+   }
+
+   /**
+    * Download size bytes from a channel, for example a FileChannel, to an SDO object on the slave.
+    *
+    * @param index Index of the SDO
+    * @param subindex Subindex of the SDO
+    * @param channel Channel to read the data from
+    * @param size Size of the object in bytes
+    * @return number of bytes downloaded
+    * @throws IOException if the transfer fails or the channel ends before size bytes are read
+    */
+   public int download(int index, int subindex, ReadableByteChannel channel, int size) throws IOException
+   {
+      return download(index, subindex, (ChunkSource) channel::read, size);
+   }
+
+   /**
+    * Download the data between position and limit of a buffer to an SDO object on the slave. The position is advanced by the number of
+    * bytes downloaded.
+    *
+    * Direct buffers are transferred in place.
+    *
+    * @param index Index of the SDO
+    * @param subindex Subindex of the SDO
+    * @param source Data to download
+    * @return number of bytes downloaded
+    * @throws IOException if the transfer fails
+    */
+   public int download(int index, int subindex, ByteBuffer source) throws IOException
+   {
+      if (!source.isDirect())
+      {
+         return download(index, subindex, (ChunkSource) (data) ->
+         {
+            int length = Math.min(data.remaining(), source.remaining());
+            ByteBuffer slice = source.duplicate();
+            slice.limit(slice.position() + length);
+            data.put(slice);
+            source.position(source.position() + length);
+            return length;
+         }, source.remaining());
+      }
+
+      start(index, subindex, false, source.remaining());
+
+      while (!isDone())
+      {
+         int written = slave.downloadSDOStream(index, subindex, state, source, source.position(), source.remaining());
+         if (written < 0)
+         {
+            fail();
+         }
+         source.position(source.position() + written);
+         progress();
+      }
+
+      endTime = System.nanoTime();
+      return getTransferred();
+   }
+
+   private int download(int index, int subindex, ChunkSource source, int size) throws IOException
+   {
+      start(index, subindex, false, size);
+
+      int remaining = size;
+      chunk.clear();
+      while (!isDone())
+      {
+         // Fill the chunk, without reading past the end of the object
+         chunk.limit(Math.min(chunk.capacity(), chunk.position() + remaining));
+         while (chunk.hasRemaining())
+         {
+            int read = source.read(chunk);
+            if (read < 0)
+            {
+               throw new IOException("Source ended after " + (size - remaining) + " of " + size + " bytes");
+            }
+            remaining -= read;
+         }
+         chunk.flip();
+
+         int written = slave.downloadSDOStream(index, subindex, state, chunk, 0, chunk.limit());
+         if (written < 0)
+         {
+            fail();
+         }
+         chunk.position(written);
+         chunk.compact();
+         progress();
+      }
+
+      endTime = System.nanoTime();
+      return getTransferred();
+   }
+
+   private void start(int index, int subindex, boolean upload, int size)
+   {
+      if (size < 0)
+      {
+         throw new IllegalArgumentException("Size cannot be negative");
+      }
+
+      this.index = index;
+      this.subindex = subindex;
+      this.upload = upload;
+      this.abortCode = 0;
+      this.startTime = System.nanoTime();
+      this.endTime = 0;
+
+      state.putInt(STREAM_TOTAL, size);
+      state.putInt(STREAM_TRANSFERRED, 0);
+      state.putInt(STREAM_TOGGLE, 0);
+      state.putInt(STREAM_STATE, STATE_INIT);
+   }
+
+   private boolean isDone()
+   {
+      return state.getInt(STREAM_STATE) == STATE_DONE;
+   }
+
+   private void progress()
+   {
+      if (listener != null)
+      {
+         listener.progress(this);
+      }
+   }
+
+   private void fail() throws IOException
+   {
+      endTime = System.nanoTime();
+      abortCode = slave.getSDOAbortCode(index, subindex);
+      throw new IOException("Streaming SDO " + (upload ? "upload" : "download") + " of " + EtherCATStatusCallback.hex(index) + ":"
+            + EtherCATStatusCallback.hex(subindex) + " failed after " + getTransferred() + " bytes, abort code "
+            + EtherCATStatusCallback.hex(abortCode & 0xFFFFFFFFL));
+   }
+
+   /**
+    * @return number of bytes transferred in the current or last transfer
+    */
+   public int getTransferred()
+   {
+      return state.getInt(STREAM_TRANSFERRED);
+   }
+
+   /**
+    * @return size of the object of the current or last transfer in bytes. For uploads, known after the first chunk.
+    */
+   public int getTotalSize()
+   {
+      return state.getInt(STREAM_TOTAL);
+   }
+
+   /**
+    * @return duration of the last transfer, or the time since the start of the current transfer, in nanoseconds
+    */
+   public long getDuration()
+   {
+      return (endTime == 0 ? System.nanoTime() : endTime) - startTime;
+   }
+
+   /**
+    * @return average throughput of the current or last transfer in bytes per second
+    */
+   public double getThroughput()
+   {
+      long duration = getDuration();
+      return duration > 0 ? getTransferred() * 1e9 / duration : 0.0;
+   }
+
+   /**
+    * @return SDO abort code sent by the slave if the last transfer failed, or 0 if the slave did not abort the transfer
+    */
+   public int getAbortCode()
+   {
+      return abortCode;
+   }
+}
@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.List;
 
 import us.ihmc.etherCAT.master.EtherCATStatusCallback.TRACE_EVENT;
 import us.ihmc.etherCAT.master.SyncManager.MailbusDirection;
@@ -48,6 +49,7 @@ public class Slave
    private final SyncManager[] syncManagers = new SyncManager[4];
 
    private Master master;
+   private ProcessDataGroup processDataGroup;
    private ecx_context context;
    private ecx_portt port;
    private ec_slavet ec_slave;
@@ -60,11 +62,18 @@ public class Slave
    
    private State houseHolderState = State.OFFLINE;
    private State state = State.OFFLINE; 
+   private volatile boolean stateControlAttention = false;
    
    private int houseHolderAlStatusCode = 0;
    private int alStatusCode = 0;
    
+   private ByteBuffer cyclicStatus = null;
+   private int cyclicALStatusOffset = -1;
+   private int cyclicDCSysDiffOffset = -1;
+   private int cyclicDCSyncOffset = Integer.MAX_VALUE;
+   
    private long cycleTimeInNs;
+   private boolean configureWithDC;
    
    private final ArrayList<SDO> SDOs = new ArrayList<>();
    
@@ -132,14 +141,18 @@ public class Slave
    }
 
    /**
-    * Internal function. Configures the slave before the switch from pre-op to safe-op. Sets up the PDO assignment.
+    * Internal function. Configures the slave before the switch from pre-op to safe-op. 
+    * 
+    * The mailbox configuration, the PDO assignment and the PDO watchdog, is queued on the engine to run concurrently with the other 
+    * slaves. Call finishConfiguration() after the engine is done.
     * 
     * @param context
     * @param slave
     * @param slaveIndex
+    * @param engine Engine to queue the mailbox configuration on
     */
    
-   void configure(Master master, ecx_context context, ecx_portt port, ec_slavet slave, int slaveIndex, boolean enableDC, long cycleTimeInNs)
+   void configure(Master master, ecx_context context, ecx_portt port, ec_slavet slave, int slaveIndex, boolean enableDC, long cycleTimeInNs, MailboxEngine engine)
    {
       this.master = master;
       this.context = context;
@@ -147,11 +160,37 @@ public class Slave
       this.ec_slave = slave;
       this.slaveIndex = slaveIndex;
       this.cycleTimeInNs = cycleTimeInNs;
+      this.configureWithDC = enableDC;
+      
+      startConfiguration(master, slave, engine);
+   }
+   
+   /**
+    * Internal function. Finish the configuration after the mailbox configuration of all slaves is done.
+    */
+   void finishConfiguration()
+   {
+      finishConfiguration(configureWithDC);
+   }
+   
+   private void finishConfiguration(boolean enableDC)
+   {
+      master.getEtherCATStatusCallback().trace(this, TRACE_EVENT.CONFIGURE_DC);
+      configure(enableDC, cycleTimeInNs);
       
-      configureImpl(master, slave, enableDC, cycleTimeInNs);
+      // Slaves are in SAFE_OP when the master has been initialized
+      state = State.SAFE_OP;
    }
 
-   private void configureImpl(Master master, ec_slavet slave, boolean enableDC, long cycleTimeInNs)
+   private void configureImpl(Master master, ec_slavet slave, boolean enableDC)
+   {
+      MailboxEngine engine = new MailboxEngine(master);
+      startConfiguration(master, slave, engine);
+      engine.run();
+      finishConfiguration(enableDC);
+   }
+   
+   private void startConfiguration(Master master, ec_slavet slave, MailboxEngine engine)
    {
       configureDCSync0(false, 0, 0);   // Disable DC Sync
       
@@ -161,48 +200,57 @@ public class Slave
           slave.setBlockLRW((short) 1);
       }
       
-      // Configure the PDO watchdog register by reading the divisor first
       if(configurePDOWatchdog)
       {
-         ByteBuffer pdoWatchdogBuffer = ByteBuffer.allocateDirect(4);
-         pdoWatchdogBuffer.order(ByteOrder.LITTLE_ENDIAN);
-         
-         master.getEtherCATStatusCallback().trace(this, TRACE_EVENT.READ_WATCHDOG_DIV);
-         int wc = soem.ecx_FPRD(port, ec_slave.getConfigadr(), ECT_REG_WATCHDOG_DIV, 4, pdoWatchdogBuffer, soemConstants.EC_TIMEOUTRET);
-         if(wc > 0)
-         {
-            int watchdogDivRaw = pdoWatchdogBuffer.getInt(0);
-            int watchdogDiv = 40 * (watchdogDivRaw + 2);
-            
-            int watchdogPDORaw = pdoWatchdogTimeout / watchdogDiv;
-            pdoWatchdogBuffer.putInt(watchdogPDORaw);
-            master.getEtherCATStatusCallback().notifyWatchdogConfiguration(this, pdoWatchdogTimeout, watchdogDiv, watchdogPDORaw);
-            wc = soem.ecx_FPWR(port, ec_slave.getConfigadr(), ECT_REG_WATCHDOG_PDO_TIMEOUT, 4, pdoWatchdogBuffer, soemConstants.EC_TIMEOUTRET);
-            if(wc == 0)
-            {
-               master.getEtherCATStatusCallback().notifyWatchdogConfigurationError(this);
-            }
-         }
-         else
-         {
-            master.getEtherCATStatusCallback().notifyWatchdogConfigurationError(this);
-         }
-         
+         engine.submit(this, new PDOWatchdogTask());
       }
       
       for (int i = 0; i < syncManagers.length; i++)
       {
          if (syncManagers[i] != null)
          {
-            syncManagers[i].configure(master, this);
+            syncManagers[i].configure(master, this, engine);
+         }
+      }
+   }
+   
+   /**
+    * Configure the PDO watchdog register by reading the divisor first
+    */
+   private class PDOWatchdogTask implements MailboxEngine.Task
+   {
+      @Override
+      public boolean next(MailboxEngine.Transfer transfer)
+      {
+         switch(transfer.getType())
+         {
+         case NONE:
+            master.getEtherCATStatusCallback().trace(Slave.this, TRACE_EVENT.READ_WATCHDOG_DIV);
+            transfer.readRegister(ECT_REG_WATCHDOG_DIV, 4);
+            return true;
+         case READ_REGISTER:
+            if(!transfer.isSuccessful())
+            {
+               master.getEtherCATStatusCallback().notifyWatchdogConfigurationError(Slave.this);
+               return false;
+            }
+            
+            int watchdogDivRaw = transfer.getData().getInt(0);
+            int watchdogDiv = 40 * (watchdogDivRaw + 2);
+            
+            int watchdogPDORaw = pdoWatchdogTimeout / watchdogDiv;
+            master.getEtherCATStatusCallback().notifyWatchdogConfiguration(Slave.this, pdoWatchdogTimeout, watchdogDiv, watchdogPDORaw);
+            transfer.writeRegister(ECT_REG_WATCHDOG_PDO_TIMEOUT);
+            transfer.getData().putInt(watchdogPDORaw);
+            return true;
+         default:
+            if(!transfer.isSuccessful())
+            {
+               master.getEtherCATStatusCallback().notifyWatchdogConfigurationError(Slave.this);
+            }
+            return false;
          }
       }
-
-      master.getEtherCATStatusCallback().trace(this, TRACE_EVENT.CONFIGURE_DC);
-      configure(enableDC, cycleTimeInNs);
-      
-      // Slaves are in SAFE_OP when the master has been initialized
-      state = State.SAFE_OP;
    }
    
    /**
@@ -254,7 +302,7 @@ public class Slave
    /**
     * Write the data in buffer from position 0 to buffer.position() to a SDO index. Blocking.
     * 
-    *  Do not use in cyclical operation, register WriteSDO objects with the master to avoid blocking.
+    *  Do not use in cyclical operation, register WriteSDO objects with the master or use writeSDOAsync() to avoid blocking.
     * 
     * @param index Index of the SDO 
     * @param subindex Subindex of the SDO
@@ -272,7 +320,7 @@ public class Slave
    /**
     * Write the data in buffer from position 0 to buffer.position() to a SDO index. Blocking.
     * 
-    *  Do not use in cyclical operation, register WriteSDO objects with the master to avoid blocking.
+    *  Do not use in cyclical operation, register WriteSDO objects with the master or use writeSDOAsync() to avoid blocking.
     * 
     * @param index Index of the SDO 
     * @param subindex Subindex of the SDO
@@ -284,6 +332,60 @@ public class Slave
       return writeSDO(index, subindex, buffer, soemConstants.EC_TIMEOUTRXM);
    }
    
+   /**
+    * Read all entries of an object. Blocking.
+    * 
+    * Uses a single Complete Access transfer if isCompleteAccessEnabled() is true, and reads the object subindex by subindex otherwise.
+    * 
+    * The data is stored in the Complete Access layout: the number of entries (subindex 0) padded to 16 bits, followed by the entries.
+    * Without Complete Access the entries are concatenated, which matches the Complete Access layout for objects with byte aligned 
+    * entries such as the PDO mapping and assignment objects. Position is set to 0 and limit to the number of bytes read.
+    * 
+    * Do not use in cyclical operation.
+    * 
+    * @param index Index of the object
+    * @param buffer direct buffer to store the data
+    * 
+    * @return number of bytes read, or -1 if the read failed
+    */
+   public int readObject(int index, ByteBuffer buffer)
+   {
+      if(master == null)
+      {
+         throw new RuntimeException(toString() + " is not configured. Call master.init() first.");
+      }
+      int size = soem.ecx_SDO_read_object(context, slaveIndex, index, buffer.capacity(), buffer, soemConstants.EC_TIMEOUTRXM);
+      buffer.position(0);
+      buffer.limit(size > 0 ? size : 0);
+      master.getEtherCATStatusCallback().notifyReadSDO(this, index, size > 0 ? size : 0, 0, size > 0 ? 1 : 0, buffer);
+      return size;
+   }
+   
+   /**
+    * Write all entries of an object from a buffer in the Complete Access layout, from position 0 to buffer.position(). Blocking.
+    * 
+    * Uses a single Complete Access transfer if isCompleteAccessEnabled() is true. Otherwise subindex 0 is cleared, the entries are 
+    * written one by one and subindex 0 is set to the number of entries, as required for the PDO mapping and assignment objects.
+    * 
+    * Do not use in cyclical operation.
+    * 
+    * @param index Index of the object
+    * @param entrySize Size of each entry in bytes
+    * @param buffer direct buffer with the number of entries padded to 16 bits, followed by the entries
+    * 
+    * @return working counter
+    */
+   public int writeObject(int index, int entrySize, ByteBuffer buffer)
+   {
+      if(master == null)
+      {
+         throw new RuntimeException(toString() + " is not configured. Call master.init() first.");
+      }
+      int wc = soem.ecx_SDO_write_object(context, slaveIndex, index, entrySize, buffer.position(), buffer, soemConstants.EC_TIMEOUTRXM);
+      master.getEtherCATStatusCallback().notifySDOWrite(this, index, 0, wc, buffer);
+      return wc;
+   }
+   
    
    /**
     * Write ASCII or UTF-8 string to SDO. 
@@ -517,6 +619,112 @@ public class Slave
       return wc;
    }
    
+   /**
+    * Read a SDO value to a buffer without blocking. Safe to call from any thread during cyclic operation.
+    * 
+    * The read is executed by the householder thread, which calls the callback when done. The position and limit of the buffer are 
+    * set accordingly. Do not access the buffer till the callback is called.
+    * 
+    * @param index Index of the SDO
+    * @param subIndex Subindex of the SDO
+    * @param size Size of the SDO data in bytes
+    * @param sdoBuffer direct buffer to store data, has to be at least size bytes
+    * @param callback Called from the householder thread when the read is done
+    * 
+    * @return false if too many requests are outstanding
+    */
+   public boolean readSDOAsync(int index, int subIndex, int size, ByteBuffer sdoBuffer, SDOCallback callback)
+   {
+      if(sdoBuffer.capacity() < size)
+      {
+         throw new IllegalArgumentException("Cannot read data of size " + size + "bytes into buffer. Increase buffer size");
+      }
+      return submitSDOAsync(index, subIndex, size, true, sdoBuffer, callback);
+   }
+   
+   /**
+    * Write the data in buffer from position 0 to buffer.position() to a SDO index without blocking. Safe to call from any thread during cyclic operation.
+    * 
+    * The write is executed by the householder thread, which calls the callback when done. Do not access the buffer till the callback is called.
+    * 
+    * @param index Index of the SDO 
+    * @param subindex Subindex of the SDO
+    * @param buffer direct buffer with the data
+    * @param callback Called from the householder thread when the write is done
+    * 
+    * @return false if too many requests are outstanding
+    */
+   public boolean writeSDOAsync(int index, int subindex, ByteBuffer buffer, SDOCallback callback)
+   {
+      return submitSDOAsync(index, subindex, buffer.position(), false, buffer, callback);
+   }
+   
+   private boolean submitSDOAsync(int index, int subindex, int size, boolean read, ByteBuffer buffer, SDOCallback callback)
+   {
+      if(master == null)
+      {
+         throw new RuntimeException(toString() + " is not configured. Call master.init() first.");
+      }
+      if(!buffer.isDirect())
+      {
+         throw new IllegalArgumentException("SDO buffer has to be a direct buffer");
+      }
+      if(callback == null)
+      {
+         throw new IllegalArgumentException("Callback cannot be null");
+      }
+      
+      AsyncSDOQueue queue = master.getAsyncSDOQueue();
+      AsyncSDORequest request = queue.acquire();
+      if(request == null)
+      {
+         return false;
+      }
+      
+      request.set(this, index, subindex, size, read, buffer, callback);
+      queue.submit(request);
+      requestSDOTransfer();
+      return true;
+   }
+   
+   /**
+    * Internal function. Get the abort code of the last failed SDO transfer. Clears the error list of the master.
+    * 
+    * @return abort code sent by the slave, or 0 if the slave did not abort the transfer
+    */
+   int getSDOAbortCode(int index, int subindex)
+   {
+      return soem.ecx_SDO_abortcode(context, slaveIndex, index, (short) subindex);
+   }
+
+   /**
+    * Internal function. Upload the next segments of a streaming SDO transfer to chunk, starting at offset.
+    *
+    * @return number of bytes written to the chunk, or -1 if the transfer failed
+    */
+   int uploadSDOStream(int index, int subindex, ByteBuffer state, ByteBuffer chunk, int offset, int length)
+   {
+      if(master == null)
+      {
+         throw new RuntimeException(toString() + " is not configured. Call master.init() first.");
+      }
+      return soem.ecx_SDO_upload_stream(context, slaveIndex, index, (short) subindex, state, chunk, offset, length, soemConstants.EC_TIMEOUTRXM);
+   }
+
+   /**
+    * Internal function. Download the next segments of a streaming SDO transfer from chunk, starting at offset.
+    *
+    * @return number of bytes consumed from the chunk, or -1 if the transfer failed
+    */
+   int downloadSDOStream(int index, int subindex, ByteBuffer state, ByteBuffer chunk, int offset, int length)
+   {
+      if(master == null)
+      {
+         throw new RuntimeException(toString() + " is not configured. Call master.init() first.");
+      }
+      return soem.ecx_SDO_download_stream(context, slaveIndex, index, (short) subindex, state, chunk, offset, length, soemConstants.EC_TIMEOUTRXM);
+   }
+
    /**
     * Read SDO with data of type byte (int8)
     * 
@@ -739,13 +947,7 @@ public class Slave
          master.getEtherCATStatusCallback().notifySlaveBuffer(this, soem.ecx_inputoffset(ec_slave, ioMap), ec_slave.getIbits(), ec_slave.getIstartbit(), soem.ecx_outputoffset(ec_slave, ioMap), ec_slave.getObits(), ec_slave.getOstartbit());
          BufferOffsetHolder inputOffset = new BufferOffsetHolder(soem.ecx_inputoffset(ec_slave, ioMap), ec_slave.getIstartbit(), ec_slave.getIbits());
          
-         for (int i = 0; i < syncManagers.length; i++)
-         {
-            if (syncManagers[i] != null && syncManagers[i].getMailbusDirection() == MailbusDirection.TXPDO)
-            {
-               syncManagers[i].linkBuffers(ioMap, inputOffset);
-            }
-         }
+         linkBuffers(ioMap, MailbusDirection.TXPDO, inputOffset);
    
          
          if(inputOffset.getAvailableBits() != 0)
@@ -754,13 +956,7 @@ public class Slave
          }
          
          BufferOffsetHolder outputOffset = new BufferOffsetHolder(soem.ecx_outputoffset(ec_slave, ioMap), ec_slave.getOstartbit(), ec_slave.getObits());
-         for (int i = 0; i < syncManagers.length; i++)
-         {
-            if (syncManagers[i] != null && syncManagers[i].getMailbusDirection() == MailbusDirection.RXPDO)
-            {
-               syncManagers[i].linkBuffers(ioMap, outputOffset);
-            }
-         }
+         linkBuffers(ioMap, MailbusDirection.RXPDO, outputOffset);
          if(outputOffset.getAvailableBits() != 0)
          {
             throw new IOException(toString() + ": " + outputOffset.getAvailableBits() + " unmapped bits in the output mappping. Make sure that your PDO configuration matches the slave information.");
@@ -772,6 +968,98 @@ public class Slave
       }
    }
 
+   /**
+    * Internal function. Link the PDOs of all sync managers in a direction to consecutive locations in the IO map.
+    * 
+    * @param ioMap
+    * @param direction TXPDO for inputs, RXPDO for outputs
+    * @param offset Start of the PDOs. Increased by the size of the PDOs
+    * @throws IOException if the PDOs do not fit
+    */
+   void linkBuffers(ByteBuffer ioMap, MailbusDirection direction, BufferOffsetHolder offset) throws IOException
+   {
+      for (int i = 0; i < syncManagers.length; i++)
+      {
+         if (syncManagers[i] != null && syncManagers[i].getMailbusDirection() == direction)
+         {
+            syncManagers[i].linkBuffers(ioMap, offset);
+         }
+      }
+   }
+
+   /**
+    * Internal function. Set the location of the AL status and DC system time difference registers in the process data.
+    * 
+    * @param ioMap process data of the master
+    * @param alStatusOffset offset of the AL status register, or -1 if it is not mapped
+    * @param dcSysDiffOffset offset of the DC system time difference register, or -1 if it is not mapped
+    */
+   void setCyclicStatus(ByteBuffer ioMap, int alStatusOffset, int dcSysDiffOffset)
+   {
+      this.cyclicStatus = ioMap;
+      this.cyclicALStatusOffset = alStatusOffset;
+      this.cyclicDCSysDiffOffset = dcSysDiffOffset;
+   }
+   
+   /**
+    * 
+    * @return true if the AL status of this slave is read in the cyclic process data, see Master.enableCyclicSlaveStatus()
+    */
+   public boolean hasCyclicStatus()
+   {
+      return cyclicALStatusOffset >= 0;
+   }
+
+   /**
+    * Internal function. Set the state without a connection to the slave, used when replaying a recording.
+    * 
+    * @param state
+    */
+   void setReplayState(State state)
+   {
+      this.houseHolderState = state;
+      this.state = state;
+   }
+
+   /**
+    * Internal function. Add the location of all PDO entries of this slave to the flight recorder layout. Call after linkBuffers().
+    * 
+    * @param entries
+    */
+   void describeProcessDataLayout(List<FlightRecorderEntry> entries)
+   {
+      for (int i = 0; i < syncManagers.length; i++)
+      {
+         if (syncManagers[i] != null)
+         {
+            syncManagers[i].describeLayout(this, processDataGroup.getIOMapOffset(), entries);
+         }
+      }
+   }
+
+   /**
+    * Internal function. Store the location of the process data and the applied PDO assignments in the bus configuration cache. 
+    * Call after linkBuffers().
+    * 
+    * @param cache
+    */
+   void recordConfiguration(BusConfigurationCache cache)
+   {
+      ByteBuffer ioMap = processDataGroup.getIOMap();
+      int ioMapOffset = processDataGroup.getIOMapOffset();
+      int inputOffset = ec_slave.getIbits() > 0 ? ioMapOffset + soem.ecx_inputoffset(ec_slave, ioMap) : -1;
+      int outputOffset = ec_slave.getObits() > 0 ? ioMapOffset + soem.ecx_outputoffset(ec_slave, ioMap) : -1;
+      cache.setProcessDataLayout(slaveIndex, inputOffset, ec_slave.getIbits(), outputOffset, ec_slave.getObits());
+      
+      for (int i = 0; i < syncManagers.length; i++)
+      {
+         if (syncManagers[i] != null)
+         {
+            syncManagers[i].recordConfiguration(cache, slaveIndex);
+         }
+      }
+   }
+
    /**
     * Get the AL status code. The AL status code is useful to debug problems switching to OP state
     * 
@@ -833,6 +1121,7 @@ public class Slave
     * Returns the slave state.
     * 
     * The internal state gets updated on the house holding thread. The state can be delayed by several cycles.
+    * When the AL status is mapped in the process data (see Master.enableCyclicSlaveStatus()), the state is updated every cycle.
     * 
     * @return Slave state
     */
@@ -916,6 +1205,10 @@ public class Slave
     */
    private int getDCSyncOffset()
    {
+      if(cyclicDCSysDiffOffset >= 0)
+      {
+         return cyclicDCSyncOffset;
+      }
 
       int wkc = soem.ecx_FPRD(port, ec_slave.getConfigadr(), soemConstants.ECT_REG_DCSYSDIFF, 4, dcDiff, soemConstants.EC_TIMEOUTRET);
       if (wkc == soemConstants.EC_NOFRAME)
@@ -939,13 +1232,25 @@ public class Slave
       
       int wc = soem.ecx_FPRD(port, ec_slave.getConfigadr(), soem.ECT_REG_ALSTAT, alStateBuffer.capacity(), alStateBuffer, soemConstants.EC_TIMEOUTRET);
       
+      return updateEtherCATState(wc, alStateBuffer.getShort(0) & 0xFFFF, alStateBuffer.getShort(4) & 0xFFFF);
+   }
+   
+   /**
+    * Internal function. Update slave state from the AL status read by the householding thread.
+    * 
+    * @param wc working counter of the AL status read, the slave is considered offline if the working counter is zero or negative
+    * @param alStatus AL status register
+    * @param alStatusCode AL status code register
+    * @return true if the slave responded
+    */
+   boolean updateEtherCATState(int wc, int alStatus, int alStatusCode)
+   {
       State previousState = this.houseHolderState;
       if(wc > 0)
       {
-         int newState = alStateBuffer.getShort(0) & 0xFFFF;
-         this.ec_slave.setState(newState);
-         this.houseHolderState = getStateFromEcSlave(newState);
-         this.houseHolderAlStatusCode = alStateBuffer.getShort(4) & 0xFFFF;
+         this.ec_slave.setState(alStatus);
+         this.houseHolderState = getStateFromEcSlave(alStatus);
+         this.houseHolderAlStatusCode = alStatusCode;
          if(previousState != this.houseHolderState)
          {
             master.getEtherCATStatusCallback().notifyStateChange(this, previousState, this.houseHolderState, this.houseHolderAlStatusCode);
@@ -965,6 +1270,72 @@ public class Slave
       }
    }
    
+   /**
+    * Internal function. Queue a read of the RX error counters in a batch, see updateRXTXStats(RegisterTransactionBatch, int)
+    * 
+    * @return handle to the operation
+    */
+   int addRXTXStatsRead(RegisterTransactionBatch batch)
+   {
+      return batch.addFPRD(this, soem.ECT_REG_RXERR, rxErrorBuffer.capacity());
+   }
+   
+   /**
+    * Internal function. Update RX Erros and link errors from the result of a batch read from the householder thread
+    * 
+    * @param batch executed batch
+    * @param operation handle returned by addRXTXStatsRead
+    * @return true if the slave responded
+    */
+   boolean updateRXTXStats(RegisterTransactionBatch batch, int operation)
+   {
+      if(batch.getWorkingCounter(operation) > 0)
+      {
+         batch.getData(operation, rxErrorBuffer);
+         return true;
+      }
+      else
+      {
+         return false;
+      }
+   }
+   
+   /**
+    * Internal function. Queue clearing the RX error counters in a batch, see clearRXErrors(RegisterTransactionBatch, int)
+    * 
+    * @return handle to the operation
+    */
+   int addClearRXErrors(RegisterTransactionBatch batch)
+   {
+      for(int i = 0; i < rxErrorBuffer.capacity(); i++)
+      {
+         rxErrorBuffer.put(i, (byte) -1);
+      }
+      
+      return batch.addFPWR(this, soem.ECT_REG_RXERR, rxErrorBuffer);
+   }
+   
+   /**
+    * Internal function. Notify the result of clearing the RX error counters in a batch
+    * 
+    * @param batch executed batch
+    * @param operation handle returned by addClearRXErrors
+    * @return true if the RX errors are cleared
+    */
+   boolean clearRXErrors(RegisterTransactionBatch batch, int operation)
+   {
+      if(batch.getWorkingCounter(operation) > 0)
+      {
+         master.getEtherCATStatusCallback().notifyClearSlaveRXErrorSuccess(this);
+         return true;
+      }
+      else
+      {
+         master.getEtherCATStatusCallback().notifyClearSlaveRXErrorFailure(this);
+         return false;
+      }
+   }
+   
    /**
     * Internal function. Update RX Erros and link errors from householder thread
     * @return
@@ -1032,7 +1403,7 @@ public class Slave
          if(!dcEnabled)
          {
             master.getEtherCATStatusCallback().trace(this, TRACE_EVENT.RECONFIG_TO_SAFEOP);
-            configureImpl(master, ec_slave, dcEnabled, cycleTimeInNs);
+            configureImpl(master, ec_slave, dcEnabled);
             if(soem.ecx_reconfig_slave_to_safeop(context, slaveIndex, soemConstants.EC_TIMEOUTRET3) > 0)
             {
                ec_slave.setIslost((short) 0);
@@ -1158,7 +1529,8 @@ public class Slave
    /**
     * True if the slaves support Complete Access or not.
     * 
-    * We have seen some slaves that claim to support CA but do not. Override this function and return false to avoid CA usage.
+    * We have seen some slaves that claim to support CA but do not. The master probes Complete Access in PRE_OP on slaves that claim 
+    * support, override this function and return false to avoid CA usage altogether.
     * 
     * @return true if the slave supports CA
     */
@@ -1166,6 +1538,34 @@ public class Slave
    {
       return true;
    }
+   
+   /**
+    * @return true if SDO transfers to this slave use Complete Access where possible. Valid after master.init()
+    */
+   public boolean isCompleteAccessEnabled()
+   {
+      return (ec_slave.getCoEdetails() & soemConstants.ECT_COEDET_SDOCA) != 0;
+   }
+
+   /**
+    * Internal function. 
+    * 
+    * @return SOEM description of the slave
+    */
+   ec_slavet getSlaveStructure()
+   {
+      return ec_slave;
+   }
+
+   /**
+    * Internal function. Returns the configured station address of the slave
+    * 
+    * @return configured station address
+    */
+   int getConfiguredAddress()
+   {
+      return ec_slave.getConfigadr();
+   }
 
    /**
     * Internal function. Returns the slave index on the EtherCAT bus
@@ -1178,6 +1578,26 @@ public class Slave
    }
 
 
+   /**
+    * Internal function. Set the process data group this slave is registered in.
+    * 
+    * @param processDataGroup
+    */
+   void setProcessDataGroup(ProcessDataGroup processDataGroup)
+   {
+      this.processDataGroup = processDataGroup;
+   }
+   
+   /**
+    * Get the process data group of this slave
+    * 
+    * @return the process data group, or null if the slave is not registered with a master 
+    */
+   public ProcessDataGroup getProcessDataGroup()
+   {
+      return processDataGroup;
+   }
+   
    /**
     * Check if the slave is configured.
     * 
@@ -1214,13 +1634,62 @@ public class Slave
       }
    }
 
+   /**
+    * Internal function. Ask the householder to run the state control of this slave first. Called from the realtime thread.
+    */
+   void requestStateControlAttention()
+   {
+      stateControlAttention = true;
+   }
+
+   /**
+    * Internal function. Check and clear the attention request. Called from the householder.
+    * 
+    * @return true if the realtime thread signaled a problem with this slave since the last call
+    */
+   boolean takeStateControlAttention()
+   {
+      if(stateControlAttention)
+      {
+         stateControlAttention = false;
+         return true;
+      }
+      return false;
+   }
+
+   /**
+    * Internal function. Wake up the householder to transfer a newly queued SDO.
+    */
+   void requestSDOTransfer()
+   {
+      if(master != null)
+      {
+         master.signalStateControlEvent(EtherCATStateMachine.EVENT_SDO);
+      }
+   }
+
    /**
     * Update state variables read in the householder thread
     */
    public void updateStateVariables()
    {
-      this.state = this.houseHolderState;
-      this.alStatusCode = this.houseHolderAlStatusCode;
+      State houseHolderState = this.houseHolderState;
+      if(cyclicALStatusOffset >= 0 && houseHolderState != State.OFFLINE)
+      {
+         // A missing slave leaves a stale value in the process data, rely on the householder to detect it went offline
+         this.state = getStateFromEcSlave(cyclicStatus.getShort(cyclicALStatusOffset) & 0xFFFF);
+         this.alStatusCode = cyclicStatus.getShort(cyclicALStatusOffset + 4) & 0xFFFF;
+      }
+      else
+      {
+         this.state = houseHolderState;
+         this.alStatusCode = this.houseHolderAlStatusCode;
+      }
+      
+      if(cyclicDCSysDiffOffset >= 0)
+      {
+         this.cyclicDCSyncOffset = sm32ToInt32(cyclicStatus.getInt(cyclicDCSysDiffOffset));
+      }
             
       for(int i = 0; i < 4; i++)
       {
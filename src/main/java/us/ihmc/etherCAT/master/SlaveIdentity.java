@@ -0,0 +1,62 @@
+package us.ihmc.etherCAT.master;
+
+/**
+ * Identity of a type of slave, as read from the SII. Slaves with the same identity behave the same.
+ * 
+ * @author Jesper Smith
+ *
+ */
+class SlaveIdentity
+{
+   private final long vendor;
+   private final long productCode;
+   private final long revision;
+
+   SlaveIdentity(long vendor, long productCode, long revision)
+   {
+      this.vendor = vendor;
+      this.productCode = productCode;
+      this.revision = revision;
+   }
+
+   long getVendor()
+   {
+      return vendor;
+   }
+
+   long getProductCode()
+   {
+      return productCode;
+   }
+
+   long getRevision()
+   {
+      return revision;
+   }
+
+   @Override
+   public int hashCode()
+   {
+      return Long.hashCode(vendor) * 961 + Long.hashCode(productCode) * 31 + Long.hashCode(revision);
+   }
+
+   @Override
+   public boolean equals(Object obj)
+   {
+      if (obj instanceof SlaveIdentity)
+      {
+         SlaveIdentity other = (SlaveIdentity) obj;
+         return other.vendor == vendor && other.productCode == productCode && other.revision == revision;
+      }
+      else
+      {
+         return false;
+      }
+   }
+
+   @Override
+   public String toString()
+   {
+      return "(" + EtherCATStatusCallback.hex(vendor) + ", " + EtherCATStatusCallback.hex(productCode) + ", " + EtherCATStatusCallback.hex(revision) + ")";
+   }
+}
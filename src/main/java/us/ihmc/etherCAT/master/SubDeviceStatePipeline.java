@@ -11,7 +11,6 @@ public class SubDeviceStatePipeline
 {
    private final Master mainDevice;
    private final Slave subDevice;
-   private final List<SDO> sdos;
 
    private final List<LightWeightPipelineTask> tasks = new ArrayList<>();
 
@@ -19,19 +18,10 @@ public class SubDeviceStatePipeline
    {
       this.mainDevice = mainDevice;
       this.subDevice = subDevice;
-      this.sdos = subDevice.getSDOs();
 
-      ReadDeviceState readDeviceState = new ReadDeviceState();
-      ClearRXErrors clearRXErrors = new ClearRXErrors();
-      ReadRXErrors readRXErrors = new ReadRXErrors();
       DoEtherCATStateControl doEtherCATStateControl = new DoEtherCATStateControl();
-      DoSDOTransfers doSDOTransfers = new DoSDOTransfers();
 
-      tasks.add(readDeviceState);
-      tasks.add(clearRXErrors);
-      tasks.add(readRXErrors);
       tasks.add(doEtherCATStateControl);
-      tasks.add(doSDOTransfers);
    }
 
    public void addToExecutor(LightWeightPipelineExecutor executor)
@@ -40,104 +30,37 @@ public class SubDeviceStatePipeline
    }
 
    /**
-    * Check if the master working counter is the expected working counter and the device is in OP state
-    * @return true if wkc is expected and slave is in OP
+    * Continue the executor at the first task of this pipeline
+    * 
+    * @param executor Executor this pipeline was added to
     */
-   private boolean inNormalOperation()
+   public void prioritize(LightWeightPipelineExecutor executor)
    {
-      return subDevice.getState() == State.OP && mainDevice.getActualWorkingCounter() == mainDevice.getExpectedWorkingCounter();
+      executor.moveToTask(tasks.get(0));
    }
 
-   private class ReadDeviceState implements LightWeightPipelineTask
+   public Slave getSubDevice()
    {
-      @Override
-      public boolean execute(long runtime)
-      {
-         subDevice.updateEtherCATState();
-         return true;
-      }
-
-      /**
-       * Skip this task when the working counter matches the previous working counter and the device is in OP mode
-       */
-      @Override
-      public boolean skipTask()
-      {
-         return inNormalOperation();
-
-      }
-   }
-
-   private class ClearRXErrors implements LightWeightPipelineTask
-   {
-      public boolean cleared = false;
-
-      @Override
-      public boolean execute(long runtime)
-      {
-         if (subDevice.clearRXErrors())
-         {
-            cleared = true;
-            return true;
-         }
-         else
-         {
-            return false;
-         }
-      }
-
-      /**
-       * Skip if the RX errors are already cleared
-       */
-      @Override
-      public boolean skipTask()
-      {
-         return cleared;
-      }
+      return subDevice;
    }
 
-   private class ReadRXErrors implements LightWeightPipelineTask
+   private class DoEtherCATStateControl implements LightWeightPipelineTask
    {
+      private boolean hasReachedOp = false;
 
       @Override
       public boolean execute(long runtime)
       {
-         subDevice.updateRXTXStats();
+         subDevice.doEtherCATStateControl(runtime);
          return true;
       }
 
       /**
-       * Skip if reading rx error statistics is disabled
+       * State changes, DC synchronization and recovery wait on the network
        */
       @Override
-      public boolean skipTask()
+      public boolean isBlocking()
       {
-         if (!mainDevice.isReadRXErrorStatistics())
-         {
-            // Reading RX Errors statistics is disabled
-            return true;
-         }
-         else if (subDevice.getHouseholderState() == State.OFFLINE)
-         {
-            // Don't try to read these statistics when the subdevice is offline
-            return true;
-         }
-         else
-         {
-            return false;
-         }
-      }
-
-   }
-
-   private class DoEtherCATStateControl implements LightWeightPipelineTask
-   {
-      private boolean hasReachedOp = false;
-
-      @Override
-      public boolean execute(long runtime)
-      {
-         subDevice.doEtherCATStateControl(runtime);
          return true;
       }
 
@@ -167,77 +90,4 @@ public class SubDeviceStatePipeline
 
    }
 
-   private class DoSDOTransfers implements LightWeightPipelineTask
-   {
-
-      /**
-       * Skip SDO transfer if the wkc is wrong
-       */
-      public boolean skipTask()
-      {
-         if (!inNormalOperation())
-         {
-            // Slave is not in OP, or there is something wrong with the ethercat chain. Skip SDO transmission
-            return true;
-         }
-         else if (sdos.isEmpty())
-         {
-            // No SDOs defined
-            return true;
-         }
-         else
-         {
-            for (int i = 0; i < sdos.size(); i++)
-            {
-               if (sdos.get(i).isTransferPending())
-               {
-                  // An SDO needs data transfer
-                  return false;
-               }
-            }
-
-            return true;
-         }
-      }
-
-      int currentSDO = 0;
-
-      @Override
-      public boolean execute(long runtime)
-      {
-         ArrayList<SDO> sdos = subDevice.getSDOs();
-
-         if (sdos.size() > 0)
-         {
-
-            // Loop trough all SDO's till a transaction is made
-
-            while (currentSDO < sdos.size())
-            {
-               int sdoToUpdate = currentSDO;
-               currentSDO++;
-
-               if (sdos.get(sdoToUpdate).updateFromStatemachineThread())
-               {
-                  break;
-               }
-            }
-
-            if (currentSDO >= sdos.size())
-            {
-               currentSDO = 0;
-               return true;
-            }
-            else
-            {
-               return false;
-            }
-         }
-         else
-         {
-            return true;
-         }
-      }
-   }
-
 }
@@ -3,7 +3,7 @@ package us.ihmc.etherCAT.master;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.concurrent.locks.LockSupport;
+import java.util.List;
 
 import us.ihmc.etherCAT.master.EtherCATStatusCallback.TRACE_EVENT;
 
@@ -22,11 +22,16 @@ public class SyncManager
       UNKNOWN
    };
    
+   // Retries of a failed write of the PDO assignment, with a delay that doubles after every attempt
+   private static final int MAXIMUM_WRITE_ATTEMPTS = 4;
+   private static final long INITIAL_RETRY_DELAY = 1000000;
+   
    private final ArrayList<PDO> PDOs = new ArrayList<>();
    private final boolean cconfigurePDOs;
    private final int index;
    
    private boolean configured = false;
+   private boolean assignmentApplied = false;
    
    private MailbusDirection direction = MailbusDirection.UNKNOWN;
    
@@ -43,51 +48,258 @@ public class SyncManager
    }
    
    /**
-    * Internal function that sends SDO requests to configure PDOs.
+    * Internal function that queues the SDO requests to configure PDOs on the mailbox engine.
+    * 
+    * The current PDO assignment is read first and nothing is written if it already matches. Otherwise the assignment is written as 
+    * a single object if the slave supports Complete Access, or entry by entry if it does not. The engine sends each request as soon 
+    * as the slave has emptied its mailbox, failed writes are retried after a delay.
+    * 
+    * Nothing is sent if the bus configuration cache shows that the assignment was applied in the previous run.
     * 
     * @param slave
+    * @param engine
     */
-   void configure(Master master, Slave slave)
+   void configure(Master master, Slave slave, MailboxEngine engine)
    {
       configured = true;
+      assignmentApplied = false;
       
       if(cconfigurePDOs)
       {
-         int pdoConfigurationIndex = 0x1C10 + index;
-         master.getEtherCATStatusCallback().trace(this, slave, TRACE_EVENT.CLEAR_PDOS);
-         
-         LockSupport.parkNanos(10000000);
-         // Set the size of the SM configuration array to zero, allows writing to the elements
-         int wc = slave.writeSDO(pdoConfigurationIndex, 0x0, (byte) 0);
+         if(master.isPDOAssignmentCached(slave, index, getPDOAssignment()))
+         {
+            master.getEtherCATStatusCallback().trace(this, slave, TRACE_EVENT.PDOS_CACHED);
+            assignmentApplied = true;
+         }
+         else
+         {
+            engine.submit(slave, new AssignmentTask(master, slave));
+         }
+      }
+   }
+   
+   /**
+    * @return addresses of the PDOs assigned to this sync manager
+    */
+   private int[] getPDOAssignment()
+   {
+      int[] pdos = new int[PDOs.size()];
+      for(int i = 0; i < PDOs.size(); i++)
+      {
+         pdos[i] = PDOs.get(i).getAddress() & 0xFFFF;
+      }
+      return pdos;
+   }
+   
+   /**
+    * Internal function. Store the PDO assignment in the bus configuration cache if it is applied to the slave.
+    * 
+    * @param cache
+    * @param slaveIndex
+    */
+   void recordConfiguration(BusConfigurationCache cache, int slaveIndex)
+   {
+      if(assignmentApplied)
+      {
+         cache.setPDOAssignment(slaveIndex, index, getPDOAssignment());
+      }
+   }
+   
+   private enum AssignmentStep
+   {
+      READ_ASSIGNMENT,
+      READ_COUNT,
+      READ_ENTRY,
+      WRITE_ASSIGNMENT,
+      CLEAR,
+      WRITE_ENTRY,
+      WRITE_COUNT
+   }
+   
+   /**
+    * Reads the PDO assignment and writes it if it does not match
+    */
+   private class AssignmentTask implements MailboxEngine.Task
+   {
+      private final Master master;
+      private final Slave slave;
+      private final int pdoConfigurationIndex = 0x1C10 + index;
+      private final boolean completeAccess;
+      
+      private AssignmentStep step;
+      private int entry = 0;
+      private int attempt = 0;
+      
+      private AssignmentTask(Master master, Slave slave)
+      {
+         this.master = master;
+         this.slave = slave;
+         this.completeAccess = slave.isCompleteAccessEnabled();
+      }
+      
+      @Override
+      public boolean next(MailboxEngine.Transfer transfer)
+      {
+         if(transfer.getType() == MailboxEngine.TransferType.NONE)
+         {
+            master.getEtherCATStatusCallback().trace(SyncManager.this, slave, TRACE_EVENT.READ_PDOS);
+            step = completeAccess ? AssignmentStep.READ_ASSIGNMENT : AssignmentStep.READ_COUNT;
+            transfer.readSDO(pdoConfigurationIndex, 0x0, completeAccess);
+            return true;
+         }
          
-         if(wc == 0)
+         ByteBuffer data = transfer.getData();
+         switch(step)
          {
-            master.getEtherCATStatusCallback().pdoConfigurationError(slave, index, pdoConfigurationIndex);
-
+         case READ_ASSIGNMENT:
+            if(transfer.isSuccessful() && isAssigned(data))
+            {
+               return unchanged();
+            }
+            return write(transfer);
+         case READ_COUNT:
+            if(!transfer.isSuccessful() || data.limit() < 1 || (data.get(0) & 0xFF) != PDOs.size())
+            {
+               return write(transfer);
+            }
+            if(PDOs.isEmpty())
+            {
+               return unchanged();
+            }
+            step = AssignmentStep.READ_ENTRY;
+            entry = 0;
+            transfer.readSDO(pdoConfigurationIndex, entry + 1, false);
+            return true;
+         case READ_ENTRY:
+            if(!transfer.isSuccessful() || data.limit() < 2 || data.getShort(0) != PDOs.get(entry).getAddress())
+            {
+               return write(transfer);
+            }
+            entry++;
+            if(entry == PDOs.size())
+            {
+               return unchanged();
+            }
+            transfer.readSDO(pdoConfigurationIndex, entry + 1, false);
+            return true;
+         case WRITE_ASSIGNMENT:
+         case WRITE_COUNT:
+            if(!transfer.isSuccessful())
+            {
+               return retry(transfer);
+            }
+            assignmentApplied = true;
+            return false;
+         case CLEAR:
+         case WRITE_ENTRY:
+            if(!transfer.isSuccessful())
+            {
+               return retry(transfer);
+            }
+            
+            entry = step == AssignmentStep.CLEAR ? 0 : entry + 1;
+            if(entry < PDOs.size())
+            {
+               if(entry == 0)
+               {
+                  master.getEtherCATStatusCallback().trace(SyncManager.this, slave, TRACE_EVENT.WRITE_PDOS);
+               }
+               step = AssignmentStep.WRITE_ENTRY;
+               transfer.writeSDO(pdoConfigurationIndex, entry + 1, false);
+               transfer.getData().putShort(PDOs.get(entry).getAddress());
+            }
+            else
+            {
+               // Set the correct size of the SM array
+               master.getEtherCATStatusCallback().trace(SyncManager.this, slave, TRACE_EVENT.WRITE_PDO_SIZE);
+               step = AssignmentStep.WRITE_COUNT;
+               transfer.writeSDO(pdoConfigurationIndex, 0x0, false);
+               transfer.getData().put((byte) PDOs.size());
+            }
+            return true;
+         default:
+            return false;
+         }
+      }
+      
+      /**
+       * Many slaves return the whole array on a Complete Access read, including the unused entries. Only the first count entries 
+       * are compared.
+       * 
+       * @param data Assignment on the slave in the Complete Access layout
+       * @return true if the slave has the desired assignment
+       */
+      private boolean isAssigned(ByteBuffer data)
+      {
+         // The number of entries is padded to 16 bits
+         if(data.limit() < 2 + PDOs.size() * Short.BYTES || (data.get(0) & 0xFF) != PDOs.size())
+         {
+            return false;
          }
          
-         master.getEtherCATStatusCallback().trace(this, slave, TRACE_EVENT.WRITE_PDOS);
-         // Configure all the PDOs
          for(int i = 0; i < PDOs.size(); i++)
          {
-
-            LockSupport.parkNanos(10000000);
-            wc = slave.writeSDO(pdoConfigurationIndex, i + 1, (short) PDOs.get(i).getAddress());
-            if(wc == 0)
+            if(data.getShort(2 + i * Short.BYTES) != PDOs.get(i).getAddress())
             {
-               master.getEtherCATStatusCallback().pdoConfigurationError(slave, index, pdoConfigurationIndex, PDOs.get(i).getAddress(), i + 1);
+               return false;
             }
          }
-         
-         master.getEtherCATStatusCallback().trace(this, slave, TRACE_EVENT.WRITE_PDO_SIZE);
-         // Set the correct size of the SM array
-
-         LockSupport.parkNanos(10000000);
-         wc = slave.writeSDO(pdoConfigurationIndex, 0x0, (byte) PDOs.size());
-         if(wc == 0)
+         return true;
+      }
+      
+      private boolean unchanged()
+      {
+         master.getEtherCATStatusCallback().trace(SyncManager.this, slave, TRACE_EVENT.PDOS_UNCHANGED);
+         assignmentApplied = true;
+         return false;
+      }
+      
+      private boolean write(MailboxEngine.Transfer transfer)
+      {
+         if(completeAccess)
          {
-            master.getEtherCATStatusCallback().pdoConfigurationError(slave, index, pdoConfigurationIndex);
+            master.getEtherCATStatusCallback().trace(SyncManager.this, slave, TRACE_EVENT.WRITE_PDOS);
+            step = AssignmentStep.WRITE_ASSIGNMENT;
+            transfer.writeSDO(pdoConfigurationIndex, 0x0, true);
+            ByteBuffer data = transfer.getData();
+            data.put((byte) PDOs.size());
+            data.put((byte) 0);
+            for(int i = 0; i < PDOs.size(); i++)
+            {
+               data.putShort(PDOs.get(i).getAddress());
+            }
+         }
+         else
+         {
+            // Set the size of the SM configuration array to zero, allows writing to the elements
+            master.getEtherCATStatusCallback().trace(SyncManager.this, slave, TRACE_EVENT.CLEAR_PDOS);
+            step = AssignmentStep.CLEAR;
+            transfer.writeSDO(pdoConfigurationIndex, 0x0, false);
+            transfer.getData().put((byte) 0);
+         }
+         return true;
+      }
+      
+      private boolean retry(MailboxEngine.Transfer transfer)
+      {
+         attempt++;
+         if(attempt >= MAXIMUM_WRITE_ATTEMPTS)
+         {
+            if(step == AssignmentStep.WRITE_ENTRY)
+            {
+               master.getEtherCATStatusCallback().pdoConfigurationError(slave, index, pdoConfigurationIndex, entry + 1, PDOs.get(entry).getAddress());
+            }
+            else
+            {
+               master.getEtherCATStatusCallback().pdoConfigurationError(slave, index, pdoConfigurationIndex);
+            }
+            return false;
          }
+         
+         // Start over, after giving the slave time to recover
+         write(transfer);
+         transfer.setDelay(INITIAL_RETRY_DELAY << (attempt - 1));
+         return true;
       }
    }
 
@@ -199,4 +411,19 @@ public class SyncManager
       
    }
 
+   /**
+    * Internal function. Add the layout of all PDOs to the flight recorder layout. Call after linkBuffers().
+    * 
+    * @param slave
+    * @param ioMapOffset Offset of the IO map of the slave in the process image
+    * @param entries
+    */
+   void describeLayout(Slave slave, int ioMapOffset, List<FlightRecorderEntry> entries)
+   {
+      for(int i = 0; i < PDOs.size(); i++)
+      {
+         PDOs.get(i).describeLayout(slave, getIndex(), direction.name(), ioMapOffset, entries);
+      }
+   }
+
 }
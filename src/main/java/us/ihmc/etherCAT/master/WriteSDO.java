@@ -1,5 +1,7 @@
 package us.ihmc.etherCAT.master;
 
+import java.nio.ByteBuffer;
+
 /**
  * SDO write delegator class for asynchronous SDO transfer
  * 
@@ -150,9 +152,9 @@ public class WriteSDO extends SDO
    }
 
    @Override
-   protected int send()
+   protected int send(ByteBuffer data)
    {
-      return slave.writeSDO(index, subindex, buffer);
+      return slave.writeSDO(index, subindex, data);
    }
 
 }
@@ -1,14 +1,22 @@
 package us.ihmc.etherCAT.master.pipeline;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 
 public class LightWeightPipelineExecutor
 {
    private final List<LightWeightPipelineTask> tasks = new ArrayList<>();
+   private final List<LightWeightPipelineTaskCost> costs = new ArrayList<>();
+   private final HashMap<Class<?>, LightWeightPipelineTaskCost> costsByType = new HashMap<>();
    private int currentTaskIndex = 0;
+   private int blockingTaskIndex = 0;
+   private boolean blockingTasksDeferred = false;
 
    private int lastExecutedTaskIndex = 0;
+   private int tasksExecutedInLastCall = 0;
 
    public LightWeightPipelineExecutor()
    {
@@ -23,32 +31,216 @@ public class LightWeightPipelineExecutor
    public void addTask(LightWeightPipelineTask task)
    {
       tasks.add(task);
+
+      LightWeightPipelineTaskCost cost = costsByType.get(task.getClass());
+      if (cost == null)
+      {
+         cost = new LightWeightPipelineTaskCost(task.getClass().getSimpleName());
+         costsByType.put(task.getClass(), cost);
+      }
+      costs.add(cost);
    }
 
    public void addTasks(List<LightWeightPipelineTask> tasks)
    {
-      this.tasks.addAll(tasks);
+      for (int i = 0; i < tasks.size(); i++)
+      {
+         addTask(tasks.get(i));
+      }
    }
 
+   /**
+    * Run the next task that is not skipped
+    *
+    * @param runtime Time since the start of the executor
+    */
    public void execute(long runtime)
+   {
+      tasksExecutedInLastCall = 0;
+      if (moveToNextRunnableTask(true))
+      {
+         tasksExecutedInLastCall = 1;
+         executeCurrentTask(runtime);
+      }
+   }
+
+   /**
+    * Run as many tasks as fit in the budget, based on the learned cost of each task type.
+    *
+    * Execution stops when the estimated cost of the next task exceeds the remaining budget, when a task is not finished or
+    * when every task has been visited once. This also applies to the first task, no task is run if it does not fit. A task
+    * that has not run before has no cost estimate and always fits.
+    *
+    * @param runtime Time since the start of the executor
+    * @param budget Time available to run tasks in ns
+    */
+   public void execute(long runtime, long budget)
+   {
+      execute(runtime, budget, true);
+   }
+
+   /**
+    * Run as many non-blocking tasks as fit in the budget, like execute(long, long).
+    *
+    * Blocking tasks are skipped. If a blocking task needs to run, hasDeferredBlockingTasks() returns true until
+    * executeBlocking() has run all of them.
+    *
+    * @param runtime Time since the start of the executor
+    * @param budget Time available to run tasks in ns
+    */
+   public void executeNonBlocking(long runtime, long budget)
+   {
+      execute(runtime, budget, false);
+   }
+
+   private void execute(long runtime, long budget, boolean runBlockingTasks)
+   {
+      long startTime = System.nanoTime();
+      int visited = 0;
+      tasksExecutedInLastCall = 0;
+
+      while (visited < tasks.size())
+      {
+         int startTaskIndex = currentTaskIndex;
+         if (!moveToNextRunnableTask(runBlockingTasks))
+         {
+            return;
+         }
+         visited += currentTaskIndex >= startTaskIndex ? currentTaskIndex - startTaskIndex + 1 : tasks.size() - startTaskIndex + currentTaskIndex + 1;
+         if (visited > tasks.size())
+         {
+            // Wrapped around to a task that already ran in this call
+            return;
+         }
+
+         if (System.nanoTime() - startTime + costs.get(currentTaskIndex).getEstimate() > budget)
+         {
+            return;
+         }
+
+         tasksExecutedInLastCall++;
+         if (!executeCurrentTask(runtime))
+         {
+            // The task is not finished and runs again next call
+            return;
+         }
+      }
+   }
+
+   /**
+    * Run the next blocking task that is not skipped. Blocking tasks are served round robin, independent of the non-blocking tasks.
+    *
+    * @param runtime Time since the start of the executor
+    */
+   public void executeBlocking(long runtime)
+   {
+      tasksExecutedInLastCall = 0;
+      for (int i = 0; i < tasks.size(); i++)
+      {
+         int index = (blockingTaskIndex + i) % tasks.size();
+         LightWeightPipelineTask task = tasks.get(index);
+         if (!task.skipTask() && task.isBlocking())
+         {
+            tasksExecutedInLastCall = 1;
+            boolean finished = executeTask(index, runtime);
+            blockingTaskIndex = finished ? (index + 1) % tasks.size() : index;
+            return;
+         }
+      }
+
+      blockingTasksDeferred = false;
+   }
+
+   /**
+    * @return true if executeNonBlocking() skipped a blocking task that has not been run by executeBlocking() yet
+    */
+   public boolean hasDeferredBlockingTasks()
+   {
+      return blockingTasksDeferred;
+   }
+
+   /**
+    * Move to the first task, starting at the current task, that is not skipped
+    *
+    * @param runBlockingTasks If false, blocking tasks are skipped and marked as deferred
+    * @return false if all tasks are skipped
+    */
+   private boolean moveToNextRunnableTask(boolean runBlockingTasks)
    {
       int startTaskIndex = currentTaskIndex;
-      while (currentTask().skipTask())
+      while (!isRunnable(currentTask(), runBlockingTasks))
       {
          moveToNextTask();
 
          if (startTaskIndex == currentTaskIndex)
          {
             // No tasks need to be ran. Return.
-            return;
+            return false;
          }
       }
+      return true;
+   }
 
-      lastExecutedTaskIndex = currentTaskIndex;
-      if (currentTask().execute(runtime))
+   private boolean isRunnable(LightWeightPipelineTask task, boolean runBlockingTasks)
+   {
+      if (task.skipTask())
+      {
+         return false;
+      }
+      if (!runBlockingTasks && task.isBlocking())
+      {
+         blockingTasksDeferred = true;
+         return false;
+      }
+      return true;
+   }
+
+   private boolean executeCurrentTask(long runtime)
+   {
+      boolean finished = executeTask(currentTaskIndex, runtime);
+      if (finished)
       {
          moveToNextTask();
       }
+      return finished;
+   }
+
+   private boolean executeTask(int index, long runtime)
+   {
+      lastExecutedTaskIndex = index;
+
+      long startTime = System.nanoTime();
+      boolean finished = tasks.get(index).execute(runtime);
+      costs.get(index).record(System.nanoTime() - startTime);
+      return finished;
+   }
+
+   /**
+    * Continue execution at the given task, for example to handle an event before the rest of the tasks.
+    * 
+    * @param task Task that was added to this executor
+    * @return false if the task was not added to this executor
+    */
+   public boolean moveToTask(LightWeightPipelineTask task)
+   {
+      for (int i = 0; i < tasks.size(); i++)
+      {
+         if (tasks.get(i) == task)
+         {
+            currentTaskIndex = i;
+            blockingTaskIndex = i;
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * @return the number of tasks that were executed by the last call to execute(), 0 if all tasks were skipped
+    */
+   public int getTasksExecutedInLastCall()
+   {
+      return tasksExecutedInLastCall;
    }
 
    public int getLastExecutedTaskIndex()
@@ -61,6 +253,14 @@ public class LightWeightPipelineExecutor
       return tasks.get(lastExecutedTaskIndex).getClass().getSimpleName();
    }
 
+   /**
+    * @return the learned cost of each task type
+    */
+   public Collection<LightWeightPipelineTaskCost> getTaskCosts()
+   {
+      return Collections.unmodifiableCollection(costsByType.values());
+   }
+
    private void moveToNextTask()
    {
       currentTaskIndex++;
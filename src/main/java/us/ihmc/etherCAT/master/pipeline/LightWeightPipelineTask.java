@@ -16,4 +16,15 @@ public interface LightWeightPipelineTask
     * @return True if the task is finished
     */
    public boolean execute(long runtime);
+   
+   /**
+    * A task is blocking if execute() can wait on the network for longer than its learned cost, for example on mailbox transfers, 
+    * state changes or datagram timeouts. Blocking tasks are not run by LightWeightPipelineExecutor.executeNonBlocking().
+    * 
+    * @return true if execute() can block
+    */
+   public default boolean isBlocking()
+   {
+      return false;
+   }
 }
@@ -0,0 +1,85 @@
+package us.ihmc.etherCAT.master.pipeline;
+
+/**
+ * Learned cost of a type of task in the LightWeightPipelineExecutor.
+ *
+ * The estimate is an exponentially weighted moving average of the measured duration of execute(). All tasks of the same class
+ * share a single estimate. The values can be read from any thread.
+ *
+ * @author Jesper Smith
+ *
+ */
+public class LightWeightPipelineTaskCost
+{
+   // Weight of a new sample is 1 / 2^EWMA_SHIFT
+   private static final int EWMA_SHIFT = 3;
+
+   private final String name;
+
+   private volatile long estimate = 0;
+   private volatile long maximum = 0;
+   private volatile long samples = 0;
+
+   LightWeightPipelineTaskCost(String name)
+   {
+      this.name = name;
+   }
+
+   void record(long duration)
+   {
+      long estimate = this.estimate; // Localize volatile variable
+      if (samples == 0)
+      {
+         estimate = duration;
+      }
+      else
+      {
+         estimate += (duration - estimate) >> EWMA_SHIFT;
+      }
+      this.estimate = estimate;
+
+      if (duration > maximum)
+      {
+         maximum = duration;
+      }
+      ++samples;
+   }
+
+   /**
+    * @return the simple class name of the task type
+    */
+   public String getName()
+   {
+      return name;
+   }
+
+   /**
+    * @return the estimated duration of execute() in ns, or 0 if the task has not run yet
+    */
+   public long getEstimate()
+   {
+      return estimate;
+   }
+
+   /**
+    * @return the longest measured duration of execute() in ns
+    */
+   public long getMaximum()
+   {
+      return maximum;
+   }
+
+   /**
+    * @return the number of times a task of this type has been executed
+    */
+   public long getSamples()
+   {
+      return samples;
+   }
+
+   @Override
+   public String toString()
+   {
+      return name + ": estimate " + estimate + "ns, maximum " + maximum + "ns, samples " + samples;
+   }
+}
@@ -0,0 +1,125 @@
+package us.ihmc.etherCAT.master.statistics;
+
+/**
+ * Copy of the published state of a LogLinearHistogram.
+ *
+ * Create once and refill with LogLinearHistogram.getSnapshot() to avoid allocation.
+ *
+ * @author Jesper Smith
+ *
+ */
+public class HistogramSnapshot
+{
+   private final long[] counts = new long[LogLinearHistogram.NUMBER_OF_BUCKETS];
+   private String name = "";
+   private long totalCount;
+   private long min;
+   private long max;
+   private long sum;
+
+   void set(String name, long[] published)
+   {
+      this.name = name;
+      System.arraycopy(published, 0, counts, 0, LogLinearHistogram.NUMBER_OF_BUCKETS);
+      totalCount = published[LogLinearHistogram.TOTAL_COUNT_INDEX];
+      min = published[LogLinearHistogram.MIN_INDEX];
+      max = published[LogLinearHistogram.MAX_INDEX];
+      sum = published[LogLinearHistogram.SUM_INDEX];
+   }
+
+   long getCountAtIndex(int index)
+   {
+      return counts[index];
+   }
+
+   public String getName()
+   {
+      return name;
+   }
+
+   /**
+    * @return number of recorded values
+    */
+   public long getTotalCount()
+   {
+      return totalCount;
+   }
+
+   /**
+    * @return smallest recorded value, or 0 if no values are recorded
+    */
+   public long getMin()
+   {
+      return totalCount == 0 ? 0 : min;
+   }
+
+   /**
+    * @return largest recorded value
+    */
+   public long getMax()
+   {
+      return max;
+   }
+
+   /**
+    * @return average of the recorded values, or 0 if no values are recorded
+    */
+   public double getMean()
+   {
+      return totalCount == 0 ? 0.0 : ((double) sum) / ((double) totalCount);
+   }
+
+   /**
+    * Get the value at a percentile.
+    *
+    * The returned value is the upper bound of the bucket containing the percentile, limited to the maximum recorded value.
+    *
+    * @param percentile between 0 and 100
+    * @return value at the percentile, or 0 if no values are recorded
+    */
+   public long getValueAtPercentile(double percentile)
+   {
+      if (totalCount == 0)
+      {
+         return 0;
+      }
+
+      long target = (long) (((percentile / 100.0) * totalCount) + 0.5);
+      if (target < 1)
+      {
+         target = 1;
+      }
+
+      long count = 0;
+      for (int i = 0; i < counts.length; i++)
+      {
+         count += counts[i];
+         if (count >= target)
+         {
+            return Math.min(LogLinearHistogram.getBucketUpperBound(i), max);
+         }
+      }
+      return max;
+   }
+
+   public long getP50()
+   {
+      return getValueAtPercentile(50.0);
+   }
+
+   public long getP99()
+   {
+      return getValueAtPercentile(99.0);
+   }
+
+   public long getP999()
+   {
+      return getValueAtPercentile(99.9);
+   }
+
+   @Override
+   public String toString()
+   {
+      return name + " [count=" + totalCount + ", p50=" + getP50() + ", p99=" + getP99() + ", p99.9=" + getP999() + ", max=" + max + "]";
+   }
+}
@@ -0,0 +1,226 @@
+package us.ihmc.etherCAT.master.statistics;
+
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Fixed memory log-linear histogram for timing values in nanoseconds.
+ *
+ * Every power of two is split in 32 linear buckets, giving a relative error of at most ~3% over the range 0 - 2^41 ns.
+ * Values outside the range are counted in the last bucket, the maximum is kept exactly.
+ *
+ * The histogram has a single writer. record() does not allocate or lock and can be called from a realtime thread.
+ * Every publishInterval records, the writer copies the counts into one of two snapshot buffers, protected by a
+ * sequence lock. Readers on any thread can copy the last published snapshot with getSnapshot() without blocking the writer.
+ *
+ * @author Jesper Smith
+ *
+ */
+public class LogLinearHistogram
+{
+   public static final int DEFAULT_PUBLISH_INTERVAL = 1000;
+
+   static final int SUB_BUCKET_BITS = 5;
+   static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+   static final int MAX_EXPONENT = 40;
+   static final int NUMBER_OF_BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+   // Statistics stored after the counts in the published buffers
+   static final int TOTAL_COUNT_INDEX = NUMBER_OF_BUCKETS;
+   static final int MIN_INDEX = NUMBER_OF_BUCKETS + 1;
+   static final int MAX_INDEX = NUMBER_OF_BUCKETS + 2;
+   static final int SUM_INDEX = NUMBER_OF_BUCKETS + 3;
+   static final int PUBLISHED_SIZE = NUMBER_OF_BUCKETS + 4;
+
+   private final String name;
+   private final int publishInterval;
+
+   // Writer state
+   private final long[] counts = new long[NUMBER_OF_BUCKETS];
+   private long totalCount = 0;
+   private long min = Long.MAX_VALUE;
+   private long max = 0;
+   private long sum = 0;
+   private int recordsSinceLastPublish = 0;
+
+   // Published state. Version v is stored in published[v & 1]
+   private final long[][] published = new long[2][PUBLISHED_SIZE];
+   private volatile long writeSequence = 0;
+   private volatile long publishSequence = 0;
+   private volatile boolean resetRequested = false;
+
+   /**
+    * Create a new histogram that publishes every DEFAULT_PUBLISH_INTERVAL records
+    *
+    * @param name Descriptive name
+    */
+   public LogLinearHistogram(String name)
+   {
+      this(name, DEFAULT_PUBLISH_INTERVAL);
+   }
+
+   /**
+    *
+    * @param name Descriptive name
+    * @param publishInterval Number of records between publishing a new snapshot
+    */
+   public LogLinearHistogram(String name, int publishInterval)
+   {
+      if (publishInterval < 1)
+      {
+         throw new IllegalArgumentException("Publish interval must be at least 1");
+      }
+
+      this.name = name;
+      this.publishInterval = publishInterval;
+   }
+
+   public String getName()
+   {
+      return name;
+   }
+
+   /**
+    * Record a value. Only call from the writer thread.
+    *
+    * Negative values are recorded as zero.
+    *
+    * @param value in ns
+    */
+   public void record(long value)
+   {
+      if (value < 0)
+      {
+         value = 0;
+      }
+
+      counts[getBucketIndex(value)]++;
+      totalCount++;
+      sum += value;
+      if (value < min)
+      {
+         min = value;
+      }
+      if (value > max)
+      {
+         max = value;
+      }
+
+      if (++recordsSinceLastPublish >= publishInterval)
+      {
+         publish();
+      }
+   }
+
+   /**
+    * Publish the current counts for readers. Only call from the writer thread.
+    *
+    * Called automatically every publishInterval records.
+    */
+   public void publish()
+   {
+      long version = publishSequence + 1;
+
+      writeSequence = version;
+      VarHandle.storeStoreFence(); // Do not move the copy before the write sequence is visible
+
+      long[] target = published[(int) (version & 1)];
+      System.arraycopy(counts, 0, target, 0, NUMBER_OF_BUCKETS);
+      target[TOTAL_COUNT_INDEX] = totalCount;
+      target[MIN_INDEX] = min;
+      target[MAX_INDEX] = max;
+      target[SUM_INDEX] = sum;
+
+      publishSequence = version;
+      recordsSinceLastPublish = 0;
+
+      if (resetRequested)
+      {
+         resetRequested = false;
+         Arrays.fill(counts, 0);
+         totalCount = 0;
+         min = Long.MAX_VALUE;
+         max = 0;
+         sum = 0;
+      }
+   }
+
+   /**
+    * Request the writer to clear the histogram after the next publish. Safe to call from any thread.
+    */
+   public void requestReset()
+   {
+      resetRequested = true;
+   }
+
+   /**
+    * Copy the last published snapshot. Safe to call from any thread, does not allocate.
+    *
+    * @param snapshot Snapshot to copy into
+    */
+   public void getSnapshot(HistogramSnapshot snapshot)
+   {
+      while (true)
+      {
+         long version = publishSequence;
+         snapshot.set(name, published[(int) (version & 1)]);
+
+         VarHandle.acquireFence(); // Finish the copy before validating
+
+         // The writer only overwrites this buffer when writing version + 2
+         if (writeSequence < version + 2)
+         {
+            return;
+         }
+
+         Thread.onSpinWait();
+      }
+   }
+
+   /**
+    * Create a new snapshot and copy the last published values into it.
+    *
+    * @return new snapshot
+    */
+   public HistogramSnapshot createSnapshot()
+   {
+      HistogramSnapshot snapshot = new HistogramSnapshot();
+      getSnapshot(snapshot);
+      return snapshot;
+   }
+
+   static int getBucketIndex(long value)
+   {
+      if (value < SUB_BUCKETS)
+      {
+         return (int) value;
+      }
+
+      int exponent = 63 - Long.numberOfLeadingZeros(value);
+      if (exponent > MAX_EXPONENT)
+      {
+         return NUMBER_OF_BUCKETS - 1;
+      }
+
+      int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+      return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+   }
+
+   /**
+    *
+    * @param index bucket index
+    * @return highest value that is counted in this bucket
+    */
+   static long getBucketUpperBound(int index)
+   {
+      int block = index / SUB_BUCKETS;
+      int subBucket = index % SUB_BUCKETS;
+      if (block == 0)
+      {
+         return subBucket;
+      }
+
+      int shift = block - 1;
+      return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+   }
+}
@@ -2,6 +2,7 @@ package us.ihmc.etherCAT.slaves.elmo;
 
 import us.ihmc.etherCAT.master.ReadSDO;
 import us.ihmc.etherCAT.master.RxPDO;
+import us.ihmc.etherCAT.master.SDO;
 import us.ihmc.etherCAT.master.TxPDO;
 import us.ihmc.etherCAT.slaves.DSP402Slave;
 
@@ -179,6 +180,7 @@ public abstract class ElmoTwitter extends DSP402Slave
       super(vendorID, productCode, alias, position);
       
       elmoErrorCodeSDO = new ReadSDO(this, 0x306A, 0x1, 4);
+      elmoErrorCodeSDO.setPriority(SDO.Priority.URGENT);
       
       // TODO: This can result in slaves going offline
       registerSDO(elmoErrorCodeSDO);
@@ -0,0 +1,110 @@
+package us.ihmc.etherCAT.master;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+
+public class BusConfigurationCacheTest
+{
+   private static long[] fingerprint(int position)
+   {
+      long[] fingerprint = new long[BusConfigurationCache.FINGERPRINT_SIZE];
+      fingerprint[BusConfigurationCache.FINGERPRINT_CONFIGURED_ADDRESS] = 0x1000 + position;
+      fingerprint[BusConfigurationCache.FINGERPRINT_VENDOR] = 0x2;
+      fingerprint[BusConfigurationCache.FINGERPRINT_PRODUCT_CODE] = 0x1b773052L;
+      fingerprint[BusConfigurationCache.FINGERPRINT_REVISION] = 0x00110000;
+      fingerprint[BusConfigurationCache.FINGERPRINT_MAILBOX] = 0x1000;
+      fingerprint[BusConfigurationCache.FINGERPRINT_MAILBOX + 1] = 128;
+      fingerprint[BusConfigurationCache.FINGERPRINT_SYNC_MANAGERS] = 0x1000;
+      fingerprint[BusConfigurationCache.FINGERPRINT_SYNC_MANAGERS + 2] = 0xFFFFFFFFL;
+      return fingerprint;
+   }
+
+   private static BusConfigurationCache createCache(int slaves)
+   {
+      BusConfigurationCache cache = new BusConfigurationCache(slaves);
+      for (int i = 1; i <= slaves; i++)
+      {
+         cache.setFingerprint(i, fingerprint(i));
+         cache.setProcessDataLayout(i, i * 10, 48, -1, 0);
+      }
+      return cache;
+   }
+
+   @Test
+   public void testWriteAndRead() throws IOException
+   {
+      BusConfigurationCache cache = createCache(3);
+      cache.setCompleteAccess(1, true);
+      cache.setCompleteAccess(2, false);
+      cache.setPDOAssignment(1, 2, new int[] {0x1600, 0x1601});
+      cache.setPDOAssignment(1, 3, new int[] {0x1A00});
+      cache.setPDOAssignment(2, 2, new int[0]);
+      cache.setToken(0x8000000000000001L);
+
+      File file = File.createTempFile("busConfiguration", ".properties");
+      file.deleteOnExit();
+      cache.write(file);
+      BusConfigurationCache read = BusConfigurationCache.read(file);
+
+      assertEquals(3, read.getNumberOfSlaves());
+      assertEquals(0x8000000000000001L, read.getToken());
+      assertNull(read.compareFingerprint(cache));
+      assertNull(read.compareProcessDataLayout(cache));
+
+      assertEquals(Boolean.TRUE, read.getCompleteAccess(1));
+      assertEquals(Boolean.FALSE, read.getCompleteAccess(2));
+      assertNull(read.getCompleteAccess(3));
+
+      assertTrue(read.hasPDOAssignment(1, 2, new int[] {0x1600, 0x1601}));
+      assertTrue(read.hasPDOAssignment(1, 3, new int[] {0x1A00}));
+      assertTrue(read.hasPDOAssignment(2, 2, new int[0]));
+      assertFalse(read.hasPDOAssignment(1, 2, new int[] {0x1600}));
+      assertFalse(read.hasPDOAssignment(3, 2, new int[0]));
+   }
+
+   @Test
+   public void testMismatch()
+   {
+      BusConfigurationCache cache = createCache(2);
+
+      assertNotNull(cache.compareFingerprint(createCache(3)));
+
+      BusConfigurationCache replaced = createCache(2);
+      long[] fingerprint = fingerprint(2);
+      fingerprint[BusConfigurationCache.FINGERPRINT_REVISION]++;
+      replaced.setFingerprint(2, fingerprint);
+      assertTrue(cache.compareFingerprint(replaced).startsWith("Slave 2"));
+
+      BusConfigurationCache layout = createCache(2);
+      fingerprint = fingerprint(1);
+      fingerprint[BusConfigurationCache.FINGERPRINT_SYNC_MANAGERS + 1] = 64;
+      layout.setFingerprint(1, fingerprint);
+      assertNotNull(cache.compareFingerprint(layout));
+
+      BusConfigurationCache moved = createCache(2);
+      moved.setProcessDataLayout(2, 20, 48, 100, 16);
+      assertNull(cache.compareFingerprint(moved));
+      assertNotNull(cache.compareProcessDataLayout(moved));
+   }
+
+   @Test
+   public void testCorruptFile() throws IOException
+   {
+      File file = File.createTempFile("busConfiguration", ".properties");
+      file.deleteOnExit();
+      createCache(2).write(file);
+
+      String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.ISO_8859_1);
+      Files.write(file.toPath(), content.replaceAll("slave\\.2\\.fingerprint=.*", "slave.2.fingerprint=1,2,x").getBytes(StandardCharsets.ISO_8859_1));
+      assertThrows(IOException.class, () -> BusConfigurationCache.read(file));
+
+      Files.write(file.toPath(), "version=1\n".getBytes(StandardCharsets.ISO_8859_1));
+      assertThrows(IOException.class, () -> BusConfigurationCache.read(file));
+   }
+}
@@ -0,0 +1,128 @@
+package us.ihmc.etherCAT.master;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+
+public class FlightRecorderTest
+{
+   private static final class Status extends TxPDO
+   {
+      final Bool enabled = new Bool();
+      final Bool fault = new Bool();
+      final Signed16 current = new Signed16();
+      final Signed32 position = new Signed32();
+      final Float32 temperature = new Float32();
+
+      private Status()
+      {
+         super(0x1A00);
+      }
+   }
+
+   private static final class Command extends RxPDO
+   {
+      final Unsigned16 controlWord = new Unsigned16();
+      final Signed32[] torque = array(new Signed32[2]);
+
+      private Command()
+      {
+         super(0x1600);
+      }
+   }
+
+   private static final class TestSlave extends Slave
+   {
+      final Status status = new Status();
+      final Command command = new Command();
+
+      private TestSlave()
+      {
+         super(0x1, 0x2, 0, 3);
+
+         registerSyncManager(new SyncManager(2, false));
+         registerSyncManager(new SyncManager(3, false));
+         sm(2).registerPDO(command);
+         sm(3).registerPDO(status);
+      }
+   }
+
+   @Test
+   public void testRecordAndRead() throws IOException
+   {
+      ByteBuffer ioMap = ByteBuffer.allocateDirect(64);
+      ioMap.order(ByteOrder.LITTLE_ENDIAN);
+
+      TestSlave slave = new TestSlave();
+      ProcessDataGroup group = new ProcessDataGroup("test", 1);
+      group.setIOMap(ioMap, 0);
+      slave.setProcessDataGroup(group);
+      slave.sm(2).linkBuffers(ioMap, new BufferOffsetHolder(0, 0, 80));
+      slave.sm(3).linkBuffers(ioMap, new BufferOffsetHolder(10, 0, 96));
+
+      ArrayList<FlightRecorderEntry> layout = new ArrayList<>();
+      slave.describeProcessDataLayout(layout);
+      assertEquals(8, layout.size());
+
+      File file = File.createTempFile("flightRecorder", ".bin");
+      file.deleteOnExit();
+
+      FlightRecorder recorder = new FlightRecorder(file, 4, ioMap, 22, layout);
+      for (int i = 0; i < 6; i++)
+      {
+         slave.status.enabled.set(i % 2 == 1);
+         slave.status.current.set((short) -i);
+         slave.status.position.set(1000 * i);
+         slave.status.temperature.set(20.5f + i);
+         slave.command.controlWord.set(0xF000 + i);
+         slave.command.torque[1].set(-5 * i);
+
+         recorder.write(i, 100 * i, 200 * i, 3, 3);
+      }
+      recorder.close();
+
+      try (FlightRecorderReader reader = new FlightRecorderReader(file))
+      {
+         assertEquals(6, reader.getEndIndex());
+         assertEquals(3, reader.getFirstIndex());
+         assertEquals(3, reader.getNumberOfFrames());
+
+         FlightRecorderEntry enabled = reader.getEntry(0, 3, "enabled");
+         FlightRecorderEntry current = reader.getEntry(0, 3, "current");
+         FlightRecorderEntry position = reader.getEntry(0, 3, "position");
+         FlightRecorderEntry temperature = reader.getEntry(0, 3, "temperature");
+         FlightRecorderEntry controlWord = reader.getEntry(0, 3, "controlWord");
+         FlightRecorderEntry torque = reader.getEntry(0, 3, "torque[1]");
+         assertEquals("TXPDO", position.getDirection());
+         assertEquals(0x1A00, position.getPDOAddress());
+         assertEquals(3, position.getSyncManager());
+         assertEquals("RXPDO", torque.getDirection());
+
+         ProcessImageFrame frame = reader.createFrame();
+         assertFalse(reader.read(2, frame));
+         for (int i = 3; i < 6; i++)
+         {
+            assertTrue(reader.read(i, frame));
+            assertEquals(i, frame.getCycle());
+            assertEquals(100 * i, frame.getDCTime());
+            assertEquals(200 * i, frame.getTimestamp());
+            assertEquals(3, frame.getWorkingCounter());
+
+            ByteBuffer processImage = frame.getProcessImage();
+            assertEquals(i % 2, enabled.getRawValue(processImage));
+            assertEquals(-i, current.getRawValue(processImage));
+            assertEquals(1000 * i, position.getRawValue(processImage));
+            assertEquals(20.5 + i, temperature.getValue(processImage), 1e-6);
+            assertEquals(0xF000 + i, controlWord.getRawValue(processImage));
+            assertEquals(-5 * i, torque.getRawValue(processImage));
+         }
+         assertFalse(reader.read(6, frame));
+      }
+   }
+}
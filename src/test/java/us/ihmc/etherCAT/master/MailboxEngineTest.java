@@ -0,0 +1,404 @@
+package us.ihmc.etherCAT.master;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.junit.jupiter.api.Test;
+
+import us.ihmc.soem.generated.ec_cmdtype;
+
+public class MailboxEngineTest
+{
+   // Layout of an operation in RegisterTransactionBatch
+   private static final int OPERATION_COMMAND_OFFSET = 0;
+   private static final int OPERATION_ADP_OFFSET = 2;
+   private static final int OPERATION_ADO_OFFSET = 4;
+   private static final int OPERATION_LENGTH_OFFSET = 6;
+   private static final int OPERATION_DATA_OFFSET = 8;
+   private static final int OPERATION_WKC_OFFSET = 12;
+   private static final int OPERATION_SIZE = 16;
+
+   private static final int MAILBOX_WRITE_OFFSET = 0x1000;
+   private static final int MAILBOX_READ_OFFSET = 0x1080;
+   private static final int MAILBOX_LENGTH = 128;
+
+   /**
+    * Slave with a mailbox that responds to SDO requests after a number of rounds
+    */
+   private static class SimulatedMailbox
+   {
+      private final Slave slave = new Slave(0, 0, 0, 0);
+      private final int address;
+      private final int latency;
+
+      private final HashMap<Integer, byte[]> objects = new HashMap<>();
+      private final byte[] registers = new byte[0x1000];
+
+      private final ByteBuffer request = ByteBuffer.allocate(MAILBOX_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+      private final ByteBuffer response = ByteBuffer.allocate(MAILBOX_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+      private boolean requestFull = false;
+      private boolean responseFull = false;
+      private int responseRound;
+
+      private int requests = 0;
+
+      SimulatedMailbox(int address, int latency)
+      {
+         this.address = address;
+         this.latency = latency;
+      }
+
+      void setObject(int index, int subindex, byte... data)
+      {
+         objects.put((index << 8) | subindex, data);
+      }
+
+      byte[] getObject(int index, int subindex)
+      {
+         return objects.get((index << 8) | subindex);
+      }
+
+      int write(int register, ByteBuffer data, int offset, int length, int round)
+      {
+         if (register == MAILBOX_WRITE_OFFSET)
+         {
+            if (requestFull)
+            {
+               return 0;
+            }
+            for (int i = 0; i < length; i++)
+            {
+               request.put(i, data.get(offset + i));
+            }
+            requestFull = true;
+            responseRound = round + latency;
+            requests++;
+            return 1;
+         }
+
+         for (int i = 0; i < length; i++)
+         {
+            registers[register + i] = data.get(offset + i);
+         }
+         return 1;
+      }
+
+      int read(int register, ByteBuffer data, int offset, int length, int round)
+      {
+         if (register == MAILBOX_READ_OFFSET)
+         {
+            if (requestFull && round >= responseRound)
+            {
+               respond();
+               requestFull = false;
+               responseFull = true;
+            }
+            if (!responseFull)
+            {
+               return 0;
+            }
+            for (int i = 0; i < length; i++)
+            {
+               data.put(offset + i, response.get(i));
+            }
+            responseFull = false;
+            return 1;
+         }
+
+         for (int i = 0; i < length; i++)
+         {
+            data.put(offset + i, registers[register + i]);
+         }
+         return 1;
+      }
+
+      private void respond()
+      {
+         int command = request.get(8) & 0xFF;
+         int index = request.getShort(9) & 0xFFFF;
+         int subindex = request.get(11) & 0xFF;
+         boolean completeAccess = (command & 0x10) != 0;
+
+         for (int i = 0; i < MAILBOX_LENGTH; i++)
+         {
+            response.put(i, (byte) 0);
+         }
+         response.put(5, request.get(5));
+         response.putShort(6, (short) (0x03 << 12));
+         response.putShort(9, (short) index);
+         response.put(11, (byte) subindex);
+         response.putShort(0, (short) 0x0a);
+
+         byte[] value = objects.get((index << 8) | subindex);
+         if ((command & 0xE0) == 0x40)
+         {
+            // Upload
+            if (value == null)
+            {
+               response.put(8, (byte) 0x80);
+               response.putInt(12, 0x06020000);
+            }
+            else if (value.length <= 4 && !completeAccess)
+            {
+               response.put(8, (byte) (0x43 | ((4 - value.length) << 2)));
+               for (int i = 0; i < value.length; i++)
+               {
+                  response.put(12 + i, value[i]);
+               }
+            }
+            else
+            {
+               response.put(8, (byte) 0x41);
+               response.putShort(0, (short) (0x0a + value.length));
+               response.putInt(12, value.length);
+               for (int i = 0; i < value.length; i++)
+               {
+                  response.put(16 + i, value[i]);
+               }
+            }
+         }
+         else
+         {
+            // Download
+            byte[] data;
+            if ((command & 0x02) != 0)
+            {
+               data = new byte[4 - ((command >> 2) & 0x03)];
+               for (int i = 0; i < data.length; i++)
+               {
+                  data[i] = request.get(12 + i);
+               }
+            }
+            else
+            {
+               data = new byte[request.getInt(12)];
+               for (int i = 0; i < data.length; i++)
+               {
+                  data[i] = request.get(16 + i);
+               }
+            }
+            setObject(index, subindex, data);
+            response.put(8, (byte) 0x60);
+         }
+      }
+   }
+
+   private class SimulatedMailboxEngine extends MailboxEngine
+   {
+      private final ArrayList<SimulatedMailbox> mailboxes = new ArrayList<>();
+      private int frames = 0;
+
+      SimulatedMailboxEngine(SimulatedMailbox... mailboxes)
+      {
+         super(null);
+         for (SimulatedMailbox mailbox : mailboxes)
+         {
+            this.mailboxes.add(mailbox);
+         }
+      }
+
+      private SimulatedMailbox getMailbox(Slave slave)
+      {
+         for (SimulatedMailbox mailbox : mailboxes)
+         {
+            if (mailbox.slave == slave)
+            {
+               return mailbox;
+            }
+         }
+         throw new RuntimeException("Unknown slave");
+      }
+
+      @Override
+      Channel createChannel(Slave slave)
+      {
+         return new Channel(slave, getMailbox(slave).address, MAILBOX_WRITE_OFFSET, MAILBOX_LENGTH, MAILBOX_READ_OFFSET, MAILBOX_LENGTH, 0);
+      }
+
+      @Override
+      void storeCounter(Channel channel)
+      {
+      }
+
+      @Override
+      int execute(RegisterTransactionBatch batch)
+      {
+         ByteBuffer operations = batch.getOperationBuffer();
+         ByteBuffer data = batch.getDataBuffer();
+         int wkc = 0;
+         for (int i = 0; i < batch.size(); i++)
+         {
+            int offset = i * OPERATION_SIZE;
+            int command = operations.get(offset + OPERATION_COMMAND_OFFSET);
+            int address = operations.getShort(offset + OPERATION_ADP_OFFSET) & 0xFFFF;
+            int register = operations.getShort(offset + OPERATION_ADO_OFFSET) & 0xFFFF;
+            int length = operations.getShort(offset + OPERATION_LENGTH_OFFSET);
+            int dataOffset = operations.getInt(offset + OPERATION_DATA_OFFSET);
+
+            SimulatedMailbox target = null;
+            for (SimulatedMailbox mailbox : mailboxes)
+            {
+               if (mailbox.address == address)
+               {
+                  target = mailbox;
+               }
+            }
+
+            int result;
+            if (command == ec_cmdtype.EC_CMD_FPWR.swigValue())
+            {
+               result = target.write(register, data, dataOffset, length, frames);
+            }
+            else
+            {
+               result = target.read(register, data, dataOffset, length, frames);
+            }
+            operations.putShort(offset + OPERATION_WKC_OFFSET, (short) result);
+            wkc += result;
+         }
+         frames++;
+         return wkc;
+      }
+   }
+
+   /**
+    * Reads a list of objects, one transfer at a time
+    */
+   private static class ReadTask implements MailboxEngine.Task
+   {
+      private final int[] indices;
+      private final ArrayList<Integer> values = new ArrayList<>();
+      private final ArrayList<Integer> abortCodes = new ArrayList<>();
+      private int next = 0;
+
+      ReadTask(int... indices)
+      {
+         this.indices = indices;
+      }
+
+      @Override
+      public boolean next(MailboxEngine.Transfer transfer)
+      {
+         if (transfer.getType() != MailboxEngine.TransferType.NONE)
+         {
+            values.add(transfer.isSuccessful() ? transfer.getData().getInt(0) : -1);
+            abortCodes.add(transfer.getAbortCode());
+         }
+         if (next == indices.length)
+         {
+            return false;
+         }
+         transfer.readSDO(indices[next++], 0, false);
+         return true;
+      }
+   }
+
+   private static byte[] intBytes(int value)
+   {
+      return ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(value).array();
+   }
+
+   @Test
+   public void testConcurrentSlaves()
+   {
+      int latency = 5;
+      SimulatedMailbox[] mailboxes = new SimulatedMailbox[8];
+      ReadTask[] tasks = new ReadTask[mailboxes.length];
+      for (int i = 0; i < mailboxes.length; i++)
+      {
+         mailboxes[i] = new SimulatedMailbox(0x1001 + i, latency);
+         mailboxes[i].setObject(0x6000, 0, intBytes(i));
+         mailboxes[i].setObject(0x6001, 0, intBytes(100 + i));
+         tasks[i] = new ReadTask(0x6000, 0x6001, 0x6002);
+      }
+
+      SimulatedMailboxEngine engine = new SimulatedMailboxEngine(mailboxes);
+      for (int i = 0; i < mailboxes.length; i++)
+      {
+         engine.submit(mailboxes[i].slave, tasks[i]);
+      }
+      engine.run();
+
+      for (int i = 0; i < mailboxes.length; i++)
+      {
+         assertEquals(3, mailboxes[i].requests);
+         assertEquals(i, tasks[i].values.get(0).intValue());
+         assertEquals(100 + i, tasks[i].values.get(1).intValue());
+         assertEquals(-1, tasks[i].values.get(2).intValue());
+         assertEquals(0x06020000, tasks[i].abortCodes.get(2).intValue());
+      }
+
+      // All slaves are served in the same frames, the number of rounds does not depend on the number of slaves
+      assertTrue(engine.getRounds() <= 3 * (latency + 2), "Rounds: " + engine.getRounds());
+   }
+
+   @Test
+   public void testWritesAndRegisters()
+   {
+      SimulatedMailbox mailbox = new SimulatedMailbox(0x1001, 2);
+      SimulatedMailboxEngine engine = new SimulatedMailboxEngine(mailbox);
+
+      int[] step = {0};
+      engine.submit(mailbox.slave, (transfer) ->
+      {
+         switch (step[0]++)
+         {
+            case 0:
+               transfer.writeSDO(0x1C12, 0, true);
+               transfer.getData().put((byte) 2).put((byte) 0).putShort((short) 0x1600).putShort((short) 0x1601);
+               return true;
+            case 1:
+               assertTrue(transfer.isSuccessful());
+               transfer.writeSDO(0x6060, 0, false);
+               transfer.getData().put((byte) 8);
+               return true;
+            case 2:
+               assertTrue(transfer.isSuccessful());
+               transfer.readSDO(0x1C12, 0, true);
+               return true;
+            case 3:
+               assertTrue(transfer.isSuccessful());
+               assertEquals(6, transfer.getData().limit());
+               assertEquals(0x1601, transfer.getData().getShort(4));
+               transfer.writeRegister(0x420);
+               transfer.getData().putShort((short) 1234);
+               return true;
+            case 4:
+               assertTrue(transfer.isSuccessful());
+               transfer.readRegister(0x420, 2);
+               transfer.setDelay(1000000);
+               return true;
+            case 5:
+               assertEquals(1234, transfer.getData().getShort(0));
+               transfer.writeSDO(0x6060, 0, false);
+               return true;
+            default:
+               assertFalse(transfer.isSuccessful());
+               return false;
+         }
+      });
+      engine.run();
+
+      assertEquals(7, step[0]);
+      assertArrayEquals(new byte[] {8}, mailbox.getObject(0x6060, 0));
+      assertEquals(6, mailbox.getObject(0x1C12, 0).length);
+   }
+
+   @Test
+   public void testTimeout()
+   {
+      SimulatedMailbox mailbox = new SimulatedMailbox(0x1001, Integer.MAX_VALUE);
+      SimulatedMailboxEngine engine = new SimulatedMailboxEngine(mailbox);
+      engine.setTimeout(5000000);
+
+      ReadTask task = new ReadTask(0x6000);
+      engine.submit(mailbox.slave, task);
+      engine.run();
+
+      assertEquals(-1, task.values.get(0).intValue());
+   }
+}
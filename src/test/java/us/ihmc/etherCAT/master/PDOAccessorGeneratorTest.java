@@ -0,0 +1,141 @@
+package us.ihmc.etherCAT.master;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+public class PDOAccessorGeneratorTest
+{
+   static final class TestPDO extends TxPDO
+   {
+      final Bool enabled = new Bool();
+      final Bit3 mode = new Bit3();
+      final Bit5 flags = new Bit5();
+      final Bool fault = new Bool();
+      final BitField raw = new BitField(12);
+      final Unsigned8 counter = new Unsigned8();
+      final Signed8 offset = new Signed8();
+      final Signed16 current = new Signed16();
+      final Unsigned16 statusWord = new Unsigned16();
+      final Signed32 position = new Signed32();
+      final Unsigned32 inputs = new Unsigned32();
+      final Signed64 timestamp = new Signed64();
+      final Float32 temperature = new Float32();
+      final Float64 voltage = new Float64();
+      final Signed32[] torque = array(new Signed32[3]);
+      final Bool[] limits = array(new Bool[2]);
+
+      TestPDO()
+      {
+         super(0x1A00);
+      }
+   }
+
+   @Test
+   public void testGeneratedSourceIsCurrent() throws IOException
+   {
+      PDOAccessorGenerator generator = new PDOAccessorGenerator(TestPDO.class);
+      assertEquals("PDOAccessorGeneratorTestTestPDOAccessor", generator.getAccessorName());
+      assertTrue(generator.getUnsupportedMembers().isEmpty());
+
+      String path = "us/ihmc/etherCAT/master/" + generator.getAccessorName() + ".java";
+      File file = new File("src/test/java", path);
+      if (!file.exists())
+      {
+         file = new File("java", path);
+      }
+      Assumptions.assumeTrue(file.exists(), "Cannot find the source of the generated accessor");
+
+      assertEquals(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8), generator.generate(),
+                   "Generated accessor is out of date. Run PDOAccessorGenerator src/test/java us.ihmc.etherCAT.master.PDOAccessorGeneratorTest$TestPDO");
+   }
+
+   @Test
+   public void testAccessorMatchesStruct() throws IOException
+   {
+      Random random = new Random(1234);
+      for (int bitOffset = 0; bitOffset < 2; bitOffset++)
+      {
+         ByteBuffer ioMap = ByteBuffer.allocateDirect(4 + 50);
+         ioMap.order(ByteOrder.LITTLE_ENDIAN);
+
+         TestPDO pdo = new TestPDO();
+         pdo.linkBuffer(ioMap, new BufferOffsetHolder(3, bitOffset, 8 * 51));
+         PDOAccessorGeneratorTestTestPDOAccessor accessor = new PDOAccessorGeneratorTestTestPDOAccessor(pdo);
+
+         for (int i = 0; i < 100; i++)
+         {
+            for (int b = 0; b < ioMap.capacity(); b++)
+            {
+               ioMap.put(b, (byte) random.nextInt());
+            }
+
+            assertEquals(pdo.enabled.get(), accessor.getEnabled());
+            assertEquals(pdo.mode.intValue(), accessor.getMode());
+            assertEquals(pdo.flags.intValue(), accessor.getFlags());
+            assertEquals(pdo.fault.get(), accessor.getFault());
+            assertEquals(pdo.raw.longValue(), accessor.getRaw());
+            assertEquals(pdo.counter.get(), accessor.getCounter());
+            assertEquals(pdo.offset.get(), accessor.getOffset());
+            assertEquals(pdo.current.get(), accessor.getCurrent());
+            assertEquals(pdo.statusWord.get(), accessor.getStatusWord());
+            assertEquals(pdo.position.get(), accessor.getPosition());
+            assertEquals(pdo.inputs.get(), accessor.getInputs());
+            assertEquals(pdo.timestamp.get(), accessor.getTimestamp());
+            assertEquals(pdo.temperature.get(), accessor.getTemperature());
+            assertEquals(pdo.voltage.get(), accessor.getVoltage());
+            for (int t = 0; t < pdo.torque.length; t++)
+            {
+               assertEquals(pdo.torque[t].get(), accessor.getTorque(t));
+            }
+            for (int l = 0; l < pdo.limits.length; l++)
+            {
+               assertEquals(pdo.limits[l].get(), accessor.getLimits(l));
+            }
+
+            ByteBuffer expected = ByteBuffer.allocate(ioMap.capacity());
+            for (int b = 0; b < ioMap.capacity(); b++)
+            {
+               expected.put(b, ioMap.get(b));
+            }
+
+            boolean enabled = random.nextBoolean();
+            int mode = random.nextInt(8);
+            int flags = random.nextInt(32);
+            int position = random.nextInt();
+            pdo.enabled.set(enabled);
+            pdo.mode.set(mode);
+            pdo.flags.set(flags);
+            pdo.position.set(position);
+            pdo.raw.set(position);
+            pdo.limits[1].set(!enabled);
+            for (int b = 0; b < ioMap.capacity(); b++)
+            {
+               byte structValue = ioMap.get(b);
+               ioMap.put(b, expected.get(b));
+               expected.put(b, structValue);
+            }
+
+            accessor.setEnabled(enabled);
+            accessor.setMode(mode);
+            accessor.setFlags(flags);
+            accessor.setPosition(position);
+            accessor.setRaw(position);
+            accessor.setLimits(1, !enabled);
+            for (int b = 0; b < ioMap.capacity(); b++)
+            {
+               assertEquals(expected.get(b), ioMap.get(b), "Byte " + b);
+            }
+         }
+      }
+   }
+}
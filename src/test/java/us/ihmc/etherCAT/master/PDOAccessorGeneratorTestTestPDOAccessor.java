@@ -0,0 +1,245 @@
+package us.ihmc.etherCAT.master;
+
+/**
+ * Flat accessor for {@link PDOAccessorGeneratorTest.TestPDO}
+ * 
+ * Generated by PDOAccessorGenerator. Do not edit, regenerate when the PDO changes.
+ */
+public final class PDOAccessorGeneratorTestTestPDOAccessor extends PDOAccessor
+{
+   private final int enabledIndex;
+   private final int enabledShift;
+   private final int modeIndex;
+   private final int modeShift;
+   private final int flagsIndex;
+   private final int flagsShift;
+   private final int faultIndex;
+   private final int faultShift;
+   private final int rawIndex;
+   private final int rawShift;
+   private final long rawMask;
+   private final int counter;
+   private final int offset;
+   private final int current;
+   private final int statusWord;
+   private final int position;
+   private final int inputs;
+   private final int timestamp;
+   private final int temperature;
+   private final int voltage;
+   private final int[] torque;
+   private final int[] limitsIndex;
+   private final int[] limitsShift;
+
+   /**
+    * Create an accessor for a PDO that is linked to the process image
+    * 
+    * @param pdo linked PDO
+    */
+   public PDOAccessorGeneratorTestTestPDOAccessor(PDOAccessorGeneratorTest.TestPDO pdo)
+   {
+      super(pdo);
+      enabledIndex = wordIndex("enabled", pdo.enabled.absoluteBitOffset(), pdo.enabled.bitLength(), 1);
+      enabledShift = wordShift(pdo.enabled.absoluteBitOffset(), enabledIndex);
+      modeIndex = wordIndex("mode", pdo.mode.absoluteBitOffset(), pdo.mode.bitLength(), 2);
+      modeShift = wordShift(pdo.mode.absoluteBitOffset(), modeIndex);
+      flagsIndex = wordIndex("flags", pdo.flags.absoluteBitOffset(), pdo.flags.bitLength(), 2);
+      flagsShift = wordShift(pdo.flags.absoluteBitOffset(), flagsIndex);
+      faultIndex = wordIndex("fault", pdo.fault.absoluteBitOffset(), pdo.fault.bitLength(), 1);
+      faultShift = wordShift(pdo.fault.absoluteBitOffset(), faultIndex);
+      rawIndex = wordIndex("raw", pdo.raw.absoluteBitOffset(), pdo.raw.bitLength(), 8);
+      rawShift = wordShift(pdo.raw.absoluteBitOffset(), rawIndex);
+      rawMask = -1L >>> (64 - pdo.raw.bitLength());
+      checkBitLength("counter", pdo.counter.bitLength(), 8);
+      counter = pdo.counter.absoluteOffset();
+      checkBitLength("offset", pdo.offset.bitLength(), 8);
+      offset = pdo.offset.absoluteOffset();
+      checkBitLength("current", pdo.current.bitLength(), 16);
+      current = pdo.current.absoluteOffset();
+      checkBitLength("statusWord", pdo.statusWord.bitLength(), 16);
+      statusWord = pdo.statusWord.absoluteOffset();
+      checkBitLength("position", pdo.position.bitLength(), 32);
+      position = pdo.position.absoluteOffset();
+      checkBitLength("inputs", pdo.inputs.bitLength(), 32);
+      inputs = pdo.inputs.absoluteOffset();
+      checkBitLength("timestamp", pdo.timestamp.bitLength(), 64);
+      timestamp = pdo.timestamp.absoluteOffset();
+      checkBitLength("temperature", pdo.temperature.bitLength(), 32);
+      temperature = pdo.temperature.absoluteOffset();
+      checkBitLength("voltage", pdo.voltage.bitLength(), 64);
+      voltage = pdo.voltage.absoluteOffset();
+      torque = new int[pdo.torque.length];
+      for (int i = 0; i < pdo.torque.length; i++)
+      {
+         checkBitLength("torque", pdo.torque[i].bitLength(), 32);
+         torque[i] = pdo.torque[i].absoluteOffset();
+      }
+      limitsIndex = new int[pdo.limits.length];
+      limitsShift = new int[pdo.limits.length];
+      for (int i = 0; i < pdo.limits.length; i++)
+      {
+         limitsIndex[i] = wordIndex("limits", pdo.limits[i].absoluteBitOffset(), pdo.limits[i].bitLength(), 1);
+         limitsShift[i] = wordShift(pdo.limits[i].absoluteBitOffset(), limitsIndex[i]);
+      }
+   }
+
+   public boolean getEnabled()
+   {
+      return ((buffer.get(enabledIndex) >> enabledShift) & 1) != 0;
+   }
+
+   public void setEnabled(boolean value)
+   {
+      buffer.put(enabledIndex, (byte) (value ? buffer.get(enabledIndex) | (1 << enabledShift) : buffer.get(enabledIndex) & ~(1 << enabledShift)));
+   }
+
+   public int getMode()
+   {
+      return (buffer.getShort(modeIndex) >> modeShift) & 0x7;
+   }
+
+   public void setMode(int value)
+   {
+      buffer.putShort(modeIndex, (short) ((buffer.getShort(modeIndex) & ~(0x7 << modeShift)) | ((value & 0x7) << modeShift)));
+   }
+
+   public int getFlags()
+   {
+      return (buffer.getShort(flagsIndex) >> flagsShift) & 0x1f;
+   }
+
+   public void setFlags(int value)
+   {
+      buffer.putShort(flagsIndex, (short) ((buffer.getShort(flagsIndex) & ~(0x1f << flagsShift)) | ((value & 0x1f) << flagsShift)));
+   }
+
+   public boolean getFault()
+   {
+      return ((buffer.get(faultIndex) >> faultShift) & 1) != 0;
+   }
+
+   public void setFault(boolean value)
+   {
+      buffer.put(faultIndex, (byte) (value ? buffer.get(faultIndex) | (1 << faultShift) : buffer.get(faultIndex) & ~(1 << faultShift)));
+   }
+
+   public long getRaw()
+   {
+      return (buffer.getLong(rawIndex) >>> rawShift) & rawMask;
+   }
+
+   public void setRaw(long value)
+   {
+      buffer.putLong(rawIndex, (buffer.getLong(rawIndex) & ~(rawMask << rawShift)) | ((value & rawMask) << rawShift));
+   }
+
+   public short getCounter()
+   {
+      return (short) (buffer.get(counter) & 0xFF);
+   }
+
+   public void setCounter(short value)
+   {
+      buffer.put(counter, (byte) value);
+   }
+
+   public byte getOffset()
+   {
+      return buffer.get(offset);
+   }
+
+   public void setOffset(byte value)
+   {
+      buffer.put(offset, value);
+   }
+
+   public short getCurrent()
+   {
+      return buffer.getShort(current);
+   }
+
+   public void setCurrent(short value)
+   {
+      buffer.putShort(current, value);
+   }
+
+   public int getStatusWord()
+   {
+      return buffer.getShort(statusWord) & 0xFFFF;
+   }
+
+   public void setStatusWord(int value)
+   {
+      buffer.putShort(statusWord, (short) value);
+   }
+
+   public int getPosition()
+   {
+      return buffer.getInt(position);
+   }
+
+   public void setPosition(int value)
+   {
+      buffer.putInt(position, value);
+   }
+
+   public long getInputs()
+   {
+      return buffer.getInt(inputs) & 0xFFFFFFFFL;
+   }
+
+   public void setInputs(long value)
+   {
+      buffer.putInt(inputs, (int) value);
+   }
+
+   public long getTimestamp()
+   {
+      return buffer.getLong(timestamp);
+   }
+
+   public void setTimestamp(long value)
+   {
+      buffer.putLong(timestamp, value);
+   }
+
+   public float getTemperature()
+   {
+      return buffer.getFloat(temperature);
+   }
+
+   public void setTemperature(float value)
+   {
+      buffer.putFloat(temperature, value);
+   }
+
+   public double getVoltage()
+   {
+      return buffer.getDouble(voltage);
+   }
+
+   public void setVoltage(double value)
+   {
+      buffer.putDouble(voltage, value);
+   }
+
+   public int getTorque(int i)
+   {
+      return buffer.getInt(torque[i]);
+   }
+
+   public void setTorque(int i, int value)
+   {
+      buffer.putInt(torque[i], value);
+   }
+
+   public boolean getLimits(int i)
+   {
+      return ((buffer.get(limitsIndex[i]) >> limitsShift[i]) & 1) != 0;
+   }
+
+   public void setLimits(int i, boolean value)
+   {
+      buffer.put(limitsIndex[i], (byte) (value ? buffer.get(limitsIndex[i]) | (1 << limitsShift[i]) : buffer.get(limitsIndex[i]) & ~(1 << limitsShift[i])));
+   }
+}
@@ -0,0 +1,52 @@
+package us.ihmc.etherCAT.master;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.jupiter.api.Test;
+
+public class ProcessImageRingTest
+{
+   @Test
+   public void testWriteAndPoll()
+   {
+      ByteBuffer ioMap = ByteBuffer.allocateDirect(4096);
+      ioMap.order(ByteOrder.LITTLE_ENDIAN);
+
+      ProcessImageRing ring = new ProcessImageRing(3, ioMap, 2048);
+      assertEquals(4, ring.getSlots());
+
+      ProcessImageFrame frame = ring.createFrame();
+      assertFalse(ring.poll(frame));
+
+      for (int i = 0; i < 4; i++)
+      {
+         ioMap.putInt(0, i);
+         ioMap.putInt(2044, -i);
+         assertTrue(ring.write(i, 1000 * i, 2000 * i, 3, 3));
+      }
+
+      ioMap.putInt(0, 4);
+      assertFalse(ring.write(4, 0, 0, 3, 3));
+      assertEquals(1, ring.getDroppedSnapshots());
+      assertEquals(4, ring.available());
+
+      for (int i = 0; i < 4; i++)
+      {
+         assertTrue(ring.poll(frame));
+         assertEquals(i, frame.getCycle());
+         assertEquals(1000 * i, frame.getDCTime());
+         assertEquals(2000 * i, frame.getTimestamp());
+         assertEquals(3, frame.getWorkingCounter());
+         assertEquals(i, frame.getProcessImage().getInt(0));
+         assertEquals(-i, frame.getProcessImage().getInt(2044));
+      }
+      assertFalse(ring.poll(frame));
+
+      assertTrue(ring.write(5, 0, 0, 3, 3));
+      assertTrue(ring.poll(frame));
+      assertEquals(5, frame.getCycle());
+   }
+}
@@ -0,0 +1,141 @@
+package us.ihmc.etherCAT.master;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+
+public class ReplayMasterTest
+{
+   private static final class Input extends TxPDO
+   {
+      final Bool enabled = new Bool();
+      final Bit7 padding = new Bit7();
+      final Signed32 position = new Signed32();
+
+      private Input()
+      {
+         super(0x1A00);
+      }
+   }
+
+   private static final class Output extends RxPDO
+   {
+      final Signed32 torque = new Signed32();
+
+      private Output()
+      {
+         super(0x1600);
+      }
+   }
+
+   private static final class TestSlave extends Slave
+   {
+      final Input input = new Input();
+      final Output output = new Output();
+
+      private TestSlave()
+      {
+         super(0x1, 0x2, 0, 1);
+
+         registerSyncManager(new SyncManager(2, false));
+         registerSyncManager(new SyncManager(3, false));
+         sm(2).registerPDO(output);
+         sm(3).registerPDO(input);
+      }
+
+      void control(int gain)
+      {
+         output.torque.set(input.enabled.get() ? -gain * input.position.get() : 0);
+      }
+   }
+
+   private static File record(int cycles) throws IOException
+   {
+      ByteBuffer ioMap = ByteBuffer.allocateDirect(16);
+      ioMap.order(ByteOrder.LITTLE_ENDIAN);
+
+      TestSlave slave = new TestSlave();
+      ProcessDataGroup group = new ProcessDataGroup("test", 1);
+      group.setIOMap(ioMap, 0);
+      slave.setProcessDataGroup(group);
+      slave.sm(2).linkBuffers(ioMap, new BufferOffsetHolder(0, 0, 32));
+      slave.sm(3).linkBuffers(ioMap, new BufferOffsetHolder(4, 0, 40));
+
+      ArrayList<FlightRecorderEntry> layout = new ArrayList<>();
+      slave.describeProcessDataLayout(layout);
+
+      File file = File.createTempFile("replay", ".bin");
+      file.deleteOnExit();
+      FlightRecorder recorder = new FlightRecorder(file, cycles, ioMap, 9, layout);
+      for (int i = 0; i < cycles; i++)
+      {
+         slave.input.enabled.set(i > 10);
+         slave.input.position.set(i * 7);
+         slave.control(3);
+         recorder.write(i, 1000000 * i, 0, 3, 3);
+      }
+      recorder.close();
+      return file;
+   }
+
+   private static class TestReplay extends ReplayMaster
+   {
+      final TestSlave slave = new TestSlave();
+      final int gain;
+      int mismatches = 0;
+      long lastTimestamp = -1;
+
+      TestReplay(File recording, int gain) throws IOException
+      {
+         super(recording);
+         this.gain = gain;
+         registerSlave(slave);
+      }
+
+      @Override
+      protected void doControl()
+      {
+         assertTrue(getCurrentCycleTimestamp() > lastTimestamp);
+         lastTimestamp = getCurrentCycleTimestamp();
+         assertEquals(getCycle() * 7, slave.input.position.get());
+         slave.control(gain);
+      }
+
+      @Override
+      protected void outputMismatch(long cycle, FlightRecorderEntry entry, long recorded, long replayed)
+      {
+         assertEquals("torque", entry.getName());
+         assertEquals(-3 * 7 * cycle, recorded);
+         assertEquals(-4 * 7 * cycle, replayed);
+         mismatches++;
+      }
+   }
+
+   @Test
+   public void testReplay() throws IOException
+   {
+      File recording = record(100);
+
+      TestReplay replay = new TestReplay(recording, 3);
+      replay.init();
+      assertTrue(replay.slave.isOperational());
+      replay.run();
+      replay.close();
+      assertEquals(99, replay.getReplayedCycles());
+      assertEquals(0, replay.getMismatchedCycles());
+
+      TestReplay changed = new TestReplay(recording, 4);
+      changed.init();
+      changed.run();
+      changed.close();
+      assertEquals(99, changed.getReplayedCycles());
+      assertEquals(89, changed.getMismatchedCycles());
+      assertEquals(89, changed.mismatches);
+   }
+}
@@ -0,0 +1,240 @@
+package us.ihmc.etherCAT.master;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+
+public class SDOSchedulerTest
+{
+   private final ArrayList<ReadSDO> transferOrder = new ArrayList<>();
+   private final ArrayList<Integer> writtenValues = new ArrayList<>();
+
+   private class TestSubdevice extends Slave
+   {
+      boolean mailbox = true;
+
+      public TestSubdevice()
+      {
+         super(0, 0, 0, 0);
+      }
+
+      @Override
+      public int readSDOToBuffer(int index, int subIndex, int size, ByteBuffer sdoBuffer)
+      {
+         transferOrder.add(null);
+         for (int i = 0; i < getSDOs().size(); i++)
+         {
+            SDO sdo = getSDOs().get(i);
+            if (sdo.buffer == sdoBuffer)
+            {
+               transferOrder.set(transferOrder.size() - 1, (ReadSDO) sdo);
+            }
+         }
+         sdoBuffer.putInt(0, index);
+         return 1;
+      }
+
+      @Override
+      public int writeSDO(int index, int subindex, ByteBuffer buffer)
+      {
+         assertEquals(Integer.BYTES, buffer.position());
+         writtenValues.add(buffer.getInt(0));
+         return 1;
+      }
+   }
+
+   private SDOScheduler createScheduler(Slave... subdevices)
+   {
+      SDOScheduler scheduler = new SDOScheduler(null)
+      {
+         @Override
+         boolean canTransfer(Slave subdevice)
+         {
+            return true;
+         }
+
+         @Override
+         boolean canUseMailbox(Slave subdevice)
+         {
+            return ((TestSubdevice) subdevice).mailbox;
+         }
+      };
+      scheduler.setSubdevices(subdevices);
+      return scheduler;
+   }
+
+   private ReadSDO addSDO(Slave slave, int index, SDO.Priority priority)
+   {
+      ReadSDO sdo = new ReadSDO(slave, index, 0, 4);
+      sdo.setPriority(priority);
+      slave.registerSDO(sdo);
+      return sdo;
+   }
+
+   private void sync(Slave... slaves)
+   {
+      for (Slave slave : slaves)
+      {
+         for (SDO sdo : slave.getSDOs())
+         {
+            sdo.syncDataWithStatemachineThread();
+         }
+      }
+   }
+
+   private void runUntilIdle(SDOScheduler scheduler)
+   {
+      while (!scheduler.skipTask())
+      {
+         scheduler.execute(0);
+      }
+   }
+
+   @Test
+   public void testPriorityAndFairness()
+   {
+      TestSubdevice a = new TestSubdevice();
+      TestSubdevice b = new TestSubdevice();
+      ReadSDO telemetryA1 = addSDO(a, 1, SDO.Priority.TELEMETRY);
+      ReadSDO telemetryA2 = addSDO(a, 2, SDO.Priority.TELEMETRY);
+      ReadSDO telemetryB = addSDO(b, 3, SDO.Priority.TELEMETRY);
+      ReadSDO urgentB = addSDO(b, 4, SDO.Priority.URGENT);
+
+      SDOScheduler scheduler = createScheduler(a, b);
+
+      for (ReadSDO sdo : new ReadSDO[] {telemetryA1, telemetryA2, telemetryB, urgentB})
+      {
+         sdo.requestNewData();
+      }
+      sync(a, b);
+
+      runUntilIdle(scheduler);
+      assertEquals(4, transferOrder.size());
+      assertSame(urgentB, transferOrder.get(0));
+      // Round robin over the slaves after serving b
+      assertSame(telemetryA1, transferOrder.get(1));
+      assertSame(telemetryB, transferOrder.get(2));
+      assertSame(telemetryA2, transferOrder.get(3));
+
+      sync(a, b);
+      assertTrue(urgentB.isValid());
+      assertEquals(4, urgentB.getInt());
+      assertEquals(4, scheduler.getMaximumQueueDepth());
+      assertEquals(0, scheduler.getQueueDepth());
+   }
+
+   @Test
+   public void testQueuedTransfers()
+   {
+      TestSubdevice a = new TestSubdevice();
+      WriteSDO write = new WriteSDO(a, 7, 0, 4);
+      write.setQueueCapacity(3);
+      a.registerSDO(write);
+
+      SDOScheduler scheduler = createScheduler(a);
+
+      for (int i = 0; i < 4; i++)
+      {
+         assertTrue(write.write(i));
+      }
+      assertFalse(write.write(4));
+      assertEquals(4, write.getOutstandingRequests());
+
+      scheduler.execute(0);
+      runUntilIdle(scheduler);
+      assertEquals(4, writtenValues.size());
+      for (int i = 0; i < 4; i++)
+      {
+         assertEquals(i, writtenValues.get(i).intValue());
+      }
+
+      for (int i = 0; i < 4; i++)
+      {
+         assertTrue(write.pollResult());
+         assertTrue(write.isValid());
+      }
+      assertFalse(write.pollResult());
+      assertEquals(0, write.getOutstandingRequests());
+   }
+
+   @Test
+   public void testAsyncRequests()
+   {
+      TestSubdevice a = new TestSubdevice();
+      TestSubdevice offline = new TestSubdevice();
+      offline.mailbox = false;
+      ReadSDO telemetry = addSDO(a, 1, SDO.Priority.TELEMETRY);
+      ReadSDO urgent = addSDO(a, 2, SDO.Priority.URGENT);
+
+      SDOScheduler scheduler = createScheduler(a, offline);
+      AsyncSDOQueue queue = scheduler.getAsyncQueue();
+
+      ArrayList<AsyncSDORequest> completed = new ArrayList<>();
+      int[] results = new int[2];
+      SDOCallback callback = request ->
+      {
+         results[completed.size()] = request.isSuccessful() ? request.getData().getInt(0) : -1;
+         completed.add(request);
+      };
+
+      AsyncSDORequest failed = queue.acquire();
+      failed.set(offline, 8, 0, 4, true, ByteBuffer.allocateDirect(4), callback);
+      queue.submit(failed);
+      AsyncSDORequest read = queue.acquire();
+      read.set(a, 9, 0, 4, true, ByteBuffer.allocateDirect(4), callback);
+      queue.submit(read);
+
+      telemetry.requestNewData();
+      urgent.requestNewData();
+      sync(a);
+
+      runUntilIdle(scheduler);
+
+      // The request to the slave without mailbox fails without a transfer
+      assertEquals(2, completed.size());
+      assertEquals(-1, results[0]);
+      assertEquals(9, results[1]);
+
+      assertEquals(3, transferOrder.size());
+      assertSame(urgent, transferOrder.get(0));
+      assertNull(transferOrder.get(1));
+      assertSame(telemetry, transferOrder.get(2));
+
+      // All requests are returned to the pool
+      for (int i = 0; i < SDOScheduler.ASYNC_SDO_POOL_SIZE; i++)
+      {
+         assertNotNull(queue.acquire());
+      }
+      assertNull(queue.acquire());
+   }
+
+   @Test
+   public void testCoalescingAndDeadline()
+   {
+      TestSubdevice a = new TestSubdevice();
+      ReadSDO first = addSDO(a, 5, SDO.Priority.NORMAL);
+      ReadSDO second = addSDO(a, 5, SDO.Priority.TELEMETRY);
+      ReadSDO expired = addSDO(a, 6, SDO.Priority.NORMAL);
+
+      SDOScheduler scheduler = createScheduler(a);
+
+      first.requestNewData();
+      second.requestNewData();
+      expired.requestNewData(0);
+      sync(a);
+
+      runUntilIdle(scheduler);
+      assertEquals(1, transferOrder.size());
+      assertEquals(1, scheduler.getCoalescedTransfers());
+      assertEquals(1, scheduler.getDeadlineMisses());
+
+      sync(a);
+      assertTrue(first.isValid());
+      assertTrue(second.isValid());
+      assertEquals(5, second.getInt());
+      assertFalse(expired.isValid());
+   }
+}
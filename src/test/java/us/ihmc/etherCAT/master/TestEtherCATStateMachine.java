@@ -109,7 +109,7 @@ public class TestEtherCATStateMachine
       }
 
       @Override
-      boolean updateEtherCATState()
+      boolean updateEtherCATState(int wc, int alStatus, int alStatusCode)
       {
          retState = state;
          return true;
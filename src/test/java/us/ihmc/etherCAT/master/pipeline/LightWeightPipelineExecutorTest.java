@@ -0,0 +1,204 @@
+package us.ihmc.etherCAT.master.pipeline;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class LightWeightPipelineExecutorTest
+{
+   private static class CountingTask implements LightWeightPipelineTask
+   {
+      int executions = 0;
+      boolean skip = false;
+      boolean finished = true;
+      long sleep = 0;
+
+      @Override
+      public boolean skipTask()
+      {
+         return skip;
+      }
+
+      @Override
+      public boolean execute(long runtime)
+      {
+         executions++;
+         if (sleep > 0)
+         {
+            long end = System.nanoTime() + sleep;
+            while (System.nanoTime() < end)
+               ;
+         }
+         return finished;
+      }
+   }
+
+   private static class SlowTask extends CountingTask
+   {
+   }
+
+   @Test
+   public void testSingleTaskPerCall()
+   {
+      LightWeightPipelineExecutor executor = new LightWeightPipelineExecutor();
+      CountingTask[] tasks = {new CountingTask(), new CountingTask(), new CountingTask()};
+      for (CountingTask task : tasks)
+      {
+         executor.addTask(task);
+      }
+
+      tasks[1].skip = true;
+      executor.execute(0);
+      executor.execute(0);
+      executor.execute(0);
+
+      assertEquals(2, tasks[0].executions);
+      assertEquals(0, tasks[1].executions);
+      assertEquals(1, tasks[2].executions);
+   }
+
+   @Test
+   public void testBudget()
+   {
+      LightWeightPipelineExecutor executor = new LightWeightPipelineExecutor();
+      CountingTask[] tasks = {new CountingTask(), new CountingTask(), new CountingTask(), new CountingTask()};
+      for (CountingTask task : tasks)
+      {
+         executor.addTask(task);
+      }
+
+      // Every task is visited at most once per call
+      executor.execute(0, Long.MAX_VALUE);
+      for (CountingTask task : tasks)
+      {
+         assertEquals(1, task.executions);
+      }
+
+      // No task runs without budget
+      executor.execute(0, 0);
+      assertEquals(0, executor.getTasksExecutedInLastCall());
+      assertEquals(1, tasks[0].executions);
+      assertEquals(1, tasks[1].executions);
+
+      // An unfinished task stops execution and runs again next call
+      tasks[1].finished = false;
+      executor.execute(0, Long.MAX_VALUE);
+      assertEquals(2, tasks[0].executions);
+      assertEquals(2, tasks[1].executions);
+      assertEquals(1, tasks[2].executions);
+      executor.execute(0, Long.MAX_VALUE);
+      assertEquals(3, tasks[1].executions);
+      assertEquals(1, tasks[2].executions);
+   }
+
+   @Test
+   public void testMoveToTask()
+   {
+      LightWeightPipelineExecutor executor = new LightWeightPipelineExecutor();
+      CountingTask[] tasks = {new CountingTask(), new CountingTask(), new CountingTask()};
+      for (CountingTask task : tasks)
+      {
+         executor.addTask(task);
+      }
+
+      assertTrue(executor.moveToTask(tasks[2]));
+      executor.execute(0);
+      assertEquals(1, tasks[2].executions);
+      assertEquals(1, executor.getTasksExecutedInLastCall());
+
+      // Execution continues at the start after the prioritized task
+      executor.execute(0);
+      assertEquals(1, tasks[0].executions);
+
+      assertFalse(executor.moveToTask(new CountingTask()));
+
+      for (CountingTask task : tasks)
+      {
+         task.skip = true;
+      }
+      executor.execute(0, Long.MAX_VALUE);
+      assertEquals(0, executor.getTasksExecutedInLastCall());
+   }
+
+   @Test
+   public void testTaskCost()
+   {
+      LightWeightPipelineExecutor executor = new LightWeightPipelineExecutor();
+      CountingTask fast = new CountingTask();
+      SlowTask slow = new SlowTask();
+      slow.sleep = 2000000;
+      executor.addTask(fast);
+      executor.addTask(slow);
+      executor.addTask(new CountingTask());
+
+      executor.execute(0, Long.MAX_VALUE);
+      assertEquals(2, executor.getTaskCosts().size());
+      for (LightWeightPipelineTaskCost cost : executor.getTaskCosts())
+      {
+         if (cost.getName().equals(SlowTask.class.getSimpleName()))
+         {
+            assertEquals(1, cost.getSamples());
+            assertTrue(cost.getEstimate() >= slow.sleep);
+         }
+         else
+         {
+            assertEquals(2, cost.getSamples());
+         }
+      }
+
+      // The slow task does not fit in the budget after the fast task has run
+      executor.execute(0, slow.sleep / 2);
+      assertEquals(2, fast.executions);
+      assertEquals(1, slow.executions);
+
+      // Also not as the first task
+      executor.execute(0, slow.sleep / 2);
+      assertEquals(0, executor.getTasksExecutedInLastCall());
+      assertEquals(1, slow.executions);
+
+      // Without budget, a single task runs
+      executor.execute(0);
+      assertEquals(2, slow.executions);
+   }
+
+   private static class BlockingTask extends CountingTask
+   {
+      @Override
+      public boolean isBlocking()
+      {
+         return true;
+      }
+   }
+
+   @Test
+   public void testBlockingTasks()
+   {
+      LightWeightPipelineExecutor executor = new LightWeightPipelineExecutor();
+      CountingTask fast = new CountingTask();
+      BlockingTask blockingA = new BlockingTask();
+      BlockingTask blockingB = new BlockingTask();
+      executor.addTask(fast);
+      executor.addTask(blockingA);
+      executor.addTask(blockingB);
+
+      executor.executeNonBlocking(0, Long.MAX_VALUE);
+      assertEquals(1, fast.executions);
+      assertEquals(0, blockingA.executions);
+      assertEquals(0, blockingB.executions);
+      assertTrue(executor.hasDeferredBlockingTasks());
+
+      // Blocking tasks are run one at a time, round robin
+      executor.executeBlocking(0);
+      assertEquals(1, blockingA.executions);
+      executor.executeBlocking(0);
+      assertEquals(1, blockingB.executions);
+      assertTrue(executor.hasDeferredBlockingTasks());
+
+      blockingA.skip = true;
+      blockingB.skip = true;
+      executor.executeBlocking(0);
+      assertEquals(0, executor.getTasksExecutedInLastCall());
+      assertFalse(executor.hasDeferredBlockingTasks());
+      assertEquals(1, fast.executions);
+   }
+}
@@ -0,0 +1,123 @@
+package us.ihmc.etherCAT.master.statistics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class LogLinearHistogramTest
+{
+   @Test
+   public void testBucketIndex()
+   {
+      for (long value = 0; value < 64; value++)
+      {
+         assertEquals(value, LogLinearHistogram.getBucketIndex(value));
+         assertEquals(value, LogLinearHistogram.getBucketUpperBound((int) value));
+      }
+
+      long value = 1;
+      while (value < (1L << 41))
+      {
+         int index = LogLinearHistogram.getBucketIndex(value);
+         assertTrue(LogLinearHistogram.getBucketUpperBound(index) >= value);
+         assertTrue(index == 0 || LogLinearHistogram.getBucketUpperBound(index - 1) < value);
+         assertTrue(LogLinearHistogram.getBucketUpperBound(index) - value <= value / LogLinearHistogram.SUB_BUCKETS);
+
+         value = value * 3 / 2 + 1;
+      }
+
+      assertEquals(LogLinearHistogram.NUMBER_OF_BUCKETS - 1, LogLinearHistogram.getBucketIndex(Long.MAX_VALUE));
+   }
+
+   @Test
+   public void testPercentiles()
+   {
+      LogLinearHistogram histogram = new LogLinearHistogram("test", 10);
+      HistogramSnapshot snapshot = new HistogramSnapshot();
+
+      histogram.getSnapshot(snapshot);
+      assertEquals(0, snapshot.getTotalCount());
+      assertEquals(0, snapshot.getP99());
+
+      for (int i = 1; i <= 999; i++)
+      {
+         histogram.record(1000);
+      }
+      histogram.record(300000);
+      histogram.publish();
+
+      histogram.getSnapshot(snapshot);
+      assertEquals(1000, snapshot.getTotalCount());
+      assertEquals(1000, snapshot.getMin());
+      assertEquals(300000, snapshot.getMax());
+      assertEquals(1000, snapshot.getP50(), 1000 / LogLinearHistogram.SUB_BUCKETS);
+      assertEquals(1000, snapshot.getP99(), 1000 / LogLinearHistogram.SUB_BUCKETS);
+      assertEquals(1000, snapshot.getP999(), 1000 / LogLinearHistogram.SUB_BUCKETS);
+      assertEquals(300000, snapshot.getValueAtPercentile(100.0));
+   }
+
+   @Test
+   public void testPublishInterval()
+   {
+      LogLinearHistogram histogram = new LogLinearHistogram("test", 10);
+
+      for (int i = 0; i < 9; i++)
+      {
+         histogram.record(i);
+      }
+      assertEquals(0, histogram.createSnapshot().getTotalCount());
+
+      histogram.record(9);
+      assertEquals(10, histogram.createSnapshot().getTotalCount());
+
+      histogram.requestReset();
+      for (int i = 0; i < 10; i++)
+      {
+         histogram.record(i);
+      }
+      assertEquals(20, histogram.createSnapshot().getTotalCount());
+
+      for (int i = 0; i < 10; i++)
+      {
+         histogram.record(i);
+      }
+      assertEquals(10, histogram.createSnapshot().getTotalCount());
+   }
+
+   @Test
+   public void testConcurrentSnapshots() throws InterruptedException
+   {
+      LogLinearHistogram histogram = new LogLinearHistogram("test", 1);
+
+      Thread writer = new Thread(() ->
+      {
+         for (int i = 0; i < 200000; i++)
+         {
+            histogram.record(i % 5000);
+         }
+      });
+      writer.start();
+
+      HistogramSnapshot snapshot = new HistogramSnapshot();
+      long previousCount = 0;
+      while (writer.isAlive())
+      {
+         histogram.getSnapshot(snapshot);
+
+         // A consistent snapshot has a count that matches the sum of the buckets
+         long sum = 0;
+         for (int i = 0; i < LogLinearHistogram.NUMBER_OF_BUCKETS; i++)
+         {
+            sum += snapshot.getCountAtIndex(i);
+         }
+         assertEquals(snapshot.getTotalCount(), sum);
+         assertTrue(snapshot.getTotalCount() >= previousCount);
+         previousCount = snapshot.getTotalCount();
+      }
+      writer.join();
+
+      histogram.getSnapshot(snapshot);
+      assertEquals(200000, snapshot.getTotalCount());
+      assertEquals(4999, snapshot.getMax());
+   }
+}
@@ -9,6 +9,8 @@
 
 #include <stdlib.h>
 #include <stdio.h>
+#include <string.h>
+#include <time.h>
 
 #ifdef __linux__
 #include <linux/types.h>
@@ -26,7 +28,7 @@
 
 ec_slavet             ihmc_ecslave[EC_MAXSLAVE];
 int                   ihmc_ecslavecount;
-ec_groupt             ihmc_ecgroup[EC_MAXGROUP];
+ec_groupt             ihmc_ecgroup[IHMC_MAXGROUP];
 
 static uint8          ihmc_ecesibuf[EC_MAXEEPBUF];
 static uint32         ihmc_ecesimap[EC_MAXEEPBITMAP];
@@ -43,6 +45,108 @@ boolean                 ihmc_EcatError = FALSE;
 
 int64                 ihmc_ecDCtime;
 
+/* Layout of the transaction buffer filled by ecx_send_receive_processdata_group. Must match the first fields of Master.TRANSACTION_* */
+typedef struct
+{
+   int32 wkc;
+   int32 reserved;
+   int64 dcTime;
+   int64 sendTimestamp;
+   int64 receiveTimestamp;
+} ihmc_transactiont;
+
+/* Layout of the transaction buffer filled by ecx_send_receive_processdata_groups and ecx_receive_send_processdata_pipelined. Must match Master.TRANSACTION_* */
+typedef struct
+{
+   ihmc_transactiont transaction;
+   int64 startTimestamp;
+   int64 endTimestamp;
+   int32 groupWkc[IHMC_MAXGROUP];
+} ihmc_pipelined_transactiont;
+
+/* Layout of an operation in the operation buffer of ecx_register_batch. Must match RegisterTransactionBatch.OPERATION_* */
+typedef struct
+{
+   uint8 command;
+   uint8 reserved;
+   uint16 adp;
+   uint16 ado;
+   uint16 length;
+   int32 dataOffset;
+   int16 wkc;
+   uint16 rxoffset;
+} ihmc_registeropt;
+
+/* Length of the AL status, reserved and AL status code registers */
+#define IHMC_ALSTATUS_LENGTH 6
+/* Maximum length of an Ethernet frame, without the frame check sequence */
+#define IHMC_MAXFRAMELENGTH (EC_MAXECATFRAME - 4)
+/* Maximum number of frames in flight for ecx_register_batch. Larger batches are transferred in multiple round trips */
+#define IHMC_MAXBATCHFRAMES 4
+
+/* Offsets of the cyclically mapped ESC registers of a slave, relative to the group IO map. Must match Master.CYCLIC_STATUS_* */
+typedef struct
+{
+   int32 alstatus;
+   int32 dcsysdiff;
+} ihmc_statusoffsett;
+
+/* ESC register with the number of supported FMMUs */
+#define IHMC_REG_FMMUCOUNT 0x0004
+/* Length of the DC system time difference register */
+#define IHMC_DCSYSDIFF_LENGTH 4
+
+/* Layout of the state of a streaming SDO transfer. Must match SDOStream.STREAM_* */
+typedef struct
+{
+   int32 total;
+   int32 transferred;
+   int32 toggle;
+   int32 state;
+} ihmc_sdostreamt;
+
+#define IHMC_SDOSTREAM_INIT 0
+#define IHMC_SDOSTREAM_SEGMENTS 1
+#define IHMC_SDOSTREAM_DONE 2
+#define IHMC_SDOSTREAM_FAILED 3
+
+/* CoE SDO mailbox. Same layout as ec_SDOt, which is private to ethercatcoe.c */
+PACKED_BEGIN
+typedef struct PACKED
+{
+   ec_mbxheadert   MbxHeader;
+   uint16          CANOpen;
+   uint8           Command;
+   uint16          Index;
+   uint8           SubIndex;
+   union
+   {
+      uint8   bdata[0x200];
+      uint16  wdata[0x100];
+      uint32  ldata[0x80];
+   };
+} ihmc_SDOt;
+PACKED_END
+
+/* Process data group of each frame on the index stack. Used to split the working counter per group */
+static uint8 ihmc_idxgroup[EC_MAXBUF];
+
+/* Acyclic register operations that are appended to the process data frames. Set by ecx_acyclic_submit */
+typedef struct
+{
+   ihmc_registeropt *operations;
+   uint8 *data;
+   int count;
+   int next;
+   int received;
+} ihmc_acyclicqueuet;
+
+static ihmc_acyclicqueuet ihmc_acyclic;
+
+/* First acyclic operation and number of acyclic operations appended to each frame on the index stack */
+static int ihmc_idxacyclicfirst[EC_MAXBUF];
+static int ihmc_idxacycliccount[EC_MAXBUF];
+
 ecx_portt               ihmc_ecx_port;
 ecx_redportt            ihmc_ecx_redport;
 
@@ -53,7 +157,7 @@ ecx_contextt  ihmc_ecx_context = {
     &ihmc_ecslavecount,  // .slavecount    =
     EC_MAXSLAVE,     // .maxslave      =
     &ihmc_ecgroup[0],    // .grouplist     =
-	EC_MAXGROUP,     // .maxgroup      =
+	IHMC_MAXGROUP,   // .maxgroup      =
     &ihmc_ecesibuf[0],   // .esibuf        =
     &ihmc_ecesimap[0],   // .esimap        =
     0,               // .esislave      =
@@ -81,7 +185,7 @@ ecx_contextt* ecx_create_context(int manualStateChange)
     
 	ec_slavet             *ihmc_ecslave = malloc(sizeof(*ihmc_ecslave) * EC_MAXSLAVE);
 	int                   *ihmc_ecslavecount = malloc(sizeof(*ihmc_ecslavecount));
-	ec_groupt             *ihmc_ecgroup = malloc(sizeof(*ihmc_ecgroup) * EC_MAXGROUP);
+	ec_groupt             *ihmc_ecgroup = malloc(sizeof(*ihmc_ecgroup) * IHMC_MAXGROUP);
 	                      
 	uint8                 *ihmc_ecesibuf = malloc(sizeof(*ihmc_ecesibuf) * EC_MAXEEPBUF);
 	uint32                *ihmc_ecesimap = malloc(sizeof(*ihmc_ecesimap) * EC_MAXEEPBITMAP);
@@ -107,7 +211,7 @@ ecx_contextt* ecx_create_context(int manualStateChange)
    ihmc_ecx_context->slavecount = ihmc_ecslavecount;
    ihmc_ecx_context->maxslave = EC_MAXSLAVE;
    ihmc_ecx_context->grouplist =  ihmc_ecgroup;
-   ihmc_ecx_context->maxgroup = EC_MAXGROUP;
+   ihmc_ecx_context->maxgroup = IHMC_MAXGROUP;
    ihmc_ecx_context->esibuf = ihmc_ecesibuf;
    ihmc_ecx_context->esimap = ihmc_ecesimap;
    ihmc_ecx_context->esislave =    0;               
@@ -158,6 +262,743 @@ int64 ecx_dcTime(ecx_contextt* context)
 	return *(context->DCtime);
 }
 
+static int64 ecx_monotonic_time(void)
+{
+	struct timespec ts;
+	clock_gettime(CLOCK_MONOTONIC, &ts);
+	return ((int64) ts.tv_sec) * 1000000000LL + (int64) ts.tv_nsec;
+}
+
+int ecx_send_receive_processdata(ecx_contextt *context, int timeout, void *transaction)
+{
+	return ecx_send_receive_processdata_group(context, 0, timeout, transaction);
+}
+
+/*
+ * Check if a datagram with length bytes of data fits in the frame behind the datagrams already added.
+ */
+static int ecx_datagram_fits(ecx_portt *port, uint8 idx, uint16 length)
+{
+	return port->txbuflength[idx] + EC_HEADERSIZE - EC_ELENGTHSIZE + length + EC_WKCSIZE <= IHMC_MAXFRAMELENGTH;
+}
+
+/*
+ * Add a datagram to a frame and return the offset of its data in the received frame.
+ *
+ * ecx_adddatagram sets the "datagram follows" flag in the first datagram of the frame. This sets it in the datagram
+ * added before, so any number of datagrams can be chained without knowing which one is last.
+ * lastHeader is the offset in the transmit buffer of the datagram added before and is updated to the new datagram.
+ */
+static int ecx_appenddatagram(ecx_portt *port, uint8 idx, uint16 *lastHeader, uint8 command, uint16 adp, uint16 ado, uint16 length, void *data)
+{
+	ec_comt *previous = (ec_comt*) &(port->txbuf[idx][*lastHeader]);
+
+	previous->dlength = htoes(etohs(previous->dlength) | EC_DATAGRAMFOLLOWS);
+	*lastHeader = (uint16) (port->txbuflength[idx] - EC_ELENGTHSIZE);
+	return ecx_adddatagram(port, &(port->txbuf[idx]), command, idx, FALSE, adp, ado, length, data);
+}
+
+/*
+ * Store the working counter of a register operation and copy the data of a read to the data buffer.
+ */
+static int ecx_receive_register_operation(uint8 *rxframe, ihmc_registeropt *operation, uint8 *data)
+{
+	uint8 *rxdata = rxframe + operation->rxoffset;
+	uint16 le_wkc;
+
+	memcpy(&le_wkc, rxdata + operation->length, EC_WKCSIZE);
+	operation->wkc = etohs(le_wkc);
+
+	/* Only read data from slaves that processed the datagram */
+	if(operation->wkc > 0)
+	{
+		switch(operation->command)
+		{
+		case EC_CMD_APRD:
+		case EC_CMD_FPRD:
+		case EC_CMD_BRD:
+		case EC_CMD_APRW:
+		case EC_CMD_FPRW:
+		case EC_CMD_BRW:
+		case EC_CMD_ARMW:
+		case EC_CMD_FRMW:
+			memcpy(data + operation->dataOffset, rxdata, operation->length);
+			break;
+		default:
+			break;
+		}
+	}
+
+	return operation->wkc;
+}
+
+/*
+ * Append the pending acyclic operations to the frame on position pos of the index stack, till the next operation does not fit.
+ */
+static void ecx_append_acyclic(ecx_portt *port, uint8 idx, uint16 *lastHeader, int pos)
+{
+	ihmc_registeropt *operation;
+
+	ihmc_idxacyclicfirst[pos] = ihmc_acyclic.next;
+	while(ihmc_acyclic.next < ihmc_acyclic.count)
+	{
+		operation = &(ihmc_acyclic.operations[ihmc_acyclic.next]);
+		if(!ecx_datagram_fits(port, idx, operation->length))
+		{
+			break;
+		}
+
+		operation->rxoffset = (uint16) ecx_appenddatagram(port, idx, lastHeader, operation->command, operation->adp,
+				operation->ado, operation->length, ihmc_acyclic.data + operation->dataOffset);
+		ihmc_acyclic.next++;
+	}
+	ihmc_idxacycliccount[pos] = ihmc_acyclic.next - ihmc_idxacyclicfirst[pos];
+}
+
+/*
+ * Deliver the results of the acyclic operations in the frame on position pos of the index stack.
+ */
+static void ecx_receive_acyclic(uint8 *rxframe, int pos, int received)
+{
+	int op;
+
+	for(op = ihmc_idxacyclicfirst[pos]; op < ihmc_idxacyclicfirst[pos] + ihmc_idxacycliccount[pos]; op++)
+	{
+		if(received)
+		{
+			ecx_receive_register_operation(rxframe, &(ihmc_acyclic.operations[op]), ihmc_acyclic.data);
+		}
+		else
+		{
+			ihmc_acyclic.operations[op].wkc = EC_NOFRAME;
+		}
+	}
+	ihmc_acyclic.received += ihmc_idxacycliccount[pos];
+	ihmc_idxacycliccount[pos] = 0;
+}
+
+/*
+ * Send a single process data frame, append the pending acyclic operations and push it on the index stack.
+ *
+ * rxdata is the location in the IO map the received data is copied to.
+ */
+static void ecx_send_processdata_frame(ecx_contextt *context, uint8 group, uint8 command, uint32 logAddr, uint16 length,
+		uint8 *data, uint8 *rxdata, boolean *first)
+{
+	ecx_portt *port = context->port;
+	ec_idxstackT *idxstack = context->idxstack;
+	uint16 lastHeader = ETH_HEADERSIZE;
+	uint16 dcoffset = 0;
+	uint8 idx;
+	int pos;
+
+	idx = ecx_getindex(port);
+	ecx_setupdatagram(port, &(port->txbuf[idx]), command, idx, LO_WORD(logAddr), HI_WORD(logAddr), length, data);
+	if(*first)
+	{
+		/* FRMW of the DC system time in the second datagram */
+		dcoffset = (uint16) ecx_appenddatagram(port, idx, &lastHeader, EC_CMD_FRMW,
+				context->slavelist[context->grouplist[group].DCnext].configadr, ECT_REG_DCSYSTIME, sizeof(int64), context->DCtime);
+		*first = FALSE;
+	}
+
+	pos = idxstack->pushed;
+	if(pos < EC_MAXBUF)
+	{
+		ecx_append_acyclic(port, idx, &lastHeader, pos);
+
+		idxstack->idx[pos] = idx;
+		idxstack->data[pos] = rxdata;
+		idxstack->length[pos] = length;
+		idxstack->dcoffset[pos] = dcoffset;
+		ihmc_idxgroup[pos] = group;
+		idxstack->pushed++;
+	}
+
+	ecx_outframe_red(port, idx);
+}
+
+/*
+ * Send the process data frames of a group.
+ *
+ * Follows ecx_send_processdata_group and ecx_send_overlap_processdata_group, but appends the pending acyclic
+ * operations to the frames that have room left.
+ */
+static void ecx_send_processdata_frames(ecx_contextt *context, uint8 group, boolean overlap)
+{
+	ec_groupt *grp = &(context->grouplist[group]);
+	uint32 logAddr = grp->logstartaddr;
+	uint32 inputOffset = 0;
+	uint16 segment = 0;
+	boolean first = grp->hasdc;
+	int length, sublength;
+	uint8 *data;
+
+	if(overlap)
+	{
+		/* The frame is as large as the largest of the outputs and inputs, received inputs are stored behind the outputs */
+		length = grp->Obytes > grp->Ibytes ? grp->Obytes : grp->Ibytes;
+		inputOffset = grp->Obytes;
+	}
+	else
+	{
+		length = grp->Obytes + grp->Ibytes;
+	}
+
+	if(length == 0)
+	{
+		return;
+	}
+
+	if(grp->blockLRW)
+	{
+		if(grp->Ibytes)
+		{
+			segment = grp->Isegment;
+			data = grp->inputs;
+			length = grp->Ibytes;
+			logAddr += grp->Obytes;
+			do
+			{
+				if(segment == grp->Isegment)
+				{
+					sublength = grp->IOsegment[segment++] - grp->Ioffset;
+				}
+				else
+				{
+					sublength = grp->IOsegment[segment++];
+				}
+				ecx_send_processdata_frame(context, group, EC_CMD_LRD, logAddr, (uint16) sublength, data, data, &first);
+				length -= sublength;
+				logAddr += sublength;
+				data += sublength;
+			} while(length && segment < grp->nsegments);
+		}
+
+		if(grp->Obytes)
+		{
+			data = grp->outputs;
+			length = grp->Obytes;
+			logAddr = grp->logstartaddr;
+			segment = 0;
+			do
+			{
+				sublength = grp->IOsegment[segment++];
+				if(sublength > length)
+				{
+					sublength = length;
+				}
+				ecx_send_processdata_frame(context, group, EC_CMD_LWR, logAddr, (uint16) sublength, data, data, &first);
+				length -= sublength;
+				logAddr += sublength;
+				data += sublength;
+			} while(length && segment < grp->nsegments);
+		}
+	}
+	else
+	{
+		if(grp->Obytes)
+		{
+			data = grp->outputs;
+		}
+		else
+		{
+			/* Only inputs, nothing to compensate for in an overlapped IO map */
+			data = grp->inputs;
+			inputOffset = 0;
+		}
+
+		do
+		{
+			sublength = grp->IOsegment[segment++];
+			ecx_send_processdata_frame(context, group, EC_CMD_LRW, logAddr, (uint16) sublength, data, data + inputOffset, &first);
+			length -= sublength;
+			logAddr += sublength;
+			data += sublength;
+		} while(length && segment < grp->nsegments);
+	}
+}
+
+/*
+ * Receive all outstanding process data frames.
+ *
+ * Follows ecx_receive_processdata_group, but splits the working counter per group, only takes the DC time
+ * from the first frame that carries it and delivers the results of the acyclic operations.
+ */
+static int ecx_receive_processdata_frames(ecx_contextt *context, int timeout, int32 *groupWkc, int64 *dcTime)
+{
+	ec_idxstackT *idxstack = context->idxstack;
+	ec_bufT *rxbuf = context->port->rxbuf;
+	int pos, idx, wkc2, wkc = 0;
+	int valid_wkc = 0;
+	int dcValid = 0;
+	int acyclic;
+	uint8 cmd, group;
+	uint16 le_wkc;
+	int64 le_DCtime;
+
+	while(idxstack->pulled < idxstack->pushed)
+	{
+		pos = idxstack->pulled++;
+		idx = idxstack->idx[pos];
+		group = ihmc_idxgroup[pos];
+		acyclic = ihmc_idxacycliccount[pos] > 0;
+
+		wkc2 = ecx_waitinframe(context->port, idx, timeout);
+		ecx_receive_acyclic(rxbuf[idx], pos, wkc2 > EC_NOFRAME);
+		if(wkc2 > EC_NOFRAME)
+		{
+			cmd = rxbuf[idx][EC_CMDOFFSET];
+			if((cmd == EC_CMD_LRD) || (cmd == EC_CMD_LRW) || (cmd == EC_CMD_LWR))
+			{
+				if(cmd != EC_CMD_LWR)
+				{
+					/* Overlapped groups only copy into the inputs, the outputs for the next frame are untouched */
+					memcpy(idxstack->data[pos], &(rxbuf[idx][EC_HEADERSIZE]), idxstack->length[pos]);
+				}
+
+				if(idxstack->dcoffset[pos] > 0 || acyclic)
+				{
+					/* Other datagrams follow, read the working counter of the process data datagram */
+					memcpy(&le_wkc, &(rxbuf[idx][EC_HEADERSIZE + idxstack->length[pos]]), EC_WKCSIZE);
+					wkc2 = etohs(le_wkc);
+				}
+
+				if(idxstack->dcoffset[pos] > 0 && !dcValid)
+				{
+					memcpy(&le_DCtime, &(rxbuf[idx][idxstack->dcoffset[pos]]), sizeof(le_DCtime));
+					*dcTime = etohll(le_DCtime);
+					*(context->DCtime) = *dcTime;
+					dcValid = 1;
+				}
+
+				if(cmd == EC_CMD_LWR)
+				{
+					/* output WKC counts 2 times when using LRW, emulate the same for LWR */
+					wkc2 *= 2;
+				}
+
+				if(groupWkc[group] == EC_NOFRAME)
+				{
+					groupWkc[group] = 0;
+				}
+				groupWkc[group] += wkc2;
+				wkc += wkc2;
+				valid_wkc = 1;
+			}
+		}
+		ecx_setbufstat(context->port, idx, EC_BUF_EMPTY);
+	}
+
+	idxstack->pushed = 0;
+	idxstack->pulled = 0;
+
+	if(valid_wkc == 0)
+	{
+		return EC_NOFRAME;
+	}
+	return wkc;
+}
+
+/*
+ * Send the process data frames of all groups in groupMask, without waiting for any of them to return.
+ *
+ * The pending acyclic operations are appended to any frame of these groups that has room left. If the next operation
+ * does not fit behind the process data of any of these frames, it is failed instead of blocking the queue.
+ */
+static void ecx_send_processdata_groups(ecx_contextt *context, uint32 groupMask, boolean overlap)
+{
+	int pending = ihmc_acyclic.next;
+	int group;
+
+	for(group = 0; group < context->maxgroup; group++)
+	{
+		if(groupMask & (1u << group))
+		{
+			ecx_send_processdata_frames(context, group, overlap);
+		}
+	}
+
+	if(ihmc_acyclic.next == pending && pending < ihmc_acyclic.count)
+	{
+		ihmc_acyclic.operations[pending].wkc = EC_NOFRAME;
+		ihmc_acyclic.next++;
+		ihmc_acyclic.received++;
+	}
+}
+
+int ecx_send_receive_processdata_group(ecx_contextt *context, uint8 group, int timeout, void *transaction)
+{
+	ihmc_transactiont *result = (ihmc_transactiont*) transaction;
+	int32 groupWkc[IHMC_MAXGROUP];
+	int64 dcTime;
+	int i, wkc;
+
+	for(i = 0; i < IHMC_MAXGROUP; i++)
+	{
+		groupWkc[i] = EC_NOFRAME;
+	}
+
+	result->sendTimestamp = ecx_monotonic_time();
+	ecx_send_processdata_groups(context, 1u << group, FALSE);
+	wkc = ecx_receive_processdata_frames(context, timeout, groupWkc, &dcTime);
+	result->receiveTimestamp = ecx_monotonic_time();
+
+	result->wkc = wkc;
+	if(wkc != EC_NOFRAME)
+	{
+		result->dcTime = *(context->DCtime);
+	}
+
+	return wkc;
+}
+
+int ecx_send_receive_processdata_groups(ecx_contextt *context, int timeout, void *transaction, uint32 groupMask)
+{
+	ihmc_pipelined_transactiont *result = (ihmc_pipelined_transactiont*) transaction;
+	int group, wkc;
+
+	for(group = 0; group < IHMC_MAXGROUP; group++)
+	{
+		result->groupWkc[group] = EC_NOFRAME;
+	}
+
+	result->startTimestamp = ecx_monotonic_time();
+	result->transaction.sendTimestamp = result->startTimestamp;
+	ecx_send_processdata_groups(context, groupMask, FALSE);
+
+	wkc = ecx_receive_processdata_frames(context, timeout, result->groupWkc, &(result->transaction.dcTime));
+	result->transaction.wkc = wkc;
+	result->transaction.receiveTimestamp = ecx_monotonic_time();
+	result->endTimestamp = result->transaction.receiveTimestamp;
+
+	return wkc;
+}
+
+int ecx_send_processdata_groups_acyclic(ecx_contextt *context, uint32 groupMask, int overlap)
+{
+	ecx_send_processdata_groups(context, groupMask, overlap ? TRUE : FALSE);
+	return groupMask != 0;
+}
+
+int ecx_receive_processdata_acyclic(ecx_contextt *context, int timeout)
+{
+	int32 groupWkc[IHMC_MAXGROUP];
+	int64 dcTime;
+	int i;
+
+	for(i = 0; i < IHMC_MAXGROUP; i++)
+	{
+		groupWkc[i] = EC_NOFRAME;
+	}
+
+	return ecx_receive_processdata_frames(context, timeout, groupWkc, &dcTime);
+}
+
+void ecx_acyclic_submit(ecx_contextt *context, void *operations, int count, void *data)
+{
+	ihmc_acyclic.operations = (ihmc_registeropt*) operations;
+	ihmc_acyclic.data = (uint8*) data;
+	ihmc_acyclic.count = count;
+	ihmc_acyclic.next = 0;
+	ihmc_acyclic.received = 0;
+}
+
+int ecx_acyclic_pending(ecx_contextt *context)
+{
+	return ihmc_acyclic.count - ihmc_acyclic.received;
+}
+
+int ecx_config_map_group_dc(ecx_contextt *context, void *pIOmap, uint8 group, int overlap)
+{
+	if(group >= context->maxgroup)
+	{
+		return 0;
+	}
+
+	/* ecx_configdc only sets up the DC reference clock read for group 0. Copy it so every group carries the DC time */
+	if(group != 0)
+	{
+		context->grouplist[group].hasdc = context->grouplist[0].hasdc;
+		context->grouplist[group].DCnext = context->grouplist[0].DCnext;
+	}
+
+	if(overlap)
+	{
+		return ecx_config_overlap_map_group(context, pIOmap, group);
+	}
+	else
+	{
+		return ecx_config_map_group(context, pIOmap, group);
+	}
+}
+
+
+/*
+ * Program the next unused FMMU of a slave to map an ESC register into the logical address space for reading.
+ *
+ * The FMMU is stored in the slave list, so ecx_reconfig_slave_to_safeop programs it again after recovery.
+ */
+static int ecx_map_register(ecx_contextt *context, uint16 slave, uint32 logAddr, uint16 physAddr, uint16 length, uint8 fmmuCount)
+{
+	ec_slavet *ec_slave = &(context->slavelist[slave]);
+	ec_fmmut *fmmu;
+	int FMMUc = ec_slave->FMMUunused;
+
+	if(FMMUc >= fmmuCount || FMMUc >= EC_MAXFMMU)
+	{
+		return 0;
+	}
+
+	fmmu = &(ec_slave->FMMU[FMMUc]);
+	memset(fmmu, 0, sizeof(ec_fmmut));
+	fmmu->LogStart = htoel(logAddr);
+	fmmu->LogLength = htoes(length);
+	fmmu->LogStartbit = 0;
+	fmmu->LogEndbit = 7;
+	fmmu->PhysStart = htoes(physAddr);
+	fmmu->PhysStartBit = 0;
+	fmmu->FMMUtype = 1;
+	fmmu->FMMUactive = 1;
+
+	if(ecx_FPWR(context->port, ec_slave->configadr, ECT_REG_FMMU0 + (sizeof(ec_fmmut) * FMMUc), sizeof(ec_fmmut), fmmu, EC_TIMEOUTRET3) <= 0)
+	{
+		memset(fmmu, 0, sizeof(ec_fmmut));
+		return 0;
+	}
+
+	ec_slave->FMMUunused++;
+	return 1;
+}
+
+int ecx_config_map_group_status(ecx_contextt *context, void *pIOmap, uint8 group, int overlap, void *statusOffsets)
+{
+	ec_groupt *grp;
+	ec_slavet *ec_slave;
+	ihmc_statusoffsett *offsets = (ihmc_statusoffsett*) statusOffsets;
+	uint32 blockOffset, transferOffset, segmentStart, inputOffset, logAddr;
+	uint16 length, mapped;
+	uint8 fmmuCount;
+	int slave, segment;
+
+	if(group >= context->maxgroup)
+	{
+		return 0;
+	}
+	grp = &(context->grouplist[group]);
+
+	/*
+	 * The registers are placed behind the inputs of the group, so they are transferred in the LRW of the last segment.
+	 * In overlapped mode the inputs share their logical addresses with the outputs, so start behind both.
+	 */
+	blockOffset = grp->Ibytes;
+	if(overlap && grp->Obytes > blockOffset)
+	{
+		blockOffset = grp->Obytes;
+	}
+	transferOffset = overlap ? blockOffset : grp->Obytes + grp->Ibytes;
+
+	if(grp->nsegments == 0)
+	{
+		grp->nsegments = 1;
+		grp->IOsegment[0] = 0;
+	}
+	segment = grp->nsegments - 1;
+	segmentStart = transferOffset - grp->IOsegment[segment];
+
+	for(slave = 0; slave <= *(context->slavecount); slave++)
+	{
+		offsets[slave].alstatus = -1;
+		offsets[slave].dcsysdiff = -1;
+
+		ec_slave = &(context->slavelist[slave]);
+		if(slave == 0 || ec_slave->group != group)
+		{
+			continue;
+		}
+
+		length = IHMC_ALSTATUS_LENGTH + (ec_slave->hasdc ? IHMC_DCSYSDIFF_LENGTH : 0);
+		if(grp->IOsegment[segment] + length > EC_MAXLRWDATA - EC_FIRSTDCDATAGRAM)
+		{
+			if(grp->nsegments >= EC_MAXIOSEGMENTS)
+			{
+				/* No room for another frame, keep reading the state of the remaining slaves from the householder */
+				continue;
+			}
+			segment = grp->nsegments++;
+			segmentStart = transferOffset;
+			grp->IOsegment[segment] = 0;
+		}
+
+		fmmuCount = 0;
+		ecx_FPRD(context->port, ec_slave->configadr, IHMC_REG_FMMUCOUNT, sizeof(fmmuCount), &fmmuCount, EC_TIMEOUTRET3);
+
+		mapped = 0;
+		logAddr = grp->logstartaddr + transferOffset;
+		if(ecx_map_register(context, slave, logAddr, ECT_REG_ALSTAT, IHMC_ALSTATUS_LENGTH, fmmuCount))
+		{
+			offsets[slave].alstatus = (int32) ((grp->inputs + blockOffset) - (uint8*) pIOmap);
+			mapped += IHMC_ALSTATUS_LENGTH;
+		}
+		if(ec_slave->hasdc && ecx_map_register(context, slave, logAddr + mapped, ECT_REG_DCSYSDIFF, IHMC_DCSYSDIFF_LENGTH, fmmuCount))
+		{
+			offsets[slave].dcsysdiff = (int32) ((grp->inputs + blockOffset + mapped) - (uint8*) pIOmap);
+			mapped += IHMC_DCSYSDIFF_LENGTH;
+		}
+
+		if(mapped == 0)
+		{
+			continue;
+		}
+
+		/* Reading the registers adds one to the working counter, unless the slave already reads inputs in the same frame */
+		if(ec_slave->Ibytes == 0 && ec_slave->Ibits == 0)
+		{
+			grp->inputsWKC++;
+		}
+		else
+		{
+			inputOffset = (overlap ? 0 : grp->Obytes) + (uint32) (ec_slave->inputs - grp->inputs);
+			if(inputOffset + (ec_slave->Ibytes ? ec_slave->Ibytes : 1) <= segmentStart)
+			{
+				grp->inputsWKC++;
+			}
+		}
+
+		if(!overlap && blockOffset == 0)
+		{
+			/* First inputs of the group. Used to read the inputs with LRD when LRW is blocked */
+			grp->Isegment = segment;
+			grp->Ioffset = transferOffset - segmentStart;
+		}
+
+		grp->IOsegment[segment] += mapped;
+		blockOffset += mapped;
+		transferOffset += mapped;
+	}
+
+	grp->Ibytes = blockOffset;
+
+	return (int) ((grp->inputs + grp->Ibytes) - (uint8*) pIOmap);
+}
+
+int ecx_send_processdata_pipelined(ecx_contextt *context, uint32 groupMask)
+{
+	ecx_send_processdata_groups(context, groupMask, TRUE);
+	return groupMask != 0;
+}
+
+int ecx_receive_send_processdata_pipelined(ecx_contextt *context, int timeout, void *transaction, uint32 groupMask)
+{
+	ihmc_pipelined_transactiont *result = (ihmc_pipelined_transactiont*) transaction;
+	int group, wkc;
+
+	result->startTimestamp = ecx_monotonic_time();
+	for(group = 0; group < IHMC_MAXGROUP; group++)
+	{
+		result->groupWkc[group] = EC_NOFRAME;
+	}
+
+	wkc = ecx_receive_processdata_frames(context, timeout, result->groupWkc, &(result->transaction.dcTime));
+	result->transaction.wkc = wkc;
+	result->transaction.receiveTimestamp = ecx_monotonic_time();
+
+	result->transaction.sendTimestamp = ecx_monotonic_time();
+	ecx_send_processdata_pipelined(context, groupMask);
+	result->endTimestamp = ecx_monotonic_time();
+
+	return wkc;
+}
+
+/*
+ * Receive the frames sent by ecx_register_batch and copy the data of the read datagrams to the data buffer.
+ */
+static int ecx_receive_register_batch(ecx_portt *port, int frames, uint8 *idx, int *firstOperation, ihmc_registeropt *operations, uint8 *data, int timeout)
+{
+	int frame, op, wkc, wkc2 = 0;
+
+	for(frame = 0; frame < frames; frame++)
+	{
+		wkc = ecx_waitinframe(port, idx[frame], timeout);
+		for(op = firstOperation[frame]; op < firstOperation[frame + 1]; op++)
+		{
+			if(wkc > EC_NOFRAME)
+			{
+				wkc2 += ecx_receive_register_operation(port->rxbuf[idx[frame]], &(operations[op]), data);
+			}
+			else
+			{
+				operations[op].wkc = EC_NOFRAME;
+			}
+		}
+		ecx_setbufstat(port, idx[frame], EC_BUF_EMPTY);
+	}
+
+	return wkc2;
+}
+
+/*
+ * Pack the datagrams of the operations, starting at op, in frame idx till the next datagram does not fit.
+ *
+ * Returns the first operation that was not packed. At least one operation is packed.
+ */
+static int ecx_pack_register_batch(ecx_portt *port, uint8 idx, ihmc_registeropt *ops, int op, int count, uint8 *data)
+{
+	uint16 lastHeader = ETH_HEADERSIZE;
+
+	ecx_setupdatagram(port, &(port->txbuf[idx]), ops[op].command, idx, ops[op].adp, ops[op].ado,
+			ops[op].length, data + ops[op].dataOffset);
+	ops[op].rxoffset = EC_HEADERSIZE;
+	op++;
+
+	while(op < count && ecx_datagram_fits(port, idx, ops[op].length))
+	{
+		ops[op].rxoffset = (uint16) ecx_appenddatagram(port, idx, &lastHeader, ops[op].command,
+				ops[op].adp, ops[op].ado, ops[op].length, data + ops[op].dataOffset);
+		op++;
+	}
+
+	return op;
+}
+
+int ecx_register_batch(ecx_contextt *context, void *operations, int count, void *data, int timeout)
+{
+	ecx_portt *port = context->port;
+	ihmc_registeropt *ops = (ihmc_registeropt*) operations;
+	uint8 idx[IHMC_MAXBATCHFRAMES];
+	int firstOperation[IHMC_MAXBATCHFRAMES + 1];
+	int op = 0, frames = 0, wkc = 0;
+
+	while(op < count)
+	{
+		idx[frames] = ecx_getindex(port);
+		firstOperation[frames] = op;
+		op = ecx_pack_register_batch(port, idx[frames], ops, op, count, (uint8*) data);
+
+		ecx_outframe_red(port, idx[frames]);
+		frames++;
+		firstOperation[frames] = op;
+
+		if(frames == IHMC_MAXBATCHFRAMES || op >= count)
+		{
+			wkc += ecx_receive_register_batch(port, frames, idx, firstOperation, ops, (uint8*) data, timeout);
+			frames = 0;
+		}
+	}
+
+	return wkc;
+}
+
+ec_groupt* ecx_group(ecx_contextt* context, uint32 group)
+{
+	if(group >= context->maxgroup)
+	{
+		return NULL;
+	}
+
+	return &(context->grouplist[group]);
+}
+
 int ecx_slavecount(ecx_contextt* context)
 {
     return *(context->slavecount);
@@ -231,6 +1072,425 @@ int ecx_SDOread_java_helper(ecx_contextt *context, uint16 slave, uint16 index, u
 	
 }
 
+/**
+ * Drain the error list of the context and return the abort code of the last SDO error of the given object.
+ * 
+ * Returns 0 if the slave did not abort the transfer. All errors in the list are removed.
+ */
+int32 ecx_SDO_abortcode(ecx_contextt *context, uint16 slave, uint16 index, uint8 subindex)
+{
+	ec_errort error;
+	int32 abortcode = 0;
+	
+	while (ecx_poperror(context, &error))
+	{
+		if (error.Etype == EC_ERR_TYPE_SDO_ERROR && error.Slave == slave && error.Index == index && error.SubIdx == subindex)
+		{
+			abortcode = error.AbortCode;
+		}
+	}
+	
+	return abortcode;
+}
+
+/* Fill in the mailbox header of a CoE SDO request */
+static void ecx_SDO_stream_header(ecx_contextt *context, uint16 slave, ihmc_SDOt *SDOp, uint16 length)
+{
+	uint8 cnt;
+	
+	SDOp->MbxHeader.length = htoes(length);
+	SDOp->MbxHeader.address = htoes(0x0000);
+	SDOp->MbxHeader.priority = 0x00;
+	/* get new mailbox count value, used as session handle */
+	cnt = ec_nextmbxcnt(context->slavelist[slave].mbx_cnt);
+	context->slavelist[slave].mbx_cnt = cnt;
+	SDOp->MbxHeader.mbxtype = ECT_MBXT_COE + (cnt << 4);
+	SDOp->CANOpen = htoes(0x000 + (ECT_COES_SDOREQ << 12));
+}
+
+/* Send a CoE request and read the response of the slave. Returns the working counter */
+static int ecx_SDO_stream_transaction(ecx_contextt *context, uint16 slave, ec_mbxbuft *MbxOut, ec_mbxbuft *MbxIn, int timeout)
+{
+	int wkc = ecx_mbxsend(context, slave, MbxOut, EC_TIMEOUTTXM);
+	if (wkc > 0)
+	{
+		ec_clearmbx(MbxIn);
+		wkc = ecx_mbxreceive(context, slave, MbxIn, timeout);
+	}
+	return wkc;
+}
+
+/* Fail the stream. Pushes the abort code or a packet error on the error list if the slave responded. Returns -1 */
+static int ecx_SDO_stream_fail(ecx_contextt *context, uint16 slave, uint16 index, uint8 subindex, ihmc_SDOt *aSDOp, int wkc, ihmc_sdostreamt *stream)
+{
+	if (wkc > 0)
+	{
+		if (aSDOp->Command == ECT_SDO_ABORT)
+		{
+			ecx_SDOerror(context, slave, index, subindex, etohl(aSDOp->ldata[0]));
+		}
+		else
+		{
+			ecx_packeterror(context, slave, index, subindex, 1); /* Unexpected frame returned */
+		}
+	}
+	stream->state = IHMC_SDOSTREAM_FAILED;
+	return -1;
+}
+
+/**
+ * Upload an SDO in chunks, using a segmented transfer for large objects.
+ * 
+ * Call with a zeroed stream and repeat until the state of the stream is done or failed. Each call writes as many segments to the 
+ * chunk, starting at offset, as fit in length bytes. The chunk needs room for at least one mailbox of the slave.
+ * 
+ * Returns the number of bytes written to the chunk, or -1 if the transfer failed.
+ */
+int ecx_SDO_upload_stream(ecx_contextt *context, uint16 slave, uint16 index, uint8 subindex, void *stream, void *chunk, int offset, int length, int timeout)
+{
+	ihmc_sdostreamt *sdostream = (ihmc_sdostreamt *) stream;
+	uint8 *hp = (uint8 *) chunk + offset;
+	int maxsegment = context->slavelist[slave].mbx_l;
+	int used = 0;
+	int wkc, framedatasize;
+	ec_mbxbuft MbxIn, MbxOut;
+	ihmc_SDOt *SDOp = (ihmc_SDOt *) &MbxOut;
+	ihmc_SDOt *aSDOp = (ihmc_SDOt *) &MbxIn;
+	
+	if (length < maxsegment)
+	{
+		ecx_packeterror(context, slave, index, subindex, 3); /* data container too small for type */
+		sdostream->state = IHMC_SDOSTREAM_FAILED;
+		return -1;
+	}
+	
+	if (sdostream->state == IHMC_SDOSTREAM_INIT)
+	{
+		ec_clearmbx(&MbxIn);
+		/* Empty slave out mailbox if something is in. Timeout set to 0 */
+		ecx_mbxreceive(context, slave, &MbxIn, 0);
+		ec_clearmbx(&MbxOut);
+		ecx_SDO_stream_header(context, slave, SDOp, 0x000a);
+		SDOp->Command = ECT_SDO_UP_REQ;
+		SDOp->Index = htoes(index);
+		SDOp->SubIndex = subindex;
+		SDOp->ldata[0] = 0;
+		
+		wkc = ecx_SDO_stream_transaction(context, slave, &MbxOut, &MbxIn, timeout);
+		if (wkc <= 0 || (aSDOp->MbxHeader.mbxtype & 0x0f) != ECT_MBXT_COE || (etohs(aSDOp->CANOpen) >> 12) != ECT_COES_SDORES || aSDOp->Index != SDOp->Index)
+		{
+			return ecx_SDO_stream_fail(context, slave, index, subindex, aSDOp, wkc, sdostream);
+		}
+		
+		if ((aSDOp->Command & 0x02) > 0)
+		{
+			/* expedited frame response */
+			framedatasize = 4 - ((aSDOp->Command >> 2) & 0x03);
+			memcpy(hp, &aSDOp->ldata[0], framedatasize);
+			sdostream->total = framedatasize;
+			sdostream->transferred = framedatasize;
+			sdostream->state = IHMC_SDOSTREAM_DONE;
+			return framedatasize;
+		}
+		
+		/* normal frame response, the first data is in the response */
+		sdostream->total = etohl(aSDOp->ldata[0]);
+		framedatasize = etohs(aSDOp->MbxHeader.length) - 10;
+		if (framedatasize > sdostream->total)
+		{
+			framedatasize = sdostream->total;
+		}
+		memcpy(hp, &aSDOp->ldata[1], framedatasize);
+		used = framedatasize;
+		sdostream->transferred = framedatasize;
+		sdostream->toggle = 0;
+		sdostream->state = sdostream->transferred < sdostream->total ? IHMC_SDOSTREAM_SEGMENTS : IHMC_SDOSTREAM_DONE;
+	}
+	
+	/* request segments while a full mailbox fits in the chunk */
+	while (sdostream->state == IHMC_SDOSTREAM_SEGMENTS && length - used >= maxsegment)
+	{
+		ec_clearmbx(&MbxOut);
+		ecx_SDO_stream_header(context, slave, SDOp, 0x000a);
+		SDOp->Command = ECT_SDO_SEG_UP_REQ + sdostream->toggle;
+		SDOp->Index = htoes(index);
+		SDOp->SubIndex = subindex;
+		SDOp->ldata[0] = 0;
+		
+		wkc = ecx_SDO_stream_transaction(context, slave, &MbxOut, &MbxIn, timeout);
+		if (wkc <= 0 || (aSDOp->MbxHeader.mbxtype & 0x0f) != ECT_MBXT_COE || (etohs(aSDOp->CANOpen) >> 12) != ECT_COES_SDORES || (aSDOp->Command & 0xe0) != 0x00)
+		{
+			return ecx_SDO_stream_fail(context, slave, index, subindex, aSDOp, wkc, sdostream);
+		}
+		
+		framedatasize = etohs(aSDOp->MbxHeader.length) - 3;
+		if ((aSDOp->Command & 0x01) > 0)
+		{
+			/* last segment, subtract unused bytes from a minimum size frame */
+			if (framedatasize == 7)
+			{
+				framedatasize = framedatasize - ((aSDOp->Command & 0x0e) >> 1);
+			}
+			sdostream->state = IHMC_SDOSTREAM_DONE;
+		}
+		memcpy(hp + used, &aSDOp->Index, framedatasize);
+		used += framedatasize;
+		sdostream->transferred += framedatasize;
+		sdostream->toggle ^= 0x10;
+	}
+	
+	return used;
+}
+
+/**
+ * Download an SDO in chunks, using a segmented transfer for large objects.
+ * 
+ * Set the total size in a zeroed stream and repeat until the state of the stream is done or failed. Each call sends as many segments 
+ * from the chunk, starting at offset, as are complete in length bytes. The chunk needs room for at least one mailbox of the slave.
+ * 
+ * Returns the number of bytes consumed from the chunk, or -1 if the transfer failed.
+ */
+int ecx_SDO_download_stream(ecx_contextt *context, uint16 slave, uint16 index, uint8 subindex, void *stream, void *chunk, int offset, int length, int timeout)
+{
+	ihmc_sdostreamt *sdostream = (ihmc_sdostreamt *) stream;
+	uint8 *hp = (uint8 *) chunk + offset;
+	/* data section=mailbox size - 6 mbx - 2 CoE - 8 sdo req */
+	int maxdata = context->slavelist[slave].mbx_l - 0x10;
+	int used = 0;
+	int wkc, framedatasize, remaining;
+	ec_mbxbuft MbxIn, MbxOut;
+	ihmc_SDOt *SDOp = (ihmc_SDOt *) &MbxOut;
+	ihmc_SDOt *aSDOp = (ihmc_SDOt *) &MbxIn;
+	
+	if (sdostream->state == IHMC_SDOSTREAM_INIT)
+	{
+		if (sdostream->total <= 4)
+		{
+			/* expedited transfer */
+			if (length < sdostream->total)
+			{
+				return 0;
+			}
+			if (ecx_SDOwrite(context, slave, index, subindex, FALSE, sdostream->total, hp, timeout) <= 0)
+			{
+				sdostream->state = IHMC_SDOSTREAM_FAILED;
+				return -1;
+			}
+			sdostream->transferred = sdostream->total;
+			sdostream->state = IHMC_SDOSTREAM_DONE;
+			return sdostream->total;
+		}
+		
+		framedatasize = sdostream->total < maxdata ? sdostream->total : maxdata;
+		if (length < framedatasize)
+		{
+			return 0;
+		}
+		
+		ec_clearmbx(&MbxIn);
+		/* Empty slave out mailbox if something is in. Timeout set to 0 */
+		ecx_mbxreceive(context, slave, &MbxIn, 0);
+		ec_clearmbx(&MbxOut);
+		ecx_SDO_stream_header(context, slave, SDOp, 0x0a + framedatasize);
+		SDOp->Command = ECT_SDO_DOWN_INIT;
+		SDOp->Index = htoes(index);
+		SDOp->SubIndex = subindex;
+		SDOp->ldata[0] = htoel(sdostream->total);
+		memcpy(&SDOp->ldata[1], hp, framedatasize);
+		
+		wkc = ecx_SDO_stream_transaction(context, slave, &MbxOut, &MbxIn, timeout);
+		if (wkc <= 0 || (aSDOp->MbxHeader.mbxtype & 0x0f) != ECT_MBXT_COE || (etohs(aSDOp->CANOpen) >> 12) != ECT_COES_SDORES || 
+			aSDOp->Index != SDOp->Index || aSDOp->SubIndex != SDOp->SubIndex)
+		{
+			return ecx_SDO_stream_fail(context, slave, index, subindex, aSDOp, wkc, sdostream);
+		}
+		
+		used = framedatasize;
+		sdostream->transferred = framedatasize;
+		sdostream->toggle = 0;
+		sdostream->state = sdostream->transferred < sdostream->total ? IHMC_SDOSTREAM_SEGMENTS : IHMC_SDOSTREAM_DONE;
+	}
+	
+	/* segments carry the 7 bytes of the SDO request header as data */
+	maxdata += 7;
+	
+	/* send segments while a complete segment is in the chunk */
+	while (sdostream->state == IHMC_SDOSTREAM_SEGMENTS)
+	{
+		remaining = sdostream->total - sdostream->transferred;
+		framedatasize = remaining > maxdata ? maxdata : remaining;
+		if (length - used < framedatasize)
+		{
+			break;
+		}
+		
+		ec_clearmbx(&MbxOut);
+		if (remaining > maxdata)
+		{
+			/* segments follow */
+			ecx_SDO_stream_header(context, slave, SDOp, framedatasize + 3);
+			SDOp->Command = 0x00;
+		}
+		else if (framedatasize < 7)
+		{
+			/* last segment with reduced octets, minimum size */
+			ecx_SDO_stream_header(context, slave, SDOp, 0x0a);
+			SDOp->Command = 0x01 + ((7 - framedatasize) << 1);
+		}
+		else
+		{
+			/* last segment */
+			ecx_SDO_stream_header(context, slave, SDOp, framedatasize + 3);
+			SDOp->Command = 0x01;
+		}
+		SDOp->Command = SDOp->Command + sdostream->toggle;
+		memcpy(&SDOp->Index, hp + used, framedatasize);
+		
+		wkc = ecx_SDO_stream_transaction(context, slave, &MbxOut, &MbxIn, timeout);
+		if (wkc <= 0 || (aSDOp->MbxHeader.mbxtype & 0x0f) != ECT_MBXT_COE || (etohs(aSDOp->CANOpen) >> 12) != ECT_COES_SDORES || (aSDOp->Command & 0xe0) != 0x20)
+		{
+			return ecx_SDO_stream_fail(context, slave, index, subindex, aSDOp, wkc, sdostream);
+		}
+		
+		used += framedatasize;
+		sdostream->transferred += framedatasize;
+		sdostream->toggle ^= 0x10;
+		if (sdostream->transferred >= sdostream->total)
+		{
+			sdostream->state = IHMC_SDOSTREAM_DONE;
+		}
+	}
+	
+	return used;
+}
+
+/**
+ * Probe Complete Access support by reading the sync manager communication types (0x1C00) with and without Complete Access.
+ * 
+ * Returns 1 if the slave answers the Complete Access read consistently, 0 otherwise. If the probe fails, the error list is cleared.
+ */
+int ecx_SDO_probe_ca(ecx_contextt *context, uint16 slave, int timeout)
+{
+	uint8 entries = 0;
+	/* subindex 0 padded to 16 bits, followed by one byte for each of at most 32 sync managers */
+	uint8 complete[2 + 32];
+	int size, wkc;
+	ec_errort error;
+	
+	size = sizeof(entries);
+	wkc = ecx_SDOread(context, slave, 0x1C00, 0x00, FALSE, &size, &entries, timeout);
+	if (wkc > 0)
+	{
+		memset(complete, 0, sizeof(complete));
+		size = sizeof(complete);
+		wkc = ecx_SDOread(context, slave, 0x1C00, 0x00, TRUE, &size, complete, timeout);
+		if (wkc > 0 && (complete[0] != entries || size < 2 + entries))
+		{
+			wkc = 0;
+		}
+	}
+	
+	if (wkc <= 0)
+	{
+		while (ecx_poperror(context, &error));
+		return 0;
+	}
+	return 1;
+}
+
+/**
+ * Read all entries of an object, with Complete Access if it is enabled for the slave and subindex by subindex otherwise.
+ * 
+ * The data is stored in the Complete Access layout: subindex 0 padded to 16 bits, followed by the entries. Without Complete Access the
+ * entries are concatenated, which matches the Complete Access layout for objects with byte aligned entries.
+ * 
+ * Returns the number of bytes read, or -1 if the read failed.
+ */
+int ecx_SDO_read_object(ecx_contextt *context, uint16 slave, uint16 index, int size, void *p, int timeout)
+{
+	uint8 *data = (uint8 *) p;
+	int length, offset, entries, subindex;
+	
+	if (context->slavelist[slave].CoEdetails & ECT_COEDET_SDOCA)
+	{
+		length = size;
+		if (ecx_SDOread(context, slave, index, 0x00, TRUE, &length, p, timeout) <= 0)
+		{
+			return -1;
+		}
+		return length;
+	}
+	
+	if (size < 2)
+	{
+		return -1;
+	}
+	
+	length = 1;
+	if (ecx_SDOread(context, slave, index, 0x00, FALSE, &length, data, timeout) <= 0)
+	{
+		return -1;
+	}
+	entries = data[0];
+	data[1] = 0;
+	offset = 2;
+	
+	for (subindex = 1; subindex <= entries; subindex++)
+	{
+		length = size - offset;
+		if (length <= 0 || ecx_SDOread(context, slave, index, (uint8) subindex, FALSE, &length, data + offset, timeout) <= 0)
+		{
+			return -1;
+		}
+		offset += length;
+	}
+	
+	return offset;
+}
+
+/**
+ * Write all entries of an object, with Complete Access if it is enabled for the slave. Otherwise subindex 0 is cleared, the entries 
+ * are written one by one and subindex 0 is set to the number of entries, as required for the PDO mapping and assignment objects.
+ * 
+ * The data is in the Complete Access layout: the number of entries padded to 16 bits, followed by the entries of entrysize bytes.
+ * 
+ * Returns the working counter of the last write, or 0 if a write failed.
+ */
+int ecx_SDO_write_object(ecx_contextt *context, uint16 slave, uint16 index, int entrysize, int size, void *p, int timeout)
+{
+	uint8 *data = (uint8 *) p;
+	uint8 entries, zero = 0;
+	int subindex, wkc;
+	
+	if (size < 2)
+	{
+		return 0;
+	}
+	
+	if (context->slavelist[slave].CoEdetails & ECT_COEDET_SDOCA)
+	{
+		return ecx_SDOwrite(context, slave, index, 0x00, TRUE, size, p, timeout);
+	}
+	
+	entries = data[0];
+	if (size < 2 + entries * entrysize)
+	{
+		return 0;
+	}
+	
+	wkc = ecx_SDOwrite(context, slave, index, 0x00, FALSE, sizeof(zero), &zero, timeout);
+	for (subindex = 1; wkc > 0 && subindex <= entries; subindex++)
+	{
+		wkc = ecx_SDOwrite(context, slave, index, (uint8) subindex, FALSE, entrysize, data + 2 + (subindex - 1) * entrysize, timeout);
+	}
+	if (wkc > 0)
+	{
+		wkc = ecx_SDOwrite(context, slave, index, 0x00, FALSE, sizeof(entries), &entries, timeout);
+	}
+	
+	return wkc > 0 ? wkc : 0;
+}
+
 int ecx_reconfig_slave_to_preop(ecx_contextt *context, uint16 slave, int timeout)
 {
    int state, nSM;
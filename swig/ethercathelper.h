@@ -7,6 +7,9 @@ extern "C"
 {
 #endif
 
+/* Number of process data groups. SOEM defaults to EC_MAXGROUP (2), which leaves a single group next to group 0 */
+#define IHMC_MAXGROUP 8
+
 ecx_contextt* ecx_create_context(int manualStateChange);
 void ecx_destroy_context(ecx_contextt* context);
 ec_slavet* ecx_slave(ecx_contextt* context, uint32 slave);
@@ -15,8 +18,27 @@ int32_t ecx_inputoffset(ec_slavet* slave, void* buffer);
 int32_t ecx_outputoffset(ec_slavet* slave, void* buffer);
 boolean ecx_ecaterror(ecx_contextt* ecx_context);
 int64 ecx_dcTime(ecx_contextt* context);
+int ecx_send_receive_processdata(ecx_contextt *context, int timeout, void *transaction);
+int ecx_send_receive_processdata_group(ecx_contextt *context, uint8 group, int timeout, void *transaction);
+int ecx_send_receive_processdata_groups(ecx_contextt *context, int timeout, void *transaction, uint32 groupMask);
+int ecx_config_map_group_dc(ecx_contextt *context, void *pIOmap, uint8 group, int overlap);
+int ecx_config_map_group_status(ecx_contextt *context, void *pIOmap, uint8 group, int overlap, void *statusOffsets);
+int ecx_send_processdata_pipelined(ecx_contextt *context, uint32 groupMask);
+int ecx_receive_send_processdata_pipelined(ecx_contextt *context, int timeout, void *transaction, uint32 groupMask);
+int ecx_register_batch(ecx_contextt *context, void *operations, int count, void *data, int timeout);
+int ecx_send_processdata_groups_acyclic(ecx_contextt *context, uint32 groupMask, int overlap);
+int ecx_receive_processdata_acyclic(ecx_contextt *context, int timeout);
+void ecx_acyclic_submit(ecx_contextt *context, void *operations, int count, void *data);
+int ecx_acyclic_pending(ecx_contextt *context);
+ec_groupt* ecx_group(ecx_contextt* context, uint32 group);
 int ecx_SDOread_java_helper(ecx_contextt *context, uint16 slave, uint16 index, uint8 subindex,
                       boolean CA, int size, void *p, int timeout);
+int32 ecx_SDO_abortcode(ecx_contextt *context, uint16 slave, uint16 index, uint8 subindex);
+int ecx_SDO_upload_stream(ecx_contextt *context, uint16 slave, uint16 index, uint8 subindex, void *stream, void *chunk, int offset, int length, int timeout);
+int ecx_SDO_download_stream(ecx_contextt *context, uint16 slave, uint16 index, uint8 subindex, void *stream, void *chunk, int offset, int length, int timeout);
+int ecx_SDO_probe_ca(ecx_contextt *context, uint16 slave, int timeout);
+int ecx_SDO_read_object(ecx_contextt *context, uint16 slave, uint16 index, int size, void *p, int timeout);
+int ecx_SDO_write_object(ecx_contextt *context, uint16 slave, uint16 index, int entrysize, int size, void *p, int timeout);
 int ecx_reconfig_slave_to_preop(ecx_contextt *context, uint16 slave, int timeout);
 int ecx_reconfig_slave_to_safeop(ecx_contextt *context, uint16 slave, int timeout);
 ec_smt* ecx_sm(ec_slavet* slave, uint32 sm);
@@ -0,0 +1,107 @@
+/*
+ * Tests for the frame building in ethercathelper.c. The source is included to reach its static functions.
+ *
+ * Frames are only built in the transmit buffers of a port that is not opened, nothing is sent.
+ */
+#include "../ethercathelper.c"
+
+static int failures = 0;
+
+static void check(int condition, const char *message)
+{
+	if(!condition)
+	{
+		printf("FAILED: %s\n", message);
+		failures++;
+	}
+}
+
+/*
+ * Walk the datagrams in frame idx as an ESC does, till the first datagram without the "datagram follows" flag.
+ *
+ * Returns the number of datagrams walked, or -1 if the walk does not end at the end of the frame.
+ */
+static int count_datagrams(ecx_portt *port, uint8 idx)
+{
+	int offset = ETH_HEADERSIZE;
+	int datagrams = 0;
+	uint16 dlength;
+
+	do
+	{
+		dlength = etohs(((ec_comt*) &(port->txbuf[idx][offset]))->dlength);
+		offset += EC_HEADERSIZE - EC_ELENGTHSIZE + (dlength & 0x07ff) + EC_WKCSIZE;
+		datagrams++;
+	}
+	while((dlength & EC_DATAGRAMFOLLOWS) && offset < port->txbuflength[idx]);
+
+	return offset + EC_ELENGTHSIZE == port->txbuflength[idx] ? datagrams : -1;
+}
+
+static void setup_alstatus_reads(ihmc_registeropt *ops, int count)
+{
+	int op;
+
+	memset(ops, 0, sizeof(ihmc_registeropt) * count);
+	for(op = 0; op < count; op++)
+	{
+		ops[op].command = EC_CMD_FPRD;
+		ops[op].adp = (uint16) (0x1001 + op);
+		ops[op].ado = ECT_REG_ALSTAT;
+		ops[op].length = IHMC_ALSTATUS_LENGTH;
+		ops[op].dataOffset = op * IHMC_ALSTATUS_LENGTH;
+	}
+}
+
+static void test_register_batch_chaining(void)
+{
+	static ecx_portt port;
+	ihmc_registeropt ops[5];
+	uint8 data[5 * IHMC_ALSTATUS_LENGTH];
+	int op;
+
+	memset(data, 0, sizeof(data));
+	setup_alstatus_reads(ops, 5);
+
+	check(ecx_pack_register_batch(&port, 0, ops, 0, 5, data) == 5, "All operations are packed in a single frame");
+	check(count_datagrams(&port, 0) == 5, "Every datagram but the last has the datagram follows flag");
+
+	for(op = 0; op < 5; op++)
+	{
+		check(ops[op].rxoffset == EC_HEADERSIZE + op * (EC_HEADERSIZE - EC_ELENGTHSIZE + IHMC_ALSTATUS_LENGTH + EC_WKCSIZE),
+				"The receive offset points at the data of the datagram");
+	}
+}
+
+static void test_register_batch_full_frame(void)
+{
+	static ecx_portt port;
+	static ihmc_registeropt ops[EC_MAXSLAVE];
+	static uint8 data[EC_MAXSLAVE * IHMC_ALSTATUS_LENGTH];
+	int packed;
+
+	setup_alstatus_reads(ops, EC_MAXSLAVE);
+
+	packed = ecx_pack_register_batch(&port, 0, ops, 0, EC_MAXSLAVE, data);
+	check(packed > 2 && packed < EC_MAXSLAVE, "A full frame holds more than two datagrams, but not all operations");
+	check(port.txbuflength[0] <= IHMC_MAXFRAMELENGTH, "The frame does not exceed the maximum frame length");
+	check(count_datagrams(&port, 0) == packed, "All datagrams in a full frame are chained");
+
+	check(ecx_pack_register_batch(&port, 1, ops, packed, EC_MAXSLAVE, data) > packed, "The next frame continues at the first operation that was not packed");
+	check(count_datagrams(&port, 1) > 2, "All datagrams in the next frame are chained");
+}
+
+int main(void)
+{
+	test_register_batch_chaining();
+	test_register_batch_full_frame();
+
+	if(failures > 0)
+	{
+		printf("%d checks failed\n", failures);
+		return 1;
+	}
+
+	printf("All checks passed\n");
+	return 0;
+}